@@ -0,0 +1,22 @@
+@echo off
+rem Chạy SMART PARKING trên kiosk (bản dựng bằng: ant kiosk), xem parking.sh
+setlocal
+set "HERE=%~dp0"
+if defined PARKING_DATA_DIR (set "DATA_DIR=%PARKING_DATA_DIR%") else (set "DATA_DIR=%CD%")
+
+if exist "%HERE%runtime\bin\java.exe" (
+    set "JAVA=%HERE%runtime\bin\java.exe"
+) else if defined JAVA_HOME (
+    set "JAVA=%JAVA_HOME%\bin\java.exe"
+) else (
+    set "JAVA=java"
+)
+
+set "CDS_OPTS="
+if exist "%HERE%parking.jsa" set "CDS_OPTS=-XX:SharedArchiveFile=parking.jsa -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off"
+
+rem Classpath tương đối như lúc tạo archive
+cd /d "%HERE%"
+"%JAVA%" %CDS_OPTS% -XX:+UseSerialGC -XX:TieredStopAtLevel=1 -Dfile.encoding=UTF-8 ^
+    "-Dparking.data.dir=%DATA_DIR%" -Dparking.fast.start=true %JAVA_OPTS% %* ^
+    -cp SMART_PARKING_MANAGEMENT.jar vn.parking.main.Main
\ No newline at end of file
@@ -0,0 +1,29 @@
+#!/bin/sh
+# Chạy SMART PARKING trên kiosk (bản dựng bằng: ant kiosk)
+#
+# - Dùng runtime jlink đi kèm (runtime/) nếu có, không thì java trong JAVA_HOME / PATH
+# - Dùng archive AppCDS (parking.jsa) nếu có; archive không khớp JVM thì JVM tự bỏ qua
+# - Dữ liệu bãi ở thư mục hiện hành, hoặc PARKING_DATA_DIR
+# - JAVA_OPTS và các tham số của script được truyền cho JVM (vd: ./parking.sh -Dparking.warmup=true)
+
+HERE="$(cd "$(dirname "$0")" && pwd)"
+DATA_DIR="${PARKING_DATA_DIR:-$(pwd)}"
+
+if [ -x "$HERE/runtime/bin/java" ]; then
+    JAVA="$HERE/runtime/bin/java"
+elif [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+else
+    JAVA=java
+fi
+
+CDS_OPTS=""
+if [ -f "$HERE/parking.jsa" ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=parking.jsa -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off"
+fi
+
+# Classpath tương đối như lúc tạo archive
+cd "$HERE" || exit 1
+exec "$JAVA" $CDS_OPTS -XX:+UseSerialGC -XX:TieredStopAtLevel=1 -Dfile.encoding=UTF-8 \
+    -Dparking.data.dir="$DATA_DIR" -Dparking.fast.start=true $JAVA_OPTS "$@" \
+    -cp SMART_PARKING_MANAGEMENT.jar vn.parking.main.Main
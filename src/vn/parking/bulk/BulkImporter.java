@@ -0,0 +1,278 @@
+package vn.parking.bulk;
+
+import vn.parking.model.*;
+import vn.parking.repository.ParkingRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Nhập hàng loạt xe từ file CSV (vd: danh sách chủ thẻ tháng khi mở bãi mới)
+ *
+ * Format giống parking_data.csv: type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth
+ * (dòng header tùy chọn). Chỉ nhận xe chưa đỗ (entryTime để trống): xe vào bãi phải qua cổng.
+ * Cột lastPaidMonth (MM/yyyy, tùy chọn) được ghi vào sổ cái đóng tiền khi nhập.
+ *
+ * - Đọc file tuần tự, chia từng khối CHUNK_SIZE dòng cho các luồng parse + kiểm tra song song
+ * - Biển số chuẩn hóa rồi kiểm tra theo PlateValidator (cùng quy tắc với màn hình nhập)
+ * - Gộp kết quả theo thứ tự dòng: trùng biển số (sau chuẩn hóa) giữ dòng đầu tiên,
+ *   biển số đã có trong dữ liệu bị bỏ qua
+ * - Mọi lỗi ghi vào file tổng hợp lỗi (số dòng, lý do, nội dung dòng)
+ */
+public class BulkImporter {
+
+    private static final int CHUNK_SIZE = 10000;
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MM/yyyy");
+
+    private final ParkingRepository repository;
+    private final int threads;
+
+    public BulkImporter(ParkingRepository repository) {
+        this(repository, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkImporter(ParkingRepository repository, int threads) {
+        this.repository = repository;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Kết quả một lần nhập
+     */
+    public static class Report {
+        private long totalRows;
+        private int imported;
+        private int invalid;
+        private int duplicates;
+        private int existing;
+        private long elapsedMillis;
+
+        public long getTotalRows() {
+            return totalRows;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getInvalid() {
+            return invalid;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public int getExisting() {
+            return existing;
+        }
+
+        public int getErrorCount() {
+            return invalid + duplicates + existing;
+        }
+
+        @Override
+        public String toString() {
+            return "Tổng " + totalRows + " dòng | Nhập " + imported + " | Lỗi định dạng " + invalid
+                    + " | Trùng trong file " + duplicates + " | Đã có " + existing
+                    + " | " + elapsedMillis + " ms";
+        }
+    }
+
+    /**
+     * Một dòng đã parse hợp lệ
+     */
+    private static class Row {
+        final long lineNumber;
+        final Vehicle vehicle;
+
+        Row(long lineNumber, Vehicle vehicle) {
+            this.lineNumber = lineNumber;
+            this.vehicle = vehicle;
+        }
+    }
+
+    /**
+     * Kết quả parse một khối dòng
+     */
+    private static class ChunkResult {
+        final List<Row> rows = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * Nhập file CSV vào repository (chưa ghi file dữ liệu) và ghi file tổng hợp lỗi
+     */
+    public Report importFile(File csv, File errorFile) throws IOException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<ChunkResult>> futures = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            long chunkStart = 1;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith("type,")) {
+                    chunkStart = 2;
+                    continue; // Bỏ dòng header
+                }
+                chunk.add(line);
+                if (chunk.size() == CHUNK_SIZE) {
+                    futures.add(submit(pool, chunk, chunkStart));
+                    chunkStart = lineNumber + 1;
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                futures.add(submit(pool, chunk, chunkStart));
+            }
+        }
+
+        try (PrintWriter errors = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(errorFile), StandardCharsets.UTF_8)))) {
+            errors.println("# Lỗi nhập file " + csv.getName() + " (dòng: lý do | nội dung)");
+
+            // Gộp theo thứ tự khối để quyết định trùng lặp ổn định (giữ dòng xuất hiện trước)
+            Map<String, Long> firstLineByPlate = new HashMap<>();
+            List<Vehicle> accepted = new ArrayList<>();
+            for (Future<ChunkResult> future : futures) {
+                ChunkResult result = await(future);
+                for (String error : result.errors) {
+                    errors.println(error);
+                    report.invalid++;
+                }
+                report.totalRows += result.rows.size();
+                for (Row row : result.rows) {
+                    String plate = row.vehicle.getPlate();
+                    Long first = firstLineByPlate.putIfAbsent(plate, row.lineNumber);
+                    if (first != null) {
+                        errors.println(row.lineNumber + ": trùng biển số " + plate + " với dòng " + first);
+                        report.duplicates++;
+                    } else if (repository.isKnownPlate(plate)) {
+                        errors.println(row.lineNumber + ": biển số " + plate + " đã có trong dữ liệu");
+                        report.existing++;
+                    } else {
+                        accepted.add(row.vehicle);
+                    }
+                }
+            }
+            report.totalRows += report.invalid;
+            report.imported = repository.importVehicles(accepted);
+            report.existing += accepted.size() - report.imported;
+
+            report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            errors.println("# " + report);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return report;
+    }
+
+    private Future<ChunkResult> submit(ExecutorService pool, List<String> lines, long firstLineNumber) {
+        return pool.submit(() -> parseChunk(lines, firstLineNumber));
+    }
+
+    private static ChunkResult await(Future<ChunkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Nhập dữ liệu bị ngắt");
+        } catch (ExecutionException e) {
+            throw new IOException("Lỗi khi parse dữ liệu: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static ChunkResult parseChunk(List<String> lines, long firstLineNumber) {
+        ChunkResult result = new ChunkResult();
+        long lineNumber = firstLineNumber;
+        for (String line : lines) {
+            if (!line.trim().isEmpty()) {
+                try {
+                    result.rows.add(new Row(lineNumber, parseRow(line)));
+                } catch (IllegalArgumentException e) {
+                    result.errors.add(lineNumber + ": " + e.getMessage() + " | " + line);
+                }
+            }
+            lineNumber++;
+        }
+        return result;
+    }
+
+    /**
+     * Parse và kiểm tra một dòng
+     * @throws IllegalArgumentException kèm lý do nếu dòng không hợp lệ
+     */
+    static Vehicle parseRow(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("thiếu cột (cần ít nhất 5)");
+        }
+
+        VehicleType type = parseEnum(VehicleType.class, parts[0], "loại xe");
+        String plate = ParkingRepository.normalizePlate(parts[1]);
+        if (plate.isEmpty()) {
+            throw new IllegalArgumentException("biển số trống");
+        }
+        String plateError = PlateValidator.validate(plate, type);
+        if (plateError != null) {
+            throw new IllegalArgumentException(plateError.split("\n")[0].replace("❌ ", ""));
+        }
+        if (!parts[2].trim().isEmpty()) {
+            throw new IllegalArgumentException("xe đang đỗ (có giờ vào) - chỉ nhận qua cổng check-in");
+        }
+
+        FuelType fuelType = parseEnum(FuelType.class, parts[3], "nhiên liệu");
+        if ((type == VehicleType.BICYCLE) != (fuelType == FuelType.NONE)) {
+            throw new IllegalArgumentException("nhiên liệu " + fuelType + " không hợp với loại xe " + type);
+        }
+
+        String ticketType = parts[4].trim().toUpperCase();
+        if (!ticketType.equals("MONTHLY") && !ticketType.equals("SINGLE")) {
+            throw new IllegalArgumentException("loại vé phải là MONTHLY hoặc SINGLE");
+        }
+        boolean isMonthly = ticketType.equals("MONTHLY");
+
+        String lastPaidMonth = parts.length > 5 && !parts[5].trim().isEmpty() ? parts[5].trim() : null;
+        if (lastPaidMonth != null) {
+            try {
+                YearMonth.parse(lastPaidMonth, MONTH_FORMATTER);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("tháng đã đóng phải có dạng MM/yyyy");
+            }
+        }
+
+        switch (type) {
+            case CAR:
+                return new Car(plate, fuelType, isMonthly, lastPaidMonth);
+            case BIKE:
+                return new Motorbike(plate, fuelType, isMonthly, lastPaidMonth);
+            case BICYCLE:
+            default:
+                return new Bicycle(plate, fuelType, isMonthly, lastPaidMonth);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String field) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(field + " không hợp lệ: " + value.trim());
+        }
+    }
+}
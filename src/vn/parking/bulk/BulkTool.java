@@ -0,0 +1,103 @@
+package vn.parking.bulk;
+
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.ParkingService;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Công cụ dòng lệnh nhập/xuất dữ liệu xe hàng loạt (chạy khi bãi không hoạt động)
+ *
+ * java vn.parking.bulk.BulkTool import <file.csv> [thư mục dữ liệu]
+ *   -> nhập xe chưa đỗ, lỗi ghi vào <file.csv>.errors.txt, lưu parking_data.csv
+ * java vn.parking.bulk.BulkTool export <file.csv> [thư mục dữ liệu]
+ *   -> xuất toàn bộ xe theo luồng
+ * java vn.parking.bulk.BulkTool prepay <file.csv> [thư mục dữ liệu]
+ *   -> đóng trước vé tháng, mỗi dòng "biểnSố,sốTháng" (các tháng chưa đóng kể từ tháng hiện tại)
+ */
+public class BulkTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export") || args[0].equals("prepay"))) {
+            System.out.println("Cách dùng: java vn.parking.bulk.BulkTool import|export|prepay <file.csv> [thư mục dữ liệu]");
+            return;
+        }
+        File csv = new File(args[1]);
+        File dataDir = args.length > 2 ? new File(args[2]) : null;
+
+        if (args[0].equals("prepay")) {
+            prepay(csv, dataDir);
+            return;
+        }
+
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        repository.loadFromFile();
+
+        if (args[0].equals("import")) {
+            File errorFile = new File(csv.getPath() + ".errors.txt");
+            BulkImporter.Report report = new BulkImporter(repository).importFile(csv, errorFile);
+            System.out.println("✓ " + report);
+            if (report.getErrorCount() > 0) {
+                System.out.println("⚠ Có " + report.getErrorCount() + " dòng không nhập được, xem " + errorFile.getPath());
+            }
+            if (report.getImported() > 0) {
+                repository.saveToFile();
+            }
+        } else {
+            long start = System.nanoTime();
+            long rows;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+                rows = repository.exportCsv(out);
+            }
+            System.out.println("✓ Đã xuất " + rows + " xe ra file " + csv.getPath()
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }
+    }
+
+    /**
+     * Đóng trước vé tháng theo file "biểnSố,sốTháng" (đi qua ParkingService để ghi sổ cái và thống kê)
+     */
+    private static void prepay(File csv, File dataDir) throws IOException {
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        ParkingService service = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(HistoryRepository.open(dataDir)));
+        service.loadData();
+
+        int plates = 0;
+        int months = 0;
+        long amount = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(csv), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                try {
+                    if (parts.length < 2 || parts[0].trim().isEmpty()) {
+                        throw new IllegalArgumentException("Thiếu cột: " + line);
+                    }
+                    BillingService.MonthlyCharge charge = service.prepayMonthly(
+                            ParkingRepository.normalizePlate(parts[0]), Integer.parseInt(parts[1].trim()));
+                    plates++;
+                    months += charge.getTotalMonths();
+                    amount += charge.getAmount();
+                } catch (IllegalArgumentException e) {
+                    System.err.println("❌ Dòng " + lineNumber + " không hợp lệ: " + e.getMessage());
+                }
+            }
+        }
+        service.saveData();
+        System.out.println("✓ Đã đóng trước " + months + " tháng cho " + plates + " biển số, tổng "
+                + String.format("%,d", amount) + " VNĐ");
+    }
+}
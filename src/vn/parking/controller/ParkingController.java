@@ -1,37 +1,111 @@
 package vn.parking.controller;
 
 import vn.parking.model.*;
+import vn.parking.replication.ReplicatedParkingService;
+import vn.parking.repository.HistoryRepository;
 import vn.parking.repository.ParkingRepository;
 import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.IParkingService;
+import vn.parking.service.LostTicketDetector;
+import vn.parking.service.LostTicketResult;
 import vn.parking.service.ParkingService;
+import vn.parking.service.StatisticsProjection;
+import vn.parking.service.ZoneForecaster;
+import vn.parking.shard.ShardedParkingService;
+import vn.parking.sim.StartupWarmup;
 import vn.parking.view.ParkingView;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
  * Controller điều khiển luồng xử lý của ứng dụng
+ *
+ * Chế độ chạy chọn bằng system property:
+ * - Mặc định: một bãi, dữ liệu ở thư mục hiện hành
+ * - -Dparking.shards=N: N shard trong cùng tiến trình (thư mục shards/shard-i)
+ * - -Dparking.shard.hosts=host:port,...: các shard chạy ở tiến trình riêng (ShardServer)
+ * - -Dparking.replication.role=primary|replica: replication primary/replica
+ *   (-Dparking.replication.port=cổng phát journal, -Dparking.replication.primary=host:port của primary)
+ * - -Dparking.data.dir=thư mục: thư mục dữ liệu của bãi (mặc định thư mục hiện hành)
  */
 public class ParkingController {
     
-    private ParkingRepository repository;
-    private BillingService billingService;
-    private ParkingService parkingService;
+    private static final int DEFAULT_REPLICATION_PORT = 7400;
+    
+    private ParkingRepository repository; // null khi chạy nhiều shard
+    private ReplicatedParkingService replication; // null khi không bật replication
+    private StatisticsProjection statistics; // null khi chạy nhiều shard
+    private ZoneForecaster forecaster; // null khi chạy nhiều shard
+    private LostTicketDetector lostTicketDetector; // null khi chạy nhiều shard
+    private IParkingService parkingService;
     private ParkingView view;
     private Scanner scanner;
     
     public ParkingController() {
-        this.repository = new ParkingRepository();
-        this.billingService = new BillingService(repository);
-        this.parkingService = new ParkingService(repository, billingService);
+        String shardHosts = System.getProperty("parking.shard.hosts");
+        int shardCount = Integer.getInteger("parking.shards", 1);
+        String replicationRole = System.getProperty("parking.replication.role");
+        String dataDirName = System.getProperty("parking.data.dir");
+        File dataDir = dataDirName != null && !dataDirName.trim().isEmpty() ? new File(dataDirName) : null;
+        
+        if (shardHosts != null && !shardHosts.trim().isEmpty()) {
+            this.parkingService = ShardedParkingService.remote(Arrays.asList(shardHosts.split(",")));
+        } else if (shardCount > 1) {
+            this.parkingService = ShardedParkingService.inProcess(shardCount, new File("shards"));
+        } else if (replicationRole != null && !replicationRole.trim().isEmpty()) {
+            this.replication = createReplication(replicationRole.trim(), dataDir);
+            this.repository = replication.getRepository();
+            this.statistics = replication.getStatistics();
+            this.forecaster = replication.getForecaster();
+            this.lostTicketDetector = replication.getLostTicketDetector();
+            this.parkingService = replication;
+        } else {
+            this.repository = new ParkingRepository(dataDir);
+            BillingService billingService = new BillingService(repository);
+            HistoryService historyService = new HistoryService(HistoryRepository.open(dataDir));
+            ParkingService localService = new ParkingService(repository, billingService, historyService);
+            this.statistics = localService.getStatistics();
+            this.forecaster = localService.getForecaster();
+            this.lostTicketDetector = localService.getLostTicketDetector();
+            this.parkingService = localService;
+        }
         this.scanner = new Scanner(System.in);
-        this.view = new ParkingView(scanner, repository);
+        this.view = new ParkingView(scanner, parkingService);
+    }
+    
+    /**
+     * Tạo node replication theo vai trò (primary/replica) từ system property
+     */
+    private static ReplicatedParkingService createReplication(String role, File dataDir) {
+        int port = Integer.getInteger("parking.replication.port", DEFAULT_REPLICATION_PORT);
+        if (role.equalsIgnoreCase("primary")) {
+            return ReplicatedParkingService.primary(dataDir, port);
+        }
+        if (!role.equalsIgnoreCase("replica")) {
+            throw new IllegalArgumentException("parking.replication.role phải là primary hoặc replica: " + role);
+        }
+        
+        String primary = System.getProperty("parking.replication.primary", "localhost:" + DEFAULT_REPLICATION_PORT);
+        String[] parts = primary.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Địa chỉ primary không hợp lệ: " + primary);
+        }
+        return ReplicatedParkingService.replica(dataDir, parts[0], Integer.parseInt(parts[1]), port);
     }
     
     /**
      * Khởi động ứng dụng
      */
     public void start() {
-        // Load dữ liệu từ file khi khởi động
-        repository.loadFromFile();
+        // Khởi động nóng trên bãi tạm (-Dparking.warmup=true) trước khi nạp dữ liệu thật
+        StartupWarmup.runIfEnabled();
+        
+        // Load dữ liệu từ file khi khởi động (-Dparking.fast.start=true: chỉ chờ xe đang đỗ)
+        parkingService.loadData();
         
         System.out.println("╔══════════════════════════════════════════════════════╗");
         System.out.println("║    SMART PARKING MANAGEMENT - CONSOLE APPLICATION    ║");
@@ -64,10 +138,16 @@ public class ParkingController {
                         handleStatistics();
                         break;
                     case 6:
+                        handlePlateHistory();
+                        break;
+                    case 7:
+                        handleReplication();
+                        break;
+                    case 8:
                         handleExit();
                         return;
                     default:
-                        System.out.println("Lựa chọn không hợp lệ. Vui lòng chọn 1-6.\n");
+                        System.out.println("Lựa chọn không hợp lệ. Vui lòng chọn 1-8.\n");
                 }
             } catch (Exception ex) {
                 view.showError(ex.getMessage());
@@ -102,10 +182,10 @@ public class ParkingController {
         }
         Ticket ticket = parkingService.checkIn(vehicle);
         
-        view.showCheckInSuccess(plate, ticket.getZone());
+        view.showCheckInSuccess(plate, ticket.getZone(), ticket.getSlotId());
         
         // Tự động lưu sau mỗi thao tác
-        repository.saveToFile();
+        parkingService.saveData();
     }
     
     /**
@@ -120,10 +200,10 @@ public class ParkingController {
         }
         
         long fee = parkingService.checkOut(plate);
-        view.showCheckOutFee(fee);
         
-        // Tự động lưu sau mỗi thao tác
-        repository.saveToFile();
+        // Chờ lưu dữ liệu và in hóa đơn xong (các consumer chạy nền)
+        parkingService.saveData();
+        view.showCheckOutFee(fee);
     }
     
     /**
@@ -142,10 +222,10 @@ public class ParkingController {
         int days = monthsAndDays[1];
         
         long fee = parkingService.checkOutSimulation(plate, months, days);
-        view.showCheckOutFee(fee);
         
-        // Tự động lưu sau mỗi thao tác
-        repository.saveToFile();
+        // Chờ lưu dữ liệu và in hóa đơn xong (các consumer chạy nền)
+        parkingService.saveData();
+        view.showCheckOutFee(fee);
     }
     
     /**
@@ -159,18 +239,64 @@ public class ParkingController {
             return; // Người dùng hủy
         }
         
-        long fee = parkingService.processLostTicket(plate);
-        view.showCheckOutFee(fee);
+        LostTicketResult lost = parkingService.processLostTicket(plate);
         
-        // Tự động lưu sau mỗi thao tác
-        repository.saveToFile();
+        // Chờ lưu dữ liệu và in hóa đơn xong (các consumer chạy nền)
+        parkingService.saveData();
+        view.showLostTicketAlerts(lost.getAlerts());
+        view.showCheckOutFee(lost.getTotalFee());
     }
     
     /**
      * Xử lý thống kê
      */
     private void handleStatistics() {
-        view.showStatistics(repository.getAllActiveTickets());
+        // Đọc trên snapshot: nhất quán tại một thời điểm, không chặn thao tác ở cổng
+        view.showStatistics(parkingService.getActiveTickets());
+        if (repository != null) {
+            view.showActiveTicketSummary(repository.aggregateActiveTickets(LocalDateTime.now()).getSummary());
+        }
+        if (statistics != null) {
+            view.showRevenueStats(statistics.getSummary());
+        }
+        if (forecaster != null) {
+            view.showZoneForecast(forecaster.getSummary(LocalDateTime.now()));
+        }
+        if (lostTicketDetector != null) {
+            view.showLostTicketStats(lostTicketDetector.getSummary());
+        }
+        if (repository != null) {
+            view.showCacheStats(repository.getCacheStats());
+        }
+    }
+    
+    /**
+     * Xử lý tra cứu lịch sử gửi xe theo biển số
+     */
+    private void handlePlateHistory() {
+        System.out.println("\n--- TRA CỨU LỊCH SỬ BIỂN SỐ ---");
+        
+        String plate = view.inputPlateForHistory();
+        view.showPlateHistory(plate, parkingService.findHistory(plate),
+                parkingService.findParkedPlate(plate) != null);
+    }
+    
+    /**
+     * Xử lý xem trạng thái replication / nâng replica lên primary (failover)
+     */
+    private void handleReplication() {
+        System.out.println("\n--- REPLICATION ---");
+        
+        if (replication == null) {
+            System.out.println("ℹ Chưa bật replication (chạy với -Dparking.replication.role=primary|replica).\n");
+            return;
+        }
+        
+        view.showReplicationStatus(replication.getStatus());
+        if (replication.getRole() == ReplicatedParkingService.Role.REPLICA && view.confirmPromotion()) {
+            replication.promote();
+            view.showReplicationStatus(replication.getStatus());
+        }
     }
     
     /**
@@ -178,7 +304,7 @@ public class ParkingController {
      */
     private void handleExit() {
         // Lưu dữ liệu trước khi thoát
-        repository.saveToFile();
+        parkingService.saveData();
         view.showGoodbye();
         scanner.close();
     }
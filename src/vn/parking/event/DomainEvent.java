@@ -0,0 +1,32 @@
+package vn.parking.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện nghiệp vụ đã xảy ra ở cổng (bất biến)
+ *
+ * ParkingService chỉ phát sự kiện; các consumer (repository, lưu trữ, thống kê,
+ * in hóa đơn) tự cập nhật phần của mình từ sự kiện.
+ */
+public abstract class DomainEvent {
+    private final String plate;               // Biển số xe
+    private final LocalDateTime occurredAt;   // Thời điểm xảy ra
+
+    protected DomainEvent(String plate, LocalDateTime occurredAt) {
+        this.plate = plate;
+        this.occurredAt = occurredAt;
+    }
+
+    public String getPlate() {
+        return plate;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    /**
+     * Tên loại sự kiện (dùng khi ghi/đọc event log)
+     */
+    public abstract String getType();
+}
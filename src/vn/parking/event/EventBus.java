@@ -0,0 +1,295 @@
+package vn.parking.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event bus trong tiến trình theo kiểu ring buffer (Disruptor)
+ *
+ * - Mảng slot cố định kích thước 2^k, sự kiện thứ n nằm ở slot n & (size - 1)
+ * - Bên phát tăng cursor sau khi ghi slot; mỗi consumer có sequence riêng và
+ *   xử lý theo lô mọi sự kiện đến cursor (hoặc đến sequence của consumer nó phụ thuộc)
+ * - Bên phát chờ khi consumer chậm nhất bị tụt quá một vòng buffer (chống tràn)
+ *
+ * Consumer chờ sự kiện bằng cách quay vòng ngắn rồi ngủ trên monitor (blocking wait),
+ * phù hợp ứng dụng console không muốn chiếm CPU khi rảnh.
+ *
+ * Lỗi (RuntimeException) của consumer không dừng luồng xử lý: lỗi đầu tiên chưa báo được
+ * giữ lại trong Subscription và ném lại cho bên phát ở awaitProcessed / checkFault.
+ */
+public class EventBus {
+
+    private static final int SPIN_TRIES = 100;
+
+    private final DomainEvent[] ring;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1); // Sự kiện cuối cùng đã phát
+    private final Object signal = new Object();             // Báo có sự kiện mới / consumer tiến lên
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private long nextSequence = 0;                          // Chỉ truy cập trong publish (synchronized)
+    private volatile boolean running;
+
+    /**
+     * Một consumer đã đăng ký với bus
+     */
+    public final class Subscription {
+        private final String name;
+        private final EventHandler handler;
+        private final Subscription[] dependencies;
+        private final AtomicLong sequence = new AtomicLong(-1); // Sự kiện cuối cùng đã xử lý xong
+        private final AtomicReference<Fault> fault = new AtomicReference<>(); // Lỗi đầu tiên chưa báo
+        private Thread thread;
+
+        private Subscription(String name, EventHandler handler, Subscription[] dependencies) {
+            this.name = name;
+            this.handler = handler;
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Sự kiện cuối cùng consumer này được phép xử lý
+         */
+        private long availableSequence() {
+            long available = cursor.get();
+            for (Subscription dependency : dependencies) {
+                available = Math.min(available, dependency.sequence.get());
+            }
+            return available;
+        }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            while (running || next <= cursor.get()) {
+                long available = waitFor(next);
+                if (available < next) {
+                    continue;
+                }
+                for (long seq = next; seq <= available; seq++) {
+                    DomainEvent event = ring[(int) (seq & mask)];
+                    try {
+                        handler.onEvent(event, seq, seq == available);
+                    } catch (RuntimeException e) {
+                        System.err.println("❌ Consumer " + name + " lỗi khi xử lý " + event.getType()
+                                + " (" + event.getPlate() + "): " + e.getMessage());
+                        fault.compareAndSet(null, new Fault(seq, event, e));
+                    }
+                }
+                sequence.set(available);
+                next = available + 1;
+                signalAll();
+            }
+        }
+
+        /**
+         * Ném lại lỗi đã ghi nhận ở sự kiện có số thứ tự <= upTo (mỗi lỗi chỉ báo một lần)
+         */
+        private void rethrowFault(long upTo) {
+            Fault current = fault.get();
+            if (current != null && current.sequence <= upTo && fault.compareAndSet(current, null)) {
+                throw new IllegalStateException("Consumer " + name + " lỗi khi xử lý " + current.event.getType()
+                        + " (" + current.event.getPlate() + "): " + current.error.getMessage(), current.error);
+            }
+        }
+
+        private long waitFor(long next) {
+            for (int i = 0; i < SPIN_TRIES; i++) {
+                long available = availableSequence();
+                if (available >= next) {
+                    return available;
+                }
+                Thread.yield();
+            }
+            synchronized (signal) {
+                long available = availableSequence();
+                if (available < next && running) {
+                    try {
+                        signal.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return availableSequence();
+            }
+        }
+    }
+
+    /**
+     * Lỗi của consumer tại một sự kiện
+     */
+    private static final class Fault {
+        private final long sequence;
+        private final DomainEvent event;
+        private final RuntimeException error;
+
+        private Fault(long sequence, DomainEvent event, RuntimeException error) {
+            this.sequence = sequence;
+            this.event = event;
+            this.error = error;
+        }
+    }
+
+    /**
+     * @param bufferSize Số slot của ring buffer (làm tròn lên lũy thừa của 2)
+     */
+    public EventBus(int bufferSize) {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.ring = new DomainEvent[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Đăng ký consumer (trước khi start)
+     * @param dependencies Các consumer phải xử lý xong sự kiện trước consumer này
+     */
+    public synchronized Subscription subscribe(String name, EventHandler handler, Subscription... dependencies) {
+        if (running) {
+            throw new IllegalStateException("Không thể đăng ký consumer khi bus đang chạy");
+        }
+        Subscription subscription = new Subscription(name, handler, dependencies);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Khởi động luồng xử lý cho từng consumer
+     */
+    public synchronized void start() {
+        running = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.thread = new Thread(subscription::run, "event-" + subscription.name);
+            subscription.thread.setDaemon(true);
+            subscription.thread.start();
+        }
+    }
+
+    /**
+     * Phát một sự kiện
+     * @return Số thứ tự của sự kiện
+     */
+    public synchronized long publish(DomainEvent event) {
+        if (!running) {
+            throw new IllegalStateException("Event bus chưa chạy");
+        }
+        long sequence = nextSequence;
+
+        // Chờ khi slot sắp ghi đè vẫn chưa được consumer chậm nhất xử lý
+        long wrapPoint = sequence - ring.length;
+        while (wrapPoint > minimumSequence()) {
+            LockSupport.parkNanos(50_000);
+        }
+
+        ring[(int) (sequence & mask)] = event;
+        nextSequence = sequence + 1;
+        cursor.set(sequence);
+        signalAll();
+        return sequence;
+    }
+
+    /**
+     * Số thứ tự của sự kiện phát gần nhất, -1 nếu chưa phát sự kiện nào
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Chờ consumer xử lý xong tới sự kiện sequence
+     * @throws IllegalStateException Consumer lỗi khi xử lý một sự kiện tới sequence
+     */
+    public void awaitProcessed(Subscription subscription, long sequence) {
+        awaitSequence(subscription, sequence);
+        subscription.rethrowFault(sequence);
+    }
+
+    /**
+     * Chờ mọi consumer trong danh sách xử lý xong tới sự kiện sequence rồi mới báo lỗi
+     * (lỗi của consumer đầu tiên trong danh sách), để không bỏ dở việc chờ các consumer còn lại
+     * @throws IllegalStateException Một consumer lỗi khi xử lý một sự kiện tới sequence
+     */
+    public void awaitProcessed(long sequence, Subscription... subscriptions) {
+        for (Subscription subscription : subscriptions) {
+            awaitSequence(subscription, sequence);
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.rethrowFault(sequence);
+        }
+    }
+
+    /**
+     * Báo lỗi consumer đã ghi nhận (không chờ), vd lỗi lưu file của thao tác trước
+     * @throws IllegalStateException Consumer đã lỗi khi xử lý một sự kiện trước đó
+     */
+    public void checkFault(Subscription subscription) {
+        subscription.rethrowFault(Long.MAX_VALUE);
+    }
+
+    private void awaitSequence(Subscription subscription, long sequence) {
+        while (subscription.sequence.get() < sequence) {
+            synchronized (signal) {
+                if (subscription.sequence.get() < sequence) {
+                    try {
+                        signal.wait(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Chờ mọi consumer xử lý xong mọi sự kiện đã phát
+     */
+    public void awaitIdle() {
+        long published = cursor.get();
+        for (Subscription subscription : subscriptions) {
+            awaitProcessed(subscription, published);
+        }
+    }
+
+    private long minimumSequence() {
+        long minimum = cursor.get();
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    private void signalAll() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Dừng bus sau khi các consumer xử lý hết sự kiện còn lại
+     */
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+        }
+        signalAll();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.thread != null) {
+                try {
+                    subscription.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package vn.parking.event;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.model.Zone;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Chuyển sự kiện thành một dòng text và ngược lại (dùng cho event log)
+ *
+ * Format: loại\tthời điểm(ISO)\tcác trường riêng của từng loại
+ * - VehicleCheckedIn:    vehicle(CSV)\tgiờ vào\tvé tháng\tzone
+ * - VehicleCheckedOut:   vehicle(CSV)\tgiờ vào\tvé tháng\tzone\tphí\ttháng đã đóng\ttháng giả lập\tngày giả lập
+ * - LostTicketProcessed: vehicle(CSV)\tgiờ vào\tvé tháng\tzone\tphí đỗ\tphạt\ttháng đã đóng[\tcảnh báo]*
+ * - MonthlyFeePaid:      biển số\ttháng\tsố tiền\tsố tháng (bản ghi cũ không có: 1 tháng)
+ */
+public final class EventCodec {
+
+    private static final String SEPARATOR = "\t";
+
+    private EventCodec() {
+    }
+
+    public static String encode(DomainEvent event) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(event.getType()).append(SEPARATOR).append(event.getOccurredAt());
+
+        if (event instanceof VehicleCheckedIn) {
+            VehicleCheckedIn e = (VehicleCheckedIn) event;
+            appendTicket(sb, e.getVehicle(), e.getTicket());
+        } else if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut e = (VehicleCheckedOut) event;
+            appendTicket(sb, e.getVehicle(), e.getTicket());
+            append(sb, String.valueOf(e.getFee()));
+            append(sb, e.getLastPaidMonth());
+            append(sb, String.valueOf(e.getSimulatedMonths()));
+            append(sb, String.valueOf(e.getSimulatedDays()));
+        } else if (event instanceof LostTicketProcessed) {
+            LostTicketProcessed e = (LostTicketProcessed) event;
+            appendTicket(sb, e.getVehicle(), e.getTicket());
+            append(sb, String.valueOf(e.getParkingFee()));
+            append(sb, String.valueOf(e.getFine()));
+            append(sb, e.getLastPaidMonth());
+            for (String alert : e.getAlerts()) {
+                append(sb, alert);
+            }
+        } else if (event instanceof MonthlyFeePaid) {
+            MonthlyFeePaid e = (MonthlyFeePaid) event;
+            append(sb, e.getPlate());
+            append(sb, e.getMonth());
+            append(sb, String.valueOf(e.getAmount()));
+            append(sb, String.valueOf(e.getMonths()));
+        } else {
+            throw new IllegalArgumentException("Loại sự kiện không hỗ trợ: " + event.getType());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Sự kiện, hoặc null nếu dòng không hợp lệ
+     */
+    public static DomainEvent decode(String line) {
+        String[] p = line.split(SEPARATOR, -1);
+        try {
+            LocalDateTime occurredAt = LocalDateTime.parse(p[1]);
+            switch (p[0]) {
+                case VehicleCheckedIn.TYPE:
+                    return new VehicleCheckedIn(ticketOf(p), Vehicle.fromCSV(p[2]));
+                case VehicleCheckedOut.TYPE:
+                    return new VehicleCheckedOut(ticketOf(p), Vehicle.fromCSV(p[2]), occurredAt,
+                            Long.parseLong(p[6]), emptyToNull(p[7]),
+                            Integer.parseInt(p[8]), Integer.parseInt(p[9]));
+                case LostTicketProcessed.TYPE:
+                    return new LostTicketProcessed(ticketOf(p), Vehicle.fromCSV(p[2]), occurredAt,
+                            Long.parseLong(p[6]), Long.parseLong(p[7]), emptyToNull(p[8]),
+                            Arrays.asList(p).subList(9, p.length));
+                case MonthlyFeePaid.TYPE:
+                    return new MonthlyFeePaid(p[2], occurredAt, p[3],
+                            p.length > 5 ? Integer.parseInt(p[5]) : 1, Long.parseLong(p[4]));
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void appendTicket(StringBuilder sb, Vehicle vehicle, Ticket ticket) {
+        append(sb, vehicle.toCSV());
+        append(sb, ticket.getEntryTime().toString());
+        append(sb, String.valueOf(ticket.isMonthlyTicket()));
+        append(sb, ticket.getZone().name());
+    }
+
+    private static Ticket ticketOf(String[] p) {
+        Vehicle vehicle = Vehicle.fromCSV(p[2]);
+        return new Ticket(vehicle.getPlate(), LocalDateTime.parse(p[3]), Boolean.parseBoolean(p[4]), Zone.parse(p[5]));
+    }
+
+    private static void append(StringBuilder sb, String value) {
+        sb.append(SEPARATOR);
+        if (value != null) {
+            sb.append(value.replace('\t', ' ').replace('\n', ' '));
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
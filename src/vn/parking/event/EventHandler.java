@@ -0,0 +1,16 @@
+package vn.parking.event;
+
+/**
+ * Consumer của EventBus, mỗi consumer chạy trên một luồng riêng
+ */
+public interface EventHandler {
+
+    /**
+     * Xử lý một sự kiện
+     * @param event      Sự kiện
+     * @param sequence   Số thứ tự của sự kiện trong bus
+     * @param endOfBatch true nếu là sự kiện cuối của lô đang có sẵn
+     *                   (thời điểm thích hợp để flush/ghi file theo lô)
+     */
+    void onEvent(DomainEvent event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,78 @@
+package vn.parking.event;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Xe ra bãi theo thủ tục mất vé (phạt mất vé + phí đỗ xe), kèm các cảnh báo nghi vấn
+ * lạm dụng mà LostTicketDetector đưa ra ở làn ra (ghi vào event log cùng sự kiện)
+ */
+public class LostTicketProcessed extends DomainEvent {
+    public static final String TYPE = "LostTicketProcessed";
+
+    private final Ticket ticket;
+    private final Vehicle vehicle;
+    private final long parkingFee;
+    private final long fine;
+    private final String lastPaidMonth; // Tháng đã đóng gần nhất (hiển thị trên hóa đơn), có thể null
+    private final List<String> alerts;  // Cảnh báo nghi vấn lạm dụng, rỗng nếu không có
+
+    public LostTicketProcessed(Ticket ticket, Vehicle vehicle, LocalDateTime exitTime,
+                               long parkingFee, long fine, String lastPaidMonth) {
+        this(ticket, vehicle, exitTime, parkingFee, fine, lastPaidMonth, Collections.<String>emptyList());
+    }
+
+    public LostTicketProcessed(Ticket ticket, Vehicle vehicle, LocalDateTime exitTime,
+                               long parkingFee, long fine, String lastPaidMonth, List<String> alerts) {
+        super(ticket.getPlate(), exitTime);
+        this.ticket = ticket;
+        this.vehicle = vehicle;
+        this.parkingFee = parkingFee;
+        this.fine = fine;
+        this.lastPaidMonth = lastPaidMonth;
+        this.alerts = alerts.isEmpty() ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(alerts));
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public LocalDateTime getExitTime() {
+        return getOccurredAt();
+    }
+
+    public long getParkingFee() {
+        return parkingFee;
+    }
+
+    public long getFine() {
+        return fine;
+    }
+
+    public long getTotalFee() {
+        return parkingFee + fine;
+    }
+
+    public String getLastPaidMonth() {
+        return lastPaidMonth;
+    }
+
+    public List<String> getAlerts() {
+        return alerts;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
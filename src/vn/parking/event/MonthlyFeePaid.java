@@ -0,0 +1,43 @@
+package vn.parking.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thu phí vé tháng cho một khoảng tháng liên tiếp
+ * (xe vé tháng ra bãi mà các tháng của lượt gửi chưa đóng, hoặc đóng trước nhiều tháng)
+ */
+public class MonthlyFeePaid extends DomainEvent {
+    public static final String TYPE = "MonthlyFeePaid";
+
+    private final String month;  // Tháng đầu tiên được đóng (Format: "MM/yyyy")
+    private final int months;    // Số tháng liên tiếp được đóng (từ month)
+    private final long amount;   // Số tiền đã thu
+
+    public MonthlyFeePaid(String plate, LocalDateTime occurredAt, String month, long amount) {
+        this(plate, occurredAt, month, 1, amount);
+    }
+
+    public MonthlyFeePaid(String plate, LocalDateTime occurredAt, String month, int months, long amount) {
+        super(plate, occurredAt);
+        this.month = month;
+        this.months = Math.max(1, months);
+        this.amount = amount;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public int getMonths() {
+        return months;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
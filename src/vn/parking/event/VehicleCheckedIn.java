@@ -0,0 +1,33 @@
+package vn.parking.event;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+
+/**
+ * Xe vào bãi: vé đã được cấp và zone đã được phân
+ */
+public class VehicleCheckedIn extends DomainEvent {
+    public static final String TYPE = "VehicleCheckedIn";
+
+    private final Ticket ticket;
+    private final Vehicle vehicle;
+
+    public VehicleCheckedIn(Ticket ticket, Vehicle vehicle) {
+        super(ticket.getPlate(), ticket.getEntryTime());
+        this.ticket = ticket;
+        this.vehicle = vehicle;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
@@ -0,0 +1,74 @@
+package vn.parking.event;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+
+import java.time.LocalDateTime;
+
+/**
+ * Xe ra bãi (thực tế hoặc giả lập thời gian)
+ * Với check-out giả lập, ticket mang giờ vào giả lập và simulatedMonths/Days >= 0.
+ */
+public class VehicleCheckedOut extends DomainEvent {
+    public static final String TYPE = "VehicleCheckedOut";
+
+    private final Ticket ticket;
+    private final Vehicle vehicle;
+    private final long fee;
+    private final String lastPaidMonth;  // Tháng đã đóng gần nhất (hiển thị trên hóa đơn), có thể null
+    private final int simulatedMonths;   // -1 nếu không phải giả lập
+    private final int simulatedDays;     // -1 nếu không phải giả lập
+
+    public VehicleCheckedOut(Ticket ticket, Vehicle vehicle, LocalDateTime exitTime, long fee,
+                             String lastPaidMonth) {
+        this(ticket, vehicle, exitTime, fee, lastPaidMonth, -1, -1);
+    }
+
+    public VehicleCheckedOut(Ticket ticket, Vehicle vehicle, LocalDateTime exitTime, long fee,
+                             String lastPaidMonth, int simulatedMonths, int simulatedDays) {
+        super(ticket.getPlate(), exitTime);
+        this.ticket = ticket;
+        this.vehicle = vehicle;
+        this.fee = fee;
+        this.lastPaidMonth = lastPaidMonth;
+        this.simulatedMonths = simulatedMonths;
+        this.simulatedDays = simulatedDays;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public LocalDateTime getExitTime() {
+        return getOccurredAt();
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    public String getLastPaidMonth() {
+        return lastPaidMonth;
+    }
+
+    public boolean isSimulation() {
+        return simulatedMonths >= 0;
+    }
+
+    public int getSimulatedMonths() {
+        return simulatedMonths;
+    }
+
+    public int getSimulatedDays() {
+        return simulatedDays;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
@@ -0,0 +1,152 @@
+package vn.parking.gate;
+
+import vn.parking.model.*;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.ParkingService;
+import vn.parking.service.PlateMatcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Camera ANPR giả lập đọc bản ghi từ file (phục vụ thử nghiệm)
+ *
+ * Mỗi dòng: idSựKiện,thờiĐiểm,làn,biểnSốĐọcĐược[,loạiXe,nhiênLiệu,véTháng]
+ *   - idSựKiện có thể để trống (GateEvent tự gán)
+ *   - làn IN: cần loạiXe (CAR/BIKE/BICYCLE), nhiênLiệu (GASOLINE/ELECTRIC/NONE), véTháng (true/false)
+ *   - làn OUT: bản đọc được khớp gần đúng với xe đang đỗ (PlateMatcher) rồi mới gửi sự kiện ra
+ * Dòng trống hoặc bắt đầu bằng # bị bỏ qua.
+ *
+ * java vn.parking.gate.FileCameraFeed <file.csv> [thư mục dữ liệu]
+ */
+public class FileCameraFeed {
+
+    private final PlateMatcher matcher;
+    private final GateEventIngestor ingestor;
+
+    private long lines;
+    private long invalid;
+    private long unmatched;
+    private long corrected;        // Bản đọc làn ra khác biển số khớp được
+    private long matchNanos;
+    private long maxMatchNanos;
+    private long matchCount;
+
+    public FileCameraFeed(PlateMatcher matcher, GateEventIngestor ingestor) {
+        this.matcher = matcher;
+        this.ingestor = ingestor;
+    }
+
+    /**
+     * Đọc toàn bộ file và gửi sự kiện vào ingestor (chưa flush)
+     */
+    public void replay(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                lines++;
+                try {
+                    handle(line);
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    invalid++;
+                    System.err.println("❌ Dòng " + lineNumber + " không hợp lệ: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Xử lý một bản ghi camera
+     */
+    public void handle(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length < 4) {
+            throw new IllegalArgumentException("Thiếu cột: " + line);
+        }
+        String eventId = parts[0].trim();
+        LocalDateTime time = LocalDateTime.parse(parts[1].trim());
+        String lane = parts[2].trim().toUpperCase();
+        String read = parts[3].trim();
+
+        if (lane.equals("IN")) {
+            if (parts.length < 7) {
+                throw new IllegalArgumentException("Làn vào cần loại xe, nhiên liệu, vé tháng: " + line);
+            }
+            Vehicle vehicle = createVehicle(ParkingRepository.normalizePlate(read),
+                    VehicleType.valueOf(parts[4].trim().toUpperCase()),
+                    FuelType.valueOf(parts[5].trim().toUpperCase()),
+                    Boolean.parseBoolean(parts[6].trim()));
+            ingestor.ingest(GateEvent.entry(eventId, vehicle, time));
+        } else if (lane.equals("OUT")) {
+            long start = System.nanoTime();
+            String plate = matcher.autoMatch(read);
+            long elapsed = System.nanoTime() - start;
+            matchNanos += elapsed;
+            maxMatchNanos = Math.max(maxMatchNanos, elapsed);
+            matchCount++;
+            if (plate == null) {
+                unmatched++;
+                System.err.println("❌ Làn ra: không tự khớp được bản đọc " + read
+                        + ", ứng viên: " + matcher.findWithin(read, PlateMatcher.EDIT_COST * 2));
+                return;
+            }
+            if (!ParkingRepository.normalizePlate(plate).equals(ParkingRepository.normalizePlate(read))) {
+                corrected++;
+            }
+            ingestor.ingest(GateEvent.exit(eventId, plate, time));
+        } else {
+            throw new IllegalArgumentException("Làn không hợp lệ: " + lane);
+        }
+    }
+
+    private static Vehicle createVehicle(String plate, VehicleType type, FuelType fuelType, boolean monthly) {
+        switch (type) {
+            case CAR:
+                return new Car(plate, fuelType, monthly);
+            case BIKE:
+                return new Motorbike(plate, fuelType, monthly);
+            default:
+                return new Bicycle(plate, fuelType, monthly);
+        }
+    }
+
+    public String getSummary() {
+        return String.format("Bản ghi %d | Lỗi %d | Làn ra: khớp %d (sửa lỗi đọc %d), không khớp %d"
+                        + " | Thời gian khớp TB %.1f µs, tối đa %.1f µs",
+                lines, invalid, matchCount - unmatched, corrected, unmatched,
+                matchCount == 0 ? 0.0 : matchNanos / 1000.0 / matchCount, maxMatchNanos / 1000.0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Cách dùng: java vn.parking.gate.FileCameraFeed <file.csv> [thư mục dữ liệu]");
+            return;
+        }
+        File dataDir = args.length > 1 ? new File(args[1]) : null;
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        ParkingService service = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(HistoryRepository.open(dataDir)));
+        service.loadData();
+
+        GateEventIngestor ingestor = GateEventIngestor.fromSystemProperties(service);
+        FileCameraFeed feed = new FileCameraFeed(service.getPlateMatcher(), ingestor);
+        feed.replay(new File(args[0]));
+        ingestor.flush();
+        service.saveData();
+
+        System.out.println("✓ " + feed.getSummary());
+        System.out.println("✓ " + ingestor.getSummary());
+    }
+}
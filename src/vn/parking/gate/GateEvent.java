@@ -0,0 +1,74 @@
+package vn.parking.gate;
+
+import vn.parking.model.Vehicle;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện thô từ thiết bị cổng (camera ANPR, barrier)
+ *
+ * Thiết bị có thể gửi lặp và sai thứ tự. Sự kiện không có id từ thiết bị được gán id
+ * theo nội dung (loại, biển số, giây xảy ra) để các bản gửi lặp vẫn trùng id.
+ */
+public class GateEvent {
+
+    public enum Kind {
+        ENTRY, EXIT
+    }
+
+    private final String eventId;
+    private final Kind kind;
+    private final String plate;
+    private final LocalDateTime occurredAt;   // Giờ theo thiết bị
+    private final Vehicle vehicle;            // Thông tin xe (chỉ với ENTRY)
+
+    private GateEvent(String eventId, Kind kind, String plate, LocalDateTime occurredAt, Vehicle vehicle) {
+        this.kind = kind;
+        this.plate = plate;
+        this.occurredAt = occurredAt;
+        this.vehicle = vehicle;
+        this.eventId = eventId != null && !eventId.isEmpty() ? eventId
+                : kind + ":" + plate + ":" + occurredAt.withNano(0);
+    }
+
+    /**
+     * Xe vào cổng
+     * @param eventId Id từ thiết bị (null để gán theo nội dung)
+     */
+    public static GateEvent entry(String eventId, Vehicle vehicle, LocalDateTime occurredAt) {
+        return new GateEvent(eventId, Kind.ENTRY, vehicle.getPlate(), occurredAt, vehicle);
+    }
+
+    /**
+     * Xe ra cổng
+     * @param eventId Id từ thiết bị (null để gán theo nội dung)
+     */
+    public static GateEvent exit(String eventId, String plate, LocalDateTime occurredAt) {
+        return new GateEvent(eventId, Kind.EXIT, plate, occurredAt, null);
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPlate() {
+        return plate;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + plate + " @" + occurredAt + " [" + eventId + "]";
+    }
+}
@@ -0,0 +1,221 @@
+package vn.parking.gate;
+
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.IParkingService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Tầng tiếp nhận sự kiện từ thiết bị cổng, áp dụng vào IParkingService một cách idempotent
+ *
+ * Mỗi sự kiện đi qua 3 bước:
+ *   1. Khử trùng lặp theo id trong cửa sổ trượt (TimeBucketedIdSet, bộ nhớ bị chặn)
+ *   2. Giữ lại tối đa reorderMillis trong hàng đợi ưu tiên theo giờ thiết bị, để sự kiện
+ *      đến trễ một chút của cùng biển số vẫn được áp dụng đúng thứ tự
+ *   3. Áp dụng idempotent: xe đã đỗ thì bỏ qua ENTRY, xe không có trong bãi thì bỏ qua EXIT;
+ *      sự kiện cũ hơn sự kiện đã áp dụng của cùng biển số (trễ quá cửa sổ sắp xếp) bị bỏ
+ *
+ * Giờ vào/ra ghi trên vé vẫn theo đồng hồ của ParkingService; giờ thiết bị chỉ dùng để
+ * khử trùng lặp và sắp thứ tự.
+ */
+public class GateEventIngestor {
+
+    /**
+     * Kết quả tiếp nhận một sự kiện
+     */
+    public enum Outcome {
+        ACCEPTED,    // Đã nhận (có thể còn chờ trong hàng đợi sắp xếp)
+        DUPLICATE,   // Trùng id đã thấy trong cửa sổ
+        EXPIRED      // Cũ hơn cửa sổ khử trùng lặp, không thể kiểm tra trùng
+    }
+
+    private static final long DEFAULT_DEDUP_WINDOW_SECONDS = 600;
+    private static final int DEDUP_BUCKETS = 20;
+    private static final int DEFAULT_MAX_IDS_PER_BUCKET = 1 << 16;
+    private static final long DEFAULT_REORDER_MILLIS = 2000;
+    private static final int DEFAULT_MAX_BUFFERED = 10_000;
+    private static final int MAX_TRACKED_PLATES = 100_000;
+
+    private final IParkingService service;
+    private final TimeBucketedIdSet seenIds;
+    private final long reorderMillis;
+    private final int maxBuffered;
+    private final PriorityQueue<Pending> buffer = new PriorityQueue<>(
+            Comparator.comparingLong((Pending p) -> p.timeMillis).thenComparingLong(p -> p.sequence));
+
+    // Giờ thiết bị của sự kiện đã áp dụng gần nhất theo biển số (LRU, bị chặn)
+    private final Map<String, Long> lastAppliedByPlate = new LinkedHashMap<String, Long>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_PLATES;
+        }
+    };
+
+    private long newestMillis = Long.MIN_VALUE;
+    private long sequence;
+
+    private long received;
+    private long duplicates;
+    private long expired;
+    private long applied;
+    private long skipped;       // Không cần áp dụng (xe đã ở đúng trạng thái)
+    private long outOfOrder;    // Đến trễ quá cửa sổ sắp xếp, bị bỏ
+    private long rejected;      // Service từ chối (zone đầy...)
+
+    public GateEventIngestor(IParkingService service) {
+        this(service, DEFAULT_DEDUP_WINDOW_SECONDS * 1000, DEFAULT_MAX_IDS_PER_BUCKET,
+                DEFAULT_REORDER_MILLIS, DEFAULT_MAX_BUFFERED);
+    }
+
+    /**
+     * @param dedupWindowMillis Độ dài cửa sổ khử trùng lặp
+     * @param maxIdsPerBucket   Số id tối đa ghi nhớ mỗi bucket (chặn bộ nhớ khi camera bắn dồn)
+     * @param reorderMillis     Thời gian giữ sự kiện chờ sự kiện trễ hơn
+     * @param maxBuffered       Số sự kiện tối đa trong hàng đợi sắp xếp
+     */
+    public GateEventIngestor(IParkingService service, long dedupWindowMillis, int maxIdsPerBucket,
+                             long reorderMillis, int maxBuffered) {
+        this.service = service;
+        this.seenIds = new TimeBucketedIdSet(dedupWindowMillis, DEDUP_BUCKETS, maxIdsPerBucket);
+        this.reorderMillis = reorderMillis;
+        this.maxBuffered = Math.max(1, maxBuffered);
+    }
+
+    /**
+     * Tạo ingestor theo System Property:
+     *   parking.gate.dedup.window   cửa sổ khử trùng lặp (giây, mặc định 600)
+     *   parking.gate.reorder.millis thời gian giữ để sắp thứ tự (ms, mặc định 2000)
+     */
+    public static GateEventIngestor fromSystemProperties(IParkingService service) {
+        long window = Long.getLong("parking.gate.dedup.window", DEFAULT_DEDUP_WINDOW_SECONDS);
+        long reorder = Long.getLong("parking.gate.reorder.millis", DEFAULT_REORDER_MILLIS);
+        return new GateEventIngestor(service, window * 1000, DEFAULT_MAX_IDS_PER_BUCKET, reorder, DEFAULT_MAX_BUFFERED);
+    }
+
+    /**
+     * Tiếp nhận một sự kiện; các sự kiện đã đủ thời gian chờ được áp dụng ngay
+     */
+    public synchronized Outcome ingest(GateEvent event) {
+        received++;
+        long timeMillis = toMillis(event.getOccurredAt());
+        if (seenIds.isExpired(timeMillis)) {
+            expired++;
+            return Outcome.EXPIRED;
+        }
+        if (!seenIds.add(event.getEventId(), timeMillis)) {
+            duplicates++;
+            return Outcome.DUPLICATE;
+        }
+
+        buffer.add(new Pending(event, timeMillis, sequence++));
+        if (timeMillis > newestMillis) {
+            newestMillis = timeMillis;
+        }
+        drain(newestMillis - reorderMillis);
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Áp dụng mọi sự kiện còn chờ (khi thiết bị ngừng gửi hoặc trước khi tắt)
+     */
+    public synchronized void flush() {
+        drain(Long.MAX_VALUE);
+    }
+
+    /**
+     * Số sự kiện đang chờ trong hàng đợi sắp xếp
+     */
+    public synchronized int getBufferedCount() {
+        return buffer.size();
+    }
+
+    private void drain(long watermark) {
+        List<Pending> ready = new ArrayList<>();
+        while (!buffer.isEmpty() && (buffer.peek().timeMillis <= watermark || buffer.size() > maxBuffered)) {
+            ready.add(buffer.poll());
+        }
+        for (Pending pending : ready) {
+            apply(pending);
+        }
+    }
+
+    private void apply(Pending pending) {
+        GateEvent event = pending.event;
+        String key = ParkingRepository.normalizePlate(event.getPlate());
+        Long last = lastAppliedByPlate.get(key);
+        if (last != null && pending.timeMillis < last) {
+            outOfOrder++;
+            return;
+        }
+        lastAppliedByPlate.put(key, pending.timeMillis);
+
+        String parkedPlate = service.findParkedPlate(event.getPlate());
+        try {
+            if (event.getKind() == GateEvent.Kind.ENTRY) {
+                if (parkedPlate != null) {
+                    skipped++;
+                    return;
+                }
+                service.checkIn(event.getVehicle());
+            } else {
+                if (parkedPlate == null) {
+                    skipped++;
+                    return;
+                }
+                service.checkOut(parkedPlate);
+            }
+            applied++;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            rejected++;
+            System.err.println("❌ Không áp dụng được sự kiện cổng " + event + ": " + e.getMessage());
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Tóm tắt số liệu tiếp nhận
+     */
+    public synchronized String getSummary() {
+        return String.format("Nhận %d | Trùng %d | Quá cửa sổ %d | Áp dụng %d | Bỏ qua (idempotent) %d"
+                        + " | Trễ sai thứ tự %d | Bị từ chối %d | Đang chờ %d | Id ghi nhớ %d",
+                received, duplicates, expired, applied, skipped, outOfOrder, rejected,
+                buffer.size(), seenIds.size());
+    }
+
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    public synchronized long getApplied() {
+        return applied;
+    }
+
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Sự kiện chờ trong hàng đợi sắp xếp
+     */
+    private static final class Pending {
+        final GateEvent event;
+        final long timeMillis;
+        final long sequence;
+
+        Pending(GateEvent event, long timeMillis, long sequence) {
+            this.event = event;
+            this.timeMillis = timeMillis;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package vn.parking.gate;
+
+import java.util.Arrays;
+
+/**
+ * Tập id đã thấy trong một cửa sổ thời gian trượt
+ *
+ * Cửa sổ chia thành bucketCount bucket liên tiếp, mỗi bucket dài bucketMillis và là một
+ * bảng băm địa chỉ mở trên long[] (lưu hash 64 bit của id, không giữ chuỗi). Bucket vòng
+ * lại vị trí cũ thì được xóa, nên id tự hết hạn sau khoảng cửa sổ mà không cần quét.
+ *
+ * Bộ nhớ bị chặn: mỗi bucket tối đa maxPerBucket id; bucket đầy thì id mới không được
+ * ghi nhớ (có thể lọt bản trùng, tầng áp dụng phía sau vẫn idempotent).
+ */
+public class TimeBucketedIdSet {
+
+    private static final int INITIAL_TABLE = 256;
+    private static final long EMPTY = 0L;
+
+    private final long bucketMillis;
+    private final int maxPerBucket;
+    private final long[] bucketEpochs;   // Chỉ số thời gian (t / bucketMillis) của từng bucket
+    private final long[][] tables;
+    private final int[] sizes;
+    private long newestEpoch = Long.MIN_VALUE;
+    private long overflowed;             // Số id không ghi nhớ được do bucket đầy
+
+    public TimeBucketedIdSet(long windowMillis, int bucketCount, int maxPerBucket) {
+        if (bucketCount <= 0 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Cửa sổ / số bucket không hợp lệ");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.maxPerBucket = maxPerBucket;
+        this.bucketEpochs = new long[bucketCount];
+        Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+        this.tables = new long[bucketCount][];
+        this.sizes = new int[bucketCount];
+    }
+
+    /**
+     * Thời điểm có nằm ngoài (cũ hơn) cửa sổ hiện tại không
+     */
+    public synchronized boolean isExpired(long timeMillis) {
+        return newestEpoch != Long.MIN_VALUE && epochOf(timeMillis) <= newestEpoch - bucketEpochs.length;
+    }
+
+    /**
+     * Ghi nhận id tại thời điểm timeMillis
+     * @return false nếu id đã có trong cửa sổ (bản trùng)
+     */
+    public synchronized boolean add(String id, long timeMillis) {
+        long epoch = epochOf(timeMillis);
+        if (epoch > newestEpoch) {
+            newestEpoch = epoch;
+        }
+
+        // Bucket đã ra khỏi cửa sổ nhưng chưa bị vòng lại thì không còn tính
+        long hash = hash(id);
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null && bucketEpochs[i] > newestEpoch - tables.length && contains(tables[i], hash)) {
+                return false;
+            }
+        }
+
+        int slot = (int) Math.floorMod(epoch, (long) tables.length);
+        if (bucketEpochs[slot] != epoch) {
+            // Bucket vòng lại: dữ liệu cũ đã ra khỏi cửa sổ
+            bucketEpochs[slot] = epoch;
+            tables[slot] = null;
+            sizes[slot] = 0;
+        }
+        if (sizes[slot] >= maxPerBucket) {
+            overflowed++;
+            return true;
+        }
+        if (tables[slot] == null) {
+            tables[slot] = new long[INITIAL_TABLE];
+        } else if ((sizes[slot] + 1) * 2 > tables[slot].length) {
+            tables[slot] = rehash(tables[slot], tables[slot].length * 2);
+        }
+        insert(tables[slot], hash);
+        sizes[slot]++;
+        return true;
+    }
+
+    /**
+     * Tổng số id đang ghi nhớ
+     */
+    public synchronized int size() {
+        int total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (bucketEpochs[i] > newestEpoch - bucketEpochs.length) {
+                total += sizes[i];
+            }
+        }
+        return total;
+    }
+
+    public synchronized long getOverflowed() {
+        return overflowed;
+    }
+
+    private long epochOf(long timeMillis) {
+        return Math.floorDiv(timeMillis, bucketMillis);
+    }
+
+    private static boolean contains(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            if (table[i] == EMPTY) {
+                return false;
+            }
+            if (table[i] == hash) {
+                return true;
+            }
+        }
+    }
+
+    private static void insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        int i = (int) hash & mask;
+        while (table[i] != EMPTY && table[i] != hash) {
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+    }
+
+    private static long[] rehash(long[] table, int capacity) {
+        long[] bigger = new long[capacity];
+        for (long hash : table) {
+            if (hash != EMPTY) {
+                insert(bigger, hash);
+            }
+        }
+        return bigger;
+    }
+
+    /**
+     * Hash 64 bit của id (FNV-1a + trộn bit), không bao giờ bằng EMPTY
+     */
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+}
@@ -17,5 +17,13 @@ public class Bicycle extends Vehicle {
     public String getTypeName() {
         return "Xe Đạp";
     }
+    
+    /**
+     * Xe đạp: Cổng A, ưu tiên Zone A1
+     */
+    @Override
+    public Zone getHomeZone() {
+        return Zone.A1;
+    }
 }
 
@@ -17,5 +17,13 @@ public class Car extends Vehicle {
     public String getTypeName() {
         return "Ô Tô";
     }
+    
+    /**
+     * Ô tô: Bắt buộc đi Cổng B -> Zone B
+     */
+    @Override
+    public Zone getHomeZone() {
+        return Zone.B;
+    }
 }
 
@@ -0,0 +1,280 @@
+package vn.parking.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tập các tháng đã đóng vé tháng của một biển số, lưu dạng bitmask
+ *
+ * Tháng được đánh số liên tục: năm * 12 + (tháng - 1) (xem monthIndex), nên "tháng sau",
+ * "khoảng tháng" là phép cộng trừ số nguyên. Mỗi long giữ 64 tháng liên tiếp (hơn 5 năm),
+ * word đầu bắt đầu ở một bội số của 64; thẻ bình thường chỉ cần một word.
+ *
+ * Đối tượng bất biến: with... trả về bản mới (mỗi lần đóng tiền sao chép một mảng rất nhỏ),
+ * nên đọc ở luồng check-out không cần khóa.
+ *
+ * Dạng chuỗi (sổ cái, nhật ký, replication): các khoảng cách nhau bởi ';',
+ * mỗi khoảng "MM/yyyy" hoặc "MM/yyyy-MM/yyyy", vd "01/2026-06/2026;09/2026".
+ */
+public final class MonthCoverage {
+
+    public static final MonthCoverage EMPTY = new MonthCoverage(0, new long[0]);
+
+    private final int base;         // Số tháng ứng với bit 0 của words[0] (bội số của 64)
+    private final long[] words;
+
+    private MonthCoverage(int base, long[] words) {
+        this.base = base;
+        this.words = words;
+    }
+
+    // ===== Số tháng =====
+
+    /**
+     * Số tháng của thời điểm: năm * 12 + (tháng - 1)
+     */
+    public static int monthIndex(LocalDateTime dateTime) {
+        return dateTime.getYear() * 12 + dateTime.getMonthValue() - 1;
+    }
+
+    /**
+     * "MM/yyyy" -> số tháng; -1 nếu sai định dạng
+     */
+    public static int parseMonth(String month) {
+        if (month == null) {
+            return -1;
+        }
+        month = month.trim();
+        if (month.length() != 7 || month.charAt(2) != '/') {
+            return -1;
+        }
+        int value = 0;
+        int year = 0;
+        for (int i = 0; i < 7; i++) {
+            if (i == 2) {
+                continue;
+            }
+            char c = month.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (i < 2) {
+                value = value * 10 + (c - '0');
+            } else {
+                year = year * 10 + (c - '0');
+            }
+        }
+        return value >= 1 && value <= 12 ? year * 12 + value - 1 : -1;
+    }
+
+    /**
+     * Số tháng -> "MM/yyyy"
+     */
+    public static String formatMonth(int month) {
+        int value = month % 12 + 1;
+        int year = month / 12;
+        return (value < 10 ? "0" : "") + value + "/" + year;
+    }
+
+    /**
+     * Khoảng count tháng liên tiếp từ first, dạng chuỗi ("MM/yyyy" nếu chỉ một tháng)
+     */
+    public static String formatRange(int first, int count) {
+        String start = formatMonth(first);
+        return count <= 1 ? start : start + "-" + formatMonth(first + count - 1);
+    }
+
+    /**
+     * Đọc dạng chuỗi; khoảng sai định dạng bị bỏ qua
+     */
+    public static MonthCoverage parse(String text) {
+        MonthCoverage coverage = EMPTY;
+        if (text == null) {
+            return coverage;
+        }
+        for (String range : text.split(";")) {
+            int dash = range.indexOf('-');
+            int first = parseMonth(dash < 0 ? range : range.substring(0, dash));
+            int last = dash < 0 ? first : parseMonth(range.substring(dash + 1));
+            if (first >= 0 && last >= first) {
+                coverage = coverage.withRange(first, last - first + 1);
+            }
+        }
+        return coverage;
+    }
+
+    // ===== Tra cứu =====
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /**
+     * Tháng month đã được đóng chưa
+     */
+    public boolean covers(int month) {
+        int offset = month - base;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return false;
+        }
+        return (words[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    /**
+     * Số tháng chưa đóng trong khoảng [from, to] (tính cả hai đầu)
+     */
+    public int countUncovered(int from, int to) {
+        if (to < from) {
+            return 0;
+        }
+        int covered = 0;
+        int lo = Math.max(from, base);
+        int hi = Math.min(to, base + (words.length << 6) - 1);
+        for (int w = (lo - base) >> 6; lo <= hi; w++) {
+            int wordEnd = base + (w << 6) + 63;
+            int end = Math.min(hi, wordEnd);
+            covered += Long.bitCount(words[w] & rangeMask((lo - base) & 63, (end - base) & 63));
+            lo = end + 1;
+        }
+        return to - from + 1 - covered;
+    }
+
+    /**
+     * Tháng đã đóng đầu tiên từ from trở đi; Integer.MAX_VALUE nếu không có
+     */
+    public int nextCovered(int from) {
+        int offset = Math.max(from - base, 0);
+        for (int w = offset >>> 6; w < words.length; w++) {
+            long bits = w == offset >>> 6 ? words[w] & (-1L << offset) : words[w];
+            if (bits != 0) {
+                return base + (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Tháng chưa đóng đầu tiên từ from trở đi
+     */
+    public int nextUncovered(int from) {
+        int offset = from - base;
+        if (offset < 0) {
+            return from;
+        }
+        for (int w = offset >>> 6; w < words.length; w++) {
+            long bits = w == offset >>> 6 ? ~words[w] & (-1L << offset) : ~words[w];
+            if (bits != 0) {
+                return base + (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return Math.max(from, base + (words.length << 6));
+    }
+
+    /**
+     * Tháng đã đóng muộn nhất; -1 nếu chưa đóng tháng nào
+     */
+    public int lastCovered() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return base + (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return -1;
+    }
+
+    // ===== Cập nhật (trả về bản mới) =====
+
+    /**
+     * Thêm count tháng liên tiếp từ first
+     */
+    public MonthCoverage withRange(int first, int count) {
+        if (count <= 0 || first < 0) {
+            return this;
+        }
+        int last = first + count - 1;
+        MonthCoverage grown = growTo(first, last);
+        long[] bits = grown == this ? words.clone() : grown.words;
+        for (int lo = first; lo <= last; ) {
+            int w = (lo - grown.base) >> 6;
+            int end = Math.min(last, grown.base + (w << 6) + 63);
+            bits[w] |= rangeMask((lo - grown.base) & 63, (end - grown.base) & 63);
+            lo = end + 1;
+        }
+        return new MonthCoverage(grown.base, bits);
+    }
+
+    /**
+     * Hợp với một tập tháng khác
+     */
+    public MonthCoverage union(MonthCoverage other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        MonthCoverage grown = growTo(other.base, other.base + (other.words.length << 6) - 1);
+        long[] bits = grown == this ? words.clone() : grown.words;
+        int shift = (other.base - grown.base) >> 6;
+        for (int w = 0; w < other.words.length; w++) {
+            bits[w + shift] |= other.words[w];
+        }
+        return new MonthCoverage(grown.base, bits);
+    }
+
+    /**
+     * Bản có đủ word cho [first, last] (là this nếu đã đủ; mảng của bản mới được phép sửa)
+     */
+    private MonthCoverage growTo(int first, int last) {
+        int firstBase = first & ~63;
+        if (isEmpty()) {
+            return new MonthCoverage(firstBase, new long[((last - firstBase) >> 6) + 1]);
+        }
+        int newBase = Math.min(base, firstBase);
+        int newEnd = Math.max(base + (words.length << 6), (last & ~63) + 64);
+        if (newBase == base && newEnd == base + (words.length << 6)) {
+            return this;
+        }
+        long[] bits = new long[(newEnd - newBase) >> 6];
+        System.arraycopy(words, 0, bits, (base - newBase) >> 6, words.length);
+        return new MonthCoverage(newBase, bits);
+    }
+
+    // Các bit lo..hi (0..63) của một word
+    private static long rangeMask(int lo, int hi) {
+        return (-1L >>> (63 - hi)) & (-1L << lo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MonthCoverage)) {
+            return false;
+        }
+        return toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * Dạng chuỗi: các khoảng tháng liên tiếp, tăng dần
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int month = nextCovered(base);
+        while (month != Integer.MAX_VALUE) {
+            int end = nextUncovered(month);
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(formatRange(month, end - month));
+            month = nextCovered(end);
+        }
+        return sb.toString();
+    }
+}
@@ -17,5 +17,13 @@ public class Motorbike extends Vehicle {
     public String getTypeName() {
         return "Xe Máy";
     }
+    
+    /**
+     * Xe máy: Cổng A, xe điện ưu tiên Zone A1, xe xăng vào Zone A2
+     */
+    @Override
+    public Zone getHomeZone() {
+        return getFuelType() == FuelType.GASOLINE ? Zone.A2 : Zone.A1;
+    }
 }
 
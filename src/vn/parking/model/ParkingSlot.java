@@ -5,13 +5,26 @@ package vn.parking.model;
  */
 public class ParkingSlot {
     private String slotId;      // Mã chỗ đỗ
-    private String zone;        // Zone (A1, A2, B)
+    private Zone zone;          // Zone (A1, A2, B)
     private boolean isOccupied; // Đang có xe hay không
     private Vehicle vehicle;    // Xe đang đỗ (null nếu trống)
+    private int level;          // Tầng (0 = tầng có cổng vào)
+    private int row;            // Hàng trong tầng, tính từ lối vào
+    private int column;         // Cột trong hàng, tính từ lối vào
     
-    public ParkingSlot(String slotId, String zone) {
+    /** Chi phí đi lên/xuống một tầng, quy đổi ra số ô đi ngang */
+    public static final int LEVEL_COST = 20;
+    
+    public ParkingSlot(String slotId, Zone zone) {
+        this(slotId, zone, 0, 0, 0);
+    }
+    
+    public ParkingSlot(String slotId, Zone zone, int level, int row, int column) {
         this.slotId = slotId;
         this.zone = zone;
+        this.level = level;
+        this.row = row;
+        this.column = column;
         this.isOccupied = false;
         this.vehicle = null;
     }
@@ -21,7 +34,7 @@ public class ParkingSlot {
         return slotId;
     }
     
-    public String getZone() {
+    public Zone getZone() {
         return zone;
     }
     
@@ -33,12 +46,31 @@ public class ParkingSlot {
         return vehicle;
     }
     
+    public int getLevel() {
+        return level;
+    }
+    
+    public int getRow() {
+        return row;
+    }
+    
+    public int getColumn() {
+        return column;
+    }
+    
+    /**
+     * Quãng đường từ cổng vào zone đến chỗ đỗ (đi ngang theo hàng/cột + chi phí lên tầng)
+     */
+    public int getDistanceFromGate() {
+        return level * LEVEL_COST + row + column;
+    }
+    
     // Setters
     public void setSlotId(String slotId) {
         this.slotId = slotId;
     }
     
-    public void setZone(String zone) {
+    public void setZone(Zone zone) {
         this.zone = zone;
     }
     
@@ -61,8 +93,8 @@ public class ParkingSlot {
     
     @Override
     public String toString() {
-        return String.format("ParkingSlot[ID: %s, Zone: %s, Occupied: %s]", 
-                slotId, zone, isOccupied ? "Yes" : "No");
+        return String.format("ParkingSlot[ID: %s, Zone: %s, Level: %d, Row: %d, Column: %d, Occupied: %s]", 
+                slotId, zone, level, row, column, isOccupied ? "Yes" : "No");
     }
 }
 
@@ -0,0 +1,53 @@
+package vn.parking.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * Quy tắc định dạng biển số theo loại xe
+ * Dùng chung cho màn hình nhập (ParkingView) và công cụ nhập hàng loạt.
+ * Biển số phải được chuẩn hóa (viết hoa, bỏ khoảng trắng) trước khi kiểm tra.
+ */
+public final class PlateValidator {
+
+    // Xe máy: [3-4 ký tự chữ số] - [4-5 chữ số], tổng 9-10 ký tự (tính cả dấu gạch)
+    private static final Pattern BIKE = Pattern.compile("^[A-Z0-9]{3,4}-[0-9]{4,5}$");
+    // Ô tô: 30A-123.45 hoặc 30A-12345
+    private static final Pattern CAR = Pattern.compile("^\\d{2}[A-Z]{1,2}-\\d{1,5}(\\.\\d{1,2})?$");
+    // Xe đạp: chữ/số/gạch để bảo vệ nhập lại mã cũ
+    private static final Pattern BICYCLE = Pattern.compile("^[A-Z0-9-]{3,15}$");
+
+    private PlateValidator() {
+    }
+
+    /**
+     * Kiểm tra biển số theo loại xe
+     * @return null nếu hợp lệ, ngược lại là thông báo lỗi (có thể nhiều dòng)
+     */
+    public static String validate(String plate, VehicleType type) {
+        if (type == VehicleType.BIKE) {
+            if (!BIKE.matcher(plate).matches()) {
+                return "❌ Biển số xe máy không đúng định dạng.\n"
+                        + "   Vui lòng nhập đúng định dạng có dấu gạch ngang.\n"
+                        + "   Ví dụ: 29S6-62360, 26S-62353, 29H1-1234";
+            }
+            if (plate.length() < 9 || plate.length() > 10) {
+                return "❌ Biển số xe máy phải có 9-10 ký tự (tính cả dấu gạch).\n"
+                        + "   Ví dụ: 29S6-62360 (9 ký tự), 26S-62353 (9 ký tự)";
+            }
+            return null;
+        } else if (type == VehicleType.CAR) {
+            if (!CAR.matcher(plate).matches()) {
+                return "❌ Biển số ô tô không đúng định dạng.\n"
+                        + "   Vui lòng nhập đúng định dạng có dấu gạch ngang.\n"
+                        + "   Ví dụ: 30A-123.45 hoặc 30A-12345";
+            }
+            return null;
+        } else if (type == VehicleType.BICYCLE) {
+            if (!BICYCLE.matcher(plate).matches()) {
+                return "❌ Mã xe đạp không hợp lệ (chỉ cho phép A-Z, 0-9, '-'; 3-15 ký tự).";
+            }
+            return null;
+        }
+        return "❌ Loại xe không hợp lệ.";
+    }
+}
@@ -0,0 +1,91 @@
+package vn.parking.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Entity đại diện cho một lượt gửi xe đã hoàn tất (lịch sử)
+ */
+public class StayRecord {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private String plate;                // Biển số xe
+    private LocalDateTime entryTime;     // Thời gian vào
+    private LocalDateTime exitTime;      // Thời gian ra
+    private Zone zone;                   // Zone đã đỗ
+    private long fee;                    // Phí đã thu
+
+    public StayRecord(String plate, LocalDateTime entryTime, LocalDateTime exitTime, Zone zone, long fee) {
+        this.plate = plate;
+        this.entryTime = entryTime;
+        this.exitTime = exitTime;
+        this.zone = zone;
+        this.fee = fee;
+    }
+
+    // Getters
+    public String getPlate() {
+        return plate;
+    }
+
+    public LocalDateTime getEntryTime() {
+        return entryTime;
+    }
+
+    public LocalDateTime getExitTime() {
+        return exitTime;
+    }
+
+    public Zone getZone() {
+        return zone;
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    /**
+     * Chuyển đổi thành chuỗi CSV
+     * Format: licensePlate,entryTime,exitTime,zone,fee
+     */
+    public String toCSV() {
+        return String.format("%s,%s,%s,%s,%d",
+                plate,
+                entryTime.format(DATE_FORMATTER),
+                exitTime.format(DATE_FORMATTER),
+                zone != null ? zone.name() : "",
+                fee
+        );
+    }
+
+    /**
+     * Đọc một dòng CSV (format như toCSV)
+     * @return StayRecord hoặc null nếu dòng không hợp lệ
+     */
+    public static StayRecord fromCSV(String line) {
+        if (line == null) {
+            return null;
+        }
+        String[] parts = line.split(",");
+        if (parts.length < 5) {
+            return null;
+        }
+        try {
+            return new StayRecord(
+                    parts[0].trim(),
+                    LocalDateTime.parse(parts[1].trim(), DATE_FORMATTER),
+                    LocalDateTime.parse(parts[2].trim(), DATE_FORMATTER),
+                    Zone.parse(parts[3]),
+                    Long.parseLong(parts[4].trim())
+            );
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StayRecord[Plate: %s, Entry: %s, Exit: %s, Zone: %s, Fee: %d]",
+                plate, entryTime, exitTime, zone, fee);
+    }
+}
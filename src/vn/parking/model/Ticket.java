@@ -9,13 +9,19 @@ public class Ticket {
     private String plate;                    // Biển số xe
     private LocalDateTime entryTime;         // Thời gian vào
     private boolean isMonthlyTicket;         // Có phải thẻ tháng không
-    private String zone;                     // Zone được phân (A1, A2, B)
+    private Zone zone;                       // Zone được phân (A1, A2, B)
+    private String slotId;                   // Chỗ đỗ được chỉ dẫn (null nếu zone không chia chỗ)
     
-    public Ticket(String plate, LocalDateTime entryTime, boolean isMonthlyTicket, String zone) {
+    public Ticket(String plate, LocalDateTime entryTime, boolean isMonthlyTicket, Zone zone) {
+        this(plate, entryTime, isMonthlyTicket, zone, null);
+    }
+    
+    public Ticket(String plate, LocalDateTime entryTime, boolean isMonthlyTicket, Zone zone, String slotId) {
         this.plate = plate;
         this.entryTime = entryTime;
         this.isMonthlyTicket = isMonthlyTicket;
         this.zone = zone;
+        this.slotId = slotId;
     }
     
     // Getters
@@ -31,10 +37,14 @@ public class Ticket {
         return isMonthlyTicket;
     }
     
-    public String getZone() {
+    public Zone getZone() {
         return zone;
     }
     
+    public String getSlotId() {
+        return slotId;
+    }
+    
     // Setters
     public void setPlate(String plate) {
         this.plate = plate;
@@ -48,14 +58,18 @@ public class Ticket {
         this.isMonthlyTicket = isMonthlyTicket;
     }
     
-    public void setZone(String zone) {
+    public void setZone(Zone zone) {
         this.zone = zone;
     }
     
+    public void setSlotId(String slotId) {
+        this.slotId = slotId;
+    }
+    
     @Override
     public String toString() {
-        return String.format("Ticket[Plate: %s, EntryTime: %s, Zone: %s, MonthlyTicket: %s]", 
-                plate, entryTime, zone, isMonthlyTicket ? "Yes" : "No");
+        return String.format("Ticket[Plate: %s, EntryTime: %s, Zone: %s, Slot: %s, MonthlyTicket: %s]", 
+                plate, entryTime, zone, slotId, isMonthlyTicket ? "Yes" : "No");
     }
 }
 
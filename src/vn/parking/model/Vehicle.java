@@ -8,7 +8,7 @@ public abstract class Vehicle {
     private VehicleType type;       // Loại xe (CAR, BIKE, BICYCLE)
     private FuelType fuelType;      // Loại nhiên liệu (GASOLINE, ELECTRIC, NONE)
     private boolean hasMonthlyCard; // Có thẻ tháng hay không
-    private String lastPaidMonth;   // Tháng đã đóng tiền vé tháng (Format: "MM/yyyy", ví dụ: "11/2025")
+    private String lastPaidMonth;   // Tháng đã đóng (MM/yyyy) theo dữ liệu cũ; nguồn chính là sổ cái đóng tiền của repository
     
     public Vehicle(String plate, VehicleType type, FuelType fuelType, boolean hasMonthlyCard) {
         this(plate, type, fuelType, hasMonthlyCard, null);
@@ -69,6 +69,12 @@ public abstract class Vehicle {
      */
     public abstract String getTypeName();
     
+    /**
+     * Zone ưu tiên theo loại xe và nhiên liệu (ô tô -> B, xe điện/xe đạp -> A1, xe xăng -> A2)
+     * Chính sách xếp zone có thể chuyển xe sang zone khác khi zone này đã đầy.
+     */
+    public abstract Zone getHomeZone();
+    
     /**
      * Chuyển đổi Vehicle thành chuỗi CSV
      * Format: type,licensePlate,fuelType,ticketType,lastPaidMonth
@@ -83,6 +89,32 @@ public abstract class Vehicle {
         );
     }
     
+    /**
+     * Tạo Vehicle cụ thể từ chuỗi CSV do toCSV() sinh ra
+     * Format: type,licensePlate,fuelType,ticketType,lastPaidMonth
+     */
+    public static Vehicle fromCSV(String csv) {
+        String[] parts = csv.split(",", -1);
+        if (parts.length < 4) {
+            throw new IllegalArgumentException("Dữ liệu xe thiếu cột: " + csv);
+        }
+        VehicleType type = VehicleType.valueOf(parts[0].trim());
+        String plate = parts[1].trim();
+        FuelType fuelType = FuelType.valueOf(parts[2].trim());
+        boolean isMonthly = parts[3].trim().equals("MONTHLY");
+        String lastPaidMonth = parts.length > 4 && !parts[4].trim().isEmpty() ? parts[4].trim() : null;
+        
+        switch (type) {
+            case CAR:
+                return new Car(plate, fuelType, isMonthly, lastPaidMonth);
+            case BIKE:
+                return new Motorbike(plate, fuelType, isMonthly, lastPaidMonth);
+            case BICYCLE:
+            default:
+                return new Bicycle(plate, fuelType, isMonthly, lastPaidMonth);
+        }
+    }
+    
     @Override
     public String toString() {
         return String.format("Vehicle[Plate: %s, Type: %s, Fuel: %s, MonthlyCard: %s, LastPaidMonth: %s]", 
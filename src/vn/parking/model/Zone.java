@@ -0,0 +1,120 @@
+package vn.parking.model;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Zone của bãi đỗ
+ *
+ * Mỗi zone gồm cổng vào, sức chứa mặc định, số chỗ giữ cho vé tháng mặc định và các
+ * loại xe / nhiên liệu được phép đỗ. Sức chứa và chỗ giữ ghi đè được bằng system property.
+ * Vé, chỗ đỗ và các bộ đếm dùng trực tiếp enum (ordinal nhỏ gọn, EnumMap/mảng theo ordinal).
+ */
+public enum Zone {
+    A1('A', 100, 10, EnumSet.of(VehicleType.BIKE, VehicleType.BICYCLE),
+            EnumSet.of(FuelType.ELECTRIC, FuelType.NONE)),   // Vị trí ưu tiên xe điện/xe đạp
+    A2('A', 150, 15, EnumSet.of(VehicleType.BIKE, VehicleType.BICYCLE),
+            EnumSet.of(FuelType.GASOLINE, FuelType.ELECTRIC, FuelType.NONE)), // Phía sau
+    B('B', 50, 5, EnumSet.of(VehicleType.CAR),
+            EnumSet.of(FuelType.GASOLINE, FuelType.ELECTRIC)); // Ô tô
+
+    private final char gate;
+    private final int defaultCapacity;
+    private final int defaultMonthlyReserve;
+    private final Set<VehicleType> allowedTypes;
+    private final Set<FuelType> allowedFuels;
+
+    Zone(char gate, int defaultCapacity, int defaultMonthlyReserve,
+         Set<VehicleType> allowedTypes, Set<FuelType> allowedFuels) {
+        this.gate = gate;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultMonthlyReserve = defaultMonthlyReserve;
+        this.allowedTypes = allowedTypes;
+        this.allowedFuels = allowedFuels;
+    }
+
+    public char getGate() {
+        return gate;
+    }
+
+    public int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    public int getDefaultMonthlyReserve() {
+        return defaultMonthlyReserve;
+    }
+
+    /**
+     * Zone có nhận loại xe và nhiên liệu của xe này không
+     */
+    public boolean accepts(Vehicle vehicle) {
+        return allowedTypes.contains(vehicle.getType()) && allowedFuels.contains(vehicle.getFuelType());
+    }
+
+    /**
+     * Đọc zone từ chuỗi (không phân biệt hoa thường)
+     * @throws IllegalArgumentException nếu không có zone này
+     */
+    public static Zone parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Zone không hợp lệ: " + value);
+        }
+    }
+
+    /**
+     * Đọc cấu hình sức chứa dạng "A1=100,A2=150,B=50"; zone không ghi lấy sức chứa mặc định
+     */
+    public static Map<Zone, Integer> parseCapacities(String spec) {
+        Map<Zone, Integer> values = new EnumMap<>(Zone.class);
+        for (Zone zone : values()) {
+            values.put(zone, zone.defaultCapacity);
+        }
+        return parseInto(values, spec);
+    }
+
+    /**
+     * Đọc cấu hình số chỗ giữ cho vé tháng (cùng dạng); zone không ghi lấy giá trị mặc định
+     */
+    public static Map<Zone, Integer> parseMonthlyReserves(String spec) {
+        Map<Zone, Integer> values = new EnumMap<>(Zone.class);
+        for (Zone zone : values()) {
+            values.put(zone, zone.defaultMonthlyReserve);
+        }
+        return parseInto(values, spec);
+    }
+
+    /**
+     * Phần của shard shardIndex khi chia đều sức chứa / chỗ giữ cho shardCount shard
+     * (phần dư chia cho các shard đầu), để tổng các shard đúng bằng cấu hình của cả bãi
+     */
+    public static Map<Zone, Integer> partition(Map<Zone, Integer> totals, int shardIndex, int shardCount) {
+        if (shardCount <= 0 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard không hợp lệ: " + shardIndex + "/" + shardCount);
+        }
+        Map<Zone, Integer> values = new EnumMap<>(Zone.class);
+        for (Map.Entry<Zone, Integer> entry : totals.entrySet()) {
+            int total = entry.getValue();
+            values.put(entry.getKey(), total / shardCount + (shardIndex < total % shardCount ? 1 : 0));
+        }
+        return values;
+    }
+
+    private static Map<Zone, Integer> parseInto(Map<Zone, Integer> values, String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return values;
+        }
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Cấu hình zone không hợp lệ: " + part);
+            }
+            values.put(parse(kv[0]), Integer.parseInt(kv[1].trim()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,401 @@
+package vn.parking.recon;
+
+import vn.parking.event.*;
+import vn.parking.model.VehicleType;
+import vn.parking.model.Zone;
+import vn.parking.repository.EventLogRepository;
+import vn.parking.repository.ParkingRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Đối soát thu tiền cuối ngày/tháng từ event log (parking_events.log), một lượt đọc
+ *
+ * Nguồn: lượt ra (VehicleCheckedOut), mất vé (LostTicketProcessed) và đóng vé tháng (MonthlyFeePaid)
+ * có thời điểm trong [from, to). Đọc bắt đầu từ offset của ngày from theo index ngày của event log
+ * (parking_events.log.days), không đọc phần log của các ngày trước kỳ. Dòng được lọc theo loại và
+ * thời điểm trên chuỗi trước khi giải mã, nên dòng xe vào và dòng ngoài kỳ gần như không tốn chi phí.
+ *
+ * Cộng dồn số lượt và số tiền theo zone (gộp lên cổng khi in) x loại thu trong mảng cố định.
+ * Bộ nhớ có giới hạn: ngoài mảng cộng dồn chỉ giữ các khoản đóng vé tháng chưa khớp lượt ra
+ * (cửa sổ PAIRING_WINDOW), số lần mất vé của các biển số có mất vé, và tối đa maxListed bất thường.
+ *
+ * Bất thường:
+ * - Đỗ lâu không thu phí: xe vé lượt (không phải xe đạp) đỗ quá longStayHours giờ mà phí đỗ bằng 0
+ * - Mất vé nhiều lần: một biển số mất vé từ lostTicketLimit lần trở lên trong kỳ
+ * - Thu vé tháng lệch sổ cái: phí vé tháng thu ở cổng khác tổng MonthlyFeePaid phát cùng lượt ra
+ */
+public class Reconciliation {
+
+    /**
+     * Loại khoản thu
+     */
+    public enum PaymentType {
+        GUEST("Vé lượt"),
+        MONTHLY("Vé tháng tại cổng"),
+        LOST_FINE("Phạt mất vé"),
+        PREPAID("Đóng trước vé tháng");
+
+        private final String label;
+
+        PaymentType(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum AnomalyType {
+        ZERO_FEE_LONG_STAY("Đỗ lâu không thu phí"),
+        REPEATED_LOST_TICKET("Mất vé nhiều lần"),
+        MONTHLY_MISMATCH("Thu vé tháng lệch sổ cái");
+
+        private final String label;
+
+        AnomalyType(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Một bất thường cần kiểm tra lại
+     */
+    public static final class Anomaly {
+        private final AnomalyType type;
+        private final String plate;
+        private final LocalDateTime time;
+        private final String detail;
+
+        Anomaly(AnomalyType type, String plate, LocalDateTime time, String detail) {
+            this.type = type;
+            this.plate = plate;
+            this.time = time;
+            this.detail = detail;
+        }
+
+        public AnomalyType getType() {
+            return type;
+        }
+
+        public String getPlate() {
+            return plate;
+        }
+
+        @Override
+        public String toString() {
+            return type.getLabel() + " | " + plate + (time != null ? " | " + time : "") + " | " + detail;
+        }
+    }
+
+    /**
+     * Khoản đóng vé tháng chờ khớp với lượt ra phát cùng thao tác (cùng biển số, cùng thời điểm)
+     */
+    private static final class PendingPayment {
+        final LocalDateTime time;
+        long amount;
+
+        PendingPayment(LocalDateTime time) {
+            this.time = time;
+        }
+    }
+
+    public static final int DEFAULT_LONG_STAY_HOURS = 24;
+    public static final int DEFAULT_LOST_TICKET_LIMIT = 2;
+    public static final int DEFAULT_MAX_LISTED = 100;
+
+    // Khoản đóng tiền cũ hơn lượt đang xét quá khoảng này mà chưa khớp lượt ra: đóng trước
+    private static final long PAIRING_WINDOW_SECONDS = 60;
+
+    private static final String CHECK_IN_PREFIX = VehicleCheckedIn.TYPE + "\t";
+    private static final Zone[] ZONES = Zone.values();
+    private static final int NO_ZONE = ZONES.length;        // Dòng cho khoản không qua cổng
+    private static final int TYPES = PaymentType.values().length;
+
+    private final String fromKey;           // "yyyy-MM-dd", so sánh trực tiếp với thời điểm ISO
+    private final String toKey;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final int longStayHours;
+    private final int lostTicketLimit;
+    private final int maxListed;
+
+    private final long[][] counts = new long[ZONES.length + 1][TYPES];
+    private final long[][] amounts = new long[ZONES.length + 1][TYPES];
+    private final long[] stays = new long[ZONES.length];
+    private long lostTickets;
+
+    private final LinkedHashMap<String, PendingPayment> pending = new LinkedHashMap<>();
+    private final Map<String, Integer> lostByPlate = new HashMap<>();
+    private final List<Anomaly> anomalies = new ArrayList<>();
+    private final long[] anomalyCounts = new long[AnomalyType.values().length];
+
+    private long lines;
+    private long events;
+    private long invalid;
+    private boolean finished;
+
+    /**
+     * Ngưỡng đọc từ system property:
+     * -Dparking.recon.long.stay.hours=24 -Dparking.recon.lost.limit=2 -Dparking.recon.max.listed=100
+     *
+     * @param from Ngày đầu kỳ
+     * @param to   Ngày sau ngày cuối kỳ (không tính)
+     */
+    public Reconciliation(LocalDate from, LocalDate to) {
+        this(from, to, Integer.getInteger("parking.recon.long.stay.hours", DEFAULT_LONG_STAY_HOURS),
+                Integer.getInteger("parking.recon.lost.limit", DEFAULT_LOST_TICKET_LIMIT),
+                Integer.getInteger("parking.recon.max.listed", DEFAULT_MAX_LISTED));
+    }
+
+    public Reconciliation(LocalDate from, LocalDate to, int longStayHours, int lostTicketLimit, int maxListed) {
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("Kỳ đối soát không hợp lệ: " + from + " -> " + to);
+        }
+        this.from = from;
+        this.to = to;
+        this.fromKey = from.toString();
+        this.toKey = to.toString();
+        this.longStayHours = longStayHours;
+        this.lostTicketLimit = Math.max(1, lostTicketLimit);
+        this.maxListed = maxListed;
+    }
+
+    /**
+     * Đọc event log từ dòng đầu tiên của ngày from tới hết rồi chốt kết quả
+     */
+    public void process(File eventLog) throws IOException {
+        if (eventLog.exists()) {
+            try (FileInputStream in = new FileInputStream(eventLog);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(
+                         in, StandardCharsets.UTF_8), 1 << 16)) {
+                in.getChannel().position(EventLogRepository.findDayOffset(eventLog, from));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    accept(line);
+                }
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Xử lý một dòng event log
+     */
+    public void accept(String line) {
+        lines++;
+        int typeEnd = line.indexOf('\t');
+        if (typeEnd <= 0 || line.startsWith(CHECK_IN_PREFIX)) {
+            return;
+        }
+        int timeEnd = line.indexOf('\t', typeEnd + 1);
+        if (timeEnd < 0) {
+            invalid++;
+            return;
+        }
+        String time = line.substring(typeEnd + 1, timeEnd);
+        if (time.compareTo(fromKey) < 0 || time.compareTo(toKey) >= 0) {
+            return;
+        }
+
+        DomainEvent event = EventCodec.decode(line);
+        if (event == null) {
+            invalid++;
+            return;
+        }
+        events++;
+        expirePending(event.getOccurredAt());
+
+        if (event instanceof MonthlyFeePaid) {
+            MonthlyFeePaid paid = (MonthlyFeePaid) event;
+            pending.computeIfAbsent(pairingKey(paid), k -> new PendingPayment(paid.getOccurredAt()))
+                    .amount += paid.getAmount();
+        } else if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut out = (VehicleCheckedOut) event;
+            onExit(out, out.getTicket().getZone(), out.getVehicle().getType(),
+                    out.getVehicle().hasMonthlyCard(), out.getTicket().getEntryTime(), out.getFee());
+        } else if (event instanceof LostTicketProcessed) {
+            LostTicketProcessed lost = (LostTicketProcessed) event;
+            int zone = lost.getTicket().getZone().ordinal();
+            onExit(lost, lost.getTicket().getZone(), lost.getVehicle().getType(),
+                    lost.getVehicle().hasMonthlyCard(), lost.getTicket().getEntryTime(), lost.getParkingFee());
+            add(zone, PaymentType.LOST_FINE, lost.getFine());
+            lostTickets++;
+            lostByPlate.merge(ParkingRepository.normalizePlate(lost.getPlate()), 1, Integer::sum);
+        }
+    }
+
+    private void onExit(DomainEvent event, Zone zone, VehicleType type, boolean monthlyCard,
+                        LocalDateTime entryTime, long fee) {
+        stays[zone.ordinal()]++;
+        if (monthlyCard && type != VehicleType.BICYCLE) {
+            add(zone.ordinal(), PaymentType.MONTHLY, fee);
+            PendingPayment paid = pending.remove(pairingKey(event));
+            long recorded = paid != null ? paid.amount : 0;
+            if (recorded != fee) {
+                report(AnomalyType.MONTHLY_MISMATCH, event.getPlate(), event.getOccurredAt(),
+                        "thu " + format(fee) + " VNĐ, sổ cái ghi " + format(recorded) + " VNĐ");
+            }
+            return;
+        }
+        add(zone.ordinal(), PaymentType.GUEST, fee);
+        long hours = ChronoUnit.HOURS.between(entryTime, event.getOccurredAt());
+        if (fee == 0 && type != VehicleType.BICYCLE && hours > longStayHours) {
+            report(AnomalyType.ZERO_FEE_LONG_STAY, event.getPlate(), event.getOccurredAt(),
+                    "đỗ " + hours + " giờ tại zone " + zone + ", phí 0 VNĐ");
+        }
+    }
+
+    /**
+     * Chốt kết quả: khoản đóng tiền chưa khớp lượt ra tính là đóng trước, xét mất vé nhiều lần
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        expirePending(null);
+        for (Map.Entry<String, Integer> entry : lostByPlate.entrySet()) {
+            if (entry.getValue() >= lostTicketLimit) {
+                report(AnomalyType.REPEATED_LOST_TICKET, entry.getKey(), null,
+                        entry.getValue() + " lần mất vé trong kỳ");
+            }
+        }
+    }
+
+    // Đẩy các khoản đóng tiền cũ hơn cửa sổ khớp sang đóng trước (now = null: tất cả)
+    private void expirePending(LocalDateTime now) {
+        Iterator<PendingPayment> it = pending.values().iterator();
+        while (it.hasNext()) {
+            PendingPayment paid = it.next();
+            if (now != null && ChronoUnit.SECONDS.between(paid.time, now) <= PAIRING_WINDOW_SECONDS) {
+                break;
+            }
+            add(NO_ZONE, PaymentType.PREPAID, paid.amount);
+            it.remove();
+        }
+    }
+
+    private static String pairingKey(DomainEvent event) {
+        return ParkingRepository.normalizePlate(event.getPlate()) + "|" + event.getOccurredAt();
+    }
+
+    private void add(int zone, PaymentType type, long amount) {
+        counts[zone][type.ordinal()]++;
+        amounts[zone][type.ordinal()] += amount;
+    }
+
+    private void report(AnomalyType type, String plate, LocalDateTime time, String detail) {
+        anomalyCounts[type.ordinal()]++;
+        if (anomalies.size() < maxListed) {
+            anomalies.add(new Anomaly(type, plate, time, detail));
+        }
+    }
+
+    // ===== Kết quả =====
+
+    public long getAmount(Zone zone, PaymentType type) {
+        return amounts[zone.ordinal()][type.ordinal()];
+    }
+
+    public long getCount(Zone zone, PaymentType type) {
+        return counts[zone.ordinal()][type.ordinal()];
+    }
+
+    /**
+     * Tổng thu của một loại trên mọi zone (kể cả khoản không qua cổng)
+     */
+    public long getAmount(PaymentType type) {
+        long total = 0;
+        for (long[] row : amounts) {
+            total += row[type.ordinal()];
+        }
+        return total;
+    }
+
+    public long getTotalAmount() {
+        long total = 0;
+        for (PaymentType type : PaymentType.values()) {
+            total += getAmount(type);
+        }
+        return total;
+    }
+
+    public long getAnomalyCount(AnomalyType type) {
+        return anomalyCounts[type.ordinal()];
+    }
+
+    /**
+     * Các bất thường đã ghi (tối đa maxListed, theo thứ tự phát hiện)
+     */
+    public List<Anomaly> getAnomalies() {
+        return Collections.unmodifiableList(anomalies);
+    }
+
+    /**
+     * Tóm tắt để hiển thị
+     */
+    public List<String> getSummary() {
+        List<String> summary = new ArrayList<>();
+        long exits = 0;
+        for (long count : stays) {
+            exits += count;
+        }
+        summary.add("Kỳ: " + from + " -> " + to.minusDays(1) + " | Dòng đọc: " + lines + " | Sự kiện trong kỳ: "
+                + events + (invalid > 0 ? " (lỗi " + invalid + ")" : "")
+                + " | Lượt ra: " + exits + " (mất vé " + lostTickets + ")");
+        summary.add("Tổng thu: " + format(getTotalAmount()) + " VNĐ");
+
+        char gate = 0;
+        for (Zone zone : ZONES) {
+            if (zone.getGate() != gate) {
+                gate = zone.getGate();
+                summary.add("Cổng " + gate + ": " + format(gateAmount(gate)) + " VNĐ");
+            }
+            StringBuilder line = new StringBuilder("  Zone " + zone + ": " + stays[zone.ordinal()] + " lượt ra");
+            for (PaymentType type : PaymentType.values()) {
+                if (type != PaymentType.PREPAID) {
+                    line.append(" | ").append(type.getLabel()).append(" ")
+                            .append(format(getAmount(zone, type))).append(" (").append(getCount(zone, type)).append(")");
+                }
+            }
+            summary.add(line.toString());
+        }
+        summary.add(PaymentType.PREPAID.getLabel() + " (không qua cổng): "
+                + format(amounts[NO_ZONE][PaymentType.PREPAID.ordinal()]) + " VNĐ ("
+                + counts[NO_ZONE][PaymentType.PREPAID.ordinal()] + " lần)");
+
+        StringBuilder anomalyLine = new StringBuilder("Bất thường:");
+        for (AnomalyType type : AnomalyType.values()) {
+            anomalyLine.append(" ").append(type.getLabel()).append("=").append(anomalyCounts[type.ordinal()]);
+        }
+        summary.add(anomalyLine.toString());
+        return summary;
+    }
+
+    private long gateAmount(char gate) {
+        long total = 0;
+        for (Zone zone : ZONES) {
+            if (zone.getGate() == gate) {
+                for (long amount : amounts[zone.ordinal()]) {
+                    total += amount;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static String format(long amount) {
+        return String.format("%,d", amount);
+    }
+}
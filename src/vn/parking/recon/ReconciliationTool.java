@@ -0,0 +1,65 @@
+package vn.parking.recon;
+
+import vn.parking.repository.EventLogRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Công cụ dòng lệnh đối soát thu tiền theo ngày hoặc khoảng ngày
+ *
+ * java vn.parking.recon.ReconciliationTool <yyyy-MM-dd>[..yyyy-MM-dd] [thư mục dữ liệu]
+ *   -> đọc parking_events.log một lượt từ ngày đầu kỳ (theo index ngày), in tổng thu theo cổng/zone/loại thu và các bất thường
+ * Ví dụ: 2026-10-19 (một ngày), 2026-10-01..2026-10-31 (cả tháng, tính cả ngày cuối)
+ * Đọc được khi bãi đang chạy (chỉ đọc event log).
+ */
+public class ReconciliationTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Cách dùng: java vn.parking.recon.ReconciliationTool <yyyy-MM-dd>[..yyyy-MM-dd] [thư mục dữ liệu]");
+            return;
+        }
+        LocalDate from;
+        LocalDate last;
+        try {
+            int range = args[0].indexOf("..");
+            from = LocalDate.parse(range < 0 ? args[0] : args[0].substring(0, range));
+            last = range < 0 ? from : LocalDate.parse(args[0].substring(range + 2));
+        } catch (DateTimeParseException e) {
+            System.err.println("❌ Ngày không hợp lệ: " + args[0]);
+            return;
+        }
+        File dataDir = args.length > 1 ? new File(args[1]) : null;
+        File eventLog = new File(dataDir, EventLogRepository.DEFAULT_FILENAME);
+        if (!eventLog.exists()) {
+            System.err.println("❌ Không tìm thấy event log: " + eventLog.getPath());
+            return;
+        }
+
+        Reconciliation reconciliation;
+        try {
+            reconciliation = new Reconciliation(from, last.plusDays(1));
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            return;
+        }
+        long start = System.nanoTime();
+        reconciliation.process(eventLog);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("=== Đối soát thu tiền " + from + (last.equals(from) ? "" : " -> " + last) + " ===");
+        for (String line : reconciliation.getSummary()) {
+            System.out.println(line);
+        }
+        if (!reconciliation.getAnomalies().isEmpty()) {
+            System.out.println("--- Bất thường cần kiểm tra ---");
+            for (Reconciliation.Anomaly anomaly : reconciliation.getAnomalies()) {
+                System.out.println("⚠ " + anomaly);
+            }
+        }
+        System.out.println("✓ Đối soát xong trong " + elapsed + " ms");
+    }
+}
@@ -0,0 +1,202 @@
+package vn.parking.replication;
+
+import vn.parking.event.DomainEvent;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.repository.ReplicationJournal;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Phía replica: nhận journal từ primary và áp dụng liên tục vào repository cục bộ
+ *
+ * Mỗi lô dòng nhận được: áp dụng vào bộ nhớ -> lưu file dữ liệu -> ghi vào journal
+ * cục bộ (fsync một lần). Số thứ tự cuối trong journal cục bộ là điểm tiếp tục khi kết nối lại
+ * hoặc khởi động lại; nếu dừng giữa lô thì lô đó được áp dụng lại: các thao tác đều ghi đè,
+ * lượt gửi đã có trong lịch sử và sự kiện vừa nhận gần đây được bỏ qua.
+ *
+ * Primary trả RESYNC (journal của nó không còn khớp với replica) thì replica gọi resync
+ * (dời dữ liệu cũ đi, xóa journal) rồi kết nối lại từ #0.
+ */
+public class ReplicaClient implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int READ_TIMEOUT_MS = 5000;  // Không nhận được gì (kể cả PING) -> coi như mất kết nối
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final int MAX_BATCH_LINES = 1000;
+
+    private final String primaryHost;
+    private final int primaryPort;
+    private final ReplicationJournal journal;
+    private final ParkingRepository repository;
+    private final HistoryRepository historyRepository;
+    private final Consumer<DomainEvent> events;
+    private final Runnable resync;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private Thread worker;
+
+    /**
+     * @param events Nhận sự kiện nghiệp vụ từ primary (thống kê, dự báo, bộ đếm mất vé)
+     * @param resync Bỏ dữ liệu cục bộ khi primary yêu cầu đồng bộ lại từ đầu
+     */
+    public ReplicaClient(String primaryHost, int primaryPort, ReplicationJournal journal,
+                         ParkingRepository repository, HistoryRepository historyRepository,
+                         Consumer<DomainEvent> events, Runnable resync) {
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.journal = journal;
+        this.repository = repository;
+        this.historyRepository = historyRepository;
+        this.events = events;
+        this.resync = resync;
+    }
+
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "replica-client");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getPrimaryAddress() {
+        return primaryHost + ":" + primaryPort;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                streamFromPrimary();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("ℹ Mất kết nối primary " + getPrimaryAddress() + ": " + e.getMessage()
+                            + " (thử lại sau " + RECONNECT_DELAY_MS / 1000 + " giây)");
+                }
+            } finally {
+                connected = false;
+            }
+
+            // Chờ trước khi kết nối lại (kiểm tra cờ dừng thường xuyên)
+            for (long waited = 0; running && waited < RECONNECT_DELAY_MS; waited += 100) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void streamFromPrimary() throws IOException {
+        try (Socket s = new Socket()) {
+            socket = s;
+            s.connect(new InetSocketAddress(primaryHost, primaryPort), CONNECT_TIMEOUT_MS);
+            s.setSoTimeout(READ_TIMEOUT_MS);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer writer = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+
+            String epoch = journal.getLastEpoch();
+            writer.write(ReplicationServer.SUBSCRIBE + "\t" + journal.getLastSequence() + "\t"
+                    + (epoch != null ? epoch : ReplicationServer.NO_EPOCH) + "\n");
+            writer.flush();
+            connected = true;
+            System.out.println("✓ Replica đã kết nối primary " + getPrimaryAddress()
+                    + ", tiếp tục từ #" + (journal.getLastSequence() + 1));
+
+            List<String> batch = new ArrayList<>();
+            while (running) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("primary không phản hồi");
+                }
+                if (line == null) {
+                    throw new EOFException("primary đóng kết nối");
+                }
+                if (ReplicationServer.RESYNC.equals(line)) {
+                    System.err.println("❌ Journal của primary không còn khớp với replica (primary khởi động lại"
+                            + " bị mất đuôi journal): đồng bộ lại từ đầu");
+                    resync.run();
+                    throw new IOException("đồng bộ lại từ đầu");
+                }
+                if (!ReplicationServer.PING.equals(line)) {
+                    batch.add(line);
+                }
+                // Hết dữ liệu đang chờ trên socket (hoặc lô đủ lớn) -> áp dụng lô
+                if (!batch.isEmpty() && (batch.size() >= MAX_BATCH_LINES || !reader.ready())) {
+                    applyBatch(batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            socket = null;
+        }
+    }
+
+    private void applyBatch(List<String> batch) throws IOException {
+        boolean ticketsChanged = false;
+        List<String> applied = new ArrayList<>();
+
+        for (String line : batch) {
+            if (ReplicationJournal.sequenceOf(line) <= journal.getLastSequence()) {
+                continue; // Đã có (gửi lại sau khi kết nối lại)
+            }
+            try {
+                String type = ReplicationJournal.apply(line, repository, historyRepository, events);
+                ticketsChanged |= ReplicationJournal.CHECK_IN.equals(type)
+                        || ReplicationJournal.TICKET_REMOVED.equals(type);
+            } catch (RuntimeException e) {
+                System.err.println("❌ Bỏ qua dòng journal không áp dụng được: " + line + " - " + e.getMessage());
+            }
+            applied.add(line);
+        }
+
+        if (ticketsChanged) {
+            repository.saveToFile();
+        }
+        try {
+            journal.appendReplicated(applied);
+        } catch (UncheckedIOException e) {
+            // Journal cục bộ không ghi được: ngắt kết nối, lần kết nối lại nhận tiếp từ dòng cuối đã ghi
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Dừng nhận journal (khi nâng replica lên primary hoặc thoát)
+     * Chờ lô đang áp dụng hoàn tất, không ngắt giữa chừng khi đang ghi file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Đang dừng, bỏ qua
+            }
+        }
+        if (worker != null) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package vn.parking.replication;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.repository.ReplicationJournal;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.IParkingService;
+import vn.parking.service.LostTicketDetector;
+import vn.parking.service.LostTicketResult;
+import vn.parking.service.ParkingService;
+import vn.parking.service.StatisticsProjection;
+import vn.parking.service.ZoneForecaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bãi đỗ chạy ở chế độ replication primary/replica
+ *
+ * - PRIMARY: xử lý mọi thao tác, ghi journal thay đổi và phát cho các replica
+ * - REPLICA: nhận journal từ primary, chỉ phục vụ truy vấn đọc (tìm kiếm, thống kê,
+ *   lịch sử); thao tác ghi bị từ chối cho đến khi được nâng lên primary (promote)
+ *
+ * Sau khi failover, primary cũ phải tham gia lại với vai trò replica trên thư mục
+ * dữ liệu mới (journal của nó có thể đã lệch với primary mới). Replica phát hiện primary
+ * khởi động lại bị mất đuôi journal qua mã epoch; khi đó dữ liệu cục bộ được dời sang
+ * thư mục diverged-<thời điểm> và đồng bộ lại từ đầu.
+ */
+public class ReplicatedParkingService implements IParkingService {
+
+    public enum Role {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final File dataDir;
+    private final ParkingRepository repository;
+    private final HistoryRepository historyRepository;
+    private final ParkingService delegate;
+    private final ReplicationJournal journal;
+    private final int listenPort;
+    private final String primaryHost;
+    private final int primaryPort;
+
+    private volatile Role role;
+    private ReplicationServer server;
+    private ReplicaClient client;
+    private boolean started;
+
+    private ReplicatedParkingService(File dataDir, Role role, int listenPort, String primaryHost, int primaryPort) {
+        this.dataDir = dataDir;
+        this.repository = new ParkingRepository(dataDir);
+        this.historyRepository = HistoryRepository.inDirectory(dataDir);
+        this.delegate = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(historyRepository));
+        try {
+            this.journal = new ReplicationJournal(dataDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không mở được journal replication", e);
+        }
+        this.role = role;
+        this.listenPort = listenPort;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+    }
+
+    /**
+     * Primary: phát journal cho replica tại listenPort
+     */
+    public static ReplicatedParkingService primary(File dataDir, int listenPort) {
+        return new ReplicatedParkingService(dataDir, Role.PRIMARY, listenPort, null, 0);
+    }
+
+    /**
+     * Replica: nhận journal từ primaryHost:primaryPort; khi được nâng lên primary
+     * thì phát journal tại listenPort
+     */
+    public static ReplicatedParkingService replica(File dataDir, String primaryHost, int primaryPort, int listenPort) {
+        return new ReplicatedParkingService(dataDir, Role.REPLICA, listenPort, primaryHost, primaryPort);
+    }
+
+    public ParkingRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Thống kê dựng từ sự kiện nghiệp vụ (trên replica: sự kiện nhận từ primary qua journal)
+     */
+    public StatisticsProjection getStatistics() {
+        return delegate.getStatistics();
+    }
+    
+    /**
+     * Dự báo sức chứa zone dựng từ sự kiện nghiệp vụ
+     */
+    public ZoneForecaster getForecaster() {
+        return delegate.getForecaster();
+    }
+
+    /**
+     * Bộ phát hiện lạm dụng mất vé dựng từ sự kiện nghiệp vụ
+     */
+    public LostTicketDetector getLostTicketDetector() {
+        return delegate.getLostTicketDetector();
+    }
+    
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * Mô tả trạng thái replication (vai trò, vị trí journal, kết nối)
+     */
+    public synchronized String getStatus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Vai trò: ").append(role)
+          .append(" | Journal: #").append(journal.getLastSequence());
+        if (role == Role.PRIMARY && server != null) {
+            sb.append(" | Phát tại cổng ").append(server.getPort());
+        } else if (client != null) {
+            sb.append(" | Primary: ").append(client.getPrimaryAddress())
+              .append(client.isConnected() ? " (đã kết nối)" : " (mất kết nối)");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Nạp dữ liệu cục bộ rồi bắt đầu phát (primary) hoặc nhận (replica) journal
+     */
+    @Override
+    public synchronized void loadData() {
+        delegate.loadData();
+        if (started) {
+            return;
+        }
+        started = true;
+
+        if (role == Role.PRIMARY) {
+            journal.writeBaselineIfEmpty(repository, historyRepository, delegate::forEachLoggedEvent);
+            startPublishing();
+        } else {
+            client = new ReplicaClient(primaryHost, primaryPort, journal, repository, historyRepository,
+                    delegate::applyReplicatedEvent, this::discardLocalData);
+            client.start();
+            System.out.println("ℹ Chạy replica chỉ đọc, nhận dữ liệu từ primary " + client.getPrimaryAddress());
+        }
+    }
+
+    /**
+     * Nâng replica lên primary (failover): dừng nhận journal, dựng lại bộ đếm zone / chỉ mục chỗ /
+     * chỉ mục biển số từ vé active (journal không đi qua các chỉ mục này), bật ghi journal
+     * và phát cho replica khác
+     */
+    public synchronized void promote() {
+        if (role == Role.PRIMARY) {
+            throw new IllegalStateException("Node này đã là primary!");
+        }
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        delegate.resetActiveIndexes();
+        startPublishing();
+        role = Role.PRIMARY;
+        System.out.println("✓ Đã nâng replica lên primary tại journal #" + journal.getLastSequence());
+    }
+
+    /**
+     * Replica lệch với primary: dời file dữ liệu cục bộ sang diverged-<thời điểm> (để đối chiếu
+     * thủ công), bắt đầu journal rỗng và nạp lại trạng thái rỗng trước khi nhận lại từ #0.
+     * Chạy trên luồng ReplicaClient, không khóa this (promote() chờ luồng đó dừng).
+     */
+    private void discardLocalData() {
+        File backupDir = new File(dataDir,
+                "diverged-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        delegate.reloadFromScratch(() -> {
+            try {
+                Files.createDirectories(backupDir.toPath());
+                journal.reset(backupDir);
+                File[] files = dataDir.listFiles(file -> file.isFile()
+                        && !file.getName().equals(ReplicationJournal.FILENAME));
+                if (files != null) {
+                    for (File file : files) {
+                        Files.move(file.toPath(), new File(backupDir, file.getName()).toPath(),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Không dời được dữ liệu replica sang " + backupDir, e);
+            }
+        });
+        System.out.println("ℹ Đã dời dữ liệu replica cũ sang " + backupDir.getName());
+    }
+
+    private void startPublishing() {
+        journal.startEpoch();
+        delegate.setEventListener(journal::onEventPublished);
+        repository.setMutationListener(journal);
+        historyRepository.setMutationListener(journal);
+        try {
+            server = new ReplicationServer(listenPort, journal);
+            server.start();
+        } catch (IOException e) {
+            System.err.println("❌ Không mở được cổng replication " + listenPort + ": " + e.getMessage());
+        }
+    }
+
+    private void requireWritable() {
+        if (role != Role.PRIMARY) {
+            throw new IllegalStateException("Đây là replica chỉ đọc - hãy thao tác trên primary hoặc nâng replica lên primary!");
+        }
+    }
+
+    // ===== Thao tác ghi: chỉ primary =====
+
+    @Override
+    public synchronized Ticket checkIn(Vehicle vehicle) {
+        requireWritable();
+        return delegate.checkIn(vehicle);
+    }
+
+    @Override
+    public synchronized long checkOut(String plate) {
+        requireWritable();
+        return delegate.checkOut(plate);
+    }
+
+    @Override
+    public synchronized long checkOutSimulation(String plate, int months, int days) {
+        requireWritable();
+        return delegate.checkOutSimulation(plate, months, days);
+    }
+
+    @Override
+    public synchronized LostTicketResult processLostTicket(String plate) {
+        requireWritable();
+        return delegate.processLostTicket(plate);
+    }
+
+    // ===== Truy vấn đọc: cả primary và replica =====
+
+    @Override
+    public Collection<Vehicle> getVehicleList() {
+        return delegate.getVehicleList();
+    }
+
+    @Override
+    public String findParkedPlate(String inputPlate) {
+        return delegate.findParkedPlate(inputPlate);
+    }
+
+    @Override
+    public List<String> searchByKeyword(String keyword) {
+        return delegate.searchByKeyword(keyword);
+    }
+
+    @Override
+    public Collection<Ticket> getActiveTickets() {
+        return delegate.getActiveTickets();
+    }
+
+    @Override
+    public List<StayRecord> findHistory(String plate) {
+        return delegate.findHistory(plate);
+    }
+
+    @Override
+    public void saveData() {
+        delegate.saveData();
+    }
+}
@@ -0,0 +1,121 @@
+package vn.parking.replication;
+
+import vn.parking.repository.ReplicationJournal;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Phía primary: gửi journal cho các replica qua TCP
+ *
+ * Giao thức (mỗi dòng một thông điệp):
+ * - Replica gửi:  SUBSCRIBE\t<số thứ tự cuối cùng đã có>\t<mã epoch của dòng đó, "-" nếu không có>
+ * - Primary gửi:  các dòng journal có số thứ tự lớn hơn, sau đó liên tục gửi dòng mới;
+ *                 khi không có thay đổi thì gửi PING mỗi giây để replica phát hiện mất kết nối
+ * - Primary gửi RESYNC rồi đóng kết nối nếu replica đi trước journal của primary hoặc khác epoch
+ *   (primary khởi động lại bị mất đuôi journal): replica phải đồng bộ lại từ đầu
+ */
+public class ReplicationServer implements Closeable {
+
+    static final String SUBSCRIBE = "SUBSCRIBE";
+    static final String PING = "PING";
+    static final String RESYNC = "RESYNC";
+    static final String NO_EPOCH = "-";
+    static final long PING_INTERVAL_MS = 1000;
+
+    private final ReplicationJournal journal;
+    private final ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationServer(int port, ReplicationJournal journal) throws IOException {
+        this.journal = journal;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Bắt đầu nhận kết nối replica trên luồng nền
+     */
+    public void start() {
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("✓ Primary phát journal tại cổng " + getPort());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket replica = serverSocket.accept();
+                Thread sender = new Thread(() -> serveReplica(replica), "replication-send-" + replica.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("❌ Lỗi khi nhận kết nối replica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serveReplica(Socket replica) {
+        String address = replica.getRemoteSocketAddress().toString();
+        try (Socket socket = replica;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String request = reader.readLine();
+            String[] parts = request == null ? new String[0] : request.split("\t");
+            if (parts.length < 2 || parts.length > 3 || !SUBSCRIBE.equals(parts[0])) {
+                System.err.println("❌ Yêu cầu replication không hợp lệ từ " + address + ": " + request);
+                return;
+            }
+
+            long fromSequence = Long.parseLong(parts[1]);
+            String epoch = parts.length < 3 || NO_EPOCH.equals(parts[2]) ? null : parts[2];
+            boolean consistent = parts.length < 3
+                    ? fromSequence <= journal.getLastSequence()
+                    : journal.isConsistentWith(fromSequence, epoch);
+            if (!consistent) {
+                System.err.println("❌ Replica " + address + " có tới #" + fromSequence + " (epoch " + parts[parts.length - 1]
+                        + ") không khớp journal primary (#" + journal.getLastSequence() + "), yêu cầu đồng bộ lại từ đầu");
+                writer.write(RESYNC + "\n");
+                writer.flush();
+                return;
+            }
+            System.out.println("ℹ Replica " + address + " kết nối, đồng bộ từ #" + (fromSequence + 1));
+
+            ReplicationJournal.Tail tail = journal.openTail(fromSequence);
+            while (running) {
+                List<String> lines = tail.poll(PING_INTERVAL_MS);
+                if (lines.isEmpty()) {
+                    writer.write(PING + "\n");
+                } else {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                System.out.println("ℹ Replica " + address + " ngắt kết nối: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+}
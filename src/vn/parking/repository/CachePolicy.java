@@ -0,0 +1,9 @@
+package vn.parking.repository;
+
+/**
+ * Chính sách loại bỏ phần tử của LookupCache
+ */
+public enum CachePolicy {
+    LRU,        // Loại bỏ phần tử lâu nhất chưa được dùng
+    TINY_LFU    // W-TinyLFU: cửa sổ LRU nhỏ + vùng chính có kiểm soát nhận theo tần suất
+}
@@ -0,0 +1,192 @@
+package vn.parking.repository;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Kho vé active dạng cột (struct-of-arrays) cho các phép tổng hợp
+ *
+ * Mỗi vé là một hàng trong các mảng song song:
+ * - plateIds: id biển số (int, từ điển biển số dùng chung)
+ * - entryEpochs: giờ vào tính bằng giây epoch (long)
+ * - zoneOrdinals: ordinal của Zone (byte)
+ * - monthly / live: BitSet cờ vé tháng / hàng đang dùng
+ * Hàng và id biển số của xe đã ra được đưa vào free-list và dùng lại cho xe vào sau,
+ * nên kích thước kho và từ điển chỉ theo số xe đang đỗ, không theo số biển số từng gặp.
+ *
+ * Tổng hợp trên toàn bộ xe đang đỗ là một lượt quét tuyến tính các mảng nguyên thủy,
+ * không phải đi theo con trỏ qua từng đối tượng Ticket/LocalDateTime.
+ */
+class ColumnarTicketStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Từ điển biển số -> id của các xe đang đỗ (id thu hồi khi xe ra)
+    private final Map<String, Integer> plateIdByPlate = new HashMap<>();
+    private String[] plateById = new String[INITIAL_CAPACITY];
+    private int[] rowByPlateId = new int[INITIAL_CAPACITY];
+    private int plateIdCount;                                // Số id đã cấp (kể cả id đã thu hồi)
+    private int[] freePlateIds = new int[INITIAL_CAPACITY];  // Free-list các id đã thu hồi
+    private int freePlateIdCount;
+
+    // Các cột
+    private int[] plateIds = new int[INITIAL_CAPACITY];
+    private long[] entryEpochs = new long[INITIAL_CAPACITY];
+    private byte[] zoneOrdinals = new byte[INITIAL_CAPACITY];
+    private final BitSet monthly = new BitSet();
+    private final BitSet live = new BitSet();
+
+    private int rowCount;                                // Số hàng đã cấp (kể cả hàng trống)
+    private int[] freeRows = new int[INITIAL_CAPACITY];  // Free-list các hàng trống
+    private int freeCount;
+    private int size;
+
+    ColumnarTicketStore() {
+        Arrays.fill(rowByPlateId, -1);
+    }
+
+    /**
+     * Thêm (hoặc ghi đè) vé của một biển số
+     */
+    synchronized void put(Ticket ticket) {
+        int plateId = plateId(ticket.getPlate());
+        int row = rowByPlateId[plateId];
+        if (row < 0) {
+            row = allocateRow();
+            rowByPlateId[plateId] = row;
+            live.set(row);
+            size++;
+        }
+        plateIds[row] = plateId;
+        entryEpochs[row] = ticket.getEntryTime().toEpochSecond(ZoneOffset.UTC);
+        zoneOrdinals[row] = (byte) ticket.getZone().ordinal();
+        monthly.set(row, ticket.isMonthlyTicket());
+    }
+
+    /**
+     * Xóa vé của biển số, trả hàng và id biển số về free-list
+     */
+    synchronized void remove(String plate) {
+        Integer plateId = plateIdByPlate.remove(plate);
+        if (plateId == null) {
+            return;
+        }
+        int row = rowByPlateId[plateId];
+        rowByPlateId[plateId] = -1;
+        plateById[plateId] = null;
+        if (freePlateIdCount == freePlateIds.length) {
+            freePlateIds = Arrays.copyOf(freePlateIds, freePlateIdCount * 2);
+        }
+        freePlateIds[freePlateIdCount++] = plateId;
+        live.clear(row);
+        monthly.clear(row);
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        }
+        freeRows[freeCount++] = row;
+        size--;
+    }
+
+    /**
+     * Dựng lại toàn bộ kho từ danh sách vé (khi nạp dữ liệu)
+     */
+    synchronized void rebuild(Collection<Ticket> tickets) {
+        plateIdByPlate.clear();
+        Arrays.fill(plateById, null);
+        Arrays.fill(rowByPlateId, -1);
+        plateIdCount = 0;
+        freePlateIdCount = 0;
+        live.clear();
+        monthly.clear();
+        rowCount = 0;
+        freeCount = 0;
+        size = 0;
+        for (Ticket ticket : tickets) {
+            put(ticket);
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int plateId(String plate) {
+        Integer id = plateIdByPlate.get(plate);
+        if (id != null) {
+            return id;
+        }
+        int newId;
+        if (freePlateIdCount > 0) {
+            newId = freePlateIds[--freePlateIdCount];
+        } else {
+            newId = plateIdCount++;
+        }
+        if (newId == plateById.length) {
+            plateById = Arrays.copyOf(plateById, newId * 2);
+            rowByPlateId = Arrays.copyOf(rowByPlateId, newId * 2);
+            Arrays.fill(rowByPlateId, newId, rowByPlateId.length, -1);
+        }
+        plateById[newId] = plate;
+        plateIdByPlate.put(plate, newId);
+        return newId;
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == plateIds.length) {
+            int capacity = rowCount * 2;
+            plateIds = Arrays.copyOf(plateIds, capacity);
+            entryEpochs = Arrays.copyOf(entryEpochs, capacity);
+            zoneOrdinals = Arrays.copyOf(zoneOrdinals, capacity);
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Tổng hợp toàn bộ xe đang đỗ trong một lượt quét
+     * @param now            Thời điểm tính thời gian đỗ
+     * @param longStayHours  Ngưỡng (giờ) tính là đỗ lâu
+     */
+    synchronized TicketAggregates aggregate(LocalDateTime now, long longStayHours) {
+        long nowEpoch = now.toEpochSecond(ZoneOffset.UTC);
+        long longStayBefore = nowEpoch - longStayHours * 3600;
+        Zone[] zones = Zone.values();
+        int[] zoneCounts = new int[zones.length];
+        int longStayCount = 0;
+        long totalSeconds = 0;
+        long oldestEpoch = Long.MAX_VALUE;
+        int oldestPlateId = -1;
+
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            long entry = entryEpochs[row];
+            zoneCounts[zoneOrdinals[row]]++;
+            totalSeconds += nowEpoch - entry;
+            if (entry <= longStayBefore) {
+                longStayCount++;
+            }
+            if (entry < oldestEpoch) {
+                oldestEpoch = entry;
+                oldestPlateId = plateIds[row];
+            }
+        }
+        int monthlyCount = monthly.cardinality();
+
+        Map<Zone, Integer> byZone = new EnumMap<>(Zone.class);
+        for (int i = 0; i < zoneCounts.length; i++) {
+            if (zoneCounts[i] > 0) {
+                byZone.put(zones[i], zoneCounts[i]);
+            }
+        }
+        LocalDateTime oldestEntry = oldestPlateId < 0 ? null
+                : LocalDateTime.ofEpochSecond(oldestEpoch, 0, ZoneOffset.UTC);
+        return new TicketAggregates(size, monthlyCount, byZone, longStayHours, longStayCount,
+                size == 0 ? 0 : totalSeconds / size,
+                oldestPlateId < 0 ? null : plateById[oldestPlateId], oldestEntry);
+    }
+}
@@ -0,0 +1,476 @@
+package vn.parking.repository;
+
+import vn.parking.event.DomainEvent;
+import vn.parking.event.EventCodec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Event log: ghi nối tiếp mọi sự kiện nghiệp vụ vào parking_events.log
+ * để phát lại (replay) khi cần dựng lại các projection (ví dụ thống kê doanh thu)
+ *
+ * Checkpoint (parking_events.log.ckpt) lưu trạng thái các projection cùng offset event log
+ * tương ứng, để lần khởi động sau chỉ phát lại phần log ghi sau offset đó.
+ *
+ * Index ngày (parking_events.log.days): mỗi dòng "ngày\toffset" ghi offset của dòng đầu tiên
+ * có thời điểm vượt mọi ngày trước nó, để đối soát một ngày/tháng đọc từ đúng vị trí thay vì
+ * từ đầu log. Dòng index chỉ được ghi sau khi các dòng log tương ứng đã flush; lần mở để ghi
+ * đầu tiên quét phần log sau dòng index cuối để bổ sung dòng còn thiếu (dựng mới nếu chưa có).
+ */
+public class EventLogRepository {
+
+    public static final String DEFAULT_FILENAME = "parking_events.log";
+    public static final String CHECKPOINT_SUFFIX = ".ckpt";
+    private static final int CHECKPOINT_MAGIC = 0x50434b50;   // "PCKP"
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final int FINGERPRINT_BYTES = 4096;        // Số byte log ngay trước offset dùng để nhận ra đúng file log
+    public static final String DAY_INDEX_SUFFIX = ".days";
+    private static final int DAY_LENGTH = 10;                 // "yyyy-MM-dd"
+
+    private final File file;
+    private final File checkpointFile;
+    private final File dayIndexFile;
+    private Writer writer;  // Mở khi ghi lần đầu
+    private long length;    // Số byte log đã ghi (kể cả phần còn trong buffer) khi writer đang mở
+    private String lastDay; // Ngày lớn nhất đã có trong log (đã vào index hoặc đang chờ ghi)
+    private final List<String> pendingDays = new ArrayList<>(); // Dòng index ngày chờ log được flush
+
+    public EventLogRepository(File file) {
+        this.file = file;
+        this.checkpointFile = new File(file.getPath() + CHECKPOINT_SUFFIX);
+        this.dayIndexFile = new File(file.getPath() + DAY_INDEX_SUFFIX);
+    }
+
+    /**
+     * Ghi một sự kiện (vào buffer; gọi flush() ở cuối mỗi lô)
+     */
+    public synchronized void append(DomainEvent event) {
+        try {
+            if (writer == null) {
+                length = file.exists() ? file.length() : 0;
+                lastDay = repairDayIndex(length);
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            }
+            String line = EventCodec.encode(event);
+            String day = event.getOccurredAt().toLocalDate().toString();
+            if (lastDay == null || day.compareTo(lastDay) > 0) {
+                pendingDays.add(day + "\t" + length);
+                lastDay = day;
+            }
+            writer.write(line);
+            writer.write('\n');
+            length += utf8Length(line) + 1;
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi ghi event log: " + e.getMessage());
+        }
+    }
+
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            if (!pendingDays.isEmpty()) {
+                Files.write(dayIndexFile.toPath(), pendingDays, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                pendingDays.clear();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi ghi event log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi hết buffer rồi đóng file (lần ghi sau mở lại file theo đường dẫn)
+     */
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        flush();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi ghi event log: " + e.getMessage());
+        }
+        writer = null;
+        pendingDays.clear();
+    }
+
+    /**
+     * Offset để đọc các sự kiện từ ngày day trở đi: dòng đầu tiên có thời điểm từ ngày day
+     * (mọi dòng trước nó đều thuộc ngày trước), theo index ngày của event log; không đọc log
+     * @return Offset đầu dòng, 0 nếu không có index ngày hoặc index không khớp log
+     */
+    public static long findDayOffset(File logFile, LocalDate day) {
+        TreeMap<String, Long> days = readDayIndex(new File(logFile.getPath() + DAY_INDEX_SUFFIX));
+        if (days.isEmpty() || days.lastEntry().getValue() > logFile.length()) {
+            return 0;
+        }
+        Map.Entry<String, Long> entry = days.ceilingEntry(day.toString());
+        // Không có ngày nào từ day trở đi trong index: các dòng chưa vào index nằm sau dòng index cuối
+        return entry != null ? entry.getValue() : days.lastEntry().getValue();
+    }
+
+    /**
+     * Index ngày hợp lệ (ngày và offset cùng tăng dần); dừng ở dòng hỏng đầu tiên (ghi dở)
+     */
+    private static TreeMap<String, Long> readDayIndex(File indexFile) {
+        TreeMap<String, Long> days = new TreeMap<>();
+        if (!indexFile.exists()) {
+            return days;
+        }
+        try {
+            String lastDay = "";
+            long lastOffset = -1;
+            for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab != DAY_LENGTH) {
+                    break;
+                }
+                String day = line.substring(0, tab);
+                long offset = Long.parseLong(line.substring(tab + 1));
+                if (day.compareTo(lastDay) <= 0 || offset <= lastOffset) {
+                    break;
+                }
+                days.put(day, offset);
+                lastDay = day;
+                lastOffset = offset;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Phần đọc được trước dòng lỗi vẫn dùng được
+        }
+        return days;
+    }
+
+    /**
+     * Bổ sung index ngày cho phần log ghi sau dòng index cuối (mất điện trước khi kịp ghi index,
+     * hoặc log có từ trước khi có index); index trỏ quá cuối log thì dựng lại từ đầu
+     * @return Ngày lớn nhất trong log, null nếu log rỗng
+     */
+    private String repairDayIndex(long logLength) throws IOException {
+        TreeMap<String, Long> days = readDayIndex(dayIndexFile);
+        if (!days.isEmpty() && days.lastEntry().getValue() > logLength) {
+            days.clear();
+        }
+        long start = days.isEmpty() ? 0 : days.lastEntry().getValue();
+        String maxDay = days.isEmpty() ? null : days.lastKey();
+        boolean changed = false;
+        if (start < logLength) {
+            try (OffsetLineReader reader = new OffsetLineReader(file, start)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0 || line.length() < tab + 1 + DAY_LENGTH) {
+                        continue;
+                    }
+                    String day = line.substring(tab + 1, tab + 1 + DAY_LENGTH);
+                    if (maxDay == null || day.compareTo(maxDay) > 0) {
+                        days.put(day, reader.getLineStart());
+                        maxDay = day;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        if (changed || dayIndexFile.length() != indexLength(days)) {
+            List<String> lines = new ArrayList<>(days.size());
+            for (Map.Entry<String, Long> entry : days.entrySet()) {
+                lines.add(entry.getKey() + "\t" + entry.getValue());
+            }
+            File temp = new File(dayIndexFile.getPath() + ".tmp");
+            Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp.toPath(), dayIndexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), dayIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return maxDay;
+    }
+
+    // Độ dài file index ngày gồm đúng các dòng này (khác thì file có phần hỏng/thừa cần ghi lại)
+    private static long indexLength(TreeMap<String, Long> days) {
+        long total = 0;
+        for (Map.Entry<String, Long> entry : days.entrySet()) {
+            total += entry.getKey().length() + 1 + String.valueOf(entry.getValue()).length() + System.lineSeparator().length();
+        }
+        return total;
+    }
+
+    // Số byte UTF-8 của chuỗi (không tạo mảng byte)
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Tối đa maxLines dòng cuối của event log (đã ghi hết buffer), đọc lùi từ cuối file
+     * theo từng khối thay vì đọc cả file
+     */
+    public synchronized List<String> readTailLines(int maxLines) {
+        flush();
+        List<String> lines = new ArrayList<>();
+        if (!file.exists() || maxLines <= 0) {
+            return lines;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long end = raf.length();
+            long start = end;
+            int newlines = 0;
+            byte[] block = new byte[64 * 1024];
+            // Lùi tới khi có đủ maxLines dòng hoàn chỉnh (maxLines + 1 ký tự xuống dòng)
+            while (start > 0 && newlines <= maxLines) {
+                int size = (int) Math.min(block.length, start);
+                start -= size;
+                raf.seek(start);
+                raf.readFully(block, 0, size);
+                for (int i = 0; i < size; i++) {
+                    if (block[i] == '\n') {
+                        newlines++;
+                    }
+                }
+            }
+            byte[] tail = new byte[(int) (end - start)];
+            raf.seek(start);
+            raf.readFully(tail);
+            String[] parts = new String(tail, StandardCharsets.UTF_8).split("\n");
+            // Dòng đầu có thể bị cắt giữa chừng khi chưa lùi tới đầu file
+            for (int i = parts.length - 1; i >= (start > 0 ? 1 : 0) && lines.size() < maxLines; i--) {
+                if (!parts[i].isEmpty()) {
+                    lines.add(parts[i]);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc event log: " + e.getMessage());
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    /**
+     * Kích thước event log (byte) sau khi ghi hết buffer; dùng làm mốc cho replay(consumer, limit)
+     */
+    public synchronized long size() {
+        flush();
+        return file.exists() ? file.length() : 0;
+    }
+
+    /**
+     * Phát lại toàn bộ sự kiện theo thứ tự đã ghi
+     * @return Số sự kiện đã phát lại
+     */
+    public synchronized int replay(Consumer<DomainEvent> consumer) {
+        flush();
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (replayLine(line, consumer)) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc event log: " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Phát lại các sự kiện nằm trong limit byte đầu file (mốc lấy từ size())
+     * Không giữ khóa khi đọc: sự kiện mới vẫn được ghi tiếp phía sau mốc trong lúc phát lại.
+     * @return Số sự kiện đã phát lại
+     */
+    public int replay(Consumer<DomainEvent> consumer, long limit) {
+        return replay(consumer, 0, limit);
+    }
+
+    /**
+     * Phát lại các sự kiện có dòng bắt đầu trong khoảng [from, limit) byte (from lấy từ checkpoint,
+     * limit từ size())
+     * @return Số sự kiện đã phát lại
+     */
+    public int replay(Consumer<DomainEvent> consumer, long from, long limit) {
+        if (limit <= from || !file.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+        try (OffsetLineReader reader = new OffsetLineReader(file, from)) {
+            String line;
+            while ((line = reader.readLine()) != null && reader.getLineStart() < limit) {
+                if (replayLine(line, consumer)) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc event log: " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Ghi checkpoint: trạng thái projection đã áp dụng đúng các sự kiện trong offset byte đầu log
+     * Cấu trúc: magic, version, offset, CRC32 của tối đa 4 KB log ngay trước offset, độ dài +
+     * trạng thái, CRC32 của toàn bộ phần trước; ghi file tạm rồi đổi tên nguyên tử.
+     */
+    public synchronized void writeCheckpoint(long offset, byte[] state) {
+        flush();
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        try {
+            long fingerprint = fingerprint(offset);
+            try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 32);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(CHECKPOINT_VERSION);
+                out.writeLong(offset);
+                out.writeLong(fingerprint);
+                out.writeInt(state.length);
+                out.write(state);
+                CRC32 crc = new CRC32();
+                crc.update(bytes.toByteArray());
+                out.writeLong(crc.getValue());
+                bytes.writeTo(fileOut);
+                fileOut.getChannel().force(true);
+            }
+            try {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("❌ Lỗi khi ghi checkpoint event log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc checkpoint nếu nó được ghi cho đúng event log này
+     * @return Checkpoint, hoặc null nếu không có, hỏng, offset vượt quá log hoặc phần log trước
+     *         offset đã khác (log bị thay bằng file khác)
+     */
+    public synchronized Checkpoint readCheckpoint() {
+        flush();
+        if (!checkpointFile.exists() || !file.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(checkpointFile.toPath());
+            if (bytes.length < 36) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+                return null;
+            }
+            long offset = in.readLong();
+            long fingerprint = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length != bytes.length - 36) {
+                return null;
+            }
+            byte[] state = new byte[length];
+            in.readFully(state);
+            if (in.readLong() != crc.getValue()) {
+                System.err.println("❌ Checkpoint event log sai checksum, phát lại toàn bộ event log");
+                return null;
+            }
+            if (offset < 0 || offset > file.length() || fingerprint(offset) != fingerprint) {
+                System.out.println("ℹ Checkpoint event log không khớp event log hiện tại, phát lại toàn bộ");
+                return null;
+            }
+            return new Checkpoint(offset, state);
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc checkpoint event log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // CRC32 của tối đa FINGERPRINT_BYTES byte log ngay trước offset
+    private long fingerprint(long offset) throws IOException {
+        CRC32 crc = new CRC32();
+        if (offset > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                int size = (int) Math.min(FINGERPRINT_BYTES, offset);
+                byte[] block = new byte[size];
+                raf.seek(offset - size);
+                raf.readFully(block);
+                crc.update(block);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Trạng thái projection đã lưu và offset event log mà nó phản ánh
+     */
+    public static final class Checkpoint {
+        private final long offset;
+        private final byte[] state;
+
+        Checkpoint(long offset, byte[] state) {
+            this.offset = offset;
+            this.state = state;
+        }
+
+        /**
+         * Phát lại từ offset này (các sự kiện trước đó đã nằm trong trạng thái)
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public DataInputStream openState() {
+            return new DataInputStream(new ByteArrayInputStream(state));
+        }
+    }
+
+    private static boolean replayLine(String line, Consumer<DomainEvent> consumer) {
+        if (line.isEmpty()) {
+            return false;
+        }
+        DomainEvent event = EventCodec.decode(line);
+        if (event == null) {
+            System.err.println("❌ Bỏ qua dòng event log không hợp lệ: " + line);
+            return false;
+        }
+        consumer.accept(event);
+        return true;
+    }
+}
@@ -0,0 +1,623 @@
+package vn.parking.repository;
+
+import vn.parking.model.StayRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Repository lưu lịch sử các lượt gửi xe đã hoàn tất
+ *
+ * Dữ liệu được ghi nối tiếp (append-only) vào parking_history.csv và chia thành
+ * các segment liên tiếp, mỗi segment tối đa SEGMENT_SIZE bản ghi. Mỗi segment có
+ * một bloom filter theo biển số và vị trí byte [start, end) trong file, nên khi
+ * tra cứu chỉ cần đọc các segment mà bloom filter báo "có thể có".
+ *
+ * Thông tin segment đã đóng được lưu vào parking_history.csv.idx (tên file lịch sử + ".idx")
+ * để khởi động không phải quét lại toàn bộ file lịch sử.
+ *
+ * Xóa bản ghi: ghi tombstone (dòng CSV của bản ghi) vào parking_history.csv.del, các hàm đọc
+ * bỏ qua bản ghi đã xóa; khi đủ COMPACT_THRESHOLD tombstone (hoặc sau removeAll) file lịch sử
+ * được ghi lại không còn các bản ghi đó (nén), rồi dựng lại index segment.
+ */
+public class HistoryRepository implements IHistoryRepository {
+
+    static final String DEFAULT_HISTORY_FILENAME = "parking_history.csv";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TOMBSTONE_SUFFIX = ".del";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String HEADER = "licensePlate,entryTime,exitTime,zone,fee";
+    private static final int SEGMENT_SIZE = 1024;  // Số bản ghi tối đa mỗi segment
+    private static final int BLOOM_BITS_PER_ITEM = 10; // ~1% false positive
+    private static final int COMPACT_THRESHOLD = 1024; // Số tombstone trước khi nén file lịch sử
+
+    /**
+     * Một segment của file lịch sử
+     */
+    private static class Segment {
+        long startOffset;          // Byte bắt đầu (bao gồm)
+        long endOffset;            // Byte kết thúc (không bao gồm)
+        int count;                 // Số bản ghi
+        PlateBloomFilter bloom;    // Bloom filter theo biển số
+
+        Segment(long startOffset) {
+            this.startOffset = startOffset;
+            this.endOffset = startOffset;
+            this.count = 0;
+            this.bloom = new PlateBloomFilter(SEGMENT_SIZE, BLOOM_BITS_PER_ITEM);
+        }
+
+        String toIndexLine() {
+            return startOffset + "," + endOffset + "," + count + "," + bloom.encode();
+        }
+    }
+
+    private final File historyFile;
+    private final File indexFile;
+    private final File tombstoneFile;
+    private final Set<String> tombstones = new HashSet<>(); // Khóa (recordKey) các bản ghi đã xóa, chưa nén
+    private final List<Segment> segments;   // Các segment đã đóng (đã ghi vào file index)
+    private Segment tail;                   // Segment đang ghi
+    private long completeLength = -1;       // Hết dòng đầy đủ cuối cùng khi quét file, -1 = không cần cắt
+    private int lastLookupBlocksRead;       // Số segment phải đọc ở lần tra cứu gần nhất
+    private MutationListener mutationListener; // Nhận bản ghi mới (nhật ký replication)
+
+    public HistoryRepository() {
+        this(DEFAULT_HISTORY_FILENAME);
+    }
+
+    /**
+     * Repository lịch sử đặt trong thư mục dữ liệu của một bãi/shard
+     */
+    public static HistoryRepository inDirectory(File dataDir) {
+        return new HistoryRepository(dataDir == null
+                ? DEFAULT_HISTORY_FILENAME
+                : new File(dataDir, DEFAULT_HISTORY_FILENAME).getPath());
+    }
+
+    /**
+     * Repository lịch sử theo -Dparking.history.store (csv | jdbc)
+     * CSDL không mở được (thiếu driver, sai URL) thì báo lỗi và dùng file CSV.
+     */
+    public static IHistoryRepository open(File dataDir) {
+        String store = System.getProperty("parking.history.store", "csv").trim();
+        if (store.equalsIgnoreCase("csv")) {
+            return inDirectory(dataDir);
+        }
+        if (!store.equalsIgnoreCase("jdbc")) {
+            throw new IllegalArgumentException("parking.history.store phải là csv hoặc jdbc: " + store);
+        }
+        try {
+            return JdbcHistoryRepository.fromSystemProperties(dataDir);
+        } catch (IllegalStateException e) {
+            System.err.println("❌ " + e.getMessage() + " -> dùng file lịch sử CSV");
+            return inDirectory(dataDir);
+        }
+    }
+
+    public HistoryRepository(String filename) {
+        this.historyFile = new File(filename);
+        this.indexFile = new File(filename + INDEX_SUFFIX);
+        this.tombstoneFile = new File(filename + TOMBSTONE_SUFFIX);
+        this.segments = new ArrayList<>();
+        this.tail = null;
+    }
+
+    /**
+     * Gắn (hoặc gỡ khi truyền null) listener nhận các lượt gửi vừa ghi
+     */
+    public synchronized void setMutationListener(MutationListener mutationListener) {
+        this.mutationListener = mutationListener;
+    }
+
+    /**
+     * Nạp index segment từ file .idx, sau đó quét phần đuôi file lịch sử chưa
+     * được index (các bản ghi ghi sau lần đóng segment cuối cùng); nạp tombstone từ file .del
+     */
+    @Override
+    public synchronized void load() {
+        segments.clear();
+        tail = null;
+        completeLength = -1;
+        loadTombstones();
+
+        if (!historyFile.exists()) {
+            System.out.println("ℹ File lịch sử không tồn tại: " + historyFile.getName() + " (Sẽ tạo mới khi có xe ra)");
+            return;
+        }
+
+        long fileLength = historyFile.length();
+        long indexedUpTo = loadIndex(fileLength);
+
+        try {
+            if (indexedUpTo == 0) {
+                // Không có index hợp lệ -> xây lại toàn bộ
+                indexedUpTo = headerLength();
+            }
+            scanTail(indexedUpTo);
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc file lịch sử: " + e.getMessage());
+        }
+
+        System.out.println("✓ Đã tải index lịch sử: " + segments.size() + " segment đã đóng"
+                + (tail != null ? " + 1 segment đang ghi (" + tail.count + " bản ghi)" : ""));
+    }
+
+    /**
+     * Đọc file index
+     * @return Byte cuối cùng đã được index, 0 nếu index không dùng được
+     */
+    private long loadIndex(long fileLength) {
+        if (!indexFile.exists()) {
+            return 0;
+        }
+
+        List<Segment> loaded = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            long expectedStart = -1;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+
+                String[] parts = line.split(",", 4);
+                if (parts.length < 4) {
+                    throw new IOException("Dòng index không hợp lệ: " + line);
+                }
+                Segment segment = new Segment(Long.parseLong(parts[0]));
+                segment.endOffset = Long.parseLong(parts[1]);
+                segment.count = Integer.parseInt(parts[2]);
+                segment.bloom = PlateBloomFilter.decode(parts[3]);
+
+                // Segment phải liên tiếp và nằm trong file
+                if ((expectedStart >= 0 && segment.startOffset != expectedStart)
+                        || segment.endOffset > fileLength) {
+                    throw new IOException("Index không khớp với file lịch sử");
+                }
+                expectedStart = segment.endOffset;
+                loaded.add(segment);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Index lịch sử không hợp lệ, sẽ xây lại: " + e.getMessage());
+            indexFile.delete();
+            return 0;
+        }
+
+        segments.addAll(loaded);
+        return loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).endOffset;
+    }
+
+    private void loadTombstones() {
+        tombstones.clear();
+        if (!tombstoneFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(tombstoneFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StayRecord record = StayRecord.fromCSV(line.trim());
+                if (record != null) {
+                    tombstones.add(recordKey(record));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc file bản ghi lịch sử đã xóa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Khóa của một lượt gửi: biển số chuẩn hóa + giờ vào + giờ ra (đến giây, như trong file)
+     */
+    private static String recordKey(StayRecord record) {
+        return ParkingRepository.normalizePlate(record.getPlate()) + ","
+                + record.getEntryTime().withNano(0) + "," + record.getExitTime().withNano(0);
+    }
+
+    private boolean isRemoved(StayRecord record) {
+        return !tombstones.isEmpty() && tombstones.contains(recordKey(record));
+    }
+
+    /**
+     * Độ dài (byte) của dòng header trong file lịch sử
+     */
+    private long headerLength() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(historyFile, "r")) {
+            String header = raf.readLine();
+            return header == null ? 0 : raf.getFilePointer();
+        }
+    }
+
+    /**
+     * Quét file lịch sử từ vị trí offset đến hết để dựng lại các segment
+     */
+    private void scanTail(long offset) throws IOException {
+        completeLength = offset;
+        try (OffsetLineReader reader = new OffsetLineReader(historyFile, offset)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Dòng cuối bị ghi dở (không có '\n') thì bỏ qua; bị cắt trước lần ghi tiếp theo
+                if (!reader.isLineTerminated()) {
+                    break;
+                }
+                indexLine(line, reader.getLineStart(), reader.getPosition());
+                completeLength = reader.getPosition();
+            }
+        }
+    }
+
+    /**
+     * Cắt dòng ghi dở ở cuối file lịch sử (mất điện giữa lần append trước) trước khi ghi tiếp,
+     * để bản ghi mới không nối vào sau dòng dở và offset của index khớp với file
+     */
+    private void truncatePartialLine() throws IOException {
+        if (completeLength < 0) {
+            return;
+        }
+        long length = historyFile.length();
+        if (completeLength < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(historyFile, "rw")) {
+                raf.setLength(completeLength);
+            }
+            System.out.println("⚠ Đã bỏ dòng ghi dở cuối " + historyFile.getName()
+                    + " (" + (length - completeLength) + " byte)");
+        }
+        completeLength = -1;
+    }
+
+    /**
+     * Đưa một dòng nằm tại [startPosition, endPosition) vào segment đang ghi
+     */
+    private void indexLine(String line, long startPosition, long endPosition) {
+        if (tail == null) {
+            tail = new Segment(startPosition);
+        }
+        StayRecord record = StayRecord.fromCSV(line.trim());
+        if (record != null) {
+            tail.bloom.add(ParkingRepository.normalizePlate(record.getPlate()));
+            tail.count++;
+        }
+        tail.endOffset = endPosition;
+
+        if (tail.count >= SEGMENT_SIZE) {
+            closeTail();
+        }
+    }
+
+    /**
+     * Đóng segment đang ghi và ghi thông tin segment vào file index
+     */
+    private void closeTail() {
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(indexFile, true), StandardCharsets.UTF_8))) {
+            writer.println(tail.toIndexLine());
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi ghi file index lịch sử: " + e.getMessage());
+        }
+        segments.add(tail);
+        tail = null;
+    }
+
+    /**
+     * Ghi nhận một lượt gửi xe đã hoàn tất (append vào cuối file lịch sử)
+     */
+    @Override
+    public synchronized void append(StayRecord record) {
+        if (record == null) {
+            return;
+        }
+
+        String line = record.toCSV();
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            truncatePartialLine();
+            boolean writeHeader = !historyFile.exists() || historyFile.length() == 0;
+            try (OutputStream out = new FileOutputStream(historyFile, true)) {
+                if (writeHeader) {
+                    out.write((HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.write(bytes);
+            }
+            long endPosition = historyFile.length();
+            indexLine(line, endPosition - bytes.length, endPosition);
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi ghi file lịch sử: " + e.getMessage());
+        }
+
+        if (mutationListener != null) {
+            mutationListener.onStayRecorded(record);
+        }
+    }
+
+    /**
+     * Tra cứu toàn bộ lịch sử gửi xe của một biển số
+     * Chỉ đọc các segment mà bloom filter báo "có thể có" biển số
+     *
+     * @param plate Biển số (sẽ được chuẩn hóa)
+     * @return Danh sách lượt gửi theo thứ tự thời gian ghi nhận
+     */
+    @Override
+    public synchronized List<StayRecord> findByPlate(String plate) {
+        List<StayRecord> result = new ArrayList<>();
+        lastLookupBlocksRead = 0;
+
+        String normalized = ParkingRepository.normalizePlate(plate);
+        if (normalized.isEmpty() || !historyFile.exists()) {
+            return result;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(historyFile, "r")) {
+            for (Segment segment : segments) {
+                scanSegment(raf, segment, normalized, result);
+            }
+            if (tail != null) {
+                scanSegment(raf, tail, normalized, result);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi tra cứu lịch sử: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    private void scanSegment(RandomAccessFile raf, Segment segment, String normalizedPlate,
+                             List<StayRecord> result) throws IOException {
+        if (segment.count == 0 || !segment.bloom.mightContain(normalizedPlate)) {
+            return;
+        }
+        lastLookupBlocksRead++;
+
+        // Đọc nguyên block của segment trong một lần
+        byte[] block = new byte[(int) (segment.endOffset - segment.startOffset)];
+        raf.seek(segment.startOffset);
+        raf.readFully(block);
+
+        String[] lines = new String(block, StandardCharsets.UTF_8).split("\n");
+        for (String line : lines) {
+            StayRecord record = StayRecord.fromCSV(line.trim());
+            if (record != null && ParkingRepository.normalizePlate(record.getPlate()).equals(normalizedPlate)
+                    && !isRemoved(record)) {
+                result.add(record);
+            }
+        }
+    }
+
+    /**
+     * Duyệt tuần tự toàn bộ bản ghi trong file lịch sử (dùng khi ghi mốc journal)
+     */
+    synchronized void forEachRecord(Consumer<StayRecord> action) {
+        if (!historyFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(historyFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StayRecord record = StayRecord.fromCSV(line.trim());
+                if (record != null && !isRemoved(record)) {
+                    action.accept(record);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc file lịch sử: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Các lượt gửi có giờ vào trong [from, to) (file không có index theo giờ: quét toàn bộ)
+     */
+    @Override
+    public List<StayRecord> findByEntryTime(LocalDateTime from, LocalDateTime to) {
+        List<StayRecord> result = new ArrayList<>();
+        forEachRecord(record -> {
+            if (!record.getEntryTime().isBefore(from) && record.getEntryTime().isBefore(to)) {
+                result.add(record);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - đọc toàn bộ lịch sử
+     */
+    @Override
+    public List<StayRecord> getAll() {
+        List<StayRecord> all = new ArrayList<>();
+        forEachRecord(all::add);
+        return all;
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - đọc lịch sử theo luồng (một dòng mỗi lần lấy)
+     */
+    @Override
+    public Stream<StayRecord> stream() {
+        if (!historyFile.exists()) {
+            return Stream.empty();
+        }
+        Set<String> removed;
+        synchronized (this) {
+            removed = tombstones.isEmpty() ? Collections.emptySet() : new HashSet<>(tombstones);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(historyFile), StandardCharsets.UTF_8));
+            return reader.lines()
+                    .map(line -> StayRecord.fromCSV(line.trim()))
+                    .filter(Objects::nonNull)
+                    .filter(record -> removed.isEmpty() || !removed.contains(recordKey(record)))
+                    .onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException ignored) {
+                            // Chỉ đọc: không có gì cần ghi lại
+                        }
+                    });
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc file lịch sử: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - lượt gửi gần nhất của biển số (null nếu chưa từng gửi)
+     */
+    @Override
+    public StayRecord findById(String plate) {
+        List<StayRecord> stays = findByPlate(plate);
+        return stays.isEmpty() ? null : stays.get(stays.size() - 1);
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - ghi nối tiếp một lượt gửi
+     */
+    @Override
+    public void add(StayRecord item) {
+        append(item);
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - xóa lượt gửi (cùng biển số, giờ vào, giờ ra) bằng tombstone;
+     * đủ COMPACT_THRESHOLD tombstone thì nén file lịch sử
+     */
+    @Override
+    public synchronized void remove(StayRecord item) {
+        if (markRemoved(item) && tombstones.size() >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - xóa nhiều lượt gửi rồi nén file lịch sử một lần
+     */
+    @Override
+    public synchronized void removeAll(Collection<? extends StayRecord> items) {
+        boolean removedAny = false;
+        for (StayRecord item : items) {
+            removedAny |= markRemoved(item);
+        }
+        if (removedAny) {
+            compact();
+        }
+    }
+
+    /**
+     * Ghi tombstone cho lượt gửi nếu nó còn trong lịch sử
+     * @return true nếu đã đánh dấu xóa
+     */
+    private boolean markRemoved(StayRecord item) {
+        if (item == null || isRemoved(item)) {
+            return false;
+        }
+        if (!contains(item)) {
+            return false;
+        }
+        String key = recordKey(item);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tombstoneFile, true), StandardCharsets.UTF_8)) {
+            writer.write(item.toCSV() + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lỗi khi ghi file bản ghi lịch sử đã xóa", e);
+        }
+        tombstones.add(key);
+        if (mutationListener != null) {
+            mutationListener.onStayRemoved(item);
+        }
+        return true;
+    }
+
+    /**
+     * Nén: ghi lại file lịch sử không còn các bản ghi đã xóa (file tạm rồi đổi tên),
+     * xóa tombstone và dựng lại index segment
+     * Index cũ bị xóa trước khi đổi tên, nên dừng giữa chừng thì lần khởi động sau chỉ dựng lại index;
+     * tombstone còn sót chỉ trỏ tới bản ghi không còn trong file.
+     */
+    private void compact() {
+        if (!historyFile.exists()) {
+            return;
+        }
+        File tempFile = new File(historyFile.getPath() + TEMP_SUFFIX);
+        int kept = 0;
+        try {
+            truncatePartialLine();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(historyFile), StandardCharsets.UTF_8));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(
+                         new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+                writer.write(HEADER + "\n");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    StayRecord record = StayRecord.fromCSV(line.trim());
+                    if (record != null && !isRemoved(record)) {
+                        writer.write(line + "\n");
+                        kept++;
+                    }
+                }
+            }
+            indexFile.delete();
+            try {
+                Files.move(tempFile.toPath(), historyFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), historyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tombstoneFile.delete();
+            int removed = tombstones.size();
+            tombstones.clear();
+
+            segments.clear();
+            tail = null;
+            scanTail(headerLength());
+            System.out.println("✓ Đã nén lịch sử: bỏ " + removed + " bản ghi đã xóa, còn " + kept + " bản ghi");
+        } catch (IOException e) {
+            tempFile.delete();
+            throw new UncheckedIOException("Lỗi khi nén file lịch sử", e);
+        }
+    }
+
+    /**
+     * Lịch sử đã có lượt gửi này chưa (cùng biển số, giờ vào, giờ ra; bỏ qua bản ghi đã xóa)
+     */
+    public synchronized boolean contains(StayRecord item) {
+        String key = recordKey(item);
+        for (StayRecord record : findByPlate(item.getPlate())) {
+            if (recordKey(record).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Kiểm tra biển số đã từng gửi xe trong bãi hay chưa
+     */
+    public boolean hasParkedBefore(String plate) {
+        return !findByPlate(plate).isEmpty();
+    }
+
+    /**
+     * Số segment phải đọc từ đĩa ở lần tra cứu gần nhất (phục vụ theo dõi hiệu năng)
+     */
+    @Override
+    public synchronized int getLastLookupBlocksRead() {
+        return lastLookupBlocksRead;
+    }
+
+    /**
+     * Tổng số segment (đã đóng + đang ghi)
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size() + (tail != null ? 1 : 0);
+    }
+}
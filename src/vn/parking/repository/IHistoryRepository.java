@@ -0,0 +1,41 @@
+package vn.parking.repository;
+
+import vn.parking.model.StayRecord;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository lịch sử các lượt gửi xe đã hoàn tất
+ *
+ * Hai triển khai, chọn bằng -Dparking.history.store:
+ * - csv (mặc định): HistoryRepository, file ghi nối tiếp + bloom filter theo segment
+ * - jdbc: JdbcHistoryRepository, CSDL nhúng có index theo biển số và giờ vào
+ */
+public interface IHistoryRepository extends IRepository<StayRecord> {
+
+    /**
+     * Chuẩn bị dữ liệu khi khởi động
+     */
+    void load();
+
+    /**
+     * Ghi nhận một lượt gửi xe đã hoàn tất
+     */
+    void append(StayRecord record);
+
+    /**
+     * Toàn bộ lượt gửi của một biển số (biển số sẽ được chuẩn hóa)
+     */
+    List<StayRecord> findByPlate(String plate);
+
+    /**
+     * Các lượt gửi có giờ vào trong [from, to)
+     */
+    List<StayRecord> findByEntryTime(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Số block phải đọc từ đĩa ở lần tra cứu gần nhất (0 nếu triển khai không theo block)
+     */
+    int getLastLookupBlocksRead();
+}
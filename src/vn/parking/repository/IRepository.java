@@ -1,15 +1,79 @@
 package vn.parking.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Interface generic cho các repository
+ *
+ * Các thao tác mặc định (batch, duyệt, phân trang) dựa trên add/remove/stream;
+ * repository ghi đè khi làm được hiệu quả hơn (một lần đổi snapshot, đọc file theo luồng...).
  */
 public interface IRepository<T> {
 
+    /**
+     * Toàn bộ phần tử trong một danh sách mới (sao chép; duyệt lớn nên dùng forEach/stream)
+     */
     List<T> getAll();
 
     void add(T item);
 
     void remove(T item);
+
+    /**
+     * Tìm theo khóa của repository (biển số), null nếu không có
+     */
+    T findById(String id);
+
+    /**
+     * Thêm nhiều phần tử
+     */
+    default void addAll(Collection<? extends T> items) {
+        for (T item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Xóa nhiều phần tử
+     */
+    default void removeAll(Collection<? extends T> items) {
+        for (T item : items) {
+            remove(item);
+        }
+    }
+
+    /**
+     * Duyệt tuần tự các phần tử; stream có thể giữ file đang mở nên phải đóng sau khi dùng
+     * (try-with-resources)
+     */
+    default Stream<T> stream() {
+        return getAll().stream();
+    }
+
+    /**
+     * Duyệt toàn bộ phần tử mà không tạo danh sách
+     */
+    default void forEach(Consumer<? super T> action) {
+        try (Stream<T> items = stream()) {
+            items.forEach(action);
+        }
+    }
+
+    /**
+     * Một trang phần tử theo thứ tự của stream()
+     * @param page     Số trang, bắt đầu từ 0
+     * @param pageSize Số phần tử mỗi trang
+     */
+    default List<T> findPage(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Trang không hợp lệ: " + page + "/" + pageSize);
+        }
+        try (Stream<T> items = stream()) {
+            return items.skip((long) page * pageSize).limit(pageSize).collect(Collectors.toList());
+        }
+    }
 }
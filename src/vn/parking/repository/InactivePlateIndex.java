@@ -0,0 +1,304 @@
+package vn.parking.repository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Index biển số -> vị trí dòng (byte offset) của các xe đã rời bãi trong file dữ liệu
+ *
+ * Các bản ghi nằm liền trong một mảng byte, sắp theo biển số và tra cứu nhị phân: mỗi xe
+ * tốn độ rộng biển số + 8 byte thay vì một entry HashMap kèm String và Long. Mảng không đổi
+ * sau khi dựng; xe vào lại bãi được ghi vào tập đã xóa cho tới lần ghi file dữ liệu sau.
+ *
+ * saveToFile ghi index ra file .idx đi kèm file dữ liệu, cùng footer của file dữ liệu đó.
+ * Lần khởi động sau nạp thẳng file .idx (nếu footer còn khớp) thay vì đọc lại phần xe đã rời bãi.
+ */
+final class InactivePlateIndex {
+
+    static final String SUFFIX = ".idx";
+    private static final int MAGIC = 0x50494458;   // "PIDX"
+    private static final int VERSION = 1;
+    private static final int OFFSET_BYTES = 8;
+
+    private final byte[] records;     // Mỗi bản ghi: biển số UTF-8 đệm 0 tới plateWidth + offset 8 byte
+    private final int plateWidth;
+    private final int count;
+    private final long firstOffset;   // Offset nhỏ nhất (dòng inactive đầu tiên của file)
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+
+    private InactivePlateIndex(byte[] records, int plateWidth, int count, long firstOffset) {
+        this.records = records;
+        this.plateWidth = plateWidth;
+        this.count = count;
+        this.firstOffset = firstOffset;
+    }
+
+    static InactivePlateIndex empty() {
+        return new InactivePlateIndex(new byte[0], 0, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * File index đi kèm một file dữ liệu
+     */
+    static File fileFor(File dataFile) {
+        return new File(dataFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Offset dòng của biển số, -1 nếu không có (hoặc xe đã vào lại bãi)
+     */
+    long get(String plate) {
+        int index = find(plate);
+        if (index < 0 || removed.contains(plate)) {
+            return -1;
+        }
+        return readOffset(index);
+    }
+
+    boolean contains(String plate) {
+        return get(plate) >= 0;
+    }
+
+    /**
+     * Bỏ biển số khỏi index (xe vào lại bãi / được nạp lên bộ nhớ)
+     */
+    void remove(String plate) {
+        if (find(plate) >= 0) {
+            removed.add(plate);
+        }
+    }
+
+    int size() {
+        return count - removed.size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    long firstOffset() {
+        return firstOffset;
+    }
+
+    /**
+     * Biển số đầu tiên (theo thứ tự index) thỏa điều kiện, null nếu không có
+     */
+    String findPlate(Predicate<String> match) {
+        for (int i = 0; i < count; i++) {
+            String plate = readPlate(i);
+            if (match.test(plate) && !removed.contains(plate)) {
+                return plate;
+            }
+        }
+        return null;
+    }
+
+    private int find(String plate) {
+        if (plate == null) {
+            return -1;
+        }
+        byte[] key = plate.getBytes(StandardCharsets.UTF_8);
+        if (key.length > plateWidth) {
+            return -1;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareAt(int index, byte[] key) {
+        int base = index * (plateWidth + OFFSET_BYTES);
+        for (int i = 0; i < plateWidth; i++) {
+            int a = records[base + i] & 0xff;
+            int b = i < key.length ? key[i] & 0xff : 0;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    private String readPlate(int index) {
+        int base = index * (plateWidth + OFFSET_BYTES);
+        int length = 0;
+        while (length < plateWidth && records[base + length] != 0) {
+            length++;
+        }
+        return new String(records, base, length, StandardCharsets.UTF_8);
+    }
+
+    private long readOffset(int index) {
+        int base = index * (plateWidth + OFFSET_BYTES) + plateWidth;
+        long value = 0;
+        for (int i = 0; i < OFFSET_BYTES; i++) {
+            value = (value << 8) | (records[base + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Ghi index ra file (file tạm + đổi tên nguyên tử), kèm footer của file dữ liệu tương ứng
+     * Cấu trúc: magic, version, độ dài + dòng footer file dữ liệu, độ rộng biển số, số bản ghi,
+     * offset đầu tiên, các bản ghi, CRC32 của toàn bộ phần trước
+     */
+    void write(File file, SnapshotFile.Footer dataFooter) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataFooter.fileLength);
+            out.writeUTF(dataFooter.line);
+            out.writeInt(plateWidth);
+            out.writeInt(size());
+            out.writeLong(firstOffset);
+            int recordSize = plateWidth + OFFSET_BYTES;
+            for (int i = 0; i < count; i++) {
+                if (removed.isEmpty() || !removed.contains(readPlate(i))) {
+                    out.write(records, i * recordSize, recordSize);
+                }
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getChannel().force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Đọc file index nếu nó được ghi cho đúng file dữ liệu có footer này
+     * @return Index, hoặc null nếu không có file, footer không khớp hoặc file hỏng
+     */
+    static InactivePlateIndex read(File file, SnapshotFile.Footer dataFooter) {
+        if (dataFooter == null || !file.exists()) {
+            return null;
+        }
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != dataFooter.fileLength || !in.readUTF().equals(dataFooter.line)) {
+                return null;
+            }
+            int plateWidth = in.readInt();
+            int count = in.readInt();
+            long firstOffset = in.readLong();
+            long size = (long) count * (plateWidth + OFFSET_BYTES);
+            if (plateWidth < 0 || count < 0 || size > file.length()) {
+                return null;
+            }
+            byte[] records = new byte[(int) size];
+            in.readFully(records);
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                System.err.println("❌ File index " + file.getName() + " sai checksum, đọc lại từ file dữ liệu");
+                return null;
+            }
+            return new InactivePlateIndex(records, plateWidth, count, firstOffset);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Lỗi khi đọc file index " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gom các cặp biển số -> offset theo thứ tự đọc file rồi sắp thành index
+     */
+    static final class Builder {
+        private final List<String> plates = new ArrayList<>();
+        private long[] offsets = new long[1024];
+
+        void put(String plate, long offset) {
+            if (plates.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[plates.size()] = offset;
+            plates.add(plate);
+        }
+
+        /**
+         * Dựng index từ các biển số thỏa keep; biển số xuất hiện nhiều lần lấy dòng sau cùng
+         */
+        InactivePlateIndex build(Predicate<String> keep) {
+            int n = plates.size();
+            byte[][] keys = new byte[n][];
+            int width = 0;
+            for (int i = 0; i < n; i++) {
+                keys[i] = plates.get(i).getBytes(StandardCharsets.UTF_8);
+                width = Math.max(width, keys[i].length);
+            }
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int cmp = compareKeys(keys[a], keys[b]);
+                return cmp != 0 ? cmp : Long.compare(offsets[a], offsets[b]);
+            });
+
+            int recordSize = width + OFFSET_BYTES;
+            byte[] records = new byte[n * recordSize];
+            int count = 0;
+            long first = Long.MAX_VALUE;
+            for (int k = 0; k < n; k++) {
+                int i = order[k];
+                boolean lastOfPlate = k + 1 == n || compareKeys(keys[i], keys[order[k + 1]]) != 0;
+                if (!lastOfPlate || !keep.test(plates.get(i))) {
+                    continue;
+                }
+                int base = count * recordSize;
+                System.arraycopy(keys[i], 0, records, base, keys[i].length);
+                long offset = offsets[i];
+                for (int b = OFFSET_BYTES - 1; b >= 0; b--) {
+                    records[base + width + b] = (byte) offset;
+                    offset >>>= 8;
+                }
+                first = Math.min(first, offsets[i]);
+                count++;
+            }
+            return new InactivePlateIndex(Arrays.copyOf(records, count * recordSize), width, count, first);
+        }
+
+        private static int compareKeys(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package vn.parking.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool kết nối JDBC kích thước cố định
+ *
+ * Kết nối được mở dần khi cần (tối đa maxSize), trả về pool sau mỗi thao tác và
+ * kiểm tra lại (isValid) trước khi cho mượn; hết kết nối rảnh thì luồng gọi chờ.
+ */
+class JdbcConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * Một thao tác trên kết nối mượn từ pool
+     */
+    interface Work<R> {
+        R run(Connection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private int opened;
+    private boolean closed;
+
+    JdbcConnectionPool(String url, String user, String password, int maxSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Mượn kết nối, chạy thao tác rồi trả kết nối về pool
+     * Kết nối lỗi giữa chừng bị đóng thay vì trả lại.
+     */
+    <R> R execute(Work<R> work) throws SQLException {
+        Connection connection = borrow();
+        boolean healthy = false;
+        try {
+            R result = work.run(connection);
+            healthy = true;
+            return result;
+        } finally {
+            release(connection, healthy);
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Pool kết nối đã đóng");
+                }
+                Connection connection = idle.pollFirst();
+                if (connection != null) {
+                    if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                        return connection;
+                    }
+                    closeQuietly(connection);
+                    opened--;
+                    continue;
+                }
+                if (opened < maxSize) {
+                    opened++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Bị ngắt khi chờ kết nối", e);
+                }
+            }
+        }
+        // Mở kết nối mới ngoài khóa (đã giữ chỗ bằng opened++)
+        try {
+            return user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                opened--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void release(Connection connection, boolean healthy) {
+        if (healthy && !closed) {
+            idle.addFirst(connection);
+        } else {
+            closeQuietly(connection);
+            opened--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Đóng mọi kết nối rảnh; kết nối đang mượn bị đóng khi trả về
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Connection connection : idle) {
+            closeQuietly(connection);
+            opened--;
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Kết nối hỏng: không còn gì để giải phóng
+        }
+    }
+}
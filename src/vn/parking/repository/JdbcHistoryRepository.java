@@ -0,0 +1,358 @@
+package vn.parking.repository;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Zone;
+
+import java.io.File;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repository lịch sử gửi xe trên CSDL nhúng qua JDBC (H2 / Derby / SQLite chạy trong tiến trình)
+ *
+ * - Bảng stay_history có index (biển số chuẩn hóa, giờ vào) và (giờ vào): tra cứu theo
+ *   biển số hoặc khoảng thời gian chỉ đọc các dòng khớp, không nạp lịch sử vào bộ nhớ
+ * - Mọi câu lệnh dùng PreparedStatement; ghi nhiều bản ghi dùng batch trong một transaction
+ * - Kết nối lấy từ JdbcConnectionPool
+ * - Lần đầu chạy (bảng rỗng) tự chuyển parking_history.csv cũ sang CSDL
+ *
+ * Driver JDBC phải có trên classpath (vd: lib/h2-*.jar, tải bằng ant fetch-libs); URL chọn bằng -Dparking.jdbc.url.
+ */
+public class JdbcHistoryRepository implements IHistoryRepository, AutoCloseable {
+
+    private static final String DEFAULT_DB_NAME = "parking_history";
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String TABLE = "stay_history";
+    private static final String COLUMNS = "plate, entry_time, exit_time, zone, fee";
+    private static final String CREATE_TABLE = "CREATE TABLE " + TABLE + " ("
+            + "plate VARCHAR(32) NOT NULL, "
+            + "normalized_plate VARCHAR(32) NOT NULL, "
+            + "entry_time TIMESTAMP NOT NULL, "
+            + "exit_time TIMESTAMP NOT NULL, "
+            + "zone VARCHAR(8) NOT NULL, "
+            + "fee BIGINT NOT NULL)";
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX idx_stay_plate_entry ON " + TABLE + " (normalized_plate, entry_time)",
+            "CREATE INDEX idx_stay_entry ON " + TABLE + " (entry_time)"
+    };
+    private static final String INSERT = "INSERT INTO " + TABLE
+            + " (plate, normalized_plate, entry_time, exit_time, zone, fee) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_PLATE = "SELECT " + COLUMNS + " FROM " + TABLE
+            + " WHERE normalized_plate = ? ORDER BY entry_time";
+    private static final String SELECT_BY_ENTRY = "SELECT " + COLUMNS + " FROM " + TABLE
+            + " WHERE entry_time >= ? AND entry_time < ? ORDER BY entry_time";
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM " + TABLE + " ORDER BY entry_time";
+    // Thứ tự trang phải ổn định khi nhiều lượt gửi trùng giờ vào
+    private static final String SELECT_PAGE_ORDERED = SELECT_ALL + ", normalized_plate, exit_time";
+    private static final String PAGE_OFFSET_FETCH = SELECT_PAGE_ORDERED + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    private static final String PAGE_LIMIT_OFFSET = SELECT_PAGE_ORDERED + " LIMIT ? OFFSET ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM " + TABLE;
+    private static final String DELETE = "DELETE FROM " + TABLE
+            + " WHERE normalized_plate = ? AND entry_time = ? AND exit_time = ?";
+
+    private final String url;
+    private final JdbcConnectionPool pool;
+    private final File legacyCsv;    // File lịch sử CSV chuyển sang khi bảng còn rỗng (có thể null)
+    private final boolean limitOffset; // CSDL chỉ hiểu LIMIT/OFFSET (SQLite, MySQL), không có OFFSET ... FETCH
+
+    /**
+     * @param legacyCsv File parking_history.csv cũ (null nếu không chuyển dữ liệu)
+     * @throws IllegalStateException nếu không mở được CSDL hoặc tạo bảng
+     */
+    public JdbcHistoryRepository(String url, String user, String password, int poolSize, File legacyCsv) {
+        this.url = url;
+        this.pool = new JdbcConnectionPool(url, user, password, poolSize);
+        this.legacyCsv = legacyCsv;
+        try {
+            this.limitOffset = pool.execute(connection -> {
+                ensureSchema(connection);
+                return usesLimitOffset(connection.getMetaData().getDatabaseProductName());
+            });
+        } catch (SQLException e) {
+            pool.close();
+            throw new IllegalStateException("Không mở được CSDL lịch sử " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Repository theo system property:
+     * -Dparking.jdbc.url (mặc định CSDL H2 parking_history trong thư mục dữ liệu),
+     * -Dparking.jdbc.user, -Dparking.jdbc.password, -Dparking.jdbc.pool.size
+     */
+    static JdbcHistoryRepository fromSystemProperties(File dataDir) {
+        File dir = dataDir != null ? dataDir : new File(".");
+        String url = System.getProperty("parking.jdbc.url",
+                "jdbc:h2:" + new File(dir, DEFAULT_DB_NAME).getAbsoluteFile().toPath().normalize());
+        JdbcHistoryRepository repository = new JdbcHistoryRepository(url,
+                System.getProperty("parking.jdbc.user"),
+                System.getProperty("parking.jdbc.password", ""),
+                Integer.getInteger("parking.jdbc.pool.size", DEFAULT_POOL_SIZE),
+                new File(dir, HistoryRepository.DEFAULT_HISTORY_FILENAME));
+        Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "history-db-close"));
+        return repository;
+    }
+
+    /**
+     * Tạo bảng và index nếu chưa có (không dùng IF NOT EXISTS để chạy được trên cả Derby)
+     */
+    private static void ensureSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet upper = metaData.getTables(null, null, TABLE.toUpperCase(), null);
+             ResultSet lower = metaData.getTables(null, null, TABLE, null)) {
+            if (upper.next() || lower.next()) {
+                return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            for (String index : CREATE_INDEXES) {
+                statement.execute(index);
+            }
+        }
+    }
+
+    /**
+     * OFFSET ... FETCH là cú pháp chuẩn SQL (H2, Derby, PostgreSQL, Oracle 12+, SQL Server 2012+);
+     * SQLite và MySQL/MariaDB cũ chỉ có LIMIT ... OFFSET
+     */
+    static boolean usesLimitOffset(String productName) {
+        String name = productName == null ? "" : productName.toLowerCase();
+        return name.contains("sqlite") || name.contains("mysql") || name.contains("mariadb");
+    }
+
+    /**
+     * Đếm số bản ghi; bảng rỗng thì chuyển dữ liệu từ file lịch sử CSV cũ
+     */
+    @Override
+    public void load() {
+        try {
+            long count = pool.execute(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(COUNT)) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            });
+            if (count == 0 && legacyCsv != null && legacyCsv.exists()) {
+                try (Stream<StayRecord> legacy = new HistoryRepository(legacyCsv.getPath()).stream()) {
+                    count = insertBatch(legacy.iterator());
+                }
+                System.out.println("✓ Đã chuyển " + count + " lượt gửi từ " + legacyCsv.getName() + " sang CSDL");
+            }
+            System.out.println("✓ Lịch sử gửi xe: CSDL " + url + " (" + count + " lượt gửi)");
+        } catch (SQLException e) {
+            System.err.println("❌ Lỗi khi đọc CSDL lịch sử: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void append(StayRecord record) {
+        if (record == null) {
+            return;
+        }
+        try {
+            pool.execute(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                    bind(insert, record);
+                    return insert.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Lỗi khi ghi lịch sử vào CSDL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - ghi nhiều lượt gửi theo batch
+     */
+    @Override
+    public void addAll(Collection<? extends StayRecord> items) {
+        try {
+            insertBatch(items.iterator());
+        } catch (SQLException e) {
+            System.err.println("❌ Lỗi khi ghi lịch sử vào CSDL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi các lượt gửi theo batch (BATCH_SIZE dòng mỗi lần gửi), tất cả trong một transaction
+     * @return Số bản ghi đã ghi
+     */
+    private int insertBatch(Iterator<? extends StayRecord> records) throws SQLException {
+        return pool.execute(connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                int written = 0;
+                int pending = 0;
+                while (records.hasNext()) {
+                    bind(insert, records.next());
+                    insert.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        insert.executeBatch();
+                        written += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    insert.executeBatch();
+                    written += pending;
+                }
+                connection.commit();
+                return written;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private static void bind(PreparedStatement statement, StayRecord record) throws SQLException {
+        statement.setString(1, record.getPlate());
+        statement.setString(2, ParkingRepository.normalizePlate(record.getPlate()));
+        statement.setTimestamp(3, Timestamp.valueOf(record.getEntryTime()));
+        statement.setTimestamp(4, Timestamp.valueOf(record.getExitTime()));
+        statement.setString(5, record.getZone().name());
+        statement.setLong(6, record.getFee());
+    }
+
+    @Override
+    public List<StayRecord> findByPlate(String plate) {
+        String normalized = ParkingRepository.normalizePlate(plate);
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return query(SELECT_BY_PLATE, statement -> statement.setString(1, normalized));
+    }
+
+    @Override
+    public List<StayRecord> findByEntryTime(LocalDateTime from, LocalDateTime to) {
+        return query(SELECT_BY_ENTRY, statement -> {
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+        });
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - đọc toàn bộ lịch sử (chỉ dùng cho báo cáo/xuất dữ liệu)
+     */
+    @Override
+    public List<StayRecord> getAll() {
+        return query(SELECT_ALL, statement -> { });
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - lượt gửi gần nhất của biển số (null nếu chưa từng gửi)
+     */
+    @Override
+    public StayRecord findById(String plate) {
+        List<StayRecord> stays = findByPlate(plate);
+        return stays.isEmpty() ? null : stays.get(stays.size() - 1);
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - một trang lịch sử theo giờ vào
+     * (CSDL bỏ qua các dòng trước trang theo index giờ vào, chỉ trả về pageSize dòng)
+     */
+    @Override
+    public List<StayRecord> findPage(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Trang không hợp lệ: " + page + "/" + pageSize);
+        }
+        long skip = (long) page * pageSize;
+        if (limitOffset) {
+            return query(PAGE_LIMIT_OFFSET, statement -> {
+                statement.setInt(1, pageSize);
+                statement.setLong(2, skip);
+            });
+        }
+        return query(PAGE_OFFSET_FETCH, statement -> {
+            statement.setLong(1, skip);
+            statement.setInt(2, pageSize);
+        });
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - ghi một lượt gửi
+     */
+    @Override
+    public void add(StayRecord item) {
+        append(item);
+    }
+
+    /**
+     * Triển khai IRepository<StayRecord> - xóa lượt gửi trùng biển số, giờ vào và giờ ra
+     */
+    @Override
+    public void remove(StayRecord item) {
+        if (item == null) {
+            return;
+        }
+        try {
+            pool.execute(connection -> {
+                try (PreparedStatement delete = connection.prepareStatement(DELETE)) {
+                    delete.setString(1, ParkingRepository.normalizePlate(item.getPlate()));
+                    delete.setTimestamp(2, Timestamp.valueOf(item.getEntryTime()));
+                    delete.setTimestamp(3, Timestamp.valueOf(item.getExitTime()));
+                    return delete.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Lỗi khi xóa lịch sử trong CSDL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tra cứu đi qua index của CSDL, không đọc theo block
+     */
+    @Override
+    public int getLastLookupBlocksRead() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Gán tham số cho một câu truy vấn
+     */
+    private interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private List<StayRecord> query(String sql, Binder binder) {
+        try {
+            return pool.execute(connection -> {
+                List<StayRecord> result = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    binder.bind(statement);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            result.add(new StayRecord(
+                                    rs.getString(1),
+                                    rs.getTimestamp(2).toLocalDateTime(),
+                                    rs.getTimestamp(3).toLocalDateTime(),
+                                    Zone.parse(rs.getString(4)),
+                                    rs.getLong(5)));
+                        }
+                    }
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Lỗi khi tra cứu CSDL lịch sử: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package vn.parking.repository;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Cache có giới hạn kích thước đặt trước các nguồn dữ liệu chậm (file, ổ đĩa)
+ *
+ * Hỗ trợ hai chính sách:
+ * - LRU: một LinkedHashMap theo thứ tự truy cập
+ * - TINY_LFU: W-TinyLFU - cửa sổ LRU ~1% nhận mọi phần tử mới; khi cửa sổ đầy,
+ *   phần tử bị đẩy ra chỉ được nhận vào vùng chính nếu tần suất truy cập
+ *   (ước lượng bằng count-min sketch) cao hơn phần tử sắp bị loại của vùng chính
+ *
+ * Kết quả null của loader cũng được cache (tránh đọc lại file cho biển số không tồn tại).
+ *
+ * Loader (đọc file) chạy ngoài khóa của cache: put/invalidate từ luồng ghi không phải chờ
+ * một lần đọc chậm. Các lượt tra cùng khóa trong lúc đang đọc chờ chung một future của
+ * khóa đó; put/invalidate trong lúc đọc bỏ future khỏi bảng nên kết quả cũ không được cache.
+ */
+public class LookupCache<K, V> {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final String name;
+    private final int maximumSize;
+    private final CachePolicy policy;
+    private final LinkedHashMap<K, Object> window; // LRU: toàn bộ cache; TINY_LFU: cửa sổ
+    private final LinkedHashMap<K, Object> main;   // Chỉ dùng với TINY_LFU
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+    private final Map<K, CompletableFuture<V>> loading = new HashMap<>(); // Khóa đang được loader đọc
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public LookupCache(String name, int maximumSize, CachePolicy policy) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Kích thước cache phải > 0");
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.policy = policy;
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.main = new LinkedHashMap<>(16, 0.75f, true);
+
+        if (policy == CachePolicy.TINY_LFU && maximumSize > 1) {
+            this.windowCapacity = Math.max(1, maximumSize / 100);
+            this.mainCapacity = maximumSize - windowCapacity;
+            this.sketch = new FrequencySketch(maximumSize);
+        } else {
+            this.windowCapacity = maximumSize;
+            this.mainCapacity = 0;
+            this.sketch = null;
+        }
+    }
+
+    /**
+     * Lấy giá trị từ cache, nếu chưa có thì gọi loader (ngoài khóa) và lưu kết quả
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> pending;
+        boolean owner = false;
+        synchronized (this) {
+            if (sketch != null) {
+                sketch.increment(key);
+            }
+
+            Object value = window.get(key);
+            if (value == null && sketch != null) {
+                value = main.get(key);
+            }
+
+            if (value != null) {
+                hitCount++;
+                return unwrap(value);
+            }
+
+            missCount++;
+            pending = loading.get(key);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                loading.put(key, pending);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            return join(pending);
+        }
+
+        V loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loading.remove(key, pending);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // put/invalidate trong lúc đọc đã gỡ future: dữ liệu gốc đã đổi, không cache bản vừa đọc
+            if (loading.remove(key, pending)) {
+                insert(key, loaded == null ? NULL_VALUE : loaded);
+            }
+        }
+        pending.complete(loaded);
+        return loaded;
+    }
+
+    // Chờ lượt đọc của luồng khác (ngoài khóa), ném lại lỗi của loader nếu có
+    private static <V> V join(CompletableFuture<V> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ghi đè giá trị trong cache (ví dụ sau khi vừa ghi xuống nguồn dữ liệu)
+     */
+    public synchronized void put(K key, V value) {
+        loading.remove(key);
+        if (window.containsKey(key)) {
+            window.put(key, value == null ? NULL_VALUE : value);
+        } else if (main.containsKey(key)) {
+            main.put(key, value == null ? NULL_VALUE : value);
+        } else {
+            insert(key, value == null ? NULL_VALUE : value);
+        }
+    }
+
+    /**
+     * Xóa một khóa khỏi cache (dữ liệu gốc đã thay đổi)
+     */
+    public synchronized void invalidate(K key) {
+        loading.remove(key);
+        if (window.remove(key) == null) {
+            main.remove(key);
+        }
+    }
+
+    /**
+     * Xóa toàn bộ cache
+     */
+    public synchronized void invalidateAll() {
+        loading.clear();
+        window.clear();
+        main.clear();
+    }
+
+    private void insert(K key, Object value) {
+        window.put(key, value);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+
+        // Cửa sổ đầy: lấy phần tử lâu nhất ra
+        Iterator<Map.Entry<K, Object>> it = window.entrySet().iterator();
+        Map.Entry<K, Object> candidate = it.next();
+        it.remove();
+
+        if (sketch == null) {
+            evictionCount++;
+            return;
+        }
+
+        if (main.size() < mainCapacity) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+
+        // Vùng chính đầy: so tần suất ứng viên với nạn nhân (phần tử LRU của vùng chính)
+        Iterator<Map.Entry<K, Object>> mainIt = main.entrySet().iterator();
+        Map.Entry<K, Object> victim = mainIt.next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            mainIt.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+        evictionCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unwrap(Object value) {
+        return value == NULL_VALUE ? null : (V) value;
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Tóm tắt số liệu cache để hiển thị
+     */
+    public synchronized String getStatsSummary() {
+        return String.format("%s [%s, %d/%d] hit: %d, miss: %d, evict: %d, hit rate: %.1f%%",
+                name, policy, size(), maximumSize, hitCount, missCount, evictionCount, getHitRate() * 100);
+    }
+
+    /**
+     * Count-min sketch 4 hàng, bộ đếm tối đa 15, tự chia đôi sau mỗi chu kỳ mẫu
+     * để tần suất cũ giảm dần theo thời gian
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) * 2 - 1) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, maximumSize);
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][indexOf(hash, i)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45D9F3B;
+            return h ^ (h >>> 16);
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
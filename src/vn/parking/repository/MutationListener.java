@@ -0,0 +1,24 @@
+package vn.parking.repository;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+
+/**
+ * Nhận thông báo các thay đổi dữ liệu đã được áp dụng vào repository
+ * (dùng để ghi nhật ký thay đổi phục vụ replication)
+ *
+ * Các hàm được gọi ngay sau khi thay đổi được áp dụng, theo đúng thứ tự áp dụng.
+ */
+public interface MutationListener {
+
+    void onCheckIn(Ticket ticket, Vehicle vehicle);
+
+    void onTicketRemoved(String plate);
+
+    void onMonthlyPaymentSaved(String plate, String monthYear);
+
+    void onStayRecorded(StayRecord record);
+
+    void onStayRemoved(StayRecord record);
+}
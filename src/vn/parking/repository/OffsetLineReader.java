@@ -0,0 +1,142 @@
+package vn.parking.repository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Đọc file text theo dòng và ghi nhớ vị trí byte bắt đầu của từng dòng
+ * (dùng cho các file dữ liệu cần index theo offset)
+ */
+class OffsetLineReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 256;      // Số byte mỗi lần đọc của readLineAt
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos;          // Byte tiếp theo chưa xử lý trong buffer
+    private int bufferLimit;        // Số byte hợp lệ trong buffer
+    private byte[] lineBytes = new byte[128]; // Dòng nằm vắt qua hai lần đọc
+    private long position;          // Vị trí byte hiện tại trong file
+    private long lineStart;         // Vị trí byte bắt đầu của dòng vừa đọc
+    private boolean lineTerminated; // Dòng vừa đọc có kết thúc bằng '\n' hay không
+
+    OffsetLineReader(File file, long startOffset) throws IOException {
+        this.in = new FileInputStream(file);
+        this.position = 0;
+
+        long remaining = startOffset;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                in.close();
+                throw new EOFException("File ngắn hơn vị trí cần đọc: " + file.getName());
+            }
+            remaining -= skipped;
+            position += skipped;
+        }
+    }
+
+    /**
+     * Đọc dòng tiếp theo (đã bỏ ký tự xuống dòng)
+     * @return Nội dung dòng hoặc null nếu hết file
+     */
+    String readLine() throws IOException {
+        lineStart = position;
+        int length = 0;
+        while (true) {
+            if (bufferPos == bufferLimit && !fill()) {
+                if (length == 0) {
+                    return null;
+                }
+                lineTerminated = false;
+                return decode(lineBytes, 0, length);
+            }
+            int start = bufferPos;
+            int end = start;
+            while (end < bufferLimit && buffer[end] != '\n') {
+                end++;
+            }
+            position += end - start;
+            if (end < bufferLimit) {
+                // Gặp '\n': dòng nằm gọn trong buffer thì giải mã thẳng, không sao chép
+                bufferPos = end + 1;
+                position++;
+                lineTerminated = true;
+                if (length == 0) {
+                    return decode(buffer, start, end - start);
+                }
+                append(start, end - start, length);
+                return decode(lineBytes, 0, length + end - start);
+            }
+            append(start, end - start, length);
+            length += end - start;
+            bufferPos = bufferLimit;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferLimit = read;
+        return true;
+    }
+
+    private void append(int start, int count, int length) {
+        if (length + count > lineBytes.length) {
+            lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, length + count));
+        }
+        System.arraycopy(buffer, start, lineBytes, length, count);
+    }
+
+    private static String decode(byte[] bytes, int offset, int length) {
+        if (length > 0 && bytes[offset + length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    long getLineStart() {
+        return lineStart;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    boolean isLineTerminated() {
+        return lineTerminated;
+    }
+
+    /**
+     * Đọc một dòng tại vị trí byte cho trước (truy cập ngẫu nhiên, đọc theo khối CHUNK_SIZE byte)
+     */
+    static String readLineAt(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset);
+        byte[] bytes = new byte[CHUNK_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int read = raf.read(bytes, length, bytes.length - length);
+            if (read <= 0) {
+                return decode(bytes, 0, length);
+            }
+            for (int i = length; i < length + read; i++) {
+                if (bytes[i] == '\n') {
+                    return decode(bytes, 0, i);
+                }
+            }
+            length += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
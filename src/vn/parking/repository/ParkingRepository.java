@@ -6,70 +6,343 @@ import java.io.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Repository quản lý dữ liệu của hệ thống
+ *
+ * Ticket và vehicle trong bộ nhớ được giữ trong một RepositorySnapshot bất biến
+ * (map dùng chung cấu trúc). Thao tác ghi tạo phiên bản mới và thay con trỏ
+ * volatile; thao tác đọc/báo cáo lấy phiên bản hiện tại mà không cần khóa.
  */
 public class ParkingRepository implements IRepository<Vehicle> {
-    // Map lưu trữ ticket theo biển số xe
-    private Map<String, Ticket> ticketsByPlate;
+    // Trạng thái hiện tại: ticket theo biển số + vehicle theo biển số
+    // (xe đang đỗ + xe vừa thao tác trong phiên)
+    private volatile RepositorySnapshot state;
     
-    // Map lưu trữ vehicle theo biển số xe
-    private Map<String, Vehicle> vehicles;
+    // Index vị trí (byte offset) trong file dữ liệu của các xe đã rời bãi (mảng sắp theo biển số,
+    // lưu kèm file dữ liệu thành file .idx). Chỉ đọc lên thành Vehicle khi tra cứu đúng biển số
+    private volatile InactivePlateIndex inactiveIndex;
     
-    // Map lưu trữ lịch sử đóng tiền vé tháng (Key: Biển số, Value: Tháng đã đóng gần nhất)
-    private Map<String, String> monthlyPaymentHistory;
+    // Cache (giới hạn kích thước) các xe đã rời bãi được đọc từ file
+    private LookupCache<String, Vehicle> vehicleCache;
+    
+    // Thư mục chứa các file dữ liệu (null = thư mục hiện hành)
+    private File dataDir;
+    
+    // File dữ liệu chứa các bản ghi inactive
+    private volatile File dataFile;
+    
+    // Sổ cái đóng vé tháng (nhật ký ghi nối tiếp + bản nén, bitmask tháng trong bộ nhớ)
+    private final PaymentLedger paymentLedger;
+    
+    // Kho vé active dạng cột cho tổng hợp (-Dparking.ticket.store=columnar), null = không bật
+    private final ColumnarTicketStore columnarStore;
+    
+    // Nhận các thay đổi đã áp dụng (nhật ký replication), null = không ghi nhận
+    private volatile MutationListener mutationListener;
+    
+    // Khởi động nhanh: mở khi sổ cái vé tháng / index xe đã rời bãi đã nạp xong (mặc định đã mở)
+    private volatile CountDownLatch paymentLedgerReady = new CountDownLatch(0);
+    private volatile CountDownLatch inactiveIndexReady = new CountDownLatch(0);
+    
+    // Phần file dữ liệu chưa đọc khi khởi động nhanh (null = không còn)
+    private File pendingDataFile;
+    private long pendingOffset;
     
     private static final String DEFAULT_FILENAME = "parking_data.csv";
+    // File đóng tiền cũ, chỉ đọc một lần khi chuyển sang sổ cái
     private static final String MONTHLY_HISTORY_FILENAME = "monthly_history.csv";
     private static final String MONTHLY_PAYMENT_FILENAME = "monthly_payment.csv";
+    private static final String DATA_HEADER = "type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth,zone,slotId";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DEFAULT_CACHE_SIZE = 1000; // Số phần tử tối đa mỗi cache tra cứu
+    private static final long LONG_STAY_HOURS = 24;     // Ngưỡng đỗ lâu trong số liệu tổng hợp
+    private static final int LOAD_BATCH_SIZE = 4096;    // Số dòng áp dụng mỗi lần giữ khóa khi nạp nền
     
+    /**
+     * Khởi tạo với cấu hình cache từ system property:
+     * -Dparking.cache.size=1000 -Dparking.cache.policy=LRU|TINY_LFU
+     */
     public ParkingRepository() {
-        this.ticketsByPlate = new HashMap<>();
-        this.vehicles = new HashMap<>();
-        this.monthlyPaymentHistory = new HashMap<>();
+        this(null);
+    }
+    
+    /**
+     * @param dataDir Thư mục chứa file dữ liệu (mỗi bãi/shard một thư mục), null = thư mục hiện hành
+     */
+    public ParkingRepository(File dataDir) {
+        this(dataDir, Integer.getInteger("parking.cache.size", DEFAULT_CACHE_SIZE),
+                CachePolicy.valueOf(System.getProperty("parking.cache.policy", CachePolicy.LRU.name())));
+    }
+    
+    /**
+     * @param dataDir     Thư mục chứa file dữ liệu, null = thư mục hiện hành
+     * @param cacheSize   Số phần tử tối đa mỗi cache tra cứu
+     * @param cachePolicy Chính sách loại bỏ (LRU hoặc W-TinyLFU)
+     */
+    public ParkingRepository(File dataDir, int cacheSize, CachePolicy cachePolicy) {
+        this.dataDir = dataDir;
+        if (dataDir != null && !dataDir.exists()) {
+            dataDir.mkdirs();
+        }
+        this.state = RepositorySnapshot.EMPTY;
+        this.inactiveIndex = InactivePlateIndex.empty();
+        this.vehicleCache = new LookupCache<>("Xe đã rời bãi", cacheSize, cachePolicy);
+        this.paymentLedger = new PaymentLedger(resolveFile(PaymentLedger.COMPACTED_FILENAME),
+                resolveFile(PaymentLedger.LOG_FILENAME),
+                Integer.getInteger("parking.ledger.compact.threshold", PaymentLedger.DEFAULT_COMPACT_THRESHOLD));
+        this.columnarStore = "columnar".equalsIgnoreCase(System.getProperty("parking.ticket.store"))
+                ? new ColumnarTicketStore() : null;
+    }
+    
+    /**
+     * Gắn (hoặc gỡ khi truyền null) listener nhận các thay đổi check-in/check-out/đóng tiền
+     */
+    public void setMutationListener(MutationListener mutationListener) {
+        this.mutationListener = mutationListener;
+    }
+    
+    /**
+     * Bỏ toàn bộ dữ liệu trong bộ nhớ (replica đồng bộ lại từ đầu sau khi file cũ đã được dời đi);
+     * gọi loadFromFile() sau đó để mở lại sổ cái đóng tiền
+     */
+    public synchronized void clear() {
+        state = RepositorySnapshot.EMPTY;
+        inactiveIndex = InactivePlateIndex.empty();
+        vehicleCache.invalidateAll();
+        dataFile = null;
+        pendingDataFile = null;
+        paymentLedger.clear();
+        if (columnarStore != null) {
+            columnarStore.rebuild(Collections.emptyList());
+        }
+    }
+    
+    /**
+     * Tóm tắt số liệu hit/miss của các cache tra cứu
+     */
+    public List<String> getCacheStats() {
+        return Collections.singletonList(vehicleCache.getStatsSummary());
     }
     
     /**
      * Triển khai IRepository<Vehicle> - trả về danh sách tất cả Vehicle
+     * Lưu ý: phải đọc toàn bộ xe inactive từ file, chỉ dùng cho báo cáo/xuất dữ liệu
      */
     @Override
     public List<Vehicle> getAll() {
-        return new ArrayList<>(vehicles.values());
+        try (Stream<Vehicle> vehicles = stream()) {
+            return vehicles.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Triển khai IRepository<Vehicle> - tìm xe theo biển số (không chuẩn hóa)
+     */
+    @Override
+    public Vehicle findById(String id) {
+        return findVehicleByPlate(id);
+    }
+
+    /**
+     * Duyệt toàn bộ xe theo luồng: xe trong bộ nhớ của snapshot hiện tại, sau đó xe đã
+     * rời bãi đọc tuần tự từ file dữ liệu (mỗi dòng parse khi được lấy, không cache,
+     * không tạo danh sách). Stream giữ file mở cho tới khi được đóng.
+     *
+     * Dòng xe đã rời bãi được lọc theo index offset ngay khi đọc (không sao chép index);
+     * xe vào lại bãi trong lúc đang duyệt có thể không có mặt trong stream.
+     */
+    @Override
+    public Stream<Vehicle> stream() {
+        await(inactiveIndexReady);
+        RepositorySnapshot current;
+        InactivePlateIndex index = null;
+        OffsetLineReader reader = null;
+        // Lấy snapshot, index và mở file cùng lúc để không lẫn với file mới của saveToFile
+        synchronized (this) {
+            current = state;
+            if (dataFile != null && dataFile.exists() && !inactiveIndex.isEmpty()) {
+                index = inactiveIndex;
+                try {
+                    reader = new OffsetLineReader(dataFile, inactiveIndex.firstOffset());
+                } catch (IOException e) {
+                    System.err.println("❌ Lỗi khi đọc file: " + e.getMessage());
+                }
+            }
+        }
+        Stream<Vehicle> inMemory = current.vehicles().values().stream();
+        if (reader == null) {
+            return inMemory;
+        }
+        OffsetLineReader source = reader;
+        return Stream.concat(inMemory, StreamSupport.stream(inactiveVehicles(source, index), false))
+                .onClose(() -> {
+                    try {
+                        source.close();
+                    } catch (IOException ignored) {
+                        // Chỉ đọc: không có gì cần ghi lại
+                    }
+                });
+    }
+
+    /**
+     * Xe đã rời bãi trong file dữ liệu: các dòng có offset đúng bằng offset của biển số trong index
+     */
+    private Spliterator<Vehicle> inactiveVehicles(OffsetLineReader reader, InactivePlateIndex index) {
+        return new Spliterators.AbstractSpliterator<Vehicle>(index.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Vehicle> action) {
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (indexedPlate(index, line, reader.getLineStart()) == null) {
+                            continue;
+                        }
+                        try {
+                            action.accept(parseVehicle(line.split(",")));
+                            return true;
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("❌ Lỗi khi đọc dòng tại vị trí " + reader.getLineStart() + " - " + e.getMessage());
+                        }
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Biển số của dòng nếu dòng bắt đầu tại lineStart là bản ghi xe đã rời bãi có trong index,
+     * null nếu không (header, footer, xe đang đỗ, xe đã vào lại bãi hoặc dòng cũ)
+     */
+    private static String indexedPlate(InactivePlateIndex index, String line, long lineStart) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        if (second < 0) {
+            return null;
+        }
+        String plate = line.substring(first + 1, second).trim();
+        return index.get(plate) == lineStart ? plate : null;
     }
 
     /**
      * Triển khai IRepository<Vehicle> - thêm một Vehicle mới
      */
     @Override
-    public void add(Vehicle item) {
+    public synchronized void add(Vehicle item) {
         if (item != null) {
             saveVehicle(item);
         }
     }
 
+    /**
+     * Triển khai IRepository<Vehicle> - thêm/ghi đè nhiều Vehicle trong một lần đổi snapshot
+     */
+    @Override
+    public synchronized void addAll(Collection<? extends Vehicle> items) {
+        PersistentMap<String, Vehicle> vehicles = state.vehicles();
+        for (Vehicle vehicle : items) {
+            vehicles = vehicles.plus(vehicle.getPlate(), vehicle);
+            inactiveIndex.remove(vehicle.getPlate());
+            vehicleCache.invalidate(vehicle.getPlate());
+        }
+        state = state.withVehicles(vehicles);
+    }
+
+    /**
+     * Triển khai IRepository<Vehicle> - xóa nhiều Vehicle trong một lần đổi snapshot
+     */
+    @Override
+    public synchronized void removeAll(Collection<? extends Vehicle> items) {
+        PersistentMap<String, Vehicle> vehicles = state.vehicles();
+        for (Vehicle vehicle : items) {
+            vehicles = vehicles.minus(vehicle.getPlate());
+            inactiveIndex.remove(vehicle.getPlate());
+            vehicleCache.invalidate(vehicle.getPlate());
+        }
+        state = state.withVehicles(vehicles);
+    }
+
     /**
      * Triển khai IRepository<Vehicle> - xóa một Vehicle
      */
     @Override
-    public void remove(Vehicle item) {
+    public synchronized void remove(Vehicle item) {
         if (item != null) {
-            vehicles.remove(item.getPlate());
+            state = state.withVehicles(state.vehicles().minus(item.getPlate()));
+            inactiveIndex.remove(item.getPlate());
+            vehicleCache.invalidate(item.getPlate());
         }
     }
 
     /**
      * Lưu ticket vào repository
      */
-    public void saveTicket(Ticket ticket) {
-        ticketsByPlate.put(ticket.getPlate(), ticket);
+    public synchronized void saveTicket(Ticket ticket) {
+        state = state.withTicket(ticket);
+        if (columnarStore != null) {
+            columnarStore.put(ticket);
+        }
+    }
+    
+    /**
+     * Lưu ticket và vehicle của một lượt check-in trong cùng một phiên bản
+     * (snapshot không bao giờ thấy ticket mà thiếu vehicle)
+     */
+    public synchronized void saveCheckIn(Ticket ticket, Vehicle vehicle) {
+        state = state.withCheckIn(ticket, vehicle);
+        inactiveIndex.remove(vehicle.getPlate());
+        vehicleCache.invalidate(vehicle.getPlate());
+        if (columnarStore != null) {
+            columnarStore.put(ticket);
+        }
+        
+        MutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.onCheckIn(ticket, vehicle);
+        }
+    }
+    
+    /**
+     * Lấy snapshot trạng thái hiện tại (O(1), không sao chép)
+     * Dùng cho báo cáo/thống kê: dữ liệu nhất quán tại thời điểm lấy,
+     * các thao tác ghi ở cổng vẫn tiếp tục bình thường.
+     */
+    public RepositorySnapshot snapshot() {
+        return state;
+    }
+    
+    /**
+     * Số liệu tổng hợp trên toàn bộ xe đang đỗ
+     * Bật kho dạng cột thì quét tuyến tính các mảng nguyên thủy, ngược lại duyệt vé trong snapshot.
+     */
+    public TicketAggregates aggregateActiveTickets(LocalDateTime now) {
+        if (columnarStore != null) {
+            return columnarStore.aggregate(now, LONG_STAY_HOURS);
+        }
+        return TicketAggregates.fromTickets(state.tickets().values(), now, LONG_STAY_HOURS);
+    }
+    
+    /**
+     * Đường dẫn tới file dữ liệu trong thư mục của repository
+     */
+    public File resolveFile(String name) {
+        return dataDir == null ? new File(name) : new File(dataDir, name);
     }
     
     /**
      * Chuẩn hóa biển số: Xóa khoảng trắng, viết hoa, loại bỏ khoảng trắng giữa
      */
-    private String normalizePlate(String plate) {
+    public static String normalizePlate(String plate) {
         if (plate == null) {
             return "";
         }
@@ -83,7 +356,7 @@ public class ParkingRepository implements IRepository<Vehicle> {
         if (plate == null) {
             return null;
         }
-        return ticketsByPlate.get(plate);
+        return state.tickets().get(plate);
     }
     
     /**
@@ -96,17 +369,8 @@ public class ParkingRepository implements IRepository<Vehicle> {
             return null;
         }
         
-        String normalizedInput = normalizePlate(inputPlate);
-        
-        // Tìm kiếm trong tất cả tickets
-        for (String storedPlate : ticketsByPlate.keySet()) {
-            String normalizedStored = normalizePlate(storedPlate);
-            if (normalizedStored.equals(normalizedInput)) {
-                return storedPlate; // Trả về biển số gốc (đã lưu trong hệ thống)
-            }
-        }
-        
-        return null;
+        // Tra chỉ mục biển số chuẩn hóa -> biển số gốc (đã lưu trong hệ thống)
+        return state.findParkedPlate(normalizePlate(inputPlate));
     }
     
     /**
@@ -116,31 +380,32 @@ public class ParkingRepository implements IRepository<Vehicle> {
         if (plate == null) {
             return false;
         }
-        String normalizedInput = normalizePlate(plate);
-        
-        // Kiểm tra trong tất cả tickets
-        for (String storedPlate : ticketsByPlate.keySet()) {
-            String normalizedStored = normalizePlate(storedPlate);
-            if (normalizedStored.equals(normalizedInput)) {
-                return true;
-            }
-        }
-        
-        return false;
+        return state.findParkedPlate(normalizePlate(plate)) != null;
     }
     
     /**
      * Xóa ticket khi xe ra
      */
-    public void removeTicket(String plate) {
-        ticketsByPlate.remove(plate);
+    public synchronized void removeTicket(String plate) {
+        state = state.withoutTicket(plate);
+        if (columnarStore != null) {
+            columnarStore.remove(plate);
+        }
+        
+        MutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.onTicketRemoved(plate);
+        }
     }
     
     /**
      * Lưu vehicle vào repository
      */
-    public void saveVehicle(Vehicle vehicle) {
-        vehicles.put(vehicle.getPlate(), vehicle);
+    public synchronized void saveVehicle(Vehicle vehicle) {
+        state = state.withVehicles(state.vehicles().plus(vehicle.getPlate(), vehicle));
+        // Bản trong bộ nhớ là bản mới nhất, bỏ bản inactive trên file
+        inactiveIndex.remove(vehicle.getPlate());
+        vehicleCache.invalidate(vehicle.getPlate());
     }
     
     /**
@@ -150,7 +415,50 @@ public class ParkingRepository implements IRepository<Vehicle> {
         if (plate == null) {
             return null;
         }
-        return vehicles.get(plate);
+        Vehicle vehicle = state.vehicles().get(plate);
+        if (vehicle != null) {
+            return vehicle;
+        }
+        return findInactiveVehicle(plate);
+    }
+    
+    /**
+     * Tìm xe đã rời bãi qua cache (cache miss thì đọc từ file)
+     *
+     * Khởi động nhanh: chờ index xe đã rời bãi trước khi vào cache (không chờ trong loader,
+     * để cache không ghi nhớ kết quả "không có" của index dở dang)
+     */
+    private Vehicle findInactiveVehicle(String plate) {
+        await(inactiveIndexReady);
+        return vehicleCache.getOrLoad(plate, this::loadInactiveVehicle);
+    }
+    
+    /**
+     * Đọc đúng dòng của xe đã rời bãi từ file theo offset
+     *
+     * Chạy ngoài mọi khóa nên có thể gặp lúc saveToFile vừa thay file và bảng offset:
+     * dòng đọc được không đúng biển số thì đọc lại một lần theo bảng offset mới.
+     */
+    private Vehicle loadInactiveVehicle(String plate) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long offset = inactiveIndex.get(plate);
+            File file = dataFile;
+            if (offset < 0 || file == null) {
+                return null;
+            }
+            
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                String[] parts = OffsetLineReader.readLineAt(raf, offset).split(",");
+                if (parts.length > 1 && parts[1].trim().equals(plate)) {
+                    return parseVehicle(parts);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("❌ Lỗi khi đọc thông tin xe " + plate + " từ file: " + e.getMessage());
+                return null;
+            }
+        }
+        // Không trả null: null sẽ bị cache như "không có xe"
+        throw new IllegalStateException("File dữ liệu vừa được ghi lại khi đọc xe " + plate + ", vui lòng thử lại");
     }
     
     /**
@@ -164,6 +472,7 @@ public class ParkingRepository implements IRepository<Vehicle> {
         String normalizedInput = normalizePlate(inputPlate);
         
         // Tìm kiếm trong tất cả vehicles
+        PersistentMap<String, Vehicle> vehicles = state.vehicles();
         for (String storedPlate : vehicles.keySet()) {
             String normalizedStored = normalizePlate(storedPlate);
             if (normalizedStored.equals(normalizedInput)) {
@@ -171,7 +480,9 @@ public class ParkingRepository implements IRepository<Vehicle> {
             }
         }
         
-        return null;
+        // Tìm trong index xe đã rời bãi (chỉ đọc file khi khớp biển số)
+        String inactivePlate = inactiveIndex.findPlate(plate -> normalizePlate(plate).equals(normalizedInput));
+        return inactivePlate != null ? findInactiveVehicle(inactivePlate) : null;
     }
     
     /**
@@ -189,7 +500,7 @@ public class ParkingRepository implements IRepository<Vehicle> {
         String normalizedKeyword = normalizePlate(keyword);
         
         // Duyệt tất cả tickets
-        for (Ticket ticket : ticketsByPlate.values()) {
+        for (Ticket ticket : state.tickets().values()) {
             String plate = ticket.getPlate();
             String normalizedPlate = normalizePlate(plate);
             
@@ -203,350 +514,712 @@ public class ParkingRepository implements IRepository<Vehicle> {
     }
     
     /**
-     * Lấy tất cả tickets đang active
+     * Lấy tất cả tickets đang active (view chỉ đọc trên snapshot hiện tại, không sao chép)
      */
     public Collection<Ticket> getAllActiveTickets() {
-        return new ArrayList<>(ticketsByPlate.values());
+        return state.getActiveTickets();
     }
     
     /**
-     * Lấy tất cả vehicles
+     * Lấy tất cả vehicles (bao gồm xe đã rời bãi - phải đọc từ file)
      */
     public Collection<Vehicle> getAllVehicles() {
-        return new ArrayList<>(vehicles.values());
+        return getAll();
     }
     
     /**
      * Lưu toàn bộ dữ liệu ra file CSV
      * Format: type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth
+     *
+     * Xe đang đỗ được ghi trước, sau đó là xe đã rời bãi. Bản ghi inactive chưa
+     * được đọc lên thì chép nguyên dòng từ file cũ. Dữ liệu được ghi ra file tạm
+     * rồi mới thay thế file cũ, sau đó index offset được cập nhật theo file mới.
      */
     public void saveToFile(String filename) {
-        if (filename == null || filename.isEmpty()) {
-            filename = DEFAULT_FILENAME;
-        }
+        // Ghi lại file khi chưa index hết xe đã rời bãi sẽ làm mất các dòng đó
+        await(inactiveIndexReady);
+        writeDataFile(filename == null || filename.isEmpty() ? DEFAULT_FILENAME : filename);
+    }
+    
+    private synchronized void writeDataFile(String filename) {
+        File target = new File(filename);
+        RepositorySnapshot current = state;
+        PersistentMap<String, Ticket> ticketsByPlate = current.tickets();
+        PersistentMap<String, Vehicle> vehicles = current.vehicles();
+        InactivePlateIndex.Builder newIndex = new InactivePlateIndex.Builder();
+        List<Vehicle> demoted = new ArrayList<>();
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename, false))) {
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(target)) {
             // Ghi header
-            writer.println("type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth");
+            writer.writeLine(DATA_HEADER);
             
-            // Ghi dữ liệu
+            // Ghi dữ liệu xe đang đỗ
             for (Ticket ticket : ticketsByPlate.values()) {
                 Vehicle vehicle = vehicles.get(ticket.getPlate());
                 if (vehicle != null) {
-                    writer.printf("%s,%s,%s,%s,%s,%s%n",
-                        vehicle.getType().name(),
-                        ticket.getPlate(),
-                        ticket.getEntryTime().format(DATE_FORMATTER),
-                        vehicle.getFuelType().name(),
-                        ticket.isMonthlyTicket() ? "MONTHLY" : "SINGLE",
-                        vehicle.getLastPaidMonth() != null ? vehicle.getLastPaidMonth() : ""
-                    );
+                    writer.writeLine(formatRow(vehicle, ticket));
                 }
             }
+            // Khởi động nhanh chỉ cần kiểm tra checksum tới đây
+            writer.markHead();
             
             // Lưu cả vehicles không có ticket (đã check-out nhưng còn thông tin)
             for (Vehicle vehicle : vehicles.values()) {
                 if (!ticketsByPlate.containsKey(vehicle.getPlate())) {
-                    // Vehicle đã check-out, chỉ lưu thông tin vehicle
-                    writer.printf("%s,%s,,%s,%s,%s%n",
-                        vehicle.getType().name(),
-                        vehicle.getPlate(),
-                        vehicle.getFuelType().name(),
-                        vehicle.hasMonthlyCard() ? "MONTHLY" : "SINGLE",
-                        vehicle.getLastPaidMonth() != null ? vehicle.getLastPaidMonth() : ""
-                    );
+                    newIndex.put(vehicle.getPlate(), writer.getPosition());
+                    writer.writeLine(formatRow(vehicle, null));
+                    demoted.add(vehicle);
+                }
+            }
+            
+            // Chép nguyên dòng các xe inactive chưa từng đọc lên: một lượt đọc tuần tự theo
+            // thứ tự trong file cũ (như exportCsv), không nhảy offset từng dòng
+            if (dataFile != null && dataFile.exists() && !inactiveIndex.isEmpty()) {
+                try (OffsetLineReader reader = new OffsetLineReader(dataFile, inactiveIndex.firstOffset())) {
+                    String raw;
+                    while ((raw = reader.readLine()) != null) {
+                        String plate = indexedPlate(inactiveIndex, raw, reader.getLineStart());
+                        if (plate != null) {
+                            newIndex.put(plate, writer.getPosition());
+                            writer.writeLine(raw);
+                        }
+                    }
                 }
             }
             
-            System.out.println("✓ Đã lưu dữ liệu vào file: " + filename);
+            // Ghi footer checksum, fsync, thay thế nguyên tử (giữ bản cũ làm .bak)
+            writer.commit();
         } catch (IOException e) {
             System.err.println("❌ Lỗi khi lưu file: " + e.getMessage());
+            return;
+        }
+        
+        // File mới trở thành nguồn đọc inactive; xe đã check-out chuyển sang cache
+        dataFile = target;
+        inactiveIndex = newIndex.build(plate -> true);
+        writeIndexFile(target, inactiveIndex);
+        for (Vehicle vehicle : demoted) {
+            vehicles = vehicles.minus(vehicle.getPlate());
+            vehicleCache.put(vehicle.getPlate(), vehicle);
+        }
+        state = state.withVehicles(vehicles);
+        
+        System.out.println("✓ Đã lưu dữ liệu vào file: " + filename);
+    }
+    
+    /**
+     * Ghi index xe đã rời bãi ra file .idx kèm file dữ liệu vừa ghi (lỗi thì xóa file .idx cũ:
+     * lần khởi động sau đọc lại phần xe đã rời bãi như bình thường)
+     */
+    private static void writeIndexFile(File dataFile, InactivePlateIndex index) {
+        File indexFile = InactivePlateIndex.fileFor(dataFile);
+        try {
+            index.write(indexFile, SnapshotFile.readFooter(dataFile));
+        } catch (IOException | RuntimeException e) {
+            indexFile.delete();
+            System.err.println("❌ Lỗi khi ghi file index " + indexFile.getName() + ": " + e.getMessage());
         }
     }
     
+    /**
+     * Biển số đã có trong dữ liệu (xe đang đỗ, xe trong bộ nhớ hoặc xe đã rời bãi trên file)
+     */
+    public boolean isKnownPlate(String plate) {
+        await(inactiveIndexReady);
+        return state.vehicles().containsKey(plate) || inactiveIndex.contains(plate);
+    }
+    
+    /**
+     * Nhập hàng loạt xe chưa đỗ (vd: chủ thẻ tháng) trong một lần đổi snapshot
+     * Xe đã có trong dữ liệu được bỏ qua. Tháng đã đóng (lastPaidMonth của xe) được ghi vào
+     * sổ cái đóng tiền bằng một lần nén sổ cái. Không phát MutationListener: dùng cho công cụ
+     * nhập offline, gọi saveToFile() sau đó để ghi file.
+     * @return Số xe được thêm
+     */
+    public int importVehicles(Collection<Vehicle> imported) {
+        await(inactiveIndexReady);
+        await(paymentLedgerReady);
+        return addImportedVehicles(imported);
+    }
+    
+    private synchronized int addImportedVehicles(Collection<Vehicle> imported) {
+        PersistentMap<String, Vehicle> vehicles = state.vehicles();
+        int added = 0;
+        int payments = 0;
+        for (Vehicle vehicle : imported) {
+            String plate = vehicle.getPlate();
+            if (vehicles.containsKey(plate) || inactiveIndex.contains(plate)) {
+                continue;
+            }
+            vehicles = vehicles.plus(plate, vehicle);
+            vehicleCache.invalidate(plate);
+            added++;
+            String lastPaidMonth = vehicle.getLastPaidMonth();
+            if (lastPaidMonth != null && !lastPaidMonth.isEmpty()) {
+                paymentLedger.importPayment(plate, lastPaidMonth);
+                payments++;
+            }
+        }
+        state = state.withVehicles(vehicles);
+        if (payments > 0) {
+            try {
+                paymentLedger.compact();
+                System.out.println("✓ Đã ghi " + payments + " tháng đã đóng vào sổ cái đóng tiền");
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi khi ghi sổ cái đóng tiền: " + e.getMessage());
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Xuất toàn bộ dữ liệu xe (đang đỗ + đã rời bãi) ra CSV theo luồng, cùng format với
+     * parking_data.csv nhưng không có footer checksum
+     * Xe đã rời bãi chưa đọc lên được chép nguyên dòng trong một lượt đọc tuần tự file dữ liệu.
+     * @return Số dòng dữ liệu đã ghi
+     */
+    public long exportCsv(Writer out) throws IOException {
+        await(inactiveIndexReady);
+        return writeCsv(out);
+    }
+    
+    private synchronized long writeCsv(Writer out) throws IOException {
+        RepositorySnapshot current = state;
+        PersistentMap<String, Ticket> ticketsByPlate = current.tickets();
+        PersistentMap<String, Vehicle> vehicles = current.vehicles();
+        long rows = 0;
+        
+        out.write(DATA_HEADER);
+        out.write('\n');
+        for (Ticket ticket : ticketsByPlate.values()) {
+            Vehicle vehicle = vehicles.get(ticket.getPlate());
+            if (vehicle != null) {
+                out.write(formatRow(vehicle, ticket));
+                out.write('\n');
+                rows++;
+            }
+        }
+        for (Vehicle vehicle : vehicles.values()) {
+            if (!ticketsByPlate.containsKey(vehicle.getPlate())) {
+                out.write(formatRow(vehicle, null));
+                out.write('\n');
+                rows++;
+            }
+        }
+        
+        if (dataFile != null && dataFile.exists() && !inactiveIndex.isEmpty()) {
+            try (OffsetLineReader reader = new OffsetLineReader(dataFile, inactiveIndex.firstOffset())) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (indexedPlate(inactiveIndex, line, reader.getLineStart()) != null) {
+                        out.write(line);
+                        out.write('\n');
+                        rows++;
+                    }
+                }
+            }
+        }
+        out.flush();
+        return rows;
+    }
+    
+    /**
+     * Tạo một dòng CSV cho vehicle (ticket == null nếu xe đã rời bãi)
+     */
+    private String formatRow(Vehicle vehicle, Ticket ticket) {
+        return String.format("%s,%s,%s,%s,%s,%s,%s,%s",
+            vehicle.getType().name(),
+            vehicle.getPlate(),
+            ticket != null ? ticket.getEntryTime().format(DATE_FORMATTER) : "",
+            vehicle.getFuelType().name(),
+            (ticket != null ? ticket.isMonthlyTicket() : vehicle.hasMonthlyCard()) ? "MONTHLY" : "SINGLE",
+            "", // lastPaidMonth: đã chuyển sang sổ cái đóng tiền, cột giữ lại cho đúng định dạng
+            ticket != null ? ticket.getZone().name() : "",
+            ticket != null && ticket.getSlotId() != null ? ticket.getSlotId() : ""
+        );
+    }
+    
     /**
      * Đọc dữ liệu từ file CSV
-     * Format: type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth
-     * Hỗ trợ file cũ (không có cột lastPaidMonth) để tránh lỗi
+     * Format: type,licensePlate,entryTime,fuelType,ticketType,lastPaidMonth,zone,slotId
+     * Hỗ trợ file cũ (không có cột lastPaidMonth / zone / slotId) để tránh lỗi; vé thiếu zone
+     * lấy zone ưu tiên của xe. Cột lastPaidMonth chỉ còn được đọc khi chuyển sang sổ cái đóng tiền.
+     *
+     * Chỉ xe đang đỗ (có entryTime) được tạo đối tượng ngay. Xe đã rời bãi chỉ được
+     * ghi nhớ vị trí dòng trong file và đọc lên khi tra cứu theo biển số; index vị trí
+     * được nạp từ file .idx nếu file này được ghi cùng lúc với file dữ liệu.
+     *
+     * Footer checksum được kiểm tra trước; nếu file hỏng thì tự động đọc snapshot trước (.bak).
      */
     public void loadFromFile(String filename) {
+        File file = selectDataFile(filename, false);
+        if (file == null) {
+            return;
+        }
+        LoadProgress progress = new LoadProgress();
+        loadActiveRows(file, progress);
+        if (progress.resumeOffset >= 0) {
+            loadInactiveIndex(file, progress);
+        }
+        System.out.println("✓ Đã tải " + progress.active + " xe đang đỗ (+ " + progress.inactive
+                + " xe đã rời bãi được index) từ file: " + file.getPath());
+    }
+    
+    /**
+     * Khởi động nhanh: chỉ đọc các dòng xe đang đỗ ở đầu file dữ liệu (saveToFile luôn ghi
+     * xe đang đỗ trước) rồi trả về để mở cổng ngay; sổ cái vé tháng và index xe đã rời bãi
+     * được nạp sau bằng completeLoading() trên luồng nền. Chỉ checksum phần đầu file được
+     * kiểm tra ở đây (footer lưu riêng), phần còn lại được kiểm tra trên luồng nền.
+     *
+     * Trong lúc chờ: tra cứu tháng đã đóng, ghi lại file dữ liệu, duyệt/xuất toàn bộ xe
+     * và tra cứu xe đã rời bãi sẽ đợi phần tương ứng nạp xong.
+     */
+    public void loadActiveFromFile() {
+        paymentLedgerReady = new CountDownLatch(1);
+        inactiveIndexReady = new CountDownLatch(1);
+        File file = selectDataFile(resolveFile(DEFAULT_FILENAME).getPath(), true);
+        if (file == null) {
+            return;
+        }
+        LoadProgress progress = new LoadProgress();
+        loadActiveRows(file, progress);
+        if (progress.resumeOffset >= 0) {
+            pendingDataFile = file;
+            pendingOffset = progress.resumeOffset;
+        }
+        System.out.println("✓ Đã tải " + progress.active + " xe đang đỗ từ file: " + file.getPath()
+                + " (khởi động nhanh, dữ liệu còn lại nạp nền)");
+    }
+    
+    /**
+     * Nạp phần còn lại sau loadActiveFromFile(): sổ cái vé tháng trước (thanh toán vé tháng
+     * cần nó), sau đó index xe đã rời bãi
+     */
+    public void completeLoading() {
+        try {
+            loadPaymentLedger();
+        } finally {
+            paymentLedgerReady.countDown();
+        }
+        try {
+            File file = pendingDataFile;
+            if (file != null) {
+                LoadProgress progress = new LoadProgress();
+                progress.resumeOffset = pendingOffset;
+                loadInactiveIndex(verifyRemainingRows(file, progress), progress);
+                pendingDataFile = null;
+                System.out.println("✓ Đã index " + progress.inactive + " xe đã rời bãi (nạp nền)");
+            }
+        } finally {
+            inactiveIndexReady.countDown();
+        }
+    }
+    
+    /**
+     * Dữ liệu đã nạp đủ (luôn đúng nếu không khởi động nhanh)
+     */
+    public boolean isFullyLoaded() {
+        return paymentLedgerReady.getCount() == 0 && inactiveIndexReady.getCount() == 0;
+    }
+    
+    private static void await(CountDownLatch latch) {
+        if (latch.getCount() == 0) {
+            return;
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Tiến độ đọc file dữ liệu
+     */
+    private static final class LoadProgress {
+        long resumeOffset = -1;   // Vị trí dòng xe đã rời bãi đầu tiên, -1 nếu đã đọc hết file
+        int active;
+        int inactive;
+        final InactivePlateIndex.Builder index = new InactivePlateIndex.Builder();
+    }
+    
+    /**
+     * File dữ liệu đọc được (file chính hoặc .bak), null nếu không có
+     * @param headOnly Chỉ kiểm tra checksum phần xe đang đỗ ở đầu file (khởi động nhanh)
+     */
+    private File selectDataFile(String filename, boolean headOnly) {
         if (filename == null || filename.isEmpty()) {
             filename = DEFAULT_FILENAME;
         }
-        
-        File file = new File(filename);
-        if (!file.exists()) {
+        File file = SnapshotFile.selectReadable(new File(filename), headOnly);
+        if (file == null) {
             System.out.println("ℹ File không tồn tại: " + filename + " (Sẽ tạo mới khi lưu)");
-            return;
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String headerLine = reader.readLine(); // Đọc header để kiểm tra số cột
+        return file;
+    }
+    
+    /**
+     * Đọc header và các dòng xe đang đỗ liên tiếp ở đầu file; dừng ở dòng xe đã rời bãi
+     * đầu tiên (ghi vị trí vào progress.resumeOffset)
+     */
+    private synchronized void loadActiveRows(File file, LoadProgress progress) {
+        try (OffsetLineReader reader = new OffsetLineReader(file, 0)) {
+            String headerLine = reader.readLine(); // Bỏ qua header
             if (headerLine == null) {
                 return;
             }
             
-            String[] headerParts = headerLine.split(",");
-            boolean hasLastPaidMonth = headerParts.length >= 6;
+            dataFile = file;
             
-            int count = 0;
+            PersistentMap<String, Ticket> ticketsByPlate = state.tickets();
+            PersistentMap<String, Vehicle> vehicles = state.vehicles();
             String line;
             while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+                if (line.trim().isEmpty() || SnapshotFile.isFooter(line)) continue;
                 
                 try {
                     String[] parts = line.split(",");
                     if (parts.length < 5) continue;
                     
-                    // Parse dữ liệu cơ bản
-                    VehicleType type = VehicleType.valueOf(parts[0].trim());
-                    String plate = parts[1].trim();
-                    FuelType fuelType = FuelType.valueOf(parts[3].trim());
-                    boolean isMonthly = parts[4].trim().equals("MONTHLY");
-                    
-                    // Parse lastPaidMonth (có thể không có trong file cũ)
-                    String lastPaidMonth = null;
-                    if (hasLastPaidMonth && parts.length >= 6) {
-                        String lastPaidMonthStr = parts[5].trim();
-                        if (!lastPaidMonthStr.isEmpty()) {
-                            lastPaidMonth = lastPaidMonthStr;
-                        }
-                    }
-                    
-                    // Tạo Vehicle cụ thể dựa trên VehicleType
-                    Vehicle vehicle;
-                    switch (type) {
-                        case CAR:
-                            vehicle = new Car(plate, fuelType, isMonthly, lastPaidMonth);
-                            break;
-                        case BIKE:
-                            vehicle = new Motorbike(plate, fuelType, isMonthly, lastPaidMonth);
-                            break;
-                        case BICYCLE:
-                        default:
-                            vehicle = new Bicycle(plate, fuelType, isMonthly, lastPaidMonth);
-                            break;
-                    }
-                    
-                    // Parse entryTime (có thể rỗng nếu vehicle đã check-out)
-                    String entryTimeStr = parts[2].trim();
-                    if (!entryTimeStr.isEmpty()) {
-                        LocalDateTime entryTime = LocalDateTime.parse(entryTimeStr, DATE_FORMATTER);
-                        String zone = determineZoneFromVehicle(vehicle);
-                        Ticket ticket = new Ticket(plate, entryTime, isMonthly, zone);
-                        ticketsByPlate.put(plate, ticket);
+                    // Hết phần xe đang đỗ
+                    if (parts[2].trim().isEmpty()) {
+                        progress.resumeOffset = reader.getLineStart();
+                        break;
                     }
                     
-                    // Lưu vehicle vào repository
-                    vehicles.put(plate, vehicle);
-                    count++;
-                    
+                    Vehicle vehicle = parseVehicle(parts);
+                    Ticket ticket = parseActiveTicket(parts, vehicle);
+                    ticketsByPlate = ticketsByPlate.plus(ticket.getPlate(), ticket);
+                    vehicles = vehicles.plus(ticket.getPlate(), vehicle);
+                    inactiveIndex.remove(ticket.getPlate());
+                    progress.active++;
                 } catch (Exception e) {
                     System.err.println("❌ Lỗi khi đọc dòng: " + line + " - " + e.getMessage());
                 }
             }
             
-            System.out.println("✓ Đã tải " + count + " xe từ file: " + filename);
+            state = state.with(ticketsByPlate, vehicles);
+            if (columnarStore != null) {
+                columnarStore.rebuild(ticketsByPlate.values());
+            }
         } catch (IOException e) {
             System.err.println("❌ Lỗi khi đọc file: " + e.getMessage());
         }
     }
     
     /**
-     * Xác định zone từ vehicle (giống logic trong ParkingService)
+     * Khởi động nhanh chỉ kiểm tra checksum phần đầu file: kiểm tra cả file (luồng nền) trước
+     * khi index phần xe đã rời bãi. Phần này bị hỏng thì lấy phần xe đã rời bãi của bản trước
+     * (.bak) nếu bản đó còn nguyên; xe rời bãi giữa hai lần ghi file khi đó không còn thông tin.
+     * @return File để đọc phần xe đã rời bãi (progress.resumeOffset theo file đó)
      */
-    private String determineZoneFromVehicle(Vehicle vehicle) {
-        VehicleType type = vehicle.getType();
-        FuelType fuelType = vehicle.getFuelType();
-        
-        if (type == VehicleType.CAR) {
-            return "B";
+    private File verifyRemainingRows(File file, LoadProgress progress) {
+        if (SnapshotFile.verify(file) != SnapshotFile.Status.CORRUPT) {
+            return file;
         }
-        
-        if (fuelType == FuelType.ELECTRIC || type == VehicleType.BICYCLE) {
-            return "A1";
-        } else if (fuelType == FuelType.GASOLINE) {
-            return "A2";
+        File backup = SnapshotFile.backupOf(file);
+        try {
+            SnapshotFile.Footer footer = SnapshotFile.verify(backup) == SnapshotFile.Status.VALID
+                    ? SnapshotFile.readFooter(backup) : null;
+            if (footer != null && footer.hasHead()) {
+                System.err.println("❌ Phần xe đã rời bãi của " + file.getName()
+                        + " bị hỏng, dùng phần này của bản trước: " + backup.getName());
+                progress.resumeOffset = footer.headLength;
+                return backup;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Bản trước cũng không đọc được: đọc phần còn dùng được của file chính
         }
-        
-        return "A1";
+        System.err.println("❌ Phần xe đã rời bãi của " + file.getName()
+                + " bị hỏng và không có bản dự phòng, đọc phần còn dùng được");
+        return file;
     }
     
     /**
-     * Lưu dữ liệu với tên file mặc định
+     * Index xe đã rời bãi: nạp file .idx nếu nó được ghi cho đúng file dữ liệu này (khớp footer
+     * và độ dài), nếu không thì đọc phần còn lại của file từ progress.resumeOffset
      */
-    public void saveToFile() {
-        saveToFile(DEFAULT_FILENAME);
+    private void loadInactiveIndex(File file, LoadProgress progress) {
+        InactivePlateIndex saved = null;
+        try {
+            saved = InactivePlateIndex.read(InactivePlateIndex.fileFor(file), SnapshotFile.readFooter(file));
+        } catch (IOException | RuntimeException e) {
+            // Không đọc được footer: dựng lại index từ file dữ liệu
+        }
+        if (saved == null) {
+            indexRemainingRows(file, progress);
+            saved = progress.index.build(plate -> true);
+        }
+        adoptInactiveIndex(file, saved, progress);
     }
     
     /**
-     * Đọc dữ liệu với tên file mặc định
+     * Dùng index vừa nạp/dựng: bỏ các xe đã có trong bộ nhớ (xe đang đỗ, xe vừa check-in
+     * trong lúc nạp nền); dựng index (sắp xếp) chạy ngoài khóa, chỉ bước này giữ khóa
      */
-    public void loadFromFile() {
-        loadFromFile(DEFAULT_FILENAME);
-        loadMonthlyHistory(); // Load lịch sử đóng tiền khi khởi động
+    private synchronized void adoptInactiveIndex(File file, InactivePlateIndex index, LoadProgress progress) {
+        for (String plate : state.vehicles().keySet()) {
+            index.remove(plate);
+        }
+        dataFile = file;
+        inactiveIndex = index;
+        progress.inactive = index.size();
     }
     
     /**
-     * Đọc lịch sử đóng tiền vé tháng từ file monthly_history.csv
-     * Format: LicensePlate,LastPaidMonth
+     * Đọc phần file từ progress.resumeOffset: xe đã rời bãi chỉ ghi nhớ offset; xe đang đỗ
+     * nằm lẫn phía sau (file cũ) vẫn được nạp. Áp dụng theo lô dưới khóa nên chạy song song
+     * được với thao tác ở cổng (xe vừa check-in trong lúc nạp giữ bản trong bộ nhớ).
      */
-    public void loadMonthlyHistory() {
-        File file = new File(MONTHLY_HISTORY_FILENAME);
-        if (!file.exists()) {
-            System.out.println("ℹ File lịch sử đóng tiền không tồn tại: " + MONTHLY_HISTORY_FILENAME + " (Sẽ tạo mới khi có dữ liệu)");
-            return;
-        }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(MONTHLY_HISTORY_FILENAME))) {
-            String headerLine = reader.readLine(); // Bỏ qua header
-            if (headerLine == null) {
-                return;
-            }
-            
-            int count = 0;
+    private void indexRemainingRows(File file, LoadProgress progress) {
+        try (OffsetLineReader reader = new OffsetLineReader(file, progress.resumeOffset)) {
+            List<String[]> rows = new ArrayList<>(LOAD_BATCH_SIZE);
+            List<Long> offsets = new ArrayList<>(LOAD_BATCH_SIZE);
             String line;
             while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                
-                try {
-                    String[] parts = line.split(",");
-                    if (parts.length < 2) continue;
-                    
-                    String plate = parts[0].trim();
-                    String lastPaidMonth = parts[1].trim();
-                    
-                    if (!plate.isEmpty() && !lastPaidMonth.isEmpty()) {
-                        monthlyPaymentHistory.put(plate, lastPaidMonth);
-                        count++;
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Lỗi khi đọc dòng lịch sử: " + line + " - " + e.getMessage());
+                if (line.trim().isEmpty() || SnapshotFile.isFooter(line)) continue;
+                String[] parts = line.split(",");
+                if (parts.length < 5) continue;
+                rows.add(parts);
+                offsets.add(reader.getLineStart());
+                if (rows.size() == LOAD_BATCH_SIZE) {
+                    applyRemainingRows(rows, offsets, progress);
+                    rows.clear();
+                    offsets.clear();
                 }
             }
-            
-            System.out.println("✓ Đã tải " + count + " bản ghi lịch sử đóng tiền từ file: " + MONTHLY_HISTORY_FILENAME);
+            applyRemainingRows(rows, offsets, progress);
         } catch (IOException e) {
-            System.err.println("❌ Lỗi khi đọc file lịch sử: " + e.getMessage());
+            System.err.println("❌ Lỗi khi đọc file: " + e.getMessage());
         }
     }
     
-    /**
-     * Lưu lịch sử đóng tiền vé tháng ra file monthly_history.csv
-     * Format: LicensePlate,LastPaidMonth
-     */
-    public void saveMonthlyHistory() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(MONTHLY_HISTORY_FILENAME, false))) {
-            // Ghi header
-            writer.println("LicensePlate,LastPaidMonth");
-            
-            // Ghi dữ liệu
-            for (Map.Entry<String, String> entry : monthlyPaymentHistory.entrySet()) {
-                writer.printf("%s,%s%n", entry.getKey(), entry.getValue());
+    private synchronized void applyRemainingRows(List<String[]> rows, List<Long> offsets, LoadProgress progress) {
+        PersistentMap<String, Ticket> ticketsByPlate = state.tickets();
+        PersistentMap<String, Vehicle> vehicles = state.vehicles();
+        for (int i = 0; i < rows.size(); i++) {
+            String[] parts = rows.get(i);
+            String plate = parts[1].trim();
+            try {
+                // Xe đã check-out: chỉ lưu offset, chưa tạo đối tượng
+                if (parts[2].trim().isEmpty()) {
+                    if (!vehicles.containsKey(plate)) {
+                        progress.index.put(plate, offsets.get(i));
+                    }
+                    continue;
+                }
+                
+                // Xe đang đỗ nằm sau phần đầu file (file cũ)
+                if (ticketsByPlate.containsKey(plate)) {
+                    continue;
+                }
+                Vehicle vehicle = parseVehicle(parts);
+                Ticket ticket = parseActiveTicket(parts, vehicle);
+                ticketsByPlate = ticketsByPlate.plus(plate, ticket);
+                vehicles = vehicles.plus(plate, vehicle);
+                inactiveIndex.remove(plate);
+                if (columnarStore != null) {
+                    columnarStore.put(ticket);
+                }
+                progress.active++;
+            } catch (Exception e) {
+                System.err.println("❌ Lỗi khi đọc dòng: " + String.join(",", parts) + " - " + e.getMessage());
             }
-            
-            System.out.println("✓ Đã lưu lịch sử đóng tiền vào file: " + MONTHLY_HISTORY_FILENAME);
-        } catch (IOException e) {
-            System.err.println("❌ Lỗi khi lưu file lịch sử: " + e.getMessage());
         }
+        state = state.with(ticketsByPlate, vehicles);
     }
     
     /**
-     * Cập nhật trạng thái đóng tiền vé tháng cho một biển số
-     * @param plate Biển số xe
-     * @param month Tháng đã đóng (Format: "MM/yyyy")
+     * Ticket của một dòng xe đang đỗ (vé thiếu zone lấy zone ưu tiên của xe)
      */
-    public void updatePaymentStatus(String plate, String month) {
-        if (plate == null || month == null || plate.isEmpty() || month.isEmpty()) {
-            return;
-        }
-        
-        monthlyPaymentHistory.put(plate, month);
-        saveMonthlyHistory(); // Lưu ngay lập tức
+    private Ticket parseActiveTicket(String[] parts, Vehicle vehicle) {
+        LocalDateTime entryTime = LocalDateTime.parse(parts[2].trim(), DATE_FORMATTER);
+        Zone zone = parts.length >= 7 && !parts[6].trim().isEmpty()
+                ? Zone.parse(parts[6]) : vehicle.getHomeZone();
+        String slotId = parts.length >= 8 && !parts[7].trim().isEmpty() ? parts[7].trim() : null;
+        return new Ticket(vehicle.getPlate(), entryTime, vehicle.hasMonthlyCard(), zone, slotId);
     }
     
     /**
-     * Lấy tháng đã đóng tiền gần nhất của một biển số
-     * @param plate Biển số xe
-     * @return Tháng đã đóng (Format: "MM/yyyy") hoặc null nếu chưa đóng
+     * Tạo Vehicle cụ thể từ các cột của một dòng CSV
      */
-    public String getLastPaidMonth(String plate) {
-        if (plate == null || plate.isEmpty()) {
-            return null;
+    private Vehicle parseVehicle(String[] parts) {
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("Dòng dữ liệu thiếu cột");
         }
         
-        // Tìm kiếm với chuẩn hóa để đảm bảo tìm đúng
-        String normalizedPlate = normalizePlate(plate);
+        // Parse dữ liệu cơ bản
+        VehicleType type = VehicleType.valueOf(parts[0].trim());
+        String plate = parts[1].trim();
+        FuelType fuelType = FuelType.valueOf(parts[3].trim());
+        boolean isMonthly = parts[4].trim().equals("MONTHLY");
         
-        for (Map.Entry<String, String> entry : monthlyPaymentHistory.entrySet()) {
-            String storedPlate = entry.getKey();
-            String normalizedStored = normalizePlate(storedPlate);
-            if (normalizedStored.equals(normalizedPlate)) {
-                return entry.getValue();
+        // Tạo Vehicle cụ thể dựa trên VehicleType
+        switch (type) {
+            case CAR:
+                return new Car(plate, fuelType, isMonthly);
+            case BIKE:
+                return new Motorbike(plate, fuelType, isMonthly);
+            case BICYCLE:
+            default:
+                return new Bicycle(plate, fuelType, isMonthly);
+        }
+    }
+    
+    /**
+     * Lưu dữ liệu với tên file mặc định
+     */
+    public void saveToFile() {
+        saveToFile(resolveFile(DEFAULT_FILENAME).getPath());
+    }
+    
+    /**
+     * Đọc dữ liệu với tên file mặc định
+     */
+    public void loadFromFile() {
+        loadFromFile(resolveFile(DEFAULT_FILENAME).getPath());
+        loadPaymentLedger(); // Load sổ cái đóng tiền khi khởi động
+    }
+    
+    /**
+     * Mở sổ cái đóng vé tháng (payment_ledger.csv + payment_ledger.log)
+     * Lần đầu chạy (chưa có sổ cái) thì chuyển dữ liệu từ monthly_history.csv,
+     * monthly_payment.csv và cột lastPaidMonth của parking_data.csv.
+     */
+    public void loadPaymentLedger() {
+        try {
+            if (!paymentLedger.exists()) {
+                migrateLegacyPayments();
             }
+            paymentLedger.open();
+            System.out.println("✓ Đã tải sổ cái đóng tiền: " + paymentLedger.getCompactedCount()
+                    + " biển số (+ " + paymentLedger.getTailCount() + " trong nhật ký)");
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đọc sổ cái đóng tiền: " + e.getMessage());
         }
-        
-        return null;
     }
-
+    
     /**
-     * Kiểm tra một biển số đã đóng vé tháng cho một tháng cụ thể hay chưa
-     * Đọc từ file monthly_payment.csv với format: LicensePlate,MonthYear
+     * Chuyển dữ liệu đóng tiền từ 3 nguồn cũ sang sổ cái (chạy một lần)
+     * Thứ tự áp dụng từ cũ tới mới để tháng gần nhất theo đúng sổ cái cũ:
+     * cột lastPaidMonth trong parking_data.csv, monthly_payment.csv, monthly_history.csv.
+     * Sau khi ghi sổ cái, hai file cũ được đổi tên thành .migrated. Không có dữ liệu cũ thì vẫn
+     * ghi sổ cái rỗng để các lần khởi động sau không quét lại file dữ liệu.
      */
-    public boolean hasPaidMonthly(String plate, String monthYear) {
-        if (plate == null || monthYear == null || plate.isEmpty() || monthYear.isEmpty()) {
-            return false;
+    private void migrateLegacyPayments() throws IOException {
+        File historyFile = SnapshotFile.selectReadable(resolveFile(MONTHLY_HISTORY_FILENAME));
+        File paymentFile = resolveFile(MONTHLY_PAYMENT_FILENAME);
+        File dataFile = SnapshotFile.selectReadable(resolveFile(DEFAULT_FILENAME));
+        int[] count = new int[1];
+        
+        if (dataFile != null) {
+            readPaymentColumns(dataFile, 1, 5, 6, count);
         }
-
-        File file = new File(MONTHLY_PAYMENT_FILENAME);
-        if (!file.exists()) {
-            return false;
+        if (paymentFile.exists()) {
+            readPaymentColumns(paymentFile, 0, 1, 2, count);
         }
-
-        String normalizedPlate = normalizePlate(plate);
-
+        if (historyFile != null) {
+            readPaymentColumns(historyFile, 0, 1, 2, count);
+        }
+        paymentLedger.compact();
+        if (count[0] == 0) {
+            return;
+        }
+        
+        renameMigrated(resolveFile(MONTHLY_HISTORY_FILENAME));
+        renameMigrated(paymentFile);
+        System.out.println("✓ Đã chuyển " + count[0] + " bản ghi đóng tiền cũ sang sổ cái: "
+                + PaymentLedger.COMPACTED_FILENAME);
+    }
+    
+    /**
+     * Đọc cặp (biển số, tháng) từ một file CSV cũ vào sổ cái
+     * @param minColumns Số cột tối thiểu của header (file dữ liệu rất cũ không có cột lastPaidMonth)
+     */
+    private void readPaymentColumns(File file, int plateColumn, int monthColumn, int minColumns, int[] count)
+            throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // có thể là header
+            String header = reader.readLine();
+            if (header == null || header.split(",").length < minColumns) {
+                return;
+            }
+            String line;
             while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length < 2) continue;
-
-                String storedPlate = parts[0].trim();
-                String storedMonth = parts[1].trim();
-
-                if (normalizePlate(storedPlate).equals(normalizedPlate)
-                        && storedMonth.equals(monthYear)) {
-                    return true;
+                if (line.trim().isEmpty() || SnapshotFile.isFooter(line)) continue;
+                String[] parts = line.split(",", -1);
+                if (parts.length <= Math.max(plateColumn, monthColumn)) continue;
+                
+                String plate = parts[plateColumn].trim();
+                String month = parts[monthColumn].trim();
+                if (!plate.isEmpty() && !month.isEmpty()) {
+                    paymentLedger.importPayment(plate, month);
+                    count[0]++;
                 }
             }
-        } catch (IOException e) {
-            System.err.println("❌ Lỗi khi đọc file monthly_payment: " + e.getMessage());
         }
-
-        return false;
     }
-
+    
+    private static void renameMigrated(File file) {
+        if (file.exists() && !file.renameTo(new File(file.getPath() + ".migrated"))) {
+            System.err.println("❌ Không đổi tên được file cũ: " + file.getPath());
+        }
+    }
+    
     /**
-     * Lưu bản ghi đã đóng vé tháng vào file monthly_payment.csv
-     * Format: LicensePlate,MonthYear
+     * Ghi nhận đóng vé tháng cho một biển số (ghi nối tiếp vào nhật ký sổ cái)
+     * @param plate     Biển số xe
+     * @param monthYear Tháng đã đóng: "MM/yyyy", khoảng "MM/yyyy-MM/yyyy" hoặc nhiều khoảng cách nhau bởi ';'
      */
-    public void saveMonthlyPayment(String plate, String monthYear) {
+    public void recordMonthlyPayment(String plate, String monthYear) {
         if (plate == null || monthYear == null || plate.isEmpty() || monthYear.isEmpty()) {
             return;
         }
-
-        File file = new File(MONTHLY_PAYMENT_FILENAME);
-        boolean writeHeader = !file.exists() || file.length() == 0;
-
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
-            if (writeHeader) {
-                writer.println("LicensePlate,MonthYear");
-            }
-            writer.printf("%s,%s%n", plate, monthYear);
+        MonthCoverage months = MonthCoverage.parse(monthYear);
+        if (months.isEmpty()) {
+            System.err.println("❌ Tháng đóng tiền không hợp lệ: " + monthYear);
+            return;
+        }
+        
+        await(paymentLedgerReady);
+        try {
+            paymentLedger.record(plate, months);
         } catch (IOException e) {
-            System.err.println("❌ Lỗi khi ghi file monthly_payment: " + e.getMessage());
+            System.err.println("❌ Lỗi khi ghi sổ cái đóng tiền: " + e.getMessage());
+        }
+        
+        MutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.onMonthlyPaymentSaved(plate, monthYear);
         }
     }
+    
+    /**
+     * Các tháng đã đóng vé tháng của một biển số (tra trong bộ nhớ, không đọc file)
+     * @return MonthCoverage.EMPTY nếu chưa đóng tháng nào
+     */
+    public MonthCoverage getMonthlyCoverage(String plate) {
+        if (plate == null || plate.isEmpty()) {
+            return MonthCoverage.EMPTY;
+        }
+        await(paymentLedgerReady);
+        return paymentLedger.getCoverage(normalizePlate(plate));
+    }
+    
+    /**
+     * Lấy tháng đã đóng tiền muộn nhất của một biển số (có thể là tháng đóng trước)
+     * @param plate Biển số xe
+     * @return Tháng đã đóng (Format: "MM/yyyy") hoặc null nếu chưa đóng
+     */
+    public String getLastPaidMonth(String plate) {
+        int last = getMonthlyCoverage(plate).lastCovered();
+        return last >= 0 ? MonthCoverage.formatMonth(last) : null;
+    }
+    
+    /**
+     * Duyệt mọi biển số trong sổ cái (biển số, các tháng đã đóng dạng chuỗi của MonthCoverage)
+     */
+    void forEachMonthlyPayment(BiConsumer<String, String> consumer) {
+        await(paymentLedgerReady);
+        paymentLedger.forEachPayment(consumer);
+    }
 }
-
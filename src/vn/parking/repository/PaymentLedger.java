@@ -0,0 +1,316 @@
+package vn.parking.repository;
+
+import vn.parking.model.MonthCoverage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Sổ cái đóng vé tháng: nguồn duy nhất cho "biển số đã đóng những tháng nào"
+ *
+ * Gồm hai file trong thư mục dữ liệu:
+ * - payment_ledger.log: nhật ký ghi nối tiếp, mỗi lần đóng tiền một dòng "biểnSố,khoảngTháng" (fsync)
+ * - payment_ledger.csv: bản nén, mỗi biển số một dòng, sắp theo biển số chuẩn hóa
+ *     PlateKey,Plate,LastPaidMonth,PaidMonths
+ *   (PaidMonths: các khoảng tháng theo dạng chuỗi của MonthCoverage, vd "01/2026-06/2026;09/2026";
+ *   bản nén cũ liệt kê từng tháng vẫn đọc được)
+ *   ghi qua SnapshotFile (file tạm + footer checksum + đổi tên nguyên tử)
+ *
+ * Khi mở: bản nén và nhật ký được đọc một lượt thành bitmask tháng (MonthCoverage) cho mỗi biển số,
+ * giữ trong bộ nhớ. Tra cứu lúc xe ra chỉ là một lần get trên map, không đọc file.
+ *
+ * Số biển số thay đổi từ lần nén gần nhất đạt ngưỡng thì bản nén được trộn với các biển số đó
+ * và ghi lại, rồi nhật ký được xóa. Mất điện giữa hai bước thì nhật ký được áp dụng lại khi mở
+ * (áp dụng là phép hợp tập tháng, idempotent).
+ */
+final class PaymentLedger {
+
+    static final String COMPACTED_FILENAME = "payment_ledger.csv";
+    static final String LOG_FILENAME = "payment_ledger.log";
+    static final int DEFAULT_COMPACT_THRESHOLD = 1024;
+
+    private static final String HEADER = "PlateKey,Plate,LastPaidMonth,PaidMonths";
+
+    /**
+     * Trạng thái đóng tiền của một biển số (bất biến, thay cả đối tượng khi đóng thêm)
+     */
+    static final class Entry {
+        final String plate;                   // Biển số như lúc đóng tiền
+        final MonthCoverage coverage;         // Các tháng đã đóng
+
+        Entry(String plate, MonthCoverage coverage) {
+            this.plate = plate;
+            this.coverage = coverage;
+        }
+    }
+
+    private final File compactedFile;
+    private final File logFile;
+    private final int compactThreshold;
+
+    // Mọi biển số đã đóng tiền, theo biển số chuẩn hóa (đọc không cần khóa)
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Biển số thay đổi từ lần nén gần nhất (sắp xếp để trộn với bản nén)
+    private final TreeSet<String> dirty = new TreeSet<>();
+
+    private int compactedRows;
+    private File readableFile;            // File bản nén đang đọc (file chính hoặc .bak)
+
+    private FileOutputStream logOut;      // Mở khi ghi lần đầu
+
+    PaymentLedger(File compactedFile, File logFile, int compactThreshold) {
+        this.compactedFile = compactedFile;
+        this.logFile = logFile;
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    /**
+     * Sổ cái đã có trên đĩa chưa (chưa có thì cần chuyển dữ liệu từ các file cũ)
+     */
+    boolean exists() {
+        return SnapshotFile.selectReadable(compactedFile) != null || logFile.exists();
+    }
+
+    /**
+     * Đọc bản nén rồi áp dụng nhật ký
+     */
+    synchronized void open() throws IOException {
+        closeLog();
+        entries.clear();
+        dirty.clear();
+        loadCompacted();
+        replayLog();
+    }
+
+    /**
+     * Ghi nhận một lần đóng tiền: ghi nhật ký (fsync) rồi cập nhật bộ nhớ
+     * @param months Các tháng được đóng (một hoặc nhiều khoảng)
+     */
+    synchronized void record(String plate, MonthCoverage months) throws IOException {
+        if (months.isEmpty()) {
+            return;
+        }
+        if (logOut == null) {
+            truncatePartialLine();
+            logOut = new FileOutputStream(logFile, true);
+        }
+        logOut.write((plate + "," + months + "\n").getBytes(StandardCharsets.UTF_8));
+        logOut.getChannel().force(false);
+        apply(plate, months);
+
+        if (dirty.size() >= compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Thêm vào bộ nhớ mà không ghi nhật ký (chuyển dữ liệu cũ; gọi compact() sau cùng)
+     * @param month "MM/yyyy" (hoặc dạng chuỗi của MonthCoverage); sai định dạng thì bỏ qua
+     */
+    synchronized void importPayment(String plate, String month) {
+        apply(plate, MonthCoverage.parse(month));
+    }
+
+    /**
+     * Các tháng đã đóng của một biển số chuẩn hóa (MonthCoverage.EMPTY nếu chưa đóng)
+     */
+    MonthCoverage getCoverage(String plateKey) {
+        Entry entry = entries.get(plateKey);
+        return entry != null ? entry.coverage : MonthCoverage.EMPTY;
+    }
+
+    /**
+     * Duyệt mọi biển số đã đóng tiền (biển số, các tháng dạng chuỗi), đủ để dựng lại sổ cái bằng record()
+     */
+    synchronized void forEachPayment(BiConsumer<String, String> consumer) {
+        for (Entry entry : entries.values()) {
+            consumer.accept(entry.plate, entry.coverage.toString());
+        }
+    }
+
+    /**
+     * Số biển số trong bản nén / thay đổi từ lần nén gần nhất
+     */
+    synchronized int getCompactedCount() {
+        return compactedRows;
+    }
+
+    synchronized int getTailCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Trộn bản nén với các biển số đã thay đổi thành bản nén mới, sau đó xóa nhật ký
+     * (dòng không đổi được chép nguyên, không cần phân tích)
+     */
+    synchronized void compact() throws IOException {
+        int rows = 0;
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(compactedFile)) {
+            writer.writeLine(HEADER);
+            try (BufferedReader in = readableFile == null ? null : new BufferedReader(new InputStreamReader(
+                    new FileInputStream(readableFile), StandardCharsets.UTF_8))) {
+                Iterator<String> changed = dirty.iterator();
+                String pending = changed.hasNext() ? changed.next() : null;
+                String line = nextRow(in);
+
+                while (line != null || pending != null) {
+                    int order = line == null ? 1 : pending == null ? -1 : keyOf(line).compareTo(pending);
+                    if (order < 0) {
+                        writer.writeLine(line);
+                        line = nextRow(in);
+                    } else {
+                        writer.writeLine(formatRow(pending, entries.get(pending)));
+                        if (order == 0) {
+                            line = nextRow(in);
+                        }
+                        pending = changed.hasNext() ? changed.next() : null;
+                    }
+                    rows++;
+                }
+            }
+            writer.commit();
+        }
+
+        closeLog();
+        compactedRows = rows;
+        readableFile = compactedFile;
+
+        // Không xóa được thì giữ danh sách thay đổi: lần nén sau trộn lại (idempotent)
+        if (logFile.exists() && !logFile.delete()) {
+            throw new IOException("Không xóa được nhật ký sổ cái: " + logFile.getPath());
+        }
+        dirty.clear();
+    }
+
+    synchronized void close() {
+        closeLog();
+    }
+
+    /**
+     * Bỏ toàn bộ dữ liệu trong bộ nhớ và đóng nhật ký (file đã được dời đi; gọi open() để nạp lại)
+     */
+    synchronized void clear() {
+        closeLog();
+        entries.clear();
+        dirty.clear();
+        compactedRows = 0;
+        readableFile = null;
+    }
+
+    // ===== Đọc bản nén =====
+
+    private void loadCompacted() throws IOException {
+        compactedRows = 0;
+        readableFile = SnapshotFile.selectReadable(compactedFile);
+        if (readableFile == null) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(readableFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = nextRow(in)) != null) {
+                String[] parts = line.split(",", -1);
+                MonthCoverage coverage = MonthCoverage.parse(parts[3]);
+                if (!coverage.isEmpty()) {
+                    entries.put(parts[0], new Entry(parts[1], coverage));
+                }
+                compactedRows++;
+            }
+        }
+    }
+
+    // Dòng dữ liệu kế tiếp của bản nén (bỏ qua header và dòng hỏng), null khi hết
+    private static String nextRow(BufferedReader in) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (SnapshotFile.isFooter(line)) {
+                return null;
+            }
+            String[] parts = line.split(",", -1);
+            if (parts.length >= 4 && !parts[0].isEmpty() && !parts[0].equals("PlateKey")) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private static String keyOf(String row) {
+        return row.substring(0, row.indexOf(','));
+    }
+
+    private static String formatRow(String key, Entry entry) {
+        int last = entry.coverage.lastCovered();
+        return key + "," + entry.plate + "," + (last >= 0 ? MonthCoverage.formatMonth(last) : "")
+                + "," + entry.coverage;
+    }
+
+    // ===== Nhật ký =====
+
+    private void replayLog() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        try (OffsetLineReader in = new OffsetLineReader(logFile, 0)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!in.isLineTerminated()) {
+                    break; // Dòng ghi dở khi mất điện
+                }
+                int comma = line.lastIndexOf(',');
+                if (comma > 0 && comma < line.length() - 1) {
+                    apply(line.substring(0, comma), MonthCoverage.parse(line.substring(comma + 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cắt dòng ghi dở ở cuối nhật ký trước khi ghi tiếp
+     */
+    private void truncatePartialLine() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        long valid = 0;
+        try (OffsetLineReader in = new OffsetLineReader(logFile, 0)) {
+            while (in.readLine() != null && in.isLineTerminated()) {
+                valid = in.getPosition();
+            }
+        }
+        if (valid < logFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+    }
+
+    private void apply(String plate, MonthCoverage months) {
+        if (months.isEmpty()) {
+            return;
+        }
+        String key = ParkingRepository.normalizePlate(plate);
+        Entry current = entries.get(key);
+        entries.put(key, new Entry(plate.trim(), current == null ? months : current.coverage.union(months)));
+        dirty.add(key);
+    }
+
+    private void closeLog() {
+        try {
+            if (logOut != null) {
+                logOut.close();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi khi đóng nhật ký sổ cái: " + e.getMessage());
+        }
+        logOut = null;
+    }
+}
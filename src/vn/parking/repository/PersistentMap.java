@@ -0,0 +1,435 @@
+package vn.parking.repository;
+
+import java.util.*;
+
+/**
+ * Map bất biến dùng chung cấu trúc (Hash Array Mapped Trie)
+ *
+ * Mỗi lần plus/minus chỉ sao chép đường đi từ gốc tới lá (tối đa 7 node, mỗi node
+ * <= 32 phần tử), phần còn lại dùng chung với phiên bản cũ. Vì vậy giữ lại một
+ * phiên bản cũ (snapshot) chỉ tốn O(1) và người đọc không bao giờ thấy trạng thái dở dang.
+ */
+final class PersistentMap<K, V> {
+
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(null, 0);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(hash(key), key, 0);
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return Phiên bản mới có thêm/ghi đè key (phiên bản hiện tại không đổi)
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("PersistentMap không hỗ trợ key/value null");
+        }
+        BitmapNode current = root != null ? root : BitmapNode.EMPTY;
+        boolean[] added = new boolean[1];
+        BitmapNode updated = (BitmapNode) current.assoc(hash(key), key, value, 0, added);
+        if (updated == current) {
+            return this;
+        }
+        return new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return Phiên bản mới không còn key (phiên bản hiện tại không đổi)
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Object updated = root.without(hash(key), key, 0);
+        if (updated == root) {
+            return this;
+        }
+        if (updated == null) {
+            return empty();
+        }
+        BitmapNode newRoot = updated instanceof Leaf
+                ? new BitmapNode(bitFor(((Leaf) updated).hash, 0), new Object[]{updated})
+                : (BitmapNode) updated;
+        return new PersistentMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * View chỉ đọc các value (duyệt trực tiếp trên trie, không sao chép)
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new LeafIterator<V>(root) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    V extract(Leaf leaf) {
+                        return (V) leaf.value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * View chỉ đọc các key (duyệt trực tiếp trên trie, không sao chép)
+     */
+    Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new LeafIterator<K>(root) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    K extract(Leaf leaf) {
+                        return (K) leaf.key;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Phần tử lá (key, value)
+     */
+    private static final class Leaf {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Node trong trie
+     */
+    private interface Node {
+        Object find(int hash, Object key, int shift);
+
+        Node assoc(int hash, Object key, Object value, int shift, boolean[] added);
+
+        /**
+         * @return Node mới, Leaf (khi chỉ còn một phần tử, để node cha gộp lên) hoặc null nếu rỗng
+         */
+        Object without(int hash, Object key, int shift);
+
+        Object[] entries();
+    }
+
+    /**
+     * Node nhánh: bitmap 32 bit đánh dấu vị trí có phần tử, mảng nén chỉ chứa vị trí có dữ liệu
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] children; // Leaf hoặc Node
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int hash, Object key, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = children[index(bit)];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.key.equals(key) ? leaf.value : null;
+            }
+            return ((Node) child).find(hash, key, shift + BITS);
+        }
+
+        @Override
+        public Node assoc(int hash, Object key, Object value, int shift, boolean[] added) {
+            int bit = bitFor(hash, shift);
+            int idx = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, idx);
+                copy[idx] = new Leaf(hash, key, value);
+                System.arraycopy(children, idx, copy, idx + 1, children.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+
+            Object child = children[idx];
+            Object replacement;
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                if (leaf.key.equals(key)) {
+                    if (leaf.value == value) {
+                        return this;
+                    }
+                    replacement = new Leaf(hash, key, value);
+                } else {
+                    added[0] = true;
+                    replacement = merge(shift + BITS, leaf, new Leaf(hash, key, value));
+                }
+            } else {
+                Node node = (Node) child;
+                replacement = node.assoc(hash, key, value, shift + BITS, added);
+                if (replacement == node) {
+                    return this;
+                }
+            }
+
+            Object[] copy = children.clone();
+            copy[idx] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        public Object without(int hash, Object key, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object child = children[idx];
+
+            Object replacement;
+            if (child instanceof Leaf) {
+                if (!((Leaf) child).key.equals(key)) {
+                    return this;
+                }
+                replacement = null;
+            } else {
+                replacement = ((Node) child).without(hash, key, shift + BITS);
+                if (replacement == child) {
+                    return this;
+                }
+            }
+
+            if (replacement != null) {
+                Object[] copy = children.clone();
+                copy[idx] = replacement;
+                return new BitmapNode(bitmap, copy);
+            }
+
+            // Xóa hẳn vị trí này
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2 && children[1 - idx] instanceof Leaf) {
+                return children[1 - idx]; // Gộp phần tử còn lại lên node cha
+            }
+            Object[] copy = new Object[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, idx);
+            System.arraycopy(children, idx + 1, copy, idx, children.length - idx - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        public Object[] entries() {
+            return children;
+        }
+
+        private static Node merge(int shift, Leaf first, Leaf second) {
+            if (first.hash == second.hash) {
+                return new CollisionNode(first.hash, new Leaf[]{first, second});
+            }
+            int bit1 = bitFor(first.hash, shift);
+            int bit2 = bitFor(second.hash, shift);
+            if (bit1 == bit2) {
+                return new BitmapNode(bit1, new Object[]{merge(shift + BITS, first, second)});
+            }
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new BitmapNode(bit1 | bit2, new Object[]{first, second})
+                    : new BitmapNode(bit1 | bit2, new Object[]{second, first});
+        }
+    }
+
+    /**
+     * Node chứa các key trùng toàn bộ hash
+     */
+    private static final class CollisionNode implements Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        public Object find(int hash, Object key, int shift) {
+            for (Leaf leaf : leaves) {
+                if (leaf.key.equals(key)) {
+                    return leaf.value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Node assoc(int hash, Object key, Object value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // Key khác hash đi vào cùng vị trí: tách thành node nhánh
+                BitmapNode branch = new BitmapNode(bitFor(this.hash, shift), new Object[]{this});
+                return branch.assoc(hash, key, value, shift, added);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves[i].value == value) {
+                        return this;
+                    }
+                    Leaf[] copy = leaves.clone();
+                    copy[i] = new Leaf(hash, key, value);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Leaf[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = new Leaf(hash, key, value);
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Object without(int hash, Object key, int shift) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Object[] entries() {
+            return leaves;
+        }
+    }
+
+    /**
+     * Duyệt các lá theo chiều sâu bằng stack tường minh (không đệ quy, không sao chép)
+     */
+    private abstract static class LeafIterator<T> implements Iterator<T> {
+        private final Object[][] arrays = new Object[10][];
+        private final int[] positions = new int[10];
+        private int depth;
+        private Leaf next;
+
+        LeafIterator(BitmapNode root) {
+            depth = -1;
+            if (root != null) {
+                push(root.entries());
+                advance();
+            }
+        }
+
+        abstract T extract(Leaf leaf);
+
+        private void push(Object[] array) {
+            depth++;
+            arrays[depth] = array;
+            positions[depth] = 0;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] >= arrays[depth].length) {
+                    arrays[depth] = null;
+                    depth--;
+                    continue;
+                }
+                Object entry = arrays[depth][positions[depth]++];
+                if (entry instanceof Leaf) {
+                    next = (Leaf) entry;
+                    return;
+                }
+                push(((Node) entry).entries());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T value = extract(next);
+            advance();
+            return value;
+        }
+    }
+}
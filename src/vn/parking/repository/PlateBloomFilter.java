@@ -0,0 +1,103 @@
+package vn.parking.repository;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Bloom filter cho biển số xe (đã chuẩn hóa)
+ * Dùng để bỏ qua nhanh các segment lịch sử chắc chắn không chứa biển số
+ */
+class PlateBloomFilter {
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashes;
+
+    /**
+     * @param expectedItems Số biển số dự kiến trong segment
+     * @param bitsPerItem   Số bit cho mỗi phần tử (10 bit ~ 1% false positive)
+     */
+    PlateBloomFilter(int expectedItems, int bitsPerItem) {
+        int size = Math.max(64, expectedItems * bitsPerItem);
+        this.bits = new long[(size + 63) / 64];
+        this.numBits = bits.length * 64;
+        this.numHashes = Math.max(1, (int) Math.round(bitsPerItem * Math.log(2)));
+    }
+
+    private PlateBloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = bits.length * 64;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Thêm biển số (đã chuẩn hóa) vào filter
+     */
+    void add(String normalizedPlate) {
+        int h1 = normalizedPlate.hashCode();
+        int h2 = fnv1a(normalizedPlate);
+        for (int i = 0; i < numHashes; i++) {
+            int index = Math.floorMod(h1 + i * h2, numBits);
+            bits[index >>> 6] |= 1L << (index & 63);
+        }
+    }
+
+    /**
+     * @return false nếu chắc chắn không có, true nếu có thể có
+     */
+    boolean mightContain(String normalizedPlate) {
+        int h1 = normalizedPlate.hashCode();
+        int h2 = fnv1a(normalizedPlate);
+        for (int i = 0; i < numHashes; i++) {
+            int index = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits[index >>> 6] & (1L << (index & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash thứ hai (FNV-1a 32 bit), ép lẻ để double hashing phủ đều các bit
+     */
+    private static int fnv1a(String s) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash | 1;
+    }
+
+    /**
+     * Mã hóa filter thành chuỗi Base64 để lưu vào file index
+     * Format: numHashes:base64(bits)
+     */
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length * 8);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+        return numHashes + ":" + Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Giải mã filter từ chuỗi do encode() tạo ra
+     */
+    static PlateBloomFilter decode(String encoded) {
+        int sep = encoded.indexOf(':');
+        if (sep <= 0) {
+            throw new IllegalArgumentException("Bloom filter không hợp lệ");
+        }
+        int numHashes = Integer.parseInt(encoded.substring(0, sep));
+        byte[] raw = Base64.getDecoder().decode(encoded.substring(sep + 1));
+        if (raw.length == 0 || raw.length % 8 != 0) {
+            throw new IllegalArgumentException("Bloom filter không hợp lệ");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        long[] bits = new long[raw.length / 8];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new PlateBloomFilter(bits, numHashes);
+    }
+}
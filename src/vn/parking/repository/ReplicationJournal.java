@@ -0,0 +1,476 @@
+package vn.parking.repository;
+
+import vn.parking.event.DomainEvent;
+import vn.parking.event.EventCodec;
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.model.Zone;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Nhật ký thay đổi (journal) phục vụ replication primary/replica
+ *
+ * Mỗi thay đổi đã áp dụng vào repository được ghi nối tiếp thành một dòng
+ * trong replication_journal.log, đánh số thứ tự tăng dần:
+ *   seq\tLOẠI\ttrường 1\ttrường 2...
+ *
+ * Primary gắn journal làm MutationListener của repository; replica nhận nguyên
+ * văn các dòng từ primary, áp dụng rồi ghi lại vào journal của chính nó (cùng số
+ * thứ tự), nên sau khi được nâng lên primary vẫn phục vụ tiếp được replica khác.
+ *
+ * Cứ INDEX_INTERVAL dòng lại ghi nhớ (số thứ tự, vị trí byte) trong bộ nhớ: replica kết nối
+ * lại bắt đầu đọc từ mốc gần nhất trước số thứ tự của nó thay vì quét lại từ đầu file.
+ * Ghi journal lỗi thì ném UncheckedIOException cho nơi gây ra thay đổi (không để replica
+ * lệch mà không ai biết).
+ *
+ * Mỗi dòng được fsync trước khi phát (phía replica: mỗi lô), nên primary mất điện không mất
+ * đuôi journal mà file dữ liệu vẫn còn. Mỗi lần một node bắt đầu làm primary, journal ghi một
+ * dòng EPOCH với mã mới; replica gửi kèm mã epoch cuối cùng của nó khi kết nối, primary thấy
+ * số thứ tự đó không nằm trong cùng epoch ở journal của mình (primary khởi động lại bị tụt
+ * sau replica và đã cấp lại các số thứ tự đó) thì yêu cầu replica đồng bộ lại từ đầu.
+ *
+ * Dòng EVENT mang nguyên sự kiện nghiệp vụ (EventCodec) để replica dựng thống kê, dự báo
+ * và bộ đếm mất vé như primary.
+ */
+public class ReplicationJournal implements MutationListener, Closeable {
+
+    public static final String FILENAME = "replication_journal.log";
+
+    // Các loại thay đổi
+    public static final String CHECK_IN = "CHECK_IN";
+    public static final String TICKET_REMOVED = "TICKET_REMOVED";
+    public static final String PAYMENT_STATUS = "PAYMENT_STATUS"; // Journal cũ (trước sổ cái đóng tiền)
+    public static final String MONTHLY_PAYMENT = "MONTHLY_PAYMENT";
+    public static final String STAY = "STAY";
+    public static final String STAY_REMOVED = "STAY_REMOVED";
+    public static final String EVENT = "EVENT";
+    public static final String EPOCH = "EPOCH";
+
+    private static final String SEPARATOR = "\t";
+    private static final int MAX_BATCH_LINES = 1000; // Số dòng tối đa mỗi lần đọc đuôi journal
+    private static final int INDEX_INTERVAL = 1024;  // Số dòng giữa hai mốc (số thứ tự -> vị trí byte)
+
+    private final File file;
+    private FileOutputStream out;
+    private long lastSequence; // Số thứ tự của dòng cuối cùng đã ghi
+    private long length;       // Số byte đã ghi (các dòng hoàn chỉnh)
+    private long syncedLength; // Số byte đã fsync (Tail chỉ đọc tới đây)
+    private long[] indexSequences = new long[16]; // Mốc: số thứ tự của dòng...
+    private long[] indexOffsets = new long[16];   // ...và vị trí byte đầu dòng đó
+    private int indexSize;
+    private final List<Long> epochStarts = new ArrayList<>(); // Số thứ tự dòng EPOCH...
+    private final List<String> epochIds = new ArrayList<>();  // ...và mã epoch của dòng đó
+
+    /**
+     * Mở (hoặc tạo mới) journal trong thư mục dữ liệu
+     * Dòng cuối ghi dở (mất điện giữa chừng) bị cắt bỏ.
+     */
+    public ReplicationJournal(File dataDir) throws IOException {
+        this.file = dataDir == null ? new File(FILENAME) : new File(dataDir, FILENAME);
+        recover();
+        this.out = new FileOutputStream(file, true);
+    }
+
+    private void recover() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        long validLength = 0;
+        try (OffsetLineReader reader = new OffsetLineReader(file, 0)) {
+            String line;
+            while ((line = reader.readLine()) != null && reader.isLineTerminated()) {
+                if (!line.isEmpty()) {
+                    lastSequence = sequenceOf(line);
+                    index(lastSequence, reader.getLineStart());
+                    trackEpoch(line, lastSequence);
+                }
+                validLength = reader.getPosition();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Journal hỏng: " + e.getMessage(), e);
+        }
+
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+            System.out.println("ℹ Đã cắt bỏ dòng journal ghi dở cuối file: " + file.getPath());
+        }
+        length = validLength;
+        syncedLength = validLength;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Ghi một thay đổi mới (phía primary)
+     * @return Số thứ tự của thay đổi
+     */
+    public synchronized long append(String type, String... fields) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(lastSequence + 1).append(SEPARATOR).append(type);
+        for (String field : fields) {
+            sb.append(SEPARATOR).append(sanitize(field));
+        }
+        writeLine(sb.toString());
+        sync();
+        return lastSequence;
+    }
+
+    /**
+     * Ghi nguyên văn các dòng nhận từ primary (phía replica), fsync một lần cho cả lô
+     * Dòng đã có trong journal (số thứ tự không lớn hơn dòng cuối) được bỏ qua.
+     */
+    public synchronized void appendReplicated(List<String> lines) {
+        for (String line : lines) {
+            if (sequenceOf(line) > lastSequence) {
+                writeLine(line);
+            }
+        }
+        sync();
+    }
+
+    /**
+     * Bắt đầu một epoch mới (node này bắt đầu làm primary)
+     * @return Mã epoch
+     */
+    public synchronized String startEpoch() {
+        String epoch = UUID.randomUUID().toString();
+        append(EPOCH, epoch);
+        return epoch;
+    }
+
+    /**
+     * Mã epoch chứa dòng có số thứ tự sequence (null nếu trước dòng EPOCH đầu tiên)
+     */
+    public synchronized String getEpochAt(long sequence) {
+        for (int i = epochStarts.size() - 1; i >= 0; i--) {
+            if (epochStarts.get(i) <= sequence) {
+                return epochIds.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mã epoch của dòng cuối cùng trong journal
+     */
+    public synchronized String getLastEpoch() {
+        return getEpochAt(lastSequence);
+    }
+
+    /**
+     * Replica đang có tới dòng sequence (thuộc epoch) có khớp với journal này không:
+     * số thứ tự chưa vượt dòng cuối và cùng epoch
+     */
+    public synchronized boolean isConsistentWith(long sequence, String epoch) {
+        return sequence <= lastSequence && (sequence == 0 || Objects.equals(epoch, getEpochAt(sequence)));
+    }
+
+    /**
+     * Bắt đầu journal rỗng (replica đồng bộ lại từ đầu); file cũ được dời vào backupDir
+     */
+    public synchronized void reset(File backupDir) throws IOException {
+        out.close();
+        Files.move(file.toPath(), new File(backupDir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        out = new FileOutputStream(file, false);
+        lastSequence = 0;
+        length = 0;
+        syncedLength = 0;
+        indexSize = 0;
+        epochStarts.clear();
+        epochIds.clear();
+        notifyAll();
+    }
+
+    private void writeLine(String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        long sequence = sequenceOf(line);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            // Bỏ phần dòng ghi dở để các dòng sau vẫn nối tiếp đúng chỗ
+            try {
+                out.getChannel().truncate(length);
+            } catch (IOException ignored) {
+                // recover() sẽ cắt dòng ghi dở ở lần mở sau
+            }
+            throw new UncheckedIOException("Lỗi khi ghi journal (thay đổi #" + sequence
+                    + " chưa tới được replica): " + e.getMessage(), e);
+        }
+        index(sequence, length);
+        trackEpoch(line, sequence);
+        lastSequence = sequence;
+        length += bytes.length;
+    }
+
+    // fsync các dòng đã ghi rồi mới đánh thức các Tail: replica chỉ nhận dòng đã bền trên đĩa
+    private void sync() {
+        try {
+            out.getChannel().force(false);
+            syncedLength = length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lỗi khi ghi journal xuống đĩa (tới thay đổi #" + lastSequence
+                    + "): " + e.getMessage(), e);
+        }
+        notifyAll();
+    }
+
+    private void trackEpoch(String line, long sequence) {
+        int typeStart = line.indexOf(SEPARATOR) + 1;
+        if (typeStart > 0 && line.startsWith(EPOCH + SEPARATOR, typeStart)) {
+            epochStarts.add(sequence);
+            epochIds.add(line.substring(typeStart + EPOCH.length() + SEPARATOR.length()));
+        }
+    }
+
+    // Ghi nhớ mốc cho dòng đầu tiên và sau mỗi INDEX_INTERVAL số thứ tự
+    private void index(long sequence, long offset) {
+        if (indexSize > 0 && sequence < indexSequences[indexSize - 1] + INDEX_INTERVAL) {
+            return;
+        }
+        if (indexSize == indexSequences.length) {
+            indexSequences = Arrays.copyOf(indexSequences, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexSequences[indexSize] = sequence;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+
+    /**
+     * Vị trí byte để bắt đầu đọc các dòng có số thứ tự > afterSequence: mốc cuối cùng có
+     * số thứ tự <= afterSequence + 1 (số thứ tự tăng dần theo vị trí trong file)
+     */
+    private synchronized long positionAfter(long afterSequence) {
+        int lo = 0;
+        int hi = indexSize - 1;
+        long position = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexSequences[mid] <= afterSequence + 1) {
+                position = indexOffsets[mid];
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return position;
+    }
+
+    private synchronized long getLength() {
+        return syncedLength;
+    }
+
+    /**
+     * Nếu journal còn trống, ghi trạng thái hiện có của repository làm mốc ban đầu
+     * (xe đang đỗ, sổ cái đóng vé tháng, lịch sử gửi xe, các sự kiện trong event log)
+     * để replica khởi tạo từ thư mục trống vẫn có đủ dữ liệu và thống kê.
+     * @param events Duyệt các sự kiện đã ghi trong event log của primary
+     */
+    public synchronized void writeBaselineIfEmpty(ParkingRepository repository, HistoryRepository history,
+                                                  Consumer<Consumer<DomainEvent>> events) {
+        if (lastSequence > 0) {
+            return;
+        }
+
+        RepositorySnapshot snapshot = repository.snapshot();
+        for (Ticket ticket : snapshot.getActiveTickets()) {
+            Vehicle vehicle = snapshot.findVehicle(ticket.getPlate());
+            if (vehicle != null) {
+                onCheckIn(ticket, vehicle);
+            }
+        }
+        repository.forEachMonthlyPayment(this::onMonthlyPaymentSaved);
+        history.forEachRecord(this::onStayRecorded);
+        events.accept(this::onEventPublished);
+
+        if (lastSequence > 0) {
+            System.out.println("✓ Đã ghi " + lastSequence + " bản ghi mốc ban đầu vào journal: " + file.getPath());
+        }
+    }
+
+    // ===== MutationListener (phía primary) =====
+
+    @Override
+    public void onCheckIn(Ticket ticket, Vehicle vehicle) {
+        append(CHECK_IN, vehicle.toCSV(), ticket.getEntryTime().toString(),
+                String.valueOf(ticket.isMonthlyTicket()), ticket.getZone().name(),
+                ticket.getSlotId() != null ? ticket.getSlotId() : "");
+    }
+
+    @Override
+    public void onTicketRemoved(String plate) {
+        append(TICKET_REMOVED, plate);
+    }
+
+    @Override
+    public void onMonthlyPaymentSaved(String plate, String monthYear) {
+        append(MONTHLY_PAYMENT, plate, monthYear);
+    }
+
+    @Override
+    public void onStayRecorded(StayRecord record) {
+        append(STAY, record.toCSV());
+    }
+
+    @Override
+    public void onStayRemoved(StayRecord record) {
+        append(STAY_REMOVED, record.toCSV());
+    }
+
+    /**
+     * Ghi một sự kiện nghiệp vụ đã xử lý xong (sau các thay đổi repository của nó)
+     */
+    public void onEventPublished(DomainEvent event) {
+        // EventCodec đã thay tab trong từng trường: các trường của sự kiện nối tiếp sau loại EVENT
+        append(EVENT, EventCodec.encode(event).split(SEPARATOR, -1));
+    }
+
+    // ===== Áp dụng (phía replica) =====
+
+    /**
+     * Áp dụng một dòng journal vào repository của replica
+     * Các thao tác đều áp dụng lại được khi primary gửi lại dòng đã áp dụng (sau khi mất kết nối
+     * hoặc replica dừng trước khi ghi journal): ghi đè trạng thái, lượt gửi đã có thì bỏ qua.
+     *
+     * @param events Nhận sự kiện nghiệp vụ của dòng EVENT
+     * @return Loại thay đổi đã áp dụng
+     */
+    public static String apply(String line, ParkingRepository repository, HistoryRepository history,
+                               Consumer<DomainEvent> events) {
+        String[] parts = line.split(SEPARATOR, -1);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Dòng journal thiếu trường: " + line);
+        }
+
+        String type = parts[1];
+        switch (type) {
+            case CHECK_IN:
+                Vehicle vehicle = Vehicle.fromCSV(parts[2]);
+                Ticket ticket = new Ticket(vehicle.getPlate(), LocalDateTime.parse(parts[3]),
+                        Boolean.parseBoolean(parts[4]), Zone.parse(parts[5]),
+                        parts.length > 6 && !parts[6].isEmpty() ? parts[6] : null);
+                repository.saveCheckIn(ticket, vehicle);
+                break;
+            case TICKET_REMOVED:
+                repository.removeTicket(parts[2]);
+                break;
+            case PAYMENT_STATUS:
+            case MONTHLY_PAYMENT:
+                repository.recordMonthlyPayment(parts[2], parts[3]);
+                break;
+            case STAY:
+                StayRecord record = StayRecord.fromCSV(parts[2]);
+                if (record == null) {
+                    throw new IllegalArgumentException("Bản ghi lịch sử không hợp lệ: " + parts[2]);
+                }
+                if (!history.contains(record)) {
+                    history.append(record);
+                }
+                break;
+            case STAY_REMOVED:
+                StayRecord removed = StayRecord.fromCSV(parts[2]);
+                if (removed == null) {
+                    throw new IllegalArgumentException("Bản ghi lịch sử không hợp lệ: " + parts[2]);
+                }
+                history.remove(removed);
+                break;
+            case EVENT:
+                String encoded = line.substring(line.indexOf(SEPARATOR, line.indexOf(SEPARATOR) + 1) + 1);
+                DomainEvent event = EventCodec.decode(encoded);
+                if (event == null) {
+                    throw new IllegalArgumentException("Sự kiện không hợp lệ: " + encoded);
+                }
+                events.accept(event);
+                break;
+            case EPOCH:
+                break;
+            default:
+                throw new IllegalArgumentException("Loại thay đổi không hỗ trợ: " + type);
+        }
+        return type;
+    }
+
+    public static long sequenceOf(String line) {
+        int end = line.indexOf(SEPARATOR);
+        return Long.parseLong(end < 0 ? line : line.substring(0, end));
+    }
+
+    private static String sanitize(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Mở con trỏ đọc đuôi journal, bắt đầu sau số thứ tự cho trước (nhảy tới mốc gần nhất)
+     */
+    public Tail openTail(long afterSequence) {
+        return new Tail(afterSequence);
+    }
+
+    /**
+     * Con trỏ đọc các dòng journal theo thứ tự (mỗi replica đang kết nối một con trỏ)
+     */
+    public class Tail {
+        private final long afterSequence;
+        private long position; // Vị trí byte đã đọc tới
+
+        private Tail(long afterSequence) {
+            this.afterSequence = afterSequence;
+            this.position = positionAfter(afterSequence);
+        }
+
+        /**
+         * Lấy các dòng mới; nếu chưa có thì chờ tối đa waitMillis
+         * @return Danh sách dòng (rỗng nếu hết thời gian chờ)
+         */
+        public List<String> poll(long waitMillis) throws IOException, InterruptedException {
+            synchronized (ReplicationJournal.this) {
+                if (position >= syncedLength) {
+                    ReplicationJournal.this.wait(waitMillis);
+                }
+            }
+            return readAvailable();
+        }
+
+        private List<String> readAvailable() throws IOException {
+            List<String> lines = new ArrayList<>();
+            long limit = getLength();
+            if (position >= limit) {
+                return lines;
+            }
+
+            try (OffsetLineReader reader = new OffsetLineReader(file, position)) {
+                String line;
+                while (lines.size() < MAX_BATCH_LINES && reader.getPosition() < limit
+                        && (line = reader.readLine()) != null && reader.isLineTerminated()) {
+                    position = reader.getPosition();
+                    if (!line.isEmpty() && sequenceOf(line) > afterSequence) {
+                        lines.add(line);
+                    }
+                }
+            }
+            return lines;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,117 @@
+package vn.parking.repository;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Ảnh chụp trạng thái (point-in-time) của xe đang đỗ và xe trong bộ nhớ
+ *
+ * Snapshot bất biến: dùng chung cấu trúc với trạng thái hiện tại của repository
+ * nên lấy snapshot là O(1), không sao chép. Các thao tác ghi ở cổng sau đó tạo
+ * phiên bản mới và không ảnh hưởng tới báo cáo đang đọc snapshot cũ.
+ */
+public class RepositorySnapshot {
+
+    static final RepositorySnapshot EMPTY =
+            new RepositorySnapshot(PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), 0);
+
+    private final PersistentMap<String, Ticket> tickets;
+    private final PersistentMap<String, Vehicle> vehicles;
+    private final PersistentMap<String, String> parkedPlates; // Biển số chuẩn hóa -> biển số đã lưu (vé active)
+    private final long version;      // Tăng sau mỗi thao tác ghi
+    private final LocalDateTime takenAt; // Thời điểm tạo phiên bản này
+
+    private RepositorySnapshot(PersistentMap<String, Ticket> tickets, PersistentMap<String, Vehicle> vehicles,
+                               PersistentMap<String, String> parkedPlates, long version) {
+        this.tickets = tickets;
+        this.vehicles = vehicles;
+        this.parkedPlates = parkedPlates;
+        this.version = version;
+        this.takenAt = LocalDateTime.now();
+    }
+
+    // Tạo phiên bản mới (chỉ repository gọi)
+    RepositorySnapshot withTicket(Ticket ticket) {
+        return new RepositorySnapshot(tickets.plus(ticket.getPlate(), ticket), vehicles,
+                parkedPlates.plus(ParkingRepository.normalizePlate(ticket.getPlate()), ticket.getPlate()), version + 1);
+    }
+
+    RepositorySnapshot withCheckIn(Ticket ticket, Vehicle vehicle) {
+        return new RepositorySnapshot(tickets.plus(ticket.getPlate(), ticket), vehicles.plus(vehicle.getPlate(), vehicle),
+                parkedPlates.plus(ParkingRepository.normalizePlate(ticket.getPlate()), ticket.getPlate()), version + 1);
+    }
+
+    RepositorySnapshot withoutTicket(String plate) {
+        String normalized = ParkingRepository.normalizePlate(plate);
+        PersistentMap<String, String> newParkedPlates = plate.equals(parkedPlates.get(normalized))
+                ? parkedPlates.minus(normalized) : parkedPlates;
+        return new RepositorySnapshot(tickets.minus(plate), vehicles, newParkedPlates, version + 1);
+    }
+
+    RepositorySnapshot withVehicles(PersistentMap<String, Vehicle> newVehicles) {
+        return new RepositorySnapshot(tickets, newVehicles, parkedPlates, version + 1);
+    }
+
+    /**
+     * Thay toàn bộ vé và xe (khi nạp file): dựng lại chỉ mục biển số chuẩn hóa
+     */
+    RepositorySnapshot with(PersistentMap<String, Ticket> newTickets, PersistentMap<String, Vehicle> newVehicles) {
+        PersistentMap<String, String> newParkedPlates = PersistentMap.empty();
+        for (String plate : newTickets.keySet()) {
+            newParkedPlates = newParkedPlates.plus(ParkingRepository.normalizePlate(plate), plate);
+        }
+        return new RepositorySnapshot(newTickets, newVehicles, newParkedPlates, version + 1);
+    }
+
+    PersistentMap<String, Ticket> tickets() {
+        return tickets;
+    }
+
+    PersistentMap<String, Vehicle> vehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Danh sách vé đang active (view chỉ đọc, không sao chép)
+     */
+    public Collection<Ticket> getActiveTickets() {
+        return tickets.values();
+    }
+
+    /**
+     * Các xe đang có trong bộ nhớ (xe đang đỗ + xe vừa thao tác chưa lưu file)
+     */
+    public Collection<Vehicle> getVehicles() {
+        return vehicles.values();
+    }
+
+    public Ticket findTicket(String plate) {
+        return plate == null ? null : tickets.get(plate);
+    }
+
+    /**
+     * Biển số đã lưu của vé active khớp biển số đã chuẩn hóa, null nếu không có
+     */
+    public String findParkedPlate(String normalizedPlate) {
+        return normalizedPlate == null ? null : parkedPlates.get(normalizedPlate);
+    }
+
+    public Vehicle findVehicle(String plate) {
+        return plate == null ? null : vehicles.get(plate);
+    }
+
+    public int getActiveCount() {
+        return tickets.size();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+}
@@ -0,0 +1,338 @@
+package vn.parking.repository;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+ * Ghi/đọc file snapshot an toàn khi mất điện
+ *
+ * Quy trình ghi:
+ * 1. Ghi toàn bộ dữ liệu vào file.tmp, cuối file là dòng footer "#CRC32,<crc>,<số dòng>"
+ *    (thêm ",<số byte>,<crc>,<số dòng>" của phần đầu file nếu người ghi đánh dấu markHead())
+ * 2. fsync file.tmp
+ * 3. Giữ bản cũ làm file.bak (hard link, hoặc copy nếu hệ thống không hỗ trợ)
+ * 4. Đổi tên nguyên tử file.tmp -> file (file đích luôn tồn tại, cũ hoặc mới)
+ *
+ * Khi đọc: kiểm tra footer của file chính, nếu hỏng thì tự động dùng file.bak.
+ * File cũ chưa có footer (định dạng trước đây) vẫn được chấp nhận, trừ khi file.bak có
+ * footer (khi đó file chính thiếu footer nghĩa là bị cắt cụt).
+ * Người đọc chỉ cần phần đầu file (khởi động nhanh) kiểm tra riêng checksum phần đầu,
+ * phần còn lại kiểm tra sau bằng verify().
+ */
+final class SnapshotFile {
+
+    static final String FOOTER_PREFIX = "#CRC32,";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String BACKUP_SUFFIX = ".bak";
+
+    /**
+     * Kết quả kiểm tra một file snapshot
+     */
+    enum Status {
+        VALID,    // Có footer và checksum khớp
+        LEGACY,   // Không có footer (file định dạng cũ)
+        CORRUPT,  // Có footer nhưng checksum/số dòng không khớp
+        MISSING   // Không tồn tại
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Dòng footer checksum (bỏ qua khi đọc dữ liệu)
+     */
+    static boolean isFooter(String line) {
+        return line.startsWith(FOOTER_PREFIX);
+    }
+
+    /**
+     * Chọn file để đọc: file chính nếu hợp lệ, nếu không thì bản snapshot trước (.bak)
+     * @return File có thể đọc, hoặc null nếu không có file nào dùng được
+     */
+    static File selectReadable(File target) {
+        return selectReadable(target, false);
+    }
+
+    /**
+     * Như selectReadable(File); headOnly = true chỉ kiểm tra phần đầu file (file không đánh
+     * dấu phần đầu thì kiểm tra cả file)
+     */
+    static File selectReadable(File target, boolean headOnly) {
+        Status status = headOnly ? verifyHead(target) : verify(target);
+        if (status == Status.VALID) {
+            return target;
+        }
+
+        File backup = backupOf(target);
+        Status backupStatus = headOnly ? verifyHead(backup) : verify(backup);
+        // Bản trước đã có footer thì file chính cũng được ghi có footer: thiếu footer là bị cắt cụt
+        if (status == Status.LEGACY && backupStatus != Status.VALID) {
+            return target;
+        }
+        if (status == Status.LEGACY) {
+            status = Status.CORRUPT;
+        }
+        if (backupStatus == Status.VALID || backupStatus == Status.LEGACY) {
+            if (status == Status.CORRUPT) {
+                System.err.println("❌ File " + target.getName() + " bị hỏng (sai checksum hoặc bị cắt cụt), dùng bản trước: " + backup.getName());
+            } else {
+                System.err.println("❌ Không tìm thấy " + target.getName() + ", dùng bản trước: " + backup.getName());
+            }
+            return backup;
+        }
+
+        if (status == Status.CORRUPT) {
+            System.err.println("❌ File " + target.getName() + " bị hỏng và không có bản dự phòng, đọc phần còn dùng được");
+            return target;
+        }
+        return null;
+    }
+
+    static File backupOf(File target) {
+        return new File(target.getPath() + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Kiểm tra footer checksum của file
+     */
+    static Status verify(File file) {
+        if (!file.exists()) {
+            return Status.MISSING;
+        }
+        try {
+            Footer footer = readFooter(file);
+            if (footer == null) {
+                return Status.LEGACY;
+            }
+            return matches(file, footer.dataLength, footer.crc, footer.lines) ? Status.VALID : Status.CORRUPT;
+        } catch (IOException | RuntimeException e) {
+            return Status.CORRUPT;
+        }
+    }
+
+    /**
+     * Kiểm tra checksum phần đầu file (đọc footer và đúng số byte của phần đầu)
+     */
+    static Status verifyHead(File file) {
+        if (!file.exists()) {
+            return Status.MISSING;
+        }
+        try {
+            Footer footer = readFooter(file);
+            if (footer == null) {
+                return Status.LEGACY;
+            }
+            if (!footer.hasHead()) {
+                return verify(file);
+            }
+            return matches(file, footer.headLength, footer.headCrc, footer.headLines) ? Status.VALID : Status.CORRUPT;
+        } catch (IOException | RuntimeException e) {
+            return Status.CORRUPT;
+        }
+    }
+
+    /**
+     * Footer checksum của file
+     */
+    static final class Footer {
+        final String line;        // Nguyên dòng footer
+        final long fileLength;    // Độ dài file lúc đọc footer
+        final long dataLength;    // Số byte dữ liệu trước footer
+        final long crc;
+        final long lines;
+        final long headLength;    // Số byte phần đầu, -1 nếu không đánh dấu
+        final long headCrc;
+        final long headLines;
+
+        private Footer(String line, long fileLength, long dataLength) {
+            String[] parts = line.split(",");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Footer thiếu cột: " + line);
+            }
+            this.line = line;
+            this.fileLength = fileLength;
+            this.dataLength = dataLength;
+            this.crc = Long.parseLong(parts[1], 16);
+            this.lines = Long.parseLong(parts[2]);
+            boolean head = parts.length >= 6;
+            this.headLength = head ? Long.parseLong(parts[3]) : -1;
+            this.headCrc = head ? Long.parseLong(parts[4], 16) : 0;
+            this.headLines = head ? Long.parseLong(parts[5]) : 0;
+            if (headLength > dataLength) {
+                throw new IllegalArgumentException("Phần đầu dài hơn dữ liệu: " + line);
+            }
+        }
+
+        boolean hasHead() {
+            return headLength >= 0;
+        }
+    }
+
+    /**
+     * Đọc footer ở cuối file (chỉ đọc tối đa 256 byte cuối)
+     * @return Footer, hoặc null nếu dòng cuối không phải footer (file định dạng cũ / bị cắt cụt)
+     * @throws IllegalArgumentException nếu footer sai định dạng
+     */
+    static Footer readFooter(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            int tailLength = (int) Math.min(length, 256);
+            byte[] tail = new byte[tailLength];
+            raf.seek(length - tailLength);
+            raf.readFully(tail);
+
+            // Tìm dòng cuối cùng (bỏ ký tự xuống dòng ở cuối)
+            int end = tailLength;
+            while (end > 0 && (tail[end - 1] == '\n' || tail[end - 1] == '\r')) {
+                end--;
+            }
+            int start = end;
+            while (start > 0 && tail[start - 1] != '\n') {
+                start--;
+            }
+            String lastLine = new String(tail, start, end - start, StandardCharsets.UTF_8);
+            if (!isFooter(lastLine)) {
+                return null;
+            }
+            return new Footer(lastLine, length, length - tailLength + start);
+        }
+    }
+
+    /**
+     * Tính lại checksum và số dòng của length byte đầu file
+     */
+    private static boolean matches(File file, long length, long expectedCrc, long expectedLines) throws IOException {
+        CRC32 crc = new CRC32();
+        long lines = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    return false;
+                }
+                crc.update(buffer, 0, read);
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                remaining -= read;
+            }
+        }
+        return crc.getValue() == expectedCrc && lines == expectedLines;
+    }
+
+    /**
+     * Bộ ghi snapshot: ghi vào file tạm, chỉ thay thế file đích khi commit()
+     * Nếu close() mà chưa commit() thì file tạm bị xóa, file đích giữ nguyên.
+     */
+    static class Writer implements Closeable {
+        private final File target;
+        private final File tempFile;
+        private final FileOutputStream fileOut;
+        private final OutputStream out;
+        private final CRC32 crc;
+        private long position;
+        private long lineCount;
+        private String headMark = "";   // ",<số byte>,<crc>,<số dòng>" của phần đầu (rỗng nếu không đánh dấu)
+        private boolean committed;
+
+        Writer(File target) throws IOException {
+            this.target = target;
+            this.tempFile = new File(target.getPath() + TEMP_SUFFIX);
+            this.fileOut = new FileOutputStream(tempFile, false);
+            this.out = new BufferedOutputStream(fileOut, 64 * 1024);
+            this.crc = new CRC32();
+        }
+
+        /**
+         * Ghi một dòng dữ liệu
+         * @return Số byte đã ghi
+         */
+        int writeLine(String line) throws IOException {
+            byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            crc.update(bytes, 0, bytes.length);
+            position += bytes.length;
+            lineCount++;
+            return bytes.length;
+        }
+
+        /**
+         * Vị trí byte hiện tại (offset của dòng tiếp theo)
+         */
+        long getPosition() {
+            return position;
+        }
+
+        /**
+         * Đánh dấu hết phần đầu file: checksum các dòng đã ghi tới đây được lưu riêng trong
+         * footer để người đọc chỉ cần phần đầu kiểm tra được mà không đọc cả file
+         */
+        void markHead() {
+            headMark = "," + position + "," + Long.toHexString(crc.getValue()) + "," + lineCount;
+        }
+
+        /**
+         * Ghi footer, fsync và thay thế nguyên tử file đích
+         */
+        void commit() throws IOException {
+            String footer = FOOTER_PREFIX + Long.toHexString(crc.getValue()) + "," + lineCount + headMark;
+            out.write((footer + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            fileOut.getChannel().force(true);
+            out.close();
+
+            Path targetPath = target.toPath();
+            if (target.exists()) {
+                keepBackup(targetPath, backupOf(target).toPath());
+            }
+            try {
+                Files.move(tempFile.toPath(), targetPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(targetPath.toAbsolutePath().getParent());
+            committed = true;
+        }
+
+        /**
+         * Giữ snapshot hiện tại làm bản dự phòng (file đích không bị đổi tên)
+         */
+        private static void keepBackup(Path targetPath, Path backupPath) throws IOException {
+            Files.deleteIfExists(backupPath);
+            try {
+                Files.createLink(backupPath, targetPath);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(targetPath, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * fsync thư mục để thao tác đổi tên được ghi bền (bỏ qua nếu hệ điều hành không hỗ trợ)
+         */
+        private static void syncDirectory(Path directory) {
+            if (directory == null) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException | RuntimeException e) {
+                // Windows không cho mở thư mục - bỏ qua
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                tempFile.delete();
+            }
+        }
+    }
+}
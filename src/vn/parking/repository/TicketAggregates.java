@@ -0,0 +1,111 @@
+package vn.parking.repository;
+
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Số liệu tổng hợp trên toàn bộ xe đang đỗ tại một thời điểm
+ */
+public class TicketAggregates {
+    private final int total;
+    private final int monthly;
+    private final Map<Zone, Integer> byZone;
+    private final long longStayHours;
+    private final int longStayCount;
+    private final long averageStaySeconds;
+    private final String oldestPlate;
+    private final LocalDateTime oldestEntry;
+
+    TicketAggregates(int total, int monthly, Map<Zone, Integer> byZone, long longStayHours,
+                     int longStayCount, long averageStaySeconds, String oldestPlate, LocalDateTime oldestEntry) {
+        this.total = total;
+        this.monthly = monthly;
+        this.byZone = Collections.unmodifiableMap(byZone);
+        this.longStayHours = longStayHours;
+        this.longStayCount = longStayCount;
+        this.averageStaySeconds = averageStaySeconds;
+        this.oldestPlate = oldestPlate;
+        this.oldestEntry = oldestEntry;
+    }
+
+    /**
+     * Tổng hợp bằng cách duyệt các đối tượng Ticket (khi không bật kho dạng cột)
+     */
+    static TicketAggregates fromTickets(Collection<Ticket> tickets, LocalDateTime now, long longStayHours) {
+        Map<Zone, Integer> byZone = new EnumMap<>(Zone.class);
+        LocalDateTime longStayBefore = now.minusHours(longStayHours);
+        int total = 0;
+        int monthly = 0;
+        int longStay = 0;
+        long totalSeconds = 0;
+        Ticket oldest = null;
+        for (Ticket ticket : tickets) {
+            total++;
+            if (ticket.isMonthlyTicket()) {
+                monthly++;
+            }
+            byZone.merge(ticket.getZone(), 1, Integer::sum);
+            totalSeconds += Duration.between(ticket.getEntryTime(), now).getSeconds();
+            if (!ticket.getEntryTime().isAfter(longStayBefore)) {
+                longStay++;
+            }
+            if (oldest == null || ticket.getEntryTime().isBefore(oldest.getEntryTime())) {
+                oldest = ticket;
+            }
+        }
+        return new TicketAggregates(total, monthly, byZone, longStayHours, longStay,
+                total == 0 ? 0 : totalSeconds / total,
+                oldest == null ? null : oldest.getPlate(), oldest == null ? null : oldest.getEntryTime());
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getMonthly() {
+        return monthly;
+    }
+
+    public Map<Zone, Integer> getByZone() {
+        return byZone;
+    }
+
+    public int getLongStayCount() {
+        return longStayCount;
+    }
+
+    public long getAverageStaySeconds() {
+        return averageStaySeconds;
+    }
+
+    public String getOldestPlate() {
+        return oldestPlate;
+    }
+
+    public LocalDateTime getOldestEntry() {
+        return oldestEntry;
+    }
+
+    /**
+     * Tóm tắt để hiển thị
+     */
+    public List<String> getSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Đang đỗ: " + total + " | Vé tháng: " + monthly + " | Vé lượt: " + (total - monthly));
+        StringBuilder zones = new StringBuilder("Theo zone:");
+        for (Map.Entry<Zone, Integer> entry : byZone.entrySet()) {
+            zones.append(" ").append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        lines.add(zones.toString());
+        lines.add("Thời gian đỗ trung bình: " + String.format("%.1f", averageStaySeconds / 3600.0) + " giờ"
+                + " | Đỗ quá " + longStayHours + " giờ: " + longStayCount);
+        if (oldestPlate != null) {
+            lines.add("Xe đỗ lâu nhất: " + oldestPlate + " (vào lúc " + oldestEntry.withNano(0) + ")");
+        }
+        return lines;
+    }
+}
@@ -1,9 +1,11 @@
 package vn.parking.service;
 
+import vn.parking.model.MonthCoverage;
 import vn.parking.model.Vehicle;
 import vn.parking.repository.ParkingRepository;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Service xử lý logic tính phí đỗ xe
@@ -15,10 +17,80 @@ public class BillingService {
     private static final int FREE_HOURS = 24;           // 24 giờ đầu miễn phí
     private static final int FEE_PER_DAY = 5000;        // Phí mỗi ngày: 5.000 VNĐ
     private static final long MONTHLY_TICKET_FEE = 50000; // Phí vé tháng: 50.000 VNĐ
-    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MM/yyyy");
     
+    // Số ngày đầu tháng mà thẻ đã đóng tháng trước vẫn được ra miễn phí (0 = không ân hạn)
+    private final int graceDays;
+    
+    /**
+     * Khoản thu vé tháng: các khoảng tháng liên tiếp phải đóng và tổng tiền
+     */
+    public static final class MonthlyCharge {
+        private final int[] firstMonths;      // Tháng đầu mỗi khoảng (số tháng của MonthCoverage)
+        private final int[] monthCounts;      // Số tháng mỗi khoảng
+        private final int totalMonths;
+        private final int lastPaidMonth;      // Tháng đã đóng muộn nhất sau khi thu, -1 nếu không có
+        
+        MonthlyCharge(List<int[]> runs, int lastPaidMonth) {
+            this.firstMonths = new int[runs.size()];
+            this.monthCounts = new int[runs.size()];
+            int total = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                firstMonths[i] = runs.get(i)[0];
+                monthCounts[i] = runs.get(i)[1];
+                total += monthCounts[i];
+            }
+            this.totalMonths = total;
+            this.lastPaidMonth = lastPaidMonth;
+        }
+        
+        public int getRunCount() {
+            return firstMonths.length;
+        }
+        
+        /**
+         * Tháng đầu của khoảng thứ i (Format: "MM/yyyy")
+         */
+        public String getFirstMonth(int i) {
+            return MonthCoverage.formatMonth(firstMonths[i]);
+        }
+        
+        public int getMonthCount(int i) {
+            return monthCounts[i];
+        }
+        
+        public int getTotalMonths() {
+            return totalMonths;
+        }
+        
+        public long getAmount(int i) {
+            return monthCounts[i] * MONTHLY_TICKET_FEE;
+        }
+        
+        public long getAmount() {
+            return totalMonths * MONTHLY_TICKET_FEE;
+        }
+        
+        /**
+         * Tháng đã đóng muộn nhất sau khoản thu này (hiển thị trên hóa đơn), null nếu chưa đóng tháng nào
+         */
+        public String getLastPaidMonth() {
+            return lastPaidMonth >= 0 ? MonthCoverage.formatMonth(lastPaidMonth) : null;
+        }
+    }
+    
+    /**
+     * Khởi tạo với số ngày ân hạn từ system property: -Dparking.monthly.grace.days=0
+     */
     public BillingService(ParkingRepository repository) {
+        this(repository, Integer.getInteger("parking.monthly.grace.days", 0));
+    }
+    
+    /**
+     * @param graceDays Số ngày đầu tháng được ra miễn phí nếu đã đóng tháng liền trước
+     */
+    public BillingService(ParkingRepository repository, int graceDays) {
         this.repository = repository;
+        this.graceDays = Math.max(0, graceDays);
     }
     
     /**
@@ -36,8 +108,8 @@ public class BillingService {
         }
 
         if (vehicle.hasMonthlyCard()) {
-            // Logic VÉ THÁNG: Chỉ thu 1 lần/tháng (thực tế)
-            return calculateMonthlyTicketFee(vehicle.getPlate(), checkoutTime);
+            // Logic VÉ THÁNG: thu các tháng của lượt gửi chưa đóng (thực tế)
+            return calculateMonthlyCharge(vehicle.getPlate(), entryTime, checkoutTime).getAmount();
         }
 
         // Logic VÉ LƯỢT
@@ -45,27 +117,63 @@ public class BillingService {
     }
     
     /**
-     * Tính phí vé tháng (One-Time Payment per Month)
-     * - Lấy tháng check-out (Format "MM/yyyy")
-     * - Lấy lastPaidMonth từ repository (Sổ cái lịch sử)
-     * - So sánh: Nếu trùng -> 0 VNĐ (đã đóng), Nếu khác -> 50.000 VNĐ (chưa đóng)
+     * Khoản thu vé tháng khi xe ra, hoặc null nếu xe không tính phí theo vé tháng (xe đạp, vé lượt)
      */
-    private long calculateMonthlyTicketFee(String plate, LocalDateTime checkoutTime) {
-        String currentMonth = checkoutTime.format(MONTH_FORMATTER);
-        String recordedMonth = repository.getLastPaidMonth(plate); // Lấy từ sổ cái
-        
-        // Nếu file monthly_payment đã ghi nhận -> xem như đã đóng
-        if (repository.hasPaidMonthly(plate, currentMonth)) {
-            return 0;
+    public MonthlyCharge calculateMonthlyCharge(Vehicle vehicle, LocalDateTime entryTime, LocalDateTime checkoutTime) {
+        if (vehicle.getType() == vn.parking.model.VehicleType.BICYCLE || !vehicle.hasMonthlyCard()) {
+            return null;
         }
-
-        // Trường hợp 1: Trùng khớp trong sổ cái cũ -> Đã đóng tiền tháng này
-        if (currentMonth.equals(recordedMonth)) {
-            return 0;
+        return calculateMonthlyCharge(vehicle.getPlate(), entryTime, checkoutTime);
+    }
+    
+    /**
+     * Tính phí vé tháng (One-Time Payment per Month) theo bitmask tháng đã đóng của biển số
+     * - Mỗi tháng của lượt gửi (từ tháng vào tới tháng ra) chưa đóng -> 50.000 VNĐ/tháng
+     *   (gửi qua nhiều tháng thì thu cả các tháng nợ)
+     * - Tháng đã đóng (kể cả đóng trước) -> 0 VNĐ
+     * - Ân hạn: ra trong graceDays ngày đầu tháng mà tháng trước đã đóng thì tháng ra chưa tính
+     */
+    private MonthlyCharge calculateMonthlyCharge(String plate, LocalDateTime entryTime, LocalDateTime checkoutTime) {
+        MonthCoverage paid = repository.getMonthlyCoverage(plate);
+        int lastMonth = MonthCoverage.monthIndex(checkoutTime);
+        if (checkoutTime.getDayOfMonth() <= graceDays && !paid.covers(lastMonth) && paid.covers(lastMonth - 1)) {
+            lastMonth--;
         }
-        
-        // Trường hợp 2: Khác nhau hoặc null -> Chưa đóng
-        return MONTHLY_TICKET_FEE;
+        int firstMonth = Math.min(MonthCoverage.monthIndex(entryTime), lastMonth);
+        return collect(paid, firstMonth, lastMonth, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Khoản đóng trước months tháng: các tháng chưa đóng đầu tiên kể từ tháng hiện tại
+     */
+    public MonthlyCharge calculatePrepaidCharge(String plate, int months, LocalDateTime now) {
+        if (months <= 0) {
+            throw new IllegalArgumentException("Số tháng đóng trước phải lớn hơn 0");
+        }
+        return collect(repository.getMonthlyCoverage(plate), MonthCoverage.monthIndex(now),
+                Integer.MAX_VALUE - 1, months);
+    }
+    
+    /**
+     * Gom các tháng chưa đóng trong [from, to] thành các khoảng liên tiếp (tối đa limit tháng)
+     */
+    private static MonthlyCharge collect(MonthCoverage paid, int from, int to, int limit) {
+        List<int[]> runs = new ArrayList<>(1);
+        int owed = 0;
+        int month = paid.nextUncovered(from);
+        while (month <= to && owed < limit) {
+            int end = Math.min(paid.nextCovered(month), to + 1);
+            int count = Math.min(end - month, limit - owed);
+            runs.add(new int[] {month, count});
+            owed += count;
+            month = paid.nextUncovered(month + count);
+        }
+        int lastPaid = paid.lastCovered();
+        if (!runs.isEmpty()) {
+            int[] last = runs.get(runs.size() - 1);
+            lastPaid = Math.max(lastPaid, last[0] + last[1] - 1);
+        }
+        return new MonthlyCharge(runs, lastPaid);
     }
     
     /**
@@ -101,8 +209,8 @@ public class BillingService {
      * @param vehicle      Xe cần tính phí
      * @param monthsPassed Số tháng đã trôi qua (giả lập)
      * @param extraDays    Số ngày lẻ đã trôi qua (giả lập)
-     * @param checkoutTime Thời điểm check-out giả lập (dùng để xác định tháng)
-     * @param entryTime    Thời điểm check-in giả lập
+     * @param checkoutTime Thời điểm check-out
+     * @param entryTime    Thời điểm check-in giả lập (vé tháng: thu các tháng từ đây tới checkoutTime)
      */
     public long calculateSimulationFee(Vehicle vehicle, int monthsPassed, int extraDays,
                                        LocalDateTime checkoutTime, LocalDateTime entryTime) {
@@ -112,15 +220,8 @@ public class BillingService {
         }
 
         if (vehicle.hasMonthlyCard()) {
-            // Vé tháng (Simulation):
-            // Bước 1: Nếu đã đóng vé tháng trong tháng này -> luôn 0 VNĐ
-            String currentMonth = checkoutTime.format(MONTH_FORMATTER);
-            if (repository.hasPaidMonthly(vehicle.getPlate(), currentMonth)) {
-                return 0;
-            }
-
-            // Bước 2: Chưa đóng -> Thu 50.000 VNĐ (một lần cho tháng này)
-            return MONTHLY_TICKET_FEE;
+            // Vé tháng (Simulation): như thực tế, thu mọi tháng chưa đóng của lượt gửi giả lập
+            return calculateMonthlyCharge(vehicle.getPlate(), entryTime, checkoutTime).getAmount();
         }
 
         // Vé lượt (Guest) trong Simulation:
@@ -131,12 +232,5 @@ public class BillingService {
         }
         return (long) totalDays * FEE_PER_DAY;
     }
-    
-    /**
-     * Lấy tháng hiện tại theo format "MM/yyyy"
-     */
-    public String getCurrentMonth(LocalDateTime dateTime) {
-        return dateTime.format(MONTH_FORMATTER);
-    }
 }
 
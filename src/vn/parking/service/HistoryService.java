@@ -0,0 +1,62 @@
+package vn.parking.service;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.repository.IHistoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service tra cứu lịch sử gửi xe theo biển số
+ * (phục vụ giải quyết khiếu nại và kiểm tra gian lận thẻ tháng)
+ */
+public class HistoryService {
+
+    private IHistoryRepository historyRepository;
+
+    public HistoryService(IHistoryRepository historyRepository) {
+        this.historyRepository = historyRepository;
+    }
+
+    /**
+     * Nạp index lịch sử khi khởi động
+     */
+    public void load() {
+        historyRepository.load();
+    }
+
+    /**
+     * Ghi nhận một lượt gửi xe đã hoàn tất
+     */
+    public void recordStay(Ticket ticket, LocalDateTime exitTime, long fee) {
+        historyRepository.append(new StayRecord(
+                ticket.getPlate(),
+                ticket.getEntryTime(),
+                exitTime,
+                ticket.getZone(),
+                fee
+        ));
+    }
+
+    /**
+     * Lấy lịch sử gửi xe của một biển số
+     */
+    public List<StayRecord> findHistory(String plate) {
+        return historyRepository.findByPlate(plate);
+    }
+
+    /**
+     * Các lượt gửi có giờ vào trong [from, to)
+     */
+    public List<StayRecord> findStaysBetween(LocalDateTime from, LocalDateTime to) {
+        return historyRepository.findByEntryTime(from, to);
+    }
+
+    /**
+     * Số segment đã đọc ở lần tra cứu gần nhất
+     */
+    public int getLastLookupBlocksRead() {
+        return historyRepository.getLastLookupBlocksRead();
+    }
+}
@@ -1,12 +1,15 @@
 package vn.parking.service;
 
+import vn.parking.model.StayRecord;
 import vn.parking.model.Ticket;
 import vn.parking.model.Vehicle;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Service interface định nghĩa các thao tác chính với bãi đỗ xe
+ * (một bãi cục bộ, hoặc nhiều shard phía sau ShardedParkingService)
  */
 public interface IParkingService {
 
@@ -14,8 +17,50 @@ public interface IParkingService {
 
     long checkOut(String plate);
 
+    /**
+     * Check-out giả lập số tháng/ngày đã trôi qua (phục vụ test tính phí)
+     */
+    long checkOutSimulation(String plate, int months, int days);
+
+    /**
+     * Check-out khi mất vé (phạt mất vé + phí đỗ xe)
+     * @return Tổng phí và các cảnh báo nghi vấn lạm dụng (chỉ cảnh báo, xe vẫn được ra)
+     */
+    LostTicketResult processLostTicket(String plate);
+
     /**
      * Lấy danh sách tất cả phương tiện đang được quản lý trong hệ thống
      */
     Collection<Vehicle> getVehicleList();
+
+    /**
+     * Tìm biển số đang đỗ khớp chính xác với input (có chuẩn hóa)
+     * @return Biển số gốc đã lưu trong hệ thống, null nếu không có
+     */
+    String findParkedPlate(String inputPlate);
+
+    /**
+     * Tìm kiếm gợi ý biển số đang đỗ theo từ khóa (chứa chuỗi)
+     */
+    List<String> searchByKeyword(String keyword);
+
+    /**
+     * Lấy tất cả vé đang active (phục vụ thống kê)
+     */
+    Collection<Ticket> getActiveTickets();
+
+    /**
+     * Lấy lịch sử gửi xe đã hoàn tất của một biển số
+     */
+    List<StayRecord> findHistory(String plate);
+
+    /**
+     * Nạp dữ liệu từ file khi khởi động
+     */
+    void loadData();
+
+    /**
+     * Lưu dữ liệu xuống file
+     */
+    void saveData();
 }
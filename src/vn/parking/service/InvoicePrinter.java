@@ -0,0 +1,120 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Consumer in hóa đơn cho các lượt xe ra (thực tế, giả lập, mất vé)
+ */
+class InvoicePrinter implements EventHandler {
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut checkedOut = (VehicleCheckedOut) event;
+            if (checkedOut.isSimulation()) {
+                printSimulationInvoice(checkedOut);
+            } else {
+                printInvoice(checkedOut);
+            }
+        } else if (event instanceof LostTicketProcessed) {
+            printLostTicketInvoice((LostTicketProcessed) event);
+        }
+    }
+
+    /**
+     * In hóa đơn check-out bình thường
+     */
+    private void printInvoice(VehicleCheckedOut event) {
+        LocalDateTime entryTime = event.getTicket().getEntryTime();
+        LocalDateTime exitTime = event.getExitTime();
+        double duration = ChronoUnit.HOURS.between(entryTime, exitTime);
+        boolean hasMonthlyCard = event.getVehicle().hasMonthlyCard();
+
+        System.out.println("\n========================================");
+        System.out.println("        HÓA ĐƠN THANH TOÁN");
+        System.out.println("========================================");
+        System.out.println("Biển số xe: " + event.getPlate());
+        System.out.println("Giờ vào: " + entryTime);
+        System.out.println("Giờ ra: " + exitTime);
+        System.out.println("Thời gian đỗ: " + String.format("%.1f", duration) + " giờ");
+        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
+        if (hasMonthlyCard && event.getLastPaidMonth() != null) {
+            System.out.println("Tháng đã đóng: " + event.getLastPaidMonth());
+        }
+        System.out.println("----------------------------------------");
+        System.out.println("TỔNG PHÍ: " + String.format("%,d", event.getFee()) + " VNĐ");
+        System.out.println("========================================\n");
+    }
+
+    /**
+     * In hóa đơn mất vé
+     */
+    private void printLostTicketInvoice(LostTicketProcessed event) {
+        LocalDateTime entryTime = event.getTicket().getEntryTime();
+        LocalDateTime exitTime = event.getExitTime();
+        double duration = ChronoUnit.HOURS.between(entryTime, exitTime);
+        boolean hasMonthlyCard = event.getVehicle().hasMonthlyCard();
+
+        System.out.println("\n========================================");
+        System.out.println("     HÓA ĐƠN MẤT VÉ");
+        System.out.println("========================================");
+        System.out.println("Biển số xe: " + event.getPlate());
+        System.out.println("Giờ vào: " + entryTime);
+        System.out.println("Giờ ra: " + exitTime);
+        System.out.println("Thời gian đỗ: " + String.format("%.1f", duration) + " giờ");
+        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
+        if (hasMonthlyCard && event.getLastPaidMonth() != null) {
+            System.out.println("Tháng đã đóng: " + event.getLastPaidMonth());
+        }
+        System.out.println("----------------------------------------");
+        System.out.println("Phí đỗ xe: " + String.format("%,d", event.getParkingFee()) + " VNĐ");
+        System.out.println("Phạt mất vé: " + String.format("%,d", event.getFine()) + " VNĐ");
+        System.out.println("----------------------------------------");
+        System.out.println("TỔNG PHÍ: " + String.format("%,d", event.getTotalFee()) + " VNĐ");
+        System.out.println("========================================\n");
+    }
+
+    /**
+     * In hóa đơn check-out simulation
+     */
+    private void printSimulationInvoice(VehicleCheckedOut event) {
+        int months = event.getSimulatedMonths();
+        int days = event.getSimulatedDays();
+        int totalDays = (months * 30) + days;
+        long fee = event.getFee();
+        boolean hasMonthlyCard = event.getVehicle().hasMonthlyCard();
+
+        System.out.println("\n========================================");
+        System.out.println("   HÓA ĐƠN THANH TOÁN (SIMULATION)");
+        System.out.println("========================================");
+        System.out.println("Biển số xe: " + event.getPlate());
+        System.out.println("Giờ vào (giả lập): " + event.getTicket().getEntryTime());
+        System.out.println("Giờ ra: " + event.getExitTime());
+        System.out.println("Thời gian giả lập: " + months + " tháng " + days + " ngày (Tổng " + totalDays + " ngày)");
+        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
+        if (hasMonthlyCard && event.getLastPaidMonth() != null) {
+            System.out.println("Tháng đã đóng: " + event.getLastPaidMonth());
+        }
+        System.out.println("----------------------------------------");
+        if (hasMonthlyCard) {
+            if (fee > 0) {
+                System.out.println("Phí vé tháng: " + String.format("%,d", fee) + " VNĐ (Thu các tháng chưa đóng của lượt gửi)");
+            } else {
+                System.out.println("Phí vé tháng: 0 VNĐ (Đã đóng các tháng của lượt gửi)");
+            }
+        } else {
+            if (totalDays > 1) {
+                System.out.println("Phí phạt: " + String.format("%,d", fee) + " VNĐ");
+                System.out.println("   (Ngày đầu miễn phí, các ngày tiếp theo: " + String.format("%,d", (totalDays - 1)) + " ngày × 5.000 VNĐ)");
+            } else {
+                System.out.println("Phí phạt: 0 VNĐ (Ngày đầu tiên - miễn phí)");
+            }
+        }
+        System.out.println("----------------------------------------");
+        System.out.println("TỔNG PHÍ: " + String.format("%,d", fee) + " VNĐ");
+        System.out.println("========================================\n");
+    }
+}
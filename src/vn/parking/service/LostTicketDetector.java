@@ -0,0 +1,363 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.Zone;
+import vn.parking.repository.ParkingRepository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consumer phát hiện lạm dụng thủ tục mất vé
+ *
+ * Giữ ba loại bộ đếm, dựng từ sự kiện:
+ * - Theo biển số: số lần mất vé trong cửa sổ trượt nhiều ngày, đếm gần đúng bằng
+ *   SlidingCountMinSketch (bộ nhớ cố định dù có bao nhiêu biển số, không giữ biển số nào)
+ * - Theo cổng: số lượt ra và số lượt mất vé trong cửa sổ trượt theo giờ (đếm chính xác, mỗi cổng một vòng bucket)
+ * - Theo cổng: phân bố thời gian đỗ của các lượt ra bình thường (trung bình và phương sai
+ *   trượt mũ của log thời gian đỗ), để nhận ra lượt mất vé có thời gian đỗ bất thường
+ *
+ * assess chạy ngay ở làn ra trước khi phát sự kiện mất vé: vài phép băm và so sánh (O(1)),
+ * không đọc file. Thời gian lấy từ sự kiện nên phát lại event log khi khởi động dựng lại
+ * đúng các cửa sổ; checkpoint event log lưu các bucket để chỉ phải phát lại phần log sau đó.
+ */
+public class LostTicketDetector implements EventHandler {
+
+    public static final int DEFAULT_PLATE_WINDOW_DAYS = 30;
+    public static final int DEFAULT_PLATE_LIMIT = 2;
+    public static final int DEFAULT_GATE_WINDOW_HOURS = 24;
+    public static final int DEFAULT_GATE_PERCENT = 5;
+    public static final double DEFAULT_DWELL_Z = 3.0;
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 16384;       // 4 x 16384 int = 256 KB cho cả cửa sổ
+    private static final int MIN_GATE_LOST = 3;          // Cổng cần ít nhất chừng này lượt mất vé mới xét tỷ lệ
+    private static final int MIN_DWELL_SAMPLES = 50;     // Số lượt ra bình thường tối thiểu trước khi xét thời gian đỗ
+    private static final double DWELL_ALPHA = 0.02;      // Trọng số lượt ra mới nhất
+    private static final double MIN_DWELL_STD = 0.1;     // Độ lệch chuẩn tối thiểu (log phút)
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    // Cổng của từng zone (theo ordinal) và ký hiệu các cổng
+    private static final int[] GATE_OF_ZONE = new int[Zone.values().length];
+    private static final char[] GATES;
+
+    static {
+        StringBuilder gates = new StringBuilder();
+        for (Zone zone : Zone.values()) {
+            int index = gates.indexOf(String.valueOf(zone.getGate()));
+            if (index < 0) {
+                index = gates.length();
+                gates.append(zone.getGate());
+            }
+            GATE_OF_ZONE[zone.ordinal()] = index;
+        }
+        GATES = gates.toString().toCharArray();
+    }
+
+    private final int plateWindowDays;
+    private final int plateLimit;
+    private final int gatePercent;
+    private final double dwellZ;
+    private final SlidingCountMinSketch plateClaims;
+    private final GateState[] gates = new GateState[GATES.length];
+
+    private long assessed;
+    private long flaggedPlate;
+    private long flaggedGate;
+    private long flaggedDwell;
+
+    /**
+     * Ngưỡng đọc từ system property (parking.fraud.*)
+     */
+    public LostTicketDetector() {
+        this(Integer.getInteger("parking.fraud.plate.window.days", DEFAULT_PLATE_WINDOW_DAYS),
+                Integer.getInteger("parking.fraud.plate.limit", DEFAULT_PLATE_LIMIT),
+                Integer.getInteger("parking.fraud.gate.window.hours", DEFAULT_GATE_WINDOW_HOURS),
+                Integer.getInteger("parking.fraud.gate.percent", DEFAULT_GATE_PERCENT),
+                Double.parseDouble(System.getProperty("parking.fraud.dwell.z", String.valueOf(DEFAULT_DWELL_Z))));
+    }
+
+    /**
+     * @param plateWindowDays Cửa sổ đếm mất vé theo biển số (ngày)
+     * @param plateLimit      Cảnh báo khi một biển số báo mất vé từ chừng này lần trong cửa sổ (tính cả lần này)
+     * @param gateWindowHours Cửa sổ đếm lượt ra / mất vé theo cổng (giờ)
+     * @param gatePercent     Cảnh báo khi tỷ lệ mất vé của cổng trong cửa sổ vượt phần trăm này
+     * @param dwellZ          Cảnh báo khi thời gian đỗ lệch khỏi mức thường của cổng quá chừng này độ lệch chuẩn
+     */
+    public LostTicketDetector(int plateWindowDays, int plateLimit, int gateWindowHours, int gatePercent, double dwellZ) {
+        if (plateWindowDays <= 0 || plateLimit <= 0 || gateWindowHours <= 0 || gatePercent < 0 || dwellZ <= 0) {
+            throw new IllegalArgumentException("Ngưỡng phát hiện mất vé không hợp lệ");
+        }
+        this.plateWindowDays = plateWindowDays;
+        this.plateLimit = plateLimit;
+        this.gatePercent = gatePercent;
+        this.dwellZ = dwellZ;
+        this.plateClaims = new SlidingCountMinSketch(plateWindowDays * DAY_MILLIS, plateWindowDays,
+                SKETCH_DEPTH, SKETCH_WIDTH);
+        for (int i = 0; i < gates.length; i++) {
+            gates[i] = new GateState(gateWindowHours);
+        }
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện (từ bus hoặc khi phát lại event log)
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (event instanceof LostTicketProcessed) {
+            LostTicketProcessed lost = (LostTicketProcessed) event;
+            long time = toMillis(lost.getExitTime());
+            plateClaims.add(ParkingRepository.normalizePlate(lost.getPlate()), time);
+            gates[GATE_OF_ZONE[lost.getTicket().getZone().ordinal()]].exit(time, true);
+        } else if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut checkedOut = (VehicleCheckedOut) event;
+            if (checkedOut.isSimulation()) {
+                return; // Giờ vào giả lập, không phản ánh thời gian đỗ thật
+            }
+            GateState gate = gates[GATE_OF_ZONE[checkedOut.getTicket().getZone().ordinal()]];
+            gate.exit(toMillis(checkedOut.getExitTime()), false);
+            gate.dwell(dwellMinutes(checkedOut.getTicket().getEntryTime(), checkedOut.getExitTime()));
+        }
+    }
+
+    /**
+     * Xóa toàn bộ bộ đếm (trước khi phát lại event log)
+     */
+    public synchronized void reset() {
+        plateClaims.clear();
+        for (int i = 0; i < gates.length; i++) {
+            gates[i] = new GateState(gates[i].epochs.length);
+        }
+        assessed = 0;
+        flaggedPlate = 0;
+        flaggedGate = 0;
+        flaggedDwell = 0;
+    }
+
+    /**
+     * Ghi các bộ đếm dựng từ sự kiện vào checkpoint event log (số lượt đã kiểm tra / cảnh báo
+     * chỉ tính từ lần khởi động này, như khi phát lại, nên không ghi)
+     */
+    public synchronized void writeState(DataOutputStream out) throws IOException {
+        plateClaims.writeState(out);
+        out.writeInt(gates.length);
+        for (GateState gate : gates) {
+            gate.writeState(out);
+        }
+    }
+
+    /**
+     * Nạp bộ đếm từ checkpoint event log
+     * @throws IOException Checkpoint được ghi với cửa sổ / số cổng khác
+     */
+    public synchronized void readState(DataInputStream in) throws IOException {
+        reset();
+        plateClaims.readState(in);
+        if (in.readInt() != gates.length) {
+            throw new IOException("số cổng đã thay đổi");
+        }
+        for (GateState gate : gates) {
+            gate.readState(in);
+        }
+    }
+
+    /**
+     * Đánh giá một lượt báo mất vé sắp xử lý (chưa phát sự kiện): lượt này được tính thêm vào
+     * các bộ đếm khi so ngưỡng
+     *
+     * @return Các cảnh báo, rỗng nếu không có dấu hiệu bất thường
+     */
+    public synchronized List<String> assess(String plate, Zone zone, LocalDateTime entryTime, LocalDateTime exitTime) {
+        assessed++;
+        List<String> alerts = null;
+        long now = toMillis(exitTime);
+
+        int claims = plateClaims.estimate(ParkingRepository.normalizePlate(plate), now) + 1;
+        if (claims >= plateLimit) {
+            flaggedPlate++;
+            alerts = add(alerts, "Xe " + plate + " đã báo mất vé " + claims + " lần trong "
+                    + plateWindowDays + " ngày (tính cả lần này)");
+        }
+
+        int gateIndex = GATE_OF_ZONE[zone.ordinal()];
+        GateState gate = gates[gateIndex];
+        gate.advance(Math.floorDiv(now, HOUR_MILLIS));
+        int lost = gate.lostTotal + 1;
+        int exits = gate.exitTotal + 1;
+        if (lost >= MIN_GATE_LOST && lost * 100L > (long) gatePercent * exits) {
+            flaggedGate++;
+            alerts = add(alerts, "Cổng " + GATES[gateIndex] + ": " + lost + "/" + exits + " lượt ra trong "
+                    + gate.epochs.length + " giờ qua là mất vé (" + (lost * 100 / exits) + "%)");
+        }
+
+        if (gate.samples >= MIN_DWELL_SAMPLES) {
+            long minutes = dwellMinutes(entryTime, exitTime);
+            double z = (Math.log1p(minutes) - gate.mean) / Math.max(Math.sqrt(gate.variance), MIN_DWELL_STD);
+            if (Math.abs(z) >= dwellZ) {
+                flaggedDwell++;
+                alerts = add(alerts, "Thời gian đỗ " + ZoneForecaster.formatDuration(Duration.ofMinutes(minutes))
+                        + (z < 0 ? " ngắn" : " dài") + " bất thường so với cổng " + GATES[gateIndex]
+                        + " (thường ~" + ZoneForecaster.formatDuration(gate.typicalDwell()) + ")");
+            }
+        }
+        return alerts == null ? Collections.<String>emptyList() : alerts;
+    }
+
+    /**
+     * Tóm tắt bộ đếm và số cảnh báo để hiển thị
+     */
+    public synchronized List<String> getSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Mất vé trong " + plateWindowDays + " ngày qua: " + plateClaims.getTotalCount() + " lượt");
+        for (int i = 0; i < gates.length; i++) {
+            GateState gate = gates[i];
+            lines.add("Cổng " + GATES[i] + ": " + gate.lostTotal + "/" + gate.exitTotal + " lượt ra trong "
+                    + gate.epochs.length + " giờ qua là mất vé | thời gian đỗ thường "
+                    + (gate.samples >= MIN_DWELL_SAMPLES ? "~" + ZoneForecaster.formatDuration(gate.typicalDwell())
+                    : "chưa đủ dữ liệu"));
+        }
+        lines.add("Đã kiểm tra " + assessed + " lượt mất vé | cảnh báo: biển số " + flaggedPlate
+                + ", cổng " + flaggedGate + ", thời gian đỗ " + flaggedDwell);
+        return lines;
+    }
+
+    private static List<String> add(List<String> alerts, String alert) {
+        if (alerts == null) {
+            alerts = new ArrayList<>(3);
+        }
+        alerts.add(alert);
+        return alerts;
+    }
+
+    private static long dwellMinutes(LocalDateTime entryTime, LocalDateTime exitTime) {
+        return Math.max(0, Duration.between(entryTime, exitTime).toMinutes());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000;
+    }
+
+    /**
+     * Bộ đếm của một cổng: vòng bucket theo giờ (lượt ra, lượt mất vé) kèm tổng của cả cửa sổ,
+     * và trung bình / phương sai trượt mũ của log(1 + phút đỗ)
+     */
+    private static final class GateState {
+        final long[] epochs;      // Giờ (t / 1h) của từng bucket, Long.MIN_VALUE nếu trống
+        final int[] exits;
+        final int[] lost;
+        int exitTotal;
+        int lostTotal;
+        long newestEpoch = Long.MIN_VALUE;
+
+        double mean;
+        double variance;
+        long samples;
+
+        GateState(int hours) {
+            epochs = new long[hours];
+            exits = new int[hours];
+            lost = new int[hours];
+            Arrays.fill(epochs, Long.MIN_VALUE);
+        }
+
+        void exit(long timeMillis, boolean lostTicket) {
+            long epoch = Math.floorDiv(timeMillis, HOUR_MILLIS);
+            advance(epoch);
+            if (epoch <= newestEpoch - epochs.length) {
+                return; // Đã ra khỏi cửa sổ (phát lại sự kiện cũ)
+            }
+            int slot = (int) Math.floorMod(epoch, (long) epochs.length);
+            if (epochs[slot] != epoch) {
+                expire(slot);
+                epochs[slot] = epoch;
+            }
+            exits[slot]++;
+            exitTotal++;
+            if (lostTicket) {
+                lost[slot]++;
+                lostTotal++;
+            }
+        }
+
+        // Trượt cửa sổ tới epoch: bỏ các bucket đã cũ khỏi tổng
+        void advance(long epoch) {
+            if (epoch <= newestEpoch) {
+                return;
+            }
+            newestEpoch = epoch;
+            for (int slot = 0; slot < epochs.length; slot++) {
+                if (epochs[slot] != Long.MIN_VALUE && epochs[slot] <= epoch - epochs.length) {
+                    expire(slot);
+                }
+            }
+        }
+
+        void expire(int slot) {
+            exitTotal -= exits[slot];
+            lostTotal -= lost[slot];
+            exits[slot] = 0;
+            lost[slot] = 0;
+            epochs[slot] = Long.MIN_VALUE;
+        }
+
+        void dwell(long minutes) {
+            double x = Math.log1p(minutes);
+            if (samples++ == 0) {
+                mean = x;
+                return;
+            }
+            double diff = x - mean;
+            double increment = DWELL_ALPHA * diff;
+            mean += increment;
+            variance = (1 - DWELL_ALPHA) * (variance + diff * increment);
+        }
+
+        void writeState(DataOutputStream out) throws IOException {
+            out.writeInt(epochs.length);
+            out.writeLong(newestEpoch);
+            for (int slot = 0; slot < epochs.length; slot++) {
+                out.writeLong(epochs[slot]);
+                out.writeInt(exits[slot]);
+                out.writeInt(lost[slot]);
+            }
+            out.writeDouble(mean);
+            out.writeDouble(variance);
+            out.writeLong(samples);
+        }
+
+        // Nạp vào bộ đếm vừa tạo (tổng cả cửa sổ cộng lại từ các bucket)
+        void readState(DataInputStream in) throws IOException {
+            if (in.readInt() != epochs.length) {
+                throw new IOException("cửa sổ cổng đã thay đổi");
+            }
+            newestEpoch = in.readLong();
+            for (int slot = 0; slot < epochs.length; slot++) {
+                epochs[slot] = in.readLong();
+                exits[slot] = in.readInt();
+                lost[slot] = in.readInt();
+                exitTotal += exits[slot];
+                lostTotal += lost[slot];
+            }
+            mean = in.readDouble();
+            variance = in.readDouble();
+            samples = in.readLong();
+        }
+
+        Duration typicalDwell() {
+            return Duration.ofMinutes(Math.round(Math.expm1(mean)));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package vn.parking.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Kết quả xử lý mất vé: tổng phí phải thu và các cảnh báo nghi vấn lạm dụng
+ * (trả về cả khi shard chạy từ xa, để màn hình làn ra hiển thị được)
+ */
+public final class LostTicketResult {
+
+    private final long totalFee;
+    private final List<String> alerts;
+
+    public LostTicketResult(long totalFee, List<String> alerts) {
+        this.totalFee = totalFee;
+        this.alerts = Collections.unmodifiableList(alerts);
+    }
+
+    /**
+     * Tổng phí (phạt mất vé + phí đỗ xe)
+     */
+    public long getTotalFee() {
+        return totalFee;
+    }
+
+    /**
+     * Cảnh báo của LostTicketDetector, rỗng nếu không có dấu hiệu bất thường
+     */
+    public List<String> getAlerts() {
+        return alerts;
+    }
+}
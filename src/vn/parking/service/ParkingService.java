@@ -1,27 +1,254 @@
 package vn.parking.service;
 
+import vn.parking.event.*;
 import vn.parking.model.*;
+import vn.parking.repository.EventLogRepository;
 import vn.parking.repository.ParkingRepository;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Service xử lý logic nghiệp vụ đỗ xe
+ *
+ * Service chỉ kiểm tra, tính phí và phát sự kiện nghiệp vụ vào EventBus.
+ * Các consumer độc lập xử lý phần còn lại:
+ * - RepositoryProjector: cập nhật vé active / sổ cái vé tháng (cổng chờ bước này)
+ * - PersistenceHandler: event log, lịch sử lượt gửi, lưu file theo lô (sau RepositoryProjector)
+ * - StatisticsProjection: thống kê lượt và doanh thu
+ * - ZoneOccupancy: bộ đếm số xe từng zone cho chính sách xếp zone (cổng chờ bước này)
+ * - SlotIndex: chỗ trống gần cổng nhất của từng zone (cổng chờ bước này)
+ * - ZoneForecaster: tốc độ vào/ra và dự báo thời gian đầy của từng zone (cổng chờ bước này)
+ * - PlateMatcher: khớp gần đúng biển số camera đọc với xe đang đỗ (cổng chờ bước này)
+ * - LostTicketDetector: bộ đếm cửa sổ trượt phát hiện lạm dụng mất vé (cổng chờ bước này)
+ * - InvoicePrinter: in hóa đơn (sau PersistenceHandler)
  */
 public class ParkingService implements IParkingService {
     
     private ParkingRepository repository;
     private BillingService billingService;
+    private HistoryService historyService;
+    private EventLogRepository eventLog;
+    private StatisticsProjection statistics;
+    private ZoneOccupancy occupancy;
+    private SlotIndex slotIndex;
+    private ZoneForecaster forecaster;
+    private PlateMatcher plateMatcher;
+    private LostTicketDetector lostTicketDetector;
+    private ZoneAssignmentPolicy zonePolicy;
+    private final Clock clock;
+    private final boolean persistent;
+    private final long checkpointInterval; // Số byte event log tăng thêm trước khi ghi checkpoint mới
+    private long checkpointOffset;         // Offset event log của checkpoint gần nhất (đã ghi hoặc đã nạp)
+    
+    private EventBus eventBus;
+    private EventBus.Subscription repositoryConsumer;
+    private EventBus.Subscription persistenceConsumer;
+    private EventBus.Subscription occupancyConsumer;
+    private EventBus.Subscription slotConsumer;
+    private EventBus.Subscription forecastConsumer;
+    private EventBus.Subscription plateConsumer;
+    private EventBus.Subscription fraudConsumer;
+    private volatile Thread backgroundLoader; // Luồng nạp nền khi khởi động nhanh, null nếu không có
+    private volatile Consumer<DomainEvent> eventListener; // Nhận sự kiện đã xử lý xong (journal replication)
+    private Set<String> recentReplicatedEvents; // Sự kiện replica nhận gần đây (dạng EventCodec), null = chưa nạp
     
     private static final long LOST_TICKET_FINE = 50000; // Phạt mất vé: 50.000 VNĐ
+    private static final int EVENT_BUFFER_SIZE = 1024;  // Số slot ring buffer
+    private static final long FULL_WARNING_MINUTES = 30; // Cảnh báo khi zone dự báo đầy trong khoảng này
+    private static final int REPLICATED_EVENT_WINDOW = 2048; // Số sự kiện replica nhớ để bỏ qua khi primary gửi lại
+    private static final long DEFAULT_CHECKPOINT_BYTES = 1 << 20;
+    
+    public ParkingService(ParkingRepository repository, BillingService billingService,
+                          HistoryService historyService) {
+        this(repository, billingService, historyService, Clock.systemDefaultZone(), true);
+    }
     
-    public ParkingService(ParkingRepository repository, BillingService billingService) {
+    /**
+     * @param clock      Đồng hồ cho giờ vào/ra (đồng hồ ảo khi chạy mô phỏng)
+     * @param persistent false: bỏ consumer lưu trữ (event log, lịch sử, file dữ liệu),
+     *                   trạng thái chỉ nằm trong bộ nhớ (mô phỏng)
+     */
+    public ParkingService(ParkingRepository repository, BillingService billingService,
+                          HistoryService historyService, Clock clock, boolean persistent) {
+        this(repository, billingService, historyService, clock, persistent, 0, 1);
+    }
+    
+    /**
+     * Service của một shard: sức chứa và chỗ giữ vé tháng của từng zone là phần của shard
+     * shardIndex trong shardCount shard (Zone.partition), để các shard cộng lại đúng bằng cả bãi;
+     * chỉ mục chỗ chỉ gồm các chỗ thuộc shard (SlotIndex.generateLayout) nên không cấp trùng chỗ
+     */
+    public ParkingService(ParkingRepository repository, BillingService billingService,
+                          HistoryService historyService, Clock clock, boolean persistent,
+                          int shardIndex, int shardCount) {
         this.repository = repository;
+        this.clock = clock;
+        this.persistent = persistent;
+        this.checkpointInterval = Long.getLong("parking.events.checkpoint.bytes", DEFAULT_CHECKPOINT_BYTES);
         this.billingService = billingService;
+        this.historyService = historyService;
+        this.eventLog = new EventLogRepository(repository.resolveFile(EventLogRepository.DEFAULT_FILENAME));
+        this.statistics = new StatisticsProjection();
+        Map<Zone, Integer> capacities = Zone.parseCapacities(System.getProperty("parking.zone.capacity"));
+        this.occupancy = new ZoneOccupancy(Zone.partition(capacities, shardIndex, shardCount), Zone.partition(
+                Zone.parseMonthlyReserves(System.getProperty("parking.zone.monthly.reserve")), shardIndex, shardCount));
+        this.slotIndex = new SlotIndex(SlotIndex.generateLayout(capacities, shardIndex, shardCount));
+        this.forecaster = new ZoneForecaster(occupancy);
+        this.plateMatcher = new PlateMatcher();
+        this.lostTicketDetector = new LostTicketDetector();
+        this.zonePolicy = ZonePolicy.valueOf(System.getProperty("parking.zone.policy", ZonePolicy.OVERFLOW.name()).toUpperCase());
+        
+        this.eventBus = new EventBus(EVENT_BUFFER_SIZE);
+        this.repositoryConsumer = eventBus.subscribe("repository", new RepositoryProjector(repository));
+        this.persistenceConsumer = persistent
+                ? eventBus.subscribe("persistence", new PersistenceHandler(repository, historyService, eventLog), repositoryConsumer)
+                : repositoryConsumer;
+        eventBus.subscribe("statistics", statistics);
+        this.occupancyConsumer = eventBus.subscribe("occupancy", occupancy);
+        this.slotConsumer = eventBus.subscribe("slots", slotIndex);
+        this.forecastConsumer = eventBus.subscribe("forecast", forecaster);
+        this.plateConsumer = eventBus.subscribe("plates", plateMatcher);
+        this.fraudConsumer = eventBus.subscribe("fraud", lostTicketDetector);
+        // Hóa đơn in sau khi lưu xong để thông báo ghi file không chen vào giữa hóa đơn
+        eventBus.subscribe("invoice", new InvoicePrinter(), persistenceConsumer);
+        eventBus.start();
+    }
+    
+    /**
+     * Phát các sự kiện của một thao tác và chờ trạng thái bãi, bộ đếm/chỗ đỗ/tốc độ từng zone,
+     * chỉ mục biển số và bộ đếm mất vé được cập nhật (lưu file, thống kê, hóa đơn tiếp tục chạy nền)
+     * Lỗi lưu trữ của thao tác trước được báo ở thao tác kế tiếp, trước khi phát sự kiện mới.
+     * @throws IllegalStateException Consumer lỗi khi xử lý sự kiện
+     */
+    private void publish(DomainEvent... events) {
+        eventBus.checkFault(persistenceConsumer);
+        long last = -1;
+        for (DomainEvent event : events) {
+            last = eventBus.publish(event);
+        }
+        eventBus.awaitProcessed(last, repositoryConsumer, occupancyConsumer, slotConsumer,
+                forecastConsumer, plateConsumer, fraudConsumer);
+        Consumer<DomainEvent> listener = eventListener;
+        if (listener != null) {
+            for (DomainEvent event : events) {
+                listener.accept(event);
+            }
+        }
+    }
+    
+    /**
+     * Gắn (hoặc gỡ khi truyền null) listener nhận từng sự kiện sau khi trạng thái bãi đã cập nhật
+     * (primary ghi sự kiện vào journal replication)
+     */
+    public void setEventListener(Consumer<DomainEvent> eventListener) {
+        this.eventListener = eventListener;
+    }
+    
+    /**
+     * Duyệt các sự kiện trong event log (primary ghi mốc ban đầu của journal replication)
+     */
+    public void forEachLoggedEvent(Consumer<DomainEvent> consumer) {
+        eventLog.replay(consumer);
     }
     
+    /**
+     * Replica: áp dụng một sự kiện nhận từ primary vào event log, thống kê, dự báo và bộ đếm
+     * mất vé (trạng thái bãi đã cập nhật qua journal; bộ đếm zone, chỉ mục chỗ và biển số
+     * dựng lại từ vé active khi được nâng lên primary)
+     * Sự kiện đã nhận gần đây (primary gửi lại lô replica chưa kịp ghi journal) được bỏ qua.
+     */
+    public synchronized void applyReplicatedEvent(DomainEvent event) {
+        if (recentReplicatedEvents == null) {
+            recentReplicatedEvents = new LinkedHashSet<>(eventLog.readTailLines(REPLICATED_EVENT_WINDOW));
+        }
+        if (!recentReplicatedEvents.add(EventCodec.encode(event))) {
+            return;
+        }
+        if (recentReplicatedEvents.size() > REPLICATED_EVENT_WINDOW) {
+            recentReplicatedEvents.remove(recentReplicatedEvents.iterator().next());
+        }
+        eventLog.append(event);
+        eventLog.flush();
+        statistics.apply(event);
+        forecaster.apply(event);
+        lostTicketDetector.apply(event);
+    }
+    
+    /**
+     * Bỏ toàn bộ trạng thái trong bộ nhớ rồi nạp lại từ thư mục dữ liệu
+     * (replica đồng bộ lại từ đầu)
+     * @param discardFiles Dời các file dữ liệu cũ đi, chạy khi mọi file đã được đóng
+     */
+    public synchronized void reloadFromScratch(Runnable discardFiles) {
+        eventBus.awaitIdle();
+        eventLog.close();
+        recentReplicatedEvents = null;
+        repository.clear();
+        discardFiles.run();
+        loadData();
+    }
+    
+    /**
+     * Đồng hồ service dùng cho giờ vào/ra
+     */
+    public Clock getClock() {
+        return clock;
+    }
+    
+    /**
+     * Thống kê lượt và doanh thu (dựng từ sự kiện)
+     */
+    public StatisticsProjection getStatistics() {
+        return statistics;
+    }
+    
+    /**
+     * Thay chính sách xếp zone (mặc định chọn theo -Dparking.zone.policy)
+     */
+    public void setZoneAssignmentPolicy(ZoneAssignmentPolicy zonePolicy) {
+        this.zonePolicy = zonePolicy;
+    }
+    
+    /**
+     * Chỉ mục chỗ đỗ (chỗ trống gần cổng nhất, chỗ của từng xe)
+     */
+    public SlotIndex getSlotIndex() {
+        return slotIndex;
+    }
+    
+    /**
+     * Dự báo sức chứa theo zone (dựng từ sự kiện)
+     */
+    public ZoneForecaster getForecaster() {
+        return forecaster;
+    }
+
+    /**
+     * Chỉ mục khớp gần đúng biển số đang đỗ (camera làn ra)
+     */
+    public PlateMatcher getPlateMatcher() {
+        return plateMatcher;
+    }
+
+    /**
+     * Bộ phát hiện lạm dụng mất vé (dựng từ sự kiện)
+     */
+    public LostTicketDetector getLostTicketDetector() {
+        return lostTicketDetector;
+    }
+
     /**
      * Tìm kiếm thông minh: Tìm ticket theo biển số hoặc phần biển số
      * @param plate Biển số hoặc phần biển số
@@ -38,10 +265,10 @@ public class ParkingService implements IParkingService {
     
     /**
      * Xử lý check-in: Xe vào bãi đỗ
-     * Tự động phân zone theo quy tắc:
+     * Zone do chính sách xếp zone chọn, bắt đầu từ zone ưu tiên của xe:
      * - CAR -> Gate B -> Zone B
      * - BIKE/BICYCLE -> Gate A
-     *   - ELECTRIC/BICYCLE -> Zone A1 (ưu tiên)
+     *   - ELECTRIC/BICYCLE -> Zone A1 (ưu tiên, đầy thì tràn sang A2)
      *   - GASOLINE -> Zone A2
      * 
      * @param vehicle Xe vào
@@ -54,51 +281,49 @@ public class ParkingService implements IParkingService {
             throw new IllegalStateException("Xe " + vehicle.getPlate() + " đã đang đỗ trong bãi!");
         }
         
-        // Xác định zone theo quy tắc
-        String zone = determineZone(vehicle);
+        // Xác định zone theo chính sách (đọc bộ đếm và dự báo đầy, không duyệt vé)
+        LocalDateTime entryTime = LocalDateTime.now(clock);
+        Zone zone = zonePolicy.assignZone(vehicle, occupancy, forecaster, entryTime);
+        
+        // Chỉ dẫn chỗ trống gần cổng nhất trong zone (O(log n))
+        ParkingSlot slot = slotIndex.nearestFree(zone);
         
         // Tạo ticket
-        LocalDateTime entryTime = LocalDateTime.now();
         Ticket ticket = new Ticket(
             vehicle.getPlate(),
             entryTime,
             vehicle.hasMonthlyCard(),
-            zone
+            zone,
+            slot != null ? slot.getSlotId() : null
         );
         
-        // Lưu vào repository
-        repository.saveTicket(ticket);
-        repository.saveVehicle(vehicle);
+        // Phát sự kiện (repository lưu ticket + vehicle trong cùng một phiên bản)
+        publish(new VehicleCheckedIn(ticket, vehicle));
         
         // In thông báo
         System.out.println("✓ Xe " + vehicle.getPlate() + " vào bãi -> Vào Zone " + zone);
+        if (slot != null) {
+            System.out.println("→ Chỗ trống gần cổng nhất: " + SlotIndex.describe(slot));
+        }
+        warnIfFillingUp(zone, entryTime);
         
         return ticket;
     }
     
     /**
-     * Xác định zone cho xe dựa trên loại xe và nhiên liệu
+     * Cảnh báo khi zone vừa xếp xe đã đầy hoặc dự báo sắp đầy
      */
-    private String determineZone(Vehicle vehicle) {
-        VehicleType type = vehicle.getType();
-        FuelType fuelType = vehicle.getFuelType();
-        
-        // Ô tô: Bắt buộc đi Cổng B -> Zone B
-        if (type == VehicleType.CAR) {
-            return "B";
+    private void warnIfFillingUp(Zone zone, LocalDateTime now) {
+        Duration timeToFull = forecaster.timeToFull(zone, now);
+        if (timeToFull == null) {
+            return;
         }
-        
-        // Xe máy/Xe đạp: Đi Cổng A
-        // Ưu tiên: Xe ELECTRIC và BICYCLE -> Zone A1
-        // Xe GASOLINE -> Zone A2
-        if (fuelType == FuelType.ELECTRIC || type == VehicleType.BICYCLE) {
-            return "A1";
-        } else if (fuelType == FuelType.GASOLINE) {
-            return "A2";
+        if (timeToFull.isZero()) {
+            System.out.println("⚠ Zone " + zone + " đã đầy (" + occupancy.getOccupied(zone) + "/"
+                    + occupancy.getCapacity(zone) + ")!");
+        } else if (timeToFull.toMinutes() < FULL_WARNING_MINUTES) {
+            System.out.println("⚠ Zone " + zone + " dự báo đầy sau ~" + ZoneForecaster.formatDuration(timeToFull));
         }
-        
-        // Mặc định (trường hợp NONE không phải BICYCLE)
-        return "A1";
     }
     
     /**
@@ -121,34 +346,48 @@ public class ParkingService implements IParkingService {
             throw new IllegalStateException("Không tìm thấy thông tin xe " + plate);
         }
         
-        // Tính thời gian đỗ (giờ) - Thực tế
-        LocalDateTime exitTime = LocalDateTime.now();
-        LocalDateTime entryTime = ticket.getEntryTime();
-        long hours = ChronoUnit.HOURS.between(entryTime, exitTime);
-        double duration = hours;
-        
-        // Tính phí với logic mới
-        long fee = billingService.calculateFee(vehicle, exitTime, entryTime);
-        
-        // Nếu là vé tháng và phải thu tiền (fee > 0), cập nhật lịch sử đóng tiền
-        if (vehicle.hasMonthlyCard() && fee > 0) {
-            String currentMonth = billingService.getCurrentMonth(exitTime);
-            repository.updatePaymentStatus(plate, currentMonth); // Lưu vào sổ cái lịch sử (cũ)
-            repository.saveMonthlyPayment(plate, currentMonth);  // Lưu vào file monthly_payment.csv
-        }
-        
-        // Lấy lastPaidMonth từ sổ cái để hiển thị
-        String lastPaidMonth = repository.getLastPaidMonth(plate);
-        
-        // In hóa đơn
-        printInvoice(plate, entryTime, exitTime, duration, fee, vehicle.hasMonthlyCard(), lastPaidMonth);
+        // Tính phí với logic mới (thời gian thực); vé tháng tính một lần trên bitmask tháng đã đóng
+        LocalDateTime exitTime = LocalDateTime.now(clock);
+        BillingService.MonthlyCharge charge = billingService.calculateMonthlyCharge(vehicle, ticket.getEntryTime(), exitTime);
+        long fee = charge != null ? charge.getAmount() : billingService.calculateFee(vehicle, exitTime, ticket.getEntryTime());
+        String lastPaidMonth = charge != null ? charge.getLastPaidMonth() : repository.getLastPaidMonth(plate);
         
-        // Xóa ticket khỏi repository
-        repository.removeTicket(plate);
+        VehicleCheckedOut checkedOut = new VehicleCheckedOut(ticket, vehicle, exitTime, fee, lastPaidMonth);
+        publish(withMonthlyFeePaid(plate, exitTime, charge, checkedOut));
         
         return fee;
     }
 
+    /**
+     * Sự kiện đóng tiền tháng (mỗi khoảng tháng liên tiếp phải thu một sự kiện), tiếp theo là sự kiện ra bãi
+     */
+    private static DomainEvent[] withMonthlyFeePaid(String plate, LocalDateTime time,
+                                                    BillingService.MonthlyCharge charge, DomainEvent event) {
+        int runs = charge != null ? charge.getRunCount() : 0;
+        DomainEvent[] events = new DomainEvent[event != null ? runs + 1 : runs];
+        for (int i = 0; i < runs; i++) {
+            events[i] = new MonthlyFeePaid(plate, time, charge.getFirstMonth(i), charge.getMonthCount(i),
+                    charge.getAmount(i));
+        }
+        if (event != null) {
+            events[runs] = event;
+        }
+        return events;
+    }
+    
+    /**
+     * Đóng trước vé tháng: ghi nhận months tháng chưa đóng đầu tiên kể từ tháng hiện tại
+     * (không cần xe đang đỗ trong bãi)
+     *
+     * @return Khoản đã thu
+     */
+    public BillingService.MonthlyCharge prepayMonthly(String plate, int months) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        BillingService.MonthlyCharge charge = billingService.calculatePrepaidCharge(plate, months, now);
+        publish(withMonthlyFeePaid(plate, now, charge, null));
+        return charge;
+    }
+    
     /**
      * Trả về danh sách tất cả phương tiện đang được quản lý
      * (wrapper mỏng cho repository để tuân thủ IParkingService)
@@ -158,14 +397,211 @@ public class ParkingService implements IParkingService {
         return repository.getAllVehicles();
     }
     
+    @Override
+    public String findParkedPlate(String inputPlate) {
+        return repository.findTicketByPlateNormalized(inputPlate);
+    }
+    
+    @Override
+    public List<String> searchByKeyword(String keyword) {
+        return repository.searchByKeyword(keyword);
+    }
+    
+    /**
+     * Vé đang active lấy từ snapshot hiện tại (không sao chép)
+     */
+    @Override
+    public Collection<Ticket> getActiveTickets() {
+        return repository.snapshot().getActiveTickets();
+    }
+    
+    @Override
+    public List<StayRecord> findHistory(String plate) {
+        return historyService.findHistory(plate);
+    }
+    
+    /**
+     * Nạp dữ liệu, đếm lại số xe từng zone và dựng lại thống kê, dự báo zone, bộ đếm mất vé
+     * từ checkpoint event log rồi phát lại phần log ghi sau checkpoint (không có checkpoint
+     * dùng được thì phát lại cả log)
+     *
+     * -Dparking.fast.start=true: chỉ nạp xe đang đỗ rồi trả về ngay để mở cổng; sổ cái vé tháng,
+     * index xe đã rời bãi, lịch sử gửi xe và phát lại event log chạy trên luồng nền
+     */
+    @Override
+    public void loadData() {
+        eventBus.awaitIdle();
+        if (Boolean.getBoolean("parking.fast.start")) {
+            loadDataFast();
+            return;
+        }
+        repository.loadFromFile();
+        historyService.load();
+        
+        long from = restoreCheckpoint(forecaster);
+        int replayed = eventLog.replay(event -> {
+            statistics.apply(event);
+            forecaster.apply(event);
+            lostTicketDetector.apply(event);
+        }, from, eventLog.size());
+        resetActiveIndexes();
+        if (replayed > 0) {
+            System.out.println("✓ Đã phát lại " + replayed + " sự kiện từ event log"
+                    + (from > 0 ? " (sau checkpoint)" : ""));
+        }
+        checkpoint(false);
+    }
+    
+    /**
+     * Nạp thống kê, bộ đếm mất vé và tốc độ zone (vào target) từ checkpoint event log
+     * @return Offset event log cần phát lại tiếp: offset của checkpoint, 0 nếu không có
+     *         checkpoint hoặc không nạp được (các projection được xóa trắng)
+     */
+    private long restoreCheckpoint(ZoneForecaster target) {
+        statistics.reset();
+        lostTicketDetector.reset();
+        target.reset();
+        checkpointOffset = 0;
+        EventLogRepository.Checkpoint checkpoint = persistent ? eventLog.readCheckpoint() : null;
+        if (checkpoint == null) {
+            return 0;
+        }
+        try (DataInputStream in = checkpoint.openState()) {
+            statistics.readState(in);
+            lostTicketDetector.readState(in);
+            target.readState(in);
+            checkpointOffset = checkpoint.getOffset();
+            return checkpointOffset;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("ℹ Không dùng được checkpoint event log (" + e.getMessage() + "), phát lại toàn bộ");
+            statistics.reset();
+            lostTicketDetector.reset();
+            target.reset();
+            return 0;
+        }
+    }
+    
+    /**
+     * Ghi checkpoint event log khi log đã dài thêm từ checkpointInterval byte so với checkpoint
+     * trước (force: chỉ cần log có thay đổi). Trạng thái chỉ được ghi khi mọi consumer đã xử lý
+     * hết sự kiện đã phát và không có sự kiện mới trong lúc chụp, để khớp đúng offset của log;
+     * nếu có thì bỏ qua, lần gọi sau ghi lại.
+     */
+    private synchronized void checkpoint(boolean force) {
+        if (!persistent) {
+            return;
+        }
+        long published = eventBus.getCursor();
+        eventBus.awaitIdle();
+        long offset = eventLog.size();
+        long grown = offset - checkpointOffset;
+        if (grown == 0 || (!force && grown > 0 && grown < checkpointInterval)) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            statistics.writeState(out);
+            lostTicketDetector.writeState(out);
+            forecaster.writeState(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Ghi vào bộ nhớ, không xảy ra
+        }
+        if (eventBus.getCursor() != published) {
+            return;
+        }
+        eventLog.writeCheckpoint(offset, bytes.toByteArray());
+        checkpointOffset = offset;
+    }
+    
+    /**
+     * Dựng lại bộ đếm zone, chỉ mục chỗ và chỉ mục biển số từ vé active
+     * (sau khi nạp dữ liệu, hoặc khi replica được nâng lên primary: journal replication
+     * cập nhật thẳng kho dữ liệu, không đi qua các chỉ mục dựng từ sự kiện)
+     */
+    public void resetActiveIndexes() {
+        Collection<Ticket> activeTickets = getActiveTickets();
+        occupancy.reset(activeTickets);
+        slotIndex.reset(activeTickets);
+        plateMatcher.reset(activeTickets);
+    }
+    
+    /**
+     * Khởi động nhanh: bộ đếm zone, chỉ mục chỗ và biển số dựng từ xe đang đỗ ngay; thống kê
+     * (cộng dồn, không phụ thuộc thứ tự) và bộ đếm mất vé (đếm theo bucket thời gian) nhận sự kiện
+     * mới ngay và cộng thêm phần phát lại;
+     * dự báo phát lại vào bản riêng rồi nối tiếp các sự kiện mới (ZoneForecaster.beginCatchUp)
+     */
+    private void loadDataFast() {
+        repository.loadActiveFromFile();
+        resetActiveIndexes();
+        forecaster.beginCatchUp();
+        ZoneForecaster replayedForecaster = new ZoneForecaster(occupancy);
+        long from = restoreCheckpoint(replayedForecaster);
+        long eventLogEnd = eventLog.size();
+        
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
+            repository.completeLoading();
+            historyService.load();
+            int replayed = eventLog.replay(event -> {
+                statistics.apply(event);
+                replayedForecaster.apply(event);
+                lostTicketDetector.apply(event);
+            }, from, eventLogEnd);
+            forecaster.completeCatchUp(replayedForecaster);
+            System.out.println("✓ Đã nạp nền xong (phát lại " + replayed + " sự kiện, "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }, "parking-background-load");
+        backgroundLoader = loader;
+        loader.start();
+    }
+    
+    /**
+     * Chờ phần nạp nền của khởi động nhanh (nếu có) hoàn tất
+     */
+    public void awaitBackgroundLoad() {
+        Thread loader = backgroundLoader;
+        if (loader == null) {
+            return;
+        }
+        try {
+            loader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Dữ liệu đã được sao lưu theo lô sự kiện bởi PersistenceHandler; hàm này chờ phần nạp nền
+     * (nếu khởi động nhanh) và mọi consumer xử lý hết sự kiện đã phát (file đã ghi, hóa đơn đã in),
+     * rồi ghi checkpoint event log nếu log đã dài thêm đủ -Dparking.events.checkpoint.bytes
+     */
+    @Override
+    public void saveData() {
+        awaitBackgroundLoad();
+        eventBus.awaitIdle();
+        checkpoint(false);
+    }
+    
+    /**
+     * Dừng bus sự kiện sau khi xử lý hết sự kiện còn lại (service tạm, vd: khởi động nóng)
+     * và ghi checkpoint event log nếu log có thay đổi
+     */
+    public void shutdown() {
+        awaitBackgroundLoad();
+        eventBus.shutdown();
+        checkpoint(true);
+    }
+    
     /**
      * Xử lý check-out Simulation: Cho phép nhập tháng và ngày thủ công để test
      * 
      * @param plate Biển số xe (đã được chuẩn hóa từ View)
-     * @param months Số tháng đã trôi qua (dùng để giả lập tháng check-out cho vé tháng)
+     * @param months Số tháng đã trôi qua (vé tháng: thu các tháng chưa đóng từ tháng vào giả lập)
      * @param days Số ngày lẻ đã trôi qua
      * @return Tổng phí phải trả
      */
+    @Override
     public long checkOutSimulation(String plate, int months, int days) {
         // Tìm ticket (plate đã được chuẩn hóa và trả về biển số gốc từ View)
         Ticket ticket = repository.findTicketByPlate(plate);
@@ -182,34 +618,23 @@ public class ParkingService implements IParkingService {
         // Tính tổng số ngày: 1 Tháng = 30 ngày
         int totalDays = (months * 30) + days;
         
-        // Giả lập: Lùi entryTime về quá khứ
-        LocalDateTime fakeEntryTime = LocalDateTime.now().minusDays(totalDays);
-        ticket.setEntryTime(fakeEntryTime);
-        
-        // Giả lập checkoutTime: Lùi về quá khứ theo số tháng/ngày nhập vào
-        LocalDateTime fakeCheckoutTime = LocalDateTime.now().minusMonths(months).minusDays(days);
+        // Giả lập: Lùi entryTime về quá khứ (tạo ticket giả lập, không sửa ticket đang
+        // nằm trong snapshot mà báo cáo có thể đang đọc)
+        LocalDateTime fakeEntryTime = LocalDateTime.now(clock).minusDays(totalDays);
+        Ticket simulatedTicket = new Ticket(plate, fakeEntryTime, ticket.isMonthlyTicket(), ticket.getZone());
         
-        // Tính phí với logic mới cho Simulation
-        long fee = billingService.calculateSimulationFee(vehicle, months, days, fakeCheckoutTime, fakeEntryTime);
-        
-        // Nếu là vé tháng và phải thu tiền (fee > 0), cập nhật lịch sử đóng tiền
-        if (vehicle.hasMonthlyCard() && fee > 0) {
-            String currentMonth = billingService.getCurrentMonth(fakeCheckoutTime);
-            repository.updatePaymentStatus(plate, currentMonth); // Lưu vào sổ cái lịch sử (cũ)
-            repository.saveMonthlyPayment(plate, currentMonth);  // Lưu vào file monthly_payment.csv
-        }
+        // Tính phí với logic mới cho Simulation; vé tháng thu mọi tháng chưa đóng
+        // từ tháng vào giả lập tới tháng hiện tại
+        LocalDateTime exitTime = LocalDateTime.now(clock);
+        BillingService.MonthlyCharge charge = billingService.calculateMonthlyCharge(vehicle, fakeEntryTime, exitTime);
+        long fee = charge != null ? charge.getAmount()
+                : billingService.calculateSimulationFee(vehicle, months, days, exitTime, fakeEntryTime);
+        String lastPaidMonth = charge != null ? charge.getLastPaidMonth() : repository.getLastPaidMonth(plate);
         
-        LocalDateTime exitTime = LocalDateTime.now();
-        
-        // Lấy lastPaidMonth từ sổ cái để hiển thị
-        String lastPaidMonth = repository.getLastPaidMonth(plate);
-        
-        // In hóa đơn simulation với thông tin chi tiết
-        printSimulationInvoice(plate, fakeEntryTime, exitTime, months, days, totalDays, fee, 
-                vehicle.hasMonthlyCard(), lastPaidMonth);
-        
-        // Xóa ticket khỏi repository
-        repository.removeTicket(plate);
+        // Lịch sử lượt gửi ghi theo thời gian giả lập (simulatedTicket)
+        VehicleCheckedOut checkedOut = new VehicleCheckedOut(simulatedTicket, vehicle, exitTime, fee,
+                lastPaidMonth, months, days);
+        publish(withMonthlyFeePaid(plate, exitTime, charge, checkedOut));
         
         return fee;
     }
@@ -218,9 +643,10 @@ public class ParkingService implements IParkingService {
      * Xử lý trường hợp mất vé
      * 
      * @param plate Biển số xe (đã được chuẩn hóa từ View)
-     * @return Tổng phí phải trả (bao gồm phạt mất vé)
+     * @return Tổng phí phải trả (bao gồm phạt mất vé) và các cảnh báo nghi vấn lạm dụng
      */
-    public long processLostTicket(String plate) {
+    @Override
+    public LostTicketResult processLostTicket(String plate) {
         // Tìm xe trong repository (plate đã được chuẩn hóa và trả về biển số gốc từ View)
         Ticket ticket = repository.findTicketByPlate(plate);
         
@@ -233,118 +659,22 @@ public class ParkingService implements IParkingService {
             throw new IllegalStateException("Không tìm thấy thông tin xe " + plate);
         }
         
-        // Lấy entryTime thực tế từ ticket
-        LocalDateTime entryTime = ticket.getEntryTime();
-        LocalDateTime exitTime = LocalDateTime.now();
-        
-        // Tính thời gian đỗ (giờ)
-        long hours = ChronoUnit.HOURS.between(entryTime, exitTime);
-        double duration = hours;
+        // Tính phí đỗ xe (theo công thức mới) từ entryTime thực tế
+        LocalDateTime exitTime = LocalDateTime.now(clock);
+        BillingService.MonthlyCharge charge = billingService.calculateMonthlyCharge(vehicle, ticket.getEntryTime(), exitTime);
+        long parkingFee = charge != null ? charge.getAmount()
+                : billingService.calculateFee(vehicle, exitTime, ticket.getEntryTime());
+        String lastPaidMonth = charge != null ? charge.getLastPaidMonth() : repository.getLastPaidMonth(plate);
         
-        // Tính phí đỗ xe (theo công thức mới)
-        long parkingFee = billingService.calculateFee(vehicle, exitTime, entryTime);
+        // Kiểm tra dấu hiệu lạm dụng ngay tại làn ra (O(1), chỉ cảnh báo, không chặn xe);
+        // cảnh báo ghi cùng sự kiện vào event log và trả về cho màn hình làn ra
+        List<String> alerts = lostTicketDetector.assess(plate, ticket.getZone(), ticket.getEntryTime(), exitTime);
         
-        // Nếu là vé tháng và phải thu tiền (parkingFee > 0), cập nhật lịch sử đóng tiền
-        if (vehicle.hasMonthlyCard() && parkingFee > 0) {
-            String currentMonth = billingService.getCurrentMonth(exitTime);
-            repository.updatePaymentStatus(plate, currentMonth); // Lưu vào sổ cái lịch sử (cũ)
-            repository.saveMonthlyPayment(plate, currentMonth);  // Lưu vào file monthly_payment.csv
-        }
         // Tổng phí = Phạt mất vé + Phí đỗ xe
-        long totalFee = LOST_TICKET_FINE + parkingFee;
-        
-        // Lấy lastPaidMonth từ sổ cái để hiển thị
-        String lastPaidMonth = repository.getLastPaidMonth(plate);
-        
-        // In hóa đơn mất vé
-        printLostTicketInvoice(plate, entryTime, exitTime, duration, parkingFee, totalFee, 
-                vehicle.hasMonthlyCard(), lastPaidMonth);
+        LostTicketProcessed lost = new LostTicketProcessed(ticket, vehicle, exitTime,
+                parkingFee, LOST_TICKET_FINE, lastPaidMonth, alerts);
+        publish(withMonthlyFeePaid(plate, exitTime, charge, lost));
         
-        // Xóa ticket khỏi repository
-        repository.removeTicket(plate);
-        
-        return totalFee;
-    }
-    
-    /**
-     * In hóa đơn check-out bình thường
-     */
-    private void printInvoice(String plate, LocalDateTime entryTime, LocalDateTime exitTime, 
-                             double duration, long fee, boolean hasMonthlyCard, String lastPaidMonth) {
-        System.out.println("\n========================================");
-        System.out.println("        HÓA ĐƠN THANH TOÁN");
-        System.out.println("========================================");
-        System.out.println("Biển số xe: " + plate);
-        System.out.println("Giờ vào: " + entryTime);
-        System.out.println("Giờ ra: " + exitTime);
-        System.out.println("Thời gian đỗ: " + String.format("%.1f", duration) + " giờ");
-        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
-        if (hasMonthlyCard && lastPaidMonth != null) {
-            System.out.println("Tháng đã đóng: " + lastPaidMonth);
-        }
-        System.out.println("----------------------------------------");
-        System.out.println("TỔNG PHÍ: " + String.format("%,d", fee) + " VNĐ");
-        System.out.println("========================================\n");
-    }
-    
-    /**
-     * In hóa đơn mất vé
-     */
-    private void printLostTicketInvoice(String plate, LocalDateTime entryTime, LocalDateTime exitTime,
-                                       double duration, long parkingFee, long totalFee, boolean hasMonthlyCard, String lastPaidMonth) {
-        System.out.println("\n========================================");
-        System.out.println("     HÓA ĐƠN MẤT VÉ");
-        System.out.println("========================================");
-        System.out.println("Biển số xe: " + plate);
-        System.out.println("Giờ vào: " + entryTime);
-        System.out.println("Giờ ra: " + exitTime);
-        System.out.println("Thời gian đỗ: " + String.format("%.1f", duration) + " giờ");
-        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
-        if (hasMonthlyCard && lastPaidMonth != null) {
-            System.out.println("Tháng đã đóng: " + lastPaidMonth);
-        }
-        System.out.println("----------------------------------------");
-        System.out.println("Phí đỗ xe: " + String.format("%,d", parkingFee) + " VNĐ");
-        System.out.println("Phạt mất vé: " + String.format("%,d", LOST_TICKET_FINE) + " VNĐ");
-        System.out.println("----------------------------------------");
-        System.out.println("TỔNG PHÍ: " + String.format("%,d", totalFee) + " VNĐ");
-        System.out.println("========================================\n");
-    }
-    
-    /**
-     * In hóa đơn check-out simulation
-     */
-    private void printSimulationInvoice(String plate, LocalDateTime entryTime, LocalDateTime exitTime,
-                                       int months, int days, int totalDays, long fee, boolean hasMonthlyCard, String lastPaidMonth) {
-        System.out.println("\n========================================");
-        System.out.println("   HÓA ĐƠN THANH TOÁN (SIMULATION)");
-        System.out.println("========================================");
-        System.out.println("Biển số xe: " + plate);
-        System.out.println("Giờ vào (giả lập): " + entryTime);
-        System.out.println("Giờ ra: " + exitTime);
-        System.out.println("Thời gian giả lập: " + months + " tháng " + days + " ngày (Tổng " + totalDays + " ngày)");
-        System.out.println("Thẻ tháng: " + (hasMonthlyCard ? "Có" : "Không"));
-        if (hasMonthlyCard && lastPaidMonth != null) {
-            System.out.println("Tháng đã đóng: " + lastPaidMonth);
-        }
-        System.out.println("----------------------------------------");
-        if (hasMonthlyCard) {
-            if (fee > 0) {
-                System.out.println("Phí vé tháng: " + String.format("%,d", fee) + " VNĐ (Chưa đóng tháng này)");
-            } else {
-                System.out.println("Phí vé tháng: 0 VNĐ (Đã đóng tháng này)");
-            }
-        } else {
-            if (totalDays > 1) {
-                System.out.println("Phí phạt: " + String.format("%,d", fee) + " VNĐ");
-                System.out.println("   (Ngày đầu miễn phí, các ngày tiếp theo: " + String.format("%,d", (totalDays - 1)) + " ngày × 5.000 VNĐ)");
-            } else {
-                System.out.println("Phí phạt: 0 VNĐ (Ngày đầu tiên - miễn phí)");
-            }
-        }
-        System.out.println("----------------------------------------");
-        System.out.println("TỔNG PHÍ: " + String.format("%,d", fee) + " VNĐ");
-        System.out.println("========================================\n");
+        return new LostTicketResult(lost.getTotalFee(), lost.getAlerts());
     }
 }
-
@@ -0,0 +1,48 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.repository.EventLogRepository;
+import vn.parking.repository.ParkingRepository;
+
+/**
+ * Consumer lưu trữ: ghi event log, ghi lịch sử lượt gửi và lưu file dữ liệu
+ * Chạy sau RepositoryProjector; file dữ liệu chỉ được ghi một lần cho mỗi lô sự kiện.
+ */
+class PersistenceHandler implements EventHandler {
+
+    private final ParkingRepository repository;
+    private final HistoryService historyService;
+    private final EventLogRepository eventLog;
+    private boolean dirty; // Lô hiện tại có thay đổi vé active
+
+    PersistenceHandler(ParkingRepository repository, HistoryService historyService, EventLogRepository eventLog) {
+        this.repository = repository;
+        this.historyService = historyService;
+        this.eventLog = eventLog;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        eventLog.append(event);
+
+        if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut checkedOut = (VehicleCheckedOut) event;
+            historyService.recordStay(checkedOut.getTicket(), checkedOut.getExitTime(), checkedOut.getFee());
+            dirty = true;
+        } else if (event instanceof LostTicketProcessed) {
+            LostTicketProcessed lost = (LostTicketProcessed) event;
+            historyService.recordStay(lost.getTicket(), lost.getExitTime(), lost.getTotalFee());
+            dirty = true;
+        } else if (event instanceof VehicleCheckedIn) {
+            dirty = true;
+        }
+
+        if (endOfBatch) {
+            eventLog.flush();
+            if (dirty) {
+                repository.saveToFile();
+                dirty = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.Ticket;
+import vn.parking.repository.ParkingRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consumer khớp gần đúng biển số đọc từ camera với xe đang đỗ
+ *
+ * Biển số được đưa về khóa: chuẩn hóa rồi bỏ ký tự không phải chữ/số ("29A1-123.45" -> "29A112345").
+ * Chi phí sửa giữa hai khóa là Levenshtein có trọng số theo lỗi OCR:
+ * - Thay hai ký tự dễ nhầm (O/0, B/8, I/1, S/5...): 1
+ * - Thay ký tự khác, thêm hoặc bớt một ký tự: 2
+ *
+ * Các khóa nằm trong một cây tiền tố (trie). Tìm kiếm đi từ gốc và mang theo một hàng
+ * của bảng quy hoạch động Levenshtein cho mỗi độ sâu (mô phỏng automaton Levenshtein):
+ * nhánh có giá trị nhỏ nhất của hàng vượt ngưỡng bị cắt, nên chỉ một phần nhỏ của cây
+ * được duyệt dù số xe lớn.
+ *
+ * Xe vào thêm khóa vào cây, xe ra xóa khóa và bỏ các nút không còn biển số nào phía dưới
+ * (như SlotIndex, chỉ đổi trạng thái khi nhận sự kiện).
+ */
+public class PlateMatcher implements EventHandler {
+
+    public static final int CONFUSABLE_COST = 1;
+    public static final int EDIT_COST = 2;
+    public static final int DEFAULT_MAX_COST = 2;
+
+    // Các cặp ký tự OCR hay đọc nhầm
+    private static final String[] CONFUSABLE_PAIRS = {
+            "O0", "D0", "Q0", "B8", "I1", "L1", "T1", "S5", "Z2", "G6", "A4", "T7"
+    };
+    private static final boolean[][] CONFUSABLE = new boolean[128][128];
+
+    static {
+        for (String pair : CONFUSABLE_PAIRS) {
+            char a = pair.charAt(0);
+            char b = pair.charAt(1);
+            CONFUSABLE[a][b] = true;
+            CONFUSABLE[b][a] = true;
+        }
+    }
+
+    /**
+     * Một biển số đang đỗ khớp với bản đọc, kèm chi phí sửa
+     */
+    public static final class Match {
+        private final String plate;
+        private final int cost;
+
+        Match(String plate, int cost) {
+            this.plate = plate;
+            this.cost = cost;
+        }
+
+        public String getPlate() {
+            return plate;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return plate + " (" + cost + ")";
+        }
+    }
+
+    /**
+     * Nút trie; con xếp theo ký tự trong mảng nhỏ (tối đa 36 ký tự chữ/số)
+     */
+    private static final class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        List<String> plates;          // Biển số gốc kết thúc tại nút này
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        void removeChild(char c) {
+            int at = Arrays.binarySearch(labels, c);
+            if (at < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(labels, at + 1, newLabels, at, labels.length - at - 1);
+            System.arraycopy(children, at + 1, newChildren, at, children.length - at - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return labels.length == 0 && (plates == null || plates.isEmpty());
+        }
+    }
+
+    private final int maxCost;
+    private Node root = new Node();
+    private int livePlates;
+
+    public PlateMatcher() {
+        this(Integer.getInteger("parking.anpr.max.cost", DEFAULT_MAX_COST));
+    }
+
+    /**
+     * @param maxCost Chi phí sửa tối đa để tự khớp (mặc định 2: một lỗi bất kỳ hoặc hai lỗi dễ nhầm)
+     */
+    public PlateMatcher(int maxCost) {
+        this.maxCost = maxCost;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện: xe vào thêm biển số, xe ra bỏ biển số
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (event instanceof VehicleCheckedIn) {
+            add(((VehicleCheckedIn) event).getTicket().getPlate());
+        } else if (event instanceof VehicleCheckedOut || event instanceof LostTicketProcessed) {
+            remove(event.getPlate());
+        }
+    }
+
+    /**
+     * Dựng lại cây theo vé active (sau khi nạp dữ liệu)
+     */
+    public synchronized void reset(Collection<Ticket> activeTickets) {
+        root = new Node();
+        livePlates = 0;
+        for (Ticket ticket : activeTickets) {
+            add(ticket.getPlate());
+        }
+    }
+
+    /**
+     * Tự khớp bản đọc của camera làn ra
+     * @return Biển số đang đỗ nếu trùng khóa, hoặc là ứng viên duy nhất có chi phí thấp nhất
+     *         trong ngưỡng; null nếu không có hoặc có nhiều ứng viên ngang nhau (cần người xác nhận)
+     */
+    public synchronized String autoMatch(String read) {
+        List<Match> matches = findWithin(read, maxCost);
+        if (matches.isEmpty()) {
+            return null;
+        }
+        if (matches.size() > 1 && matches.get(1).cost == matches.get(0).cost) {
+            return null;
+        }
+        return matches.get(0).plate;
+    }
+
+    /**
+     * Mọi biển số đang đỗ có chi phí sửa tới bản đọc không quá maxCost, chi phí tăng dần
+     */
+    public synchronized List<Match> findWithin(String read, int maxCost) {
+        List<Match> matches = new ArrayList<>();
+        String key = toKey(read);
+        // Hàng quy hoạch động của từng độ sâu, dùng lại trong cả lượt tìm
+        int[][] rows = new int[key.length() + maxCost / EDIT_COST + 2][key.length() + 1];
+        for (int i = 0; i <= key.length(); i++) {
+            rows[0][i] = i * EDIT_COST;
+        }
+        for (int i = 0; i < root.labels.length; i++) {
+            search(root.children[i], root.labels[i], key, rows, 1, maxCost, matches);
+        }
+        matches.sort(Comparator.comparingInt(Match::getCost).thenComparing(Match::getPlate));
+        return matches;
+    }
+
+    /**
+     * Đi xuống nút ứng với ký tự c: tính hàng quy hoạch động mới từ hàng của nút cha,
+     * cắt nhánh khi mọi ô đã vượt ngưỡng
+     */
+    private static void search(Node node, char c, String key, int[][] rows, int depth, int maxCost,
+                               List<Match> matches) {
+        int n = key.length();
+        int[] prevRow = rows[depth - 1];
+        int[] row = rows[depth];
+        row[0] = prevRow[0] + EDIT_COST;
+        int best = row[0];
+        for (int i = 1; i <= n; i++) {
+            int substitute = prevRow[i - 1] + substitutionCost(key.charAt(i - 1), c);
+            int delete = prevRow[i] + EDIT_COST;
+            int insert = row[i - 1] + EDIT_COST;
+            row[i] = Math.min(substitute, Math.min(delete, insert));
+            best = Math.min(best, row[i]);
+        }
+        if (node.plates != null && row[n] <= maxCost) {
+            for (String plate : node.plates) {
+                matches.add(new Match(plate, row[n]));
+            }
+        }
+        // Sâu hơn độ dài bản đọc + số lần thêm ký tự cho phép thì ô cuối chắc chắn vượt ngưỡng
+        if (best > maxCost || depth + 1 >= rows.length) {
+            return;
+        }
+        for (int i = 0; i < node.labels.length; i++) {
+            search(node.children[i], node.labels[i], key, rows, depth + 1, maxCost, matches);
+        }
+    }
+
+    /**
+     * Số biển số đang có trong cây
+     */
+    public synchronized int size() {
+        return livePlates;
+    }
+
+    private void add(String plate) {
+        String key = toKey(plate);
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        if (node.plates == null) {
+            node.plates = new ArrayList<>(1);
+        }
+        if (!node.plates.contains(plate)) {
+            node.plates.add(plate);
+            livePlates++;
+        }
+    }
+
+    private void remove(String plate) {
+        String key = toKey(plate);
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = path[key.length()];
+        if (node.plates == null || !node.plates.remove(plate)) {
+            return;
+        }
+        livePlates--;
+        // Bỏ các nút không còn biển số nào phía dưới
+        for (int i = key.length(); i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    /**
+     * Khóa so khớp: biển số chuẩn hóa, chỉ giữ chữ và số
+     */
+    static String toKey(String plate) {
+        String normalized = ParkingRepository.normalizePlate(plate);
+        StringBuilder key = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    private static int substitutionCost(char a, char b) {
+        if (a == b) {
+            return 0;
+        }
+        return a < 128 && b < 128 && CONFUSABLE[a][b] ? CONFUSABLE_COST : EDIT_COST;
+    }
+}
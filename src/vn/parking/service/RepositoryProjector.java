@@ -0,0 +1,33 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.MonthCoverage;
+import vn.parking.repository.ParkingRepository;
+
+/**
+ * Consumer cập nhật trạng thái bãi (vé đang active, sổ cái vé tháng) từ sự kiện
+ * ParkingService chờ consumer này xử lý xong trước khi trả kết quả cho cổng,
+ * để thao tác tiếp theo đọc được trạng thái mới.
+ */
+class RepositoryProjector implements EventHandler {
+
+    private final ParkingRepository repository;
+
+    RepositoryProjector(ParkingRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        if (event instanceof VehicleCheckedIn) {
+            VehicleCheckedIn checkedIn = (VehicleCheckedIn) event;
+            repository.saveCheckIn(checkedIn.getTicket(), checkedIn.getVehicle());
+        } else if (event instanceof VehicleCheckedOut || event instanceof LostTicketProcessed) {
+            repository.removeTicket(event.getPlate());
+        } else if (event instanceof MonthlyFeePaid) {
+            MonthlyFeePaid paid = (MonthlyFeePaid) event;
+            repository.recordMonthlyPayment(paid.getPlate(),
+                    MonthCoverage.formatRange(MonthCoverage.parseMonth(paid.getMonth()), paid.getMonths()));
+        }
+    }
+}
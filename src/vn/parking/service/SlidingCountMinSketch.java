@@ -0,0 +1,204 @@
+package vn.parking.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Count-min sketch trên cửa sổ thời gian trượt: đếm gần đúng số lần xuất hiện của mỗi khóa
+ * (biển số) trong bucketCount bucket thời gian gần nhất mà không giữ khóa nào
+ *
+ * Chỉ có một sketch depth x width (int) cho cả cửa sổ. Mỗi bucket thời gian chỉ giữ giá trị
+ * băm của các lần thêm vào nó (8 byte mỗi lần); khi bucket ra khỏi cửa sổ, các lần đó được
+ * trừ lại khỏi sketch. Thêm là depth phép cộng, tra cứu là depth phép đọc, mỗi lần thêm được
+ * trừ đúng một lần khi hết hạn, nên chi phí mỗi thao tác là hằng số (khấu hao).
+ *
+ * Ước lượng không bao giờ thấp hơn giá trị thật; vượt quá khoảng tổngSốLần / width ở mỗi hàng,
+ * lấy min qua các hàng nên khóa chưa từng thêm hiếm khi bị đếm nhầm khi tổng nhỏ hơn width nhiều.
+ */
+public class SlidingCountMinSketch {
+
+    private final int depth;
+    private final int mask;              // width - 1 (width là lũy thừa của 2)
+    private final long bucketMillis;
+    private final long[] bucketEpochs;   // Chỉ số thời gian (t / bucketMillis) của từng bucket
+    private final long[][] bucketHashes; // Giá trị băm các lần thêm của từng bucket
+    private final int[] bucketSizes;
+    private final int[] counters;
+    private long newestEpoch = Long.MIN_VALUE;
+    private long totalCount;
+
+    /**
+     * @param windowMillis Độ dài cửa sổ
+     * @param bucketCount  Số bucket (độ mịn khi trượt)
+     * @param depth        Số hàng (hàm băm)
+     * @param width        Số ô mỗi hàng, làm tròn lên lũy thừa của 2
+     */
+    public SlidingCountMinSketch(long windowMillis, int bucketCount, int depth, int width) {
+        if (bucketCount <= 0 || windowMillis < bucketCount || depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Cửa sổ / kích thước sketch không hợp lệ");
+        }
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketEpochs = new long[bucketCount];
+        this.bucketHashes = new long[bucketCount][];
+        this.bucketSizes = new int[bucketCount];
+        this.counters = new int[depth * size];
+        Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+    }
+
+    /**
+     * Ghi nhận một lần xuất hiện của key tại thời điểm timeMillis
+     * (thời điểm đã ra khỏi cửa sổ thì bỏ qua, vd khi phát lại sự kiện cũ)
+     */
+    public synchronized void add(String key, long timeMillis) {
+        long epoch = Math.floorDiv(timeMillis, bucketMillis);
+        advance(epoch);
+        if (epoch <= newestEpoch - bucketEpochs.length) {
+            return;
+        }
+        int slot = (int) Math.floorMod(epoch, (long) bucketEpochs.length);
+        if (bucketEpochs[slot] != epoch) {
+            expire(slot);
+            bucketEpochs[slot] = epoch;
+        }
+        long hash = hash(key);
+        long[] hashes = bucketHashes[slot];
+        if (hashes == null || bucketSizes[slot] == hashes.length) {
+            hashes = hashes == null ? new long[16] : Arrays.copyOf(hashes, hashes.length * 2);
+            bucketHashes[slot] = hashes;
+        }
+        hashes[bucketSizes[slot]++] = hash;
+        update(hash, 1);
+        totalCount++;
+    }
+
+    /**
+     * Số lần ước lượng của key trong cửa sổ kết thúc tại nowMillis
+     */
+    public synchronized int estimate(String key, long nowMillis) {
+        advance(Math.floorDiv(nowMillis, bucketMillis));
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * (mask + 1) + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    /**
+     * Tổng số lần đã ghi nhận trong cửa sổ
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+        Arrays.fill(bucketHashes, null);
+        Arrays.fill(bucketSizes, 0);
+        Arrays.fill(counters, 0);
+        newestEpoch = Long.MIN_VALUE;
+        totalCount = 0;
+    }
+
+    /**
+     * Ghi kích thước, các bucket và giá trị băm của chúng (bảng đếm dựng lại được từ giá trị băm)
+     */
+    public synchronized void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(mask + 1);
+        out.writeLong(bucketMillis);
+        out.writeInt(bucketEpochs.length);
+        out.writeLong(newestEpoch);
+        for (int slot = 0; slot < bucketEpochs.length; slot++) {
+            out.writeLong(bucketEpochs[slot]);
+            out.writeInt(bucketSizes[slot]);
+            for (int i = 0; i < bucketSizes[slot]; i++) {
+                out.writeLong(bucketHashes[slot][i]);
+            }
+        }
+    }
+
+    /**
+     * Nạp trạng thái đã ghi bằng writeState
+     * @throws IOException Trạng thái được ghi với kích thước sketch / cửa sổ khác
+     */
+    public synchronized void readState(DataInputStream in) throws IOException {
+        if (in.readInt() != depth || in.readInt() != mask + 1 || in.readLong() != bucketMillis
+                || in.readInt() != bucketEpochs.length) {
+            throw new IOException("kích thước sketch đã thay đổi");
+        }
+        clear();
+        newestEpoch = in.readLong();
+        for (int slot = 0; slot < bucketEpochs.length; slot++) {
+            bucketEpochs[slot] = in.readLong();
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("số phần tử bucket không hợp lệ");
+            }
+            if (size > 0) {
+                long[] hashes = new long[Math.max(16, size)];
+                for (int i = 0; i < size; i++) {
+                    hashes[i] = in.readLong();
+                    update(hashes[i], 1);
+                }
+                bucketHashes[slot] = hashes;
+                bucketSizes[slot] = size;
+                totalCount += size;
+            }
+        }
+    }
+
+    // Trượt cửa sổ tới epoch: trừ các bucket đã ra khỏi cửa sổ khỏi sketch
+    private void advance(long epoch) {
+        if (epoch <= newestEpoch) {
+            return;
+        }
+        newestEpoch = epoch;
+        for (int slot = 0; slot < bucketEpochs.length; slot++) {
+            if (bucketEpochs[slot] != Long.MIN_VALUE && bucketEpochs[slot] <= epoch - bucketEpochs.length) {
+                expire(slot);
+            }
+        }
+    }
+
+    private void expire(int slot) {
+        long[] hashes = bucketHashes[slot];
+        for (int i = 0; i < bucketSizes[slot]; i++) {
+            update(hashes[i], -1);
+        }
+        totalCount -= bucketSizes[slot];
+        bucketSizes[slot] = 0;
+        bucketEpochs[slot] = Long.MIN_VALUE;
+    }
+
+    // Hai hàm băm 32 bit từ một giá trị 64 bit, hàng i dùng h1 + i * h2
+    private void update(long hash, int delta) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters[row * (mask + 1) + ((h1 + row * h2) & mask)] += delta;
+        }
+    }
+
+    // FNV-1a 64 bit + trộn bit (splitmix64)
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
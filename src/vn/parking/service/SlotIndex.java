@@ -0,0 +1,175 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.ParkingSlot;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Consumer chỉ mục chỗ đỗ: tìm chỗ trống gần cổng nhất của từng zone
+ *
+ * Mỗi zone giữ các chỗ trống trong một cây sắp theo quãng đường từ cổng
+ * (ParkingSlot.getDistanceFromGate, hòa thì theo mã chỗ):
+ * - Chỗ trống gần nhất: phần tử đầu cây, O(log n)
+ * - Xe vào (chiếm chỗ) / xe ra (trả chỗ): xóa/thêm vào cây, O(log n)
+ *
+ * ParkingService chỉ đọc chỗ gần nhất khi check-in và ghi vào ticket; chỉ mục
+ * đổi trạng thái khi nhận sự kiện (như ZoneOccupancy).
+ */
+public class SlotIndex implements EventHandler {
+
+    private static final int SLOTS_PER_ROW = 10;
+    private static final int ROWS_PER_LEVEL = 5;
+
+    private static final Comparator<ParkingSlot> BY_DISTANCE =
+            Comparator.comparingInt(ParkingSlot::getDistanceFromGate).thenComparing(ParkingSlot::getSlotId);
+
+    private final Map<Zone, TreeSet<ParkingSlot>> freeByZone = new EnumMap<>(Zone.class);
+    private final Map<String, ParkingSlot> slotsById = new HashMap<>();
+    private final Map<String, ParkingSlot> slotsByPlate = new HashMap<>();
+
+    public SlotIndex(Collection<ParkingSlot> slots) {
+        for (ParkingSlot slot : slots) {
+            slotsById.put(slot.getSlotId(), slot);
+            freeByZone.computeIfAbsent(slot.getZone(), z -> new TreeSet<>(BY_DISTANCE)).add(slot);
+        }
+    }
+
+    /**
+     * Sơ đồ chỗ đỗ mặc định theo sức chứa từng zone: mỗi tầng ROWS_PER_LEVEL hàng
+     * × SLOTS_PER_ROW chỗ, lấp từ tầng có cổng lên; mã chỗ dạng A1-T0-001
+     */
+    public static List<ParkingSlot> generateLayout(Map<Zone, Integer> capacities) {
+        return generateLayout(capacities, 0, 1);
+    }
+
+    /**
+     * Phần sơ đồ chỗ đỗ của cả bãi thuộc shard shardIndex: chỗ thứ i của mỗi zone thuộc shard
+     * i % shardCount, nên các shard không bao giờ cấp trùng một chỗ, mỗi shard đều có chỗ gần cổng,
+     * và số chỗ mỗi shard khớp với Zone.partition
+     * @param capacities Sức chứa từng zone của cả bãi (chưa chia shard)
+     */
+    public static List<ParkingSlot> generateLayout(Map<Zone, Integer> capacities, int shardIndex, int shardCount) {
+        List<ParkingSlot> slots = new ArrayList<>();
+        int perLevel = SLOTS_PER_ROW * ROWS_PER_LEVEL;
+        for (Map.Entry<Zone, Integer> entry : capacities.entrySet()) {
+            Zone zone = entry.getKey();
+            for (int i = shardIndex; i < entry.getValue(); i += shardCount) {
+                int level = i / perLevel;
+                int inLevel = i % perLevel;
+                String slotId = String.format("%s-T%d-%03d", zone, level, inLevel + 1);
+                slots.add(new ParkingSlot(slotId, zone, level, inLevel / SLOTS_PER_ROW, inLevel % SLOTS_PER_ROW));
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện: xe vào chiếm chỗ ghi trên vé, xe ra trả chỗ
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (event instanceof VehicleCheckedIn) {
+            Ticket ticket = ((VehicleCheckedIn) event).getTicket();
+            occupy(ticket.getPlate(), ticket.getSlotId());
+        } else if (event instanceof VehicleCheckedOut || event instanceof LostTicketProcessed) {
+            release(event.getPlate());
+        }
+    }
+
+    /**
+     * Chỗ trống gần cổng nhất của zone (null nếu zone không chia chỗ hoặc đã hết chỗ)
+     */
+    public synchronized ParkingSlot nearestFree(Zone zone) {
+        TreeSet<ParkingSlot> free = freeByZone.get(zone);
+        return free == null || free.isEmpty() ? null : free.first();
+    }
+
+    /**
+     * Chỗ đang được xe (biển số) chiếm
+     */
+    public synchronized ParkingSlot findSlotOf(String plate) {
+        return slotsByPlate.get(plate);
+    }
+
+    public synchronized ParkingSlot findSlot(String slotId) {
+        return slotsById.get(slotId);
+    }
+
+    public synchronized int getFreeCount(Zone zone) {
+        TreeSet<ParkingSlot> free = freeByZone.get(zone);
+        return free == null ? 0 : free.size();
+    }
+
+    private void occupy(String plate, String slotId) {
+        if (slotId == null) {
+            return;
+        }
+        ParkingSlot slot = slotsById.get(slotId);
+        if (slot == null || slot.isOccupied()) {
+            return; // Chỗ không còn trong sơ đồ hoặc đã có xe: vé vẫn hợp lệ, chỉ không chỉ dẫn được
+        }
+        freeByZone.get(slot.getZone()).remove(slot);
+        slot.setOccupied(true);
+        slotsByPlate.put(plate, slot);
+    }
+
+    private void release(String plate) {
+        ParkingSlot slot = slotsByPlate.remove(plate);
+        if (slot == null) {
+            return;
+        }
+        slot.release();
+        freeByZone.get(slot.getZone()).add(slot);
+    }
+
+    /**
+     * Dựng lại chỉ mục theo vé active (sau khi nạp dữ liệu)
+     * Vé đã có mã chỗ giữ nguyên chỗ; vé cũ chưa có mã chỗ được xếp chỗ trống gần nhất
+     * theo thứ tự giờ vào (chỉ trong bộ nhớ, không ghi lại vào vé).
+     */
+    public synchronized void reset(Collection<Ticket> activeTickets) {
+        for (ParkingSlot slot : slotsByPlate.values()) {
+            slot.release();
+            freeByZone.get(slot.getZone()).add(slot);
+        }
+        slotsByPlate.clear();
+
+        List<Ticket> unslotted = new ArrayList<>();
+        for (Ticket ticket : activeTickets) {
+            if (ticket.getSlotId() != null && slotsById.containsKey(ticket.getSlotId())) {
+                occupy(ticket.getPlate(), ticket.getSlotId());
+            } else {
+                unslotted.add(ticket);
+            }
+        }
+        unslotted.sort(Comparator.comparing(Ticket::getEntryTime));
+        for (Ticket ticket : unslotted) {
+            ParkingSlot slot = nearestFree(ticket.getZone());
+            if (slot != null) {
+                occupy(ticket.getPlate(), slot.getSlotId());
+            }
+        }
+    }
+
+    /**
+     * Mô tả vị trí chỗ đỗ để chỉ dẫn tài xế
+     */
+    public static String describe(ParkingSlot slot) {
+        return slot.getSlotId() + " (tầng " + slot.getLevel() + ", hàng " + (slot.getRow() + 1)
+                + ", chỗ " + (slot.getColumn() + 1) + ")";
+    }
+}
@@ -0,0 +1,115 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.Zone;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer thống kê: đếm lượt vào/ra và doanh thu theo zone
+ * Dựng lại được bằng cách phát lại event log khi khởi động (từ checkpoint nếu có).
+ */
+public class StatisticsProjection implements EventHandler {
+
+    private long checkIns;
+    private long checkOuts;
+    private long lostTickets;
+    private long monthlyPayments;
+    private long totalRevenue;
+    private final Map<Zone, Long> revenueByZone = new EnumMap<>(Zone.class);
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện (từ bus hoặc khi phát lại event log)
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (event instanceof VehicleCheckedIn) {
+            checkIns++;
+        } else if (event instanceof VehicleCheckedOut) {
+            VehicleCheckedOut checkedOut = (VehicleCheckedOut) event;
+            checkOuts++;
+            addRevenue(checkedOut.getTicket().getZone(), checkedOut.getFee());
+        } else if (event instanceof LostTicketProcessed) {
+            LostTicketProcessed lost = (LostTicketProcessed) event;
+            checkOuts++;
+            lostTickets++;
+            addRevenue(lost.getTicket().getZone(), lost.getTotalFee());
+        } else if (event instanceof MonthlyFeePaid) {
+            monthlyPayments++;
+        }
+    }
+
+    private void addRevenue(Zone zone, long amount) {
+        totalRevenue += amount;
+        revenueByZone.merge(zone, amount, Long::sum);
+    }
+
+    public synchronized void reset() {
+        checkIns = 0;
+        checkOuts = 0;
+        lostTickets = 0;
+        monthlyPayments = 0;
+        totalRevenue = 0;
+        revenueByZone.clear();
+    }
+
+    /**
+     * Ghi trạng thái vào checkpoint event log
+     */
+    public synchronized void writeState(DataOutputStream out) throws IOException {
+        out.writeLong(checkIns);
+        out.writeLong(checkOuts);
+        out.writeLong(lostTickets);
+        out.writeLong(monthlyPayments);
+        out.writeLong(totalRevenue);
+        out.writeInt(revenueByZone.size());
+        for (Map.Entry<Zone, Long> entry : revenueByZone.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Nạp trạng thái từ checkpoint event log (thay trạng thái hiện tại)
+     */
+    public synchronized void readState(DataInputStream in) throws IOException {
+        reset();
+        checkIns = in.readLong();
+        checkOuts = in.readLong();
+        lostTickets = in.readLong();
+        monthlyPayments = in.readLong();
+        totalRevenue = in.readLong();
+        int zones = in.readInt();
+        for (int i = 0; i < zones; i++) {
+            revenueByZone.put(Zone.valueOf(in.readUTF()), in.readLong());
+        }
+    }
+
+    public synchronized long getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    /**
+     * Tóm tắt số liệu để hiển thị
+     */
+    public synchronized List<String> getSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Lượt vào: " + checkIns + " | Lượt ra: " + checkOuts
+                + " | Mất vé: " + lostTickets + " | Thu vé tháng: " + monthlyPayments);
+        lines.add("Tổng doanh thu: " + String.format("%,d", totalRevenue) + " VNĐ");
+        for (Map.Entry<Zone, Long> entry : revenueByZone.entrySet()) {
+            lines.add("Zone " + entry.getKey() + ": " + String.format("%,d", entry.getValue()) + " VNĐ");
+        }
+        return lines;
+    }
+}
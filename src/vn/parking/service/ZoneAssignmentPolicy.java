@@ -0,0 +1,23 @@
+package vn.parking.service;
+
+import vn.parking.model.Vehicle;
+import vn.parking.model.Zone;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chính sách xếp zone cho xe vào bãi
+ *
+ * Chính sách chỉ đọc bộ đếm của ZoneOccupancy và dự báo của ZoneForecaster (O(1)),
+ * không duyệt vé active. Zone được ghi vào ticket và lưu cùng dữ liệu xe đang đỗ.
+ */
+public interface ZoneAssignmentPolicy {
+
+    /**
+     * Chọn zone cho xe
+     * @param forecaster Dự báo thời gian đến khi từng zone đầy
+     * @param now Thời điểm xe vào
+     * @throws IllegalStateException nếu không còn zone phù hợp còn chỗ
+     */
+    Zone assignZone(Vehicle vehicle, ZoneOccupancy occupancy, ZoneForecaster forecaster, LocalDateTime now);
+}
@@ -0,0 +1,340 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.Zone;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer dự báo sức chứa theo zone
+ *
+ * Mỗi zone giữ:
+ * - Tốc độ xe vào/ra hiện tại (lượt/giờ), trung bình trượt mũ theo thời gian liên tục
+ * - Tốc độ xe vào/ra theo từng giờ trong tuần (168 ô), trung bình mũ qua các tuần
+ * Số xe đang đỗ và sức chứa lấy từ ZoneOccupancy.
+ *
+ * Mỗi sự kiện chỉ cập nhật vài biến của đúng một zone (O(1)), nên chạy ngay
+ * trên luồng sự kiện; thời gian lấy từ sự kiện nên phát lại event log khi khởi
+ * động sẽ dựng lại đúng các tốc độ này (từ trạng thái lưu trong checkpoint event log nếu có).
+ */
+public class ZoneForecaster implements EventHandler {
+
+    private static final double RATE_WINDOW_HOURS = 1.0;  // Hằng số thời gian của tốc độ hiện tại
+    private static final double SEASONAL_ALPHA = 0.3;     // Trọng số tuần mới nhất cho giờ-trong-tuần
+    private static final int HOURS_PER_WEEK = 168;
+
+    private final ZoneOccupancy occupancy;
+    private final Map<Zone, ZoneState> zones = new EnumMap<>(Zone.class);
+    private List<DomainEvent> liveDuringCatchUp;   // Khác null khi đang phát lại event log ở luồng nền
+
+    public ZoneForecaster(ZoneOccupancy occupancy) {
+        this.occupancy = occupancy;
+        for (Zone zone : Zone.values()) {
+            zones.put(zone, new ZoneState());
+        }
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện (từ bus hoặc khi phát lại event log)
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (liveDuringCatchUp != null) {
+            liveDuringCatchUp.add(event);
+        }
+        if (event instanceof VehicleCheckedIn) {
+            ZoneState zone = zones.get(((VehicleCheckedIn) event).getTicket().getZone());
+            zone.arrive(event.getOccurredAt());
+        } else if (event instanceof VehicleCheckedOut) {
+            ZoneState zone = zones.get(((VehicleCheckedOut) event).getTicket().getZone());
+            zone.depart(event.getOccurredAt());
+        } else if (event instanceof LostTicketProcessed) {
+            ZoneState zone = zones.get(((LostTicketProcessed) event).getTicket().getZone());
+            zone.depart(event.getOccurredAt());
+        }
+    }
+
+    /**
+     * Xóa toàn bộ tốc độ (trước khi phát lại event log)
+     */
+    public synchronized void reset() {
+        for (ZoneState zone : zones.values()) {
+            zone.clear();
+        }
+    }
+
+    /**
+     * Bắt đầu dựng lại ở luồng nền (khởi động nhanh): xóa tốc độ, từ đây sự kiện mới vẫn
+     * được áp dụng ngay và được giữ lại để áp dụng lại sau phần phát lại
+     */
+    public synchronized void beginCatchUp() {
+        reset();
+        liveDuringCatchUp = new ArrayList<>();
+    }
+
+    /**
+     * Kết thúc dựng lại: replayed đã phát lại event log tới mốc lúc bắt đầu; áp dụng tiếp các
+     * sự kiện mới theo đúng thứ tự rồi thay trạng thái hiện tại (tốc độ phụ thuộc thứ tự thời gian)
+     */
+    public synchronized void completeCatchUp(ZoneForecaster replayed) {
+        if (liveDuringCatchUp == null) {
+            return;
+        }
+        for (DomainEvent event : liveDuringCatchUp) {
+            replayed.apply(event);
+        }
+        liveDuringCatchUp = null;
+        zones.putAll(replayed.zones);
+    }
+
+    /**
+     * Ghi tốc độ các zone vào checkpoint event log
+     */
+    public synchronized void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(zones.size());
+        for (Map.Entry<Zone, ZoneState> entry : zones.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            entry.getValue().arrivals.writeState(out);
+            entry.getValue().departures.writeState(out);
+        }
+    }
+
+    /**
+     * Nạp tốc độ các zone từ checkpoint event log (thay trạng thái hiện tại)
+     */
+    public synchronized void readState(DataInputStream in) throws IOException {
+        reset();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ZoneState zone = zones.get(Zone.valueOf(in.readUTF()));
+            zone.arrivals.readState(in);
+            zone.departures.readState(in);
+        }
+    }
+
+    /**
+     * Tốc độ xe vào dự kiến (lượt/giờ) tại thời điểm now
+     */
+    public synchronized double getArrivalRate(Zone zone, LocalDateTime now) {
+        ZoneState state = zones.get(zone);
+        return state.arrivals.expected(now);
+    }
+
+    /**
+     * Tốc độ xe ra dự kiến (lượt/giờ) tại thời điểm now
+     */
+    public synchronized double getDepartureRate(Zone zone, LocalDateTime now) {
+        ZoneState state = zones.get(zone);
+        return state.departures.expected(now);
+    }
+
+    /**
+     * Dự báo thời gian đến khi zone đầy
+     * @return Duration.ZERO nếu đã đầy, null nếu không đầy được (không có sức chứa
+     *         hoặc tốc độ vào không vượt tốc độ ra)
+     */
+    public synchronized Duration timeToFull(Zone zone, LocalDateTime now) {
+        ZoneState state = zones.get(zone);
+        int capacity = occupancy.getCapacity(zone);
+        if (capacity <= 0) {
+            return null;
+        }
+        int free = capacity - occupancy.getOccupied(zone);
+        if (free <= 0) {
+            return Duration.ZERO;
+        }
+        double netPerHour = state.arrivals.expected(now) - state.departures.expected(now);
+        if (netPerHour <= 1e-9) {
+            return null;
+        }
+        return Duration.ofSeconds((long) (free / netPerHour * 3600));
+    }
+
+    /**
+     * Tóm tắt dự báo từng zone để hiển thị
+     */
+    public synchronized List<String> getSummary(LocalDateTime now) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<Zone, ZoneState> entry : zones.entrySet()) {
+            Zone name = entry.getKey();
+            ZoneState state = entry.getValue();
+            StringBuilder sb = new StringBuilder();
+            sb.append("Zone ").append(name).append(": ").append(occupancy.describe(name))
+              .append(" | vào ").append(String.format("%.1f", state.arrivals.expected(now)))
+              .append("/h, ra ").append(String.format("%.1f", state.departures.expected(now)))
+              .append("/h | ");
+            Duration ttf = timeToFull(name, now);
+            if (ttf == null) {
+                sb.append("chưa có nguy cơ đầy");
+            } else if (ttf.isZero()) {
+                sb.append("ĐÃ ĐẦY");
+            } else {
+                sb.append("dự báo đầy sau ~").append(formatDuration(ttf));
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    static String formatDuration(Duration duration) {
+        long minutes = Math.max(1, duration.toMinutes());
+        if (minutes < 60) {
+            return minutes + " phút";
+        }
+        return (minutes / 60) + " giờ " + (minutes % 60) + " phút";
+    }
+
+    /**
+     * Hai luồng tốc độ (vào/ra) của một zone
+     */
+    private static class ZoneState {
+        final RateEstimator arrivals = new RateEstimator();
+        final RateEstimator departures = new RateEstimator();
+
+        void arrive(LocalDateTime at) {
+            arrivals.record(at);
+        }
+
+        void depart(LocalDateTime at) {
+            departures.record(at);
+        }
+
+        void clear() {
+            arrivals.clear();
+            departures.clear();
+        }
+    }
+
+    /**
+     * Ước lượng tốc độ một luồng sự kiện (lượt/giờ)
+     *
+     * - Hiện tại: rate = rate * e^(-Δt/τ) + 1/τ mỗi sự kiện, đọc ra thì suy giảm tiếp đến now
+     * - Giờ-trong-tuần: đếm số lượt của giờ đang chạy; khi sang giờ mới thì gộp vào ô
+     *   của giờ đó bằng trung bình mũ (các giờ trống ở giữa gộp số 0, tối đa 168 ô)
+     */
+    private static class RateEstimator {
+        private double rate;
+        private long lastEventSecond = Long.MIN_VALUE;
+
+        private final double[] seasonal = new double[HOURS_PER_WEEK];
+        private final boolean[] seasonalSeen = new boolean[HOURS_PER_WEEK];
+        private long currentHour = Long.MIN_VALUE; // Giờ (tính từ epoch) đang đếm
+        private int currentCount;
+
+        void record(LocalDateTime at) {
+            long second = epochSecond(at);
+            if (lastEventSecond != Long.MIN_VALUE) {
+                rate *= decay(second - lastEventSecond);
+            }
+            rate += 1.0 / RATE_WINDOW_HOURS;
+            lastEventSecond = Math.max(lastEventSecond, second);
+
+            long hour = Math.floorDiv(second, 3600);
+            rollTo(hour);
+            currentCount++;
+        }
+
+        /**
+         * Gộp số lượt của các giờ đã qua vào ô giờ-trong-tuần tương ứng
+         */
+        private void rollTo(long hour) {
+            if (currentHour == Long.MIN_VALUE) {
+                currentHour = hour;
+                return;
+            }
+            if (hour <= currentHour) {
+                return; // Sự kiện trễ/ngược thời gian: tính vào giờ đang đếm
+            }
+            fold(currentHour, currentCount);
+            for (long empty = Math.max(currentHour + 1, hour - HOURS_PER_WEEK + 1); empty < hour; empty++) {
+                fold(empty, 0);
+            }
+            currentHour = hour;
+            currentCount = 0;
+        }
+
+        private void fold(long hour, int count) {
+            int slot = hourOfWeek(hour);
+            if (seasonalSeen[slot]) {
+                seasonal[slot] = SEASONAL_ALPHA * count + (1 - SEASONAL_ALPHA) * seasonal[slot];
+            } else {
+                seasonal[slot] = count;
+                seasonalSeen[slot] = true;
+            }
+        }
+
+        /**
+         * Tốc độ dự kiến: trung bình tốc độ hiện tại và mức thường thấy ở giờ này trong tuần
+         */
+        double expected(LocalDateTime now) {
+            long second = epochSecond(now);
+            double live = lastEventSecond == Long.MIN_VALUE
+                    ? 0 : rate * decay(Math.max(0, second - lastEventSecond));
+            int slot = hourOfWeek(Math.floorDiv(second, 3600));
+            if (!seasonalSeen[slot]) {
+                return live;
+            }
+            return (live + seasonal[slot]) / 2;
+        }
+
+        void clear() {
+            rate = 0;
+            lastEventSecond = Long.MIN_VALUE;
+            Arrays.fill(seasonal, 0);
+            Arrays.fill(seasonalSeen, false);
+            currentHour = Long.MIN_VALUE;
+            currentCount = 0;
+        }
+
+        void writeState(DataOutputStream out) throws IOException {
+            out.writeDouble(rate);
+            out.writeLong(lastEventSecond);
+            out.writeLong(currentHour);
+            out.writeInt(currentCount);
+            for (int slot = 0; slot < HOURS_PER_WEEK; slot++) {
+                out.writeBoolean(seasonalSeen[slot]);
+                out.writeDouble(seasonal[slot]);
+            }
+        }
+
+        void readState(DataInputStream in) throws IOException {
+            rate = in.readDouble();
+            lastEventSecond = in.readLong();
+            currentHour = in.readLong();
+            currentCount = in.readInt();
+            for (int slot = 0; slot < HOURS_PER_WEEK; slot++) {
+                seasonalSeen[slot] = in.readBoolean();
+                seasonal[slot] = in.readDouble();
+            }
+        }
+
+        private static double decay(long elapsedSeconds) {
+            return Math.exp(-(elapsedSeconds / 3600.0) / RATE_WINDOW_HOURS);
+        }
+
+        private static long epochSecond(LocalDateTime time) {
+            return time.toEpochSecond(ZoneOffset.UTC);
+        }
+
+        /**
+         * Ô giờ-trong-tuần (0 = 0h thứ Hai) của một giờ tính từ epoch (1/1/1970 là thứ Năm)
+         */
+        private static int hourOfWeek(long epochHour) {
+            return (int) Math.floorMod(epochHour + 3 * 24, HOURS_PER_WEEK);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package vn.parking.service;
+
+import vn.parking.event.*;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Consumer đếm số xe đang đỗ theo zone
+ *
+ * Mỗi zone giữ sức chứa, số chỗ giữ riêng cho vé tháng và hai bộ đếm (tổng số xe,
+ * số xe vé tháng) trong các mảng đánh chỉ số theo ordinal của Zone. Mỗi sự kiện chỉ
+ * tăng/giảm bộ đếm của một zone, nên chính sách xếp zone quyết định trong O(1) mà
+ * không phải duyệt vé active.
+ */
+public class ZoneOccupancy implements EventHandler {
+
+    private final int[] capacity = new int[Zone.values().length];       // 0 = không giới hạn
+    private final int[] monthlyReserve = new int[Zone.values().length];
+    private final int[] occupied = new int[Zone.values().length];
+    private final int[] occupiedMonthly = new int[Zone.values().length];
+
+    public ZoneOccupancy(Map<Zone, Integer> capacities, Map<Zone, Integer> monthlyReserves) {
+        for (Map.Entry<Zone, Integer> entry : capacities.entrySet()) {
+            capacity[entry.getKey().ordinal()] = entry.getValue();
+        }
+        for (Map.Entry<Zone, Integer> entry : monthlyReserves.entrySet()) {
+            monthlyReserve[entry.getKey().ordinal()] = entry.getValue();
+        }
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        apply(event);
+    }
+
+    /**
+     * Áp dụng một sự kiện vào bộ đếm
+     */
+    public synchronized void apply(DomainEvent event) {
+        if (event instanceof VehicleCheckedIn) {
+            enter(((VehicleCheckedIn) event).getTicket());
+        } else if (event instanceof VehicleCheckedOut) {
+            leave(((VehicleCheckedOut) event).getTicket());
+        } else if (event instanceof LostTicketProcessed) {
+            leave(((LostTicketProcessed) event).getTicket());
+        }
+    }
+
+    private void enter(Ticket ticket) {
+        int zone = ticket.getZone().ordinal();
+        occupied[zone]++;
+        if (ticket.isMonthlyTicket()) {
+            occupiedMonthly[zone]++;
+        }
+    }
+
+    private void leave(Ticket ticket) {
+        int zone = ticket.getZone().ordinal();
+        if (occupied[zone] > 0) {
+            occupied[zone]--;
+        }
+        if (ticket.isMonthlyTicket() && occupiedMonthly[zone] > 0) {
+            occupiedMonthly[zone]--;
+        }
+    }
+
+    /**
+     * Đặt lại bộ đếm theo vé active (sau khi nạp dữ liệu)
+     */
+    public synchronized void reset(Collection<Ticket> activeTickets) {
+        Arrays.fill(occupied, 0);
+        Arrays.fill(occupiedMonthly, 0);
+        for (Ticket ticket : activeTickets) {
+            enter(ticket);
+        }
+    }
+
+    /**
+     * Zone còn chỗ cho xe này không
+     * Xe vé lượt không được dùng các chỗ giữ cho vé tháng chưa có xe vé tháng đỗ.
+     */
+    public synchronized boolean hasRoom(Zone zone, boolean monthly) {
+        int i = zone.ordinal();
+        if (capacity[i] <= 0) {
+            return true;
+        }
+        if (monthly) {
+            return occupied[i] < capacity[i];
+        }
+        int heldForMonthly = Math.max(0, monthlyReserve[i] - occupiedMonthly[i]);
+        return occupied[i] + heldForMonthly < capacity[i];
+    }
+
+    public synchronized int getOccupied(Zone zone) {
+        return occupied[zone.ordinal()];
+    }
+
+    public synchronized int getCapacity(Zone zone) {
+        return capacity[zone.ordinal()];
+    }
+
+    /**
+     * Zone đã hết chỗ theo sức chứa cấu hình
+     */
+    public synchronized boolean isFull(Zone zone) {
+        int i = zone.ordinal();
+        return capacity[i] > 0 && occupied[i] >= capacity[i];
+    }
+
+    /**
+     * Tóm tắt số chỗ của zone để hiển thị
+     */
+    public synchronized String describe(Zone zone) {
+        int i = zone.ordinal();
+        StringBuilder sb = new StringBuilder();
+        sb.append(occupied[i]);
+        if (capacity[i] > 0) {
+            sb.append("/").append(capacity[i]);
+        }
+        sb.append(" xe (vé tháng ").append(occupiedMonthly[i]);
+        if (monthlyReserve[i] > 0) {
+            sb.append(", giữ ").append(monthlyReserve[i]).append(" chỗ");
+        }
+        return sb.append(")").toString();
+    }
+}
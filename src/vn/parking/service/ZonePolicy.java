@@ -0,0 +1,78 @@
+package vn.parking.service;
+
+import vn.parking.model.Vehicle;
+import vn.parking.model.Zone;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Các chính sách xếp zone có sẵn, chọn bằng -Dparking.zone.policy
+ */
+public enum ZonePolicy implements ZoneAssignmentPolicy {
+
+    /**
+     * Luôn xếp vào zone ưu tiên của xe, không xét số chỗ (quy tắc cũ)
+     */
+    FIXED {
+        @Override
+        public Zone assignZone(Vehicle vehicle, ZoneOccupancy occupancy, ZoneForecaster forecaster, LocalDateTime now) {
+            return vehicle.getHomeZone();
+        }
+    },
+
+    /**
+     * Xếp vào zone ưu tiên nếu còn chỗ, đầy thì tràn sang zone khác cùng cổng nhận
+     * được xe (theo thứ tự khai báo); xe vé lượt không lấy các chỗ giữ cho vé tháng.
+     * Zone ưu tiên dự báo đầy trong vòng parking.zone.spill.minutes thì tràn sớm sang
+     * zone cùng cổng còn chỗ và không sắp đầy (không có thì vẫn xếp vào zone ưu tiên).
+     */
+    OVERFLOW {
+        @Override
+        public Zone assignZone(Vehicle vehicle, ZoneOccupancy occupancy, ZoneForecaster forecaster, LocalDateTime now) {
+            boolean monthly = vehicle.hasMonthlyCard();
+            Zone home = vehicle.getHomeZone();
+            if (occupancy.hasRoom(home, monthly)) {
+                if (!fillingUp(home, forecaster, now)) {
+                    return home;
+                }
+                for (Zone zone : Zone.values()) {
+                    if (isSpillTarget(zone, vehicle, occupancy) && !fillingUp(zone, forecaster, now)) {
+                        return zone;
+                    }
+                }
+                return home;
+            }
+            for (Zone zone : Zone.values()) {
+                if (isSpillTarget(zone, vehicle, occupancy)) {
+                    return zone;
+                }
+            }
+            throw new IllegalStateException("Zone " + vehicle.getHomeZone() + " đã hết chỗ cho xe "
+                    + vehicle.getPlate() + (monthly ? "!" : " (các chỗ còn lại giữ cho vé tháng)!"));
+        }
+    };
+
+    private static final long DEFAULT_SPILL_MINUTES = 10;
+    private static final long SPILL_MINUTES = Long.getLong("parking.zone.spill.minutes", DEFAULT_SPILL_MINUTES);
+
+    /**
+     * Zone khác cùng cổng với zone ưu tiên, nhận được xe và còn chỗ
+     */
+    private static boolean isSpillTarget(Zone zone, Vehicle vehicle, ZoneOccupancy occupancy) {
+        Zone home = vehicle.getHomeZone();
+        return zone != home && zone.getGate() == home.getGate() && zone.accepts(vehicle)
+                && occupancy.hasRoom(zone, vehicle.hasMonthlyCard());
+    }
+
+    /**
+     * Zone dự báo đầy trong vòng SPILL_MINUTES (0 = tắt tràn sớm)
+     */
+    private static boolean fillingUp(Zone zone, ZoneForecaster forecaster, LocalDateTime now) {
+        if (SPILL_MINUTES <= 0) {
+            return false;
+        }
+        Duration timeToFull = forecaster.timeToFull(zone, now);
+        return timeToFull != null && timeToFull.toMinutes() < SPILL_MINUTES;
+    }
+}
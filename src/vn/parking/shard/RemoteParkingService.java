@@ -0,0 +1,201 @@
+package vn.parking.shard;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.service.IParkingService;
+import vn.parking.service.LostTicketResult;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * IParkingService gọi tới một ShardServer qua TCP (transport cho shard ở tiến trình khác)
+ * Một kết nối dùng lại cho mọi request; mất kết nối thì tự kết nối lại và gửi lại một lần.
+ * Lệnh thay đổi dữ liệu mang mã request (ShardProtocol.ONCE) để lần gửi lại không bị
+ * shard thực hiện hai lần khi lần đầu đã xử lý nhưng response bị mất.
+ */
+public class RemoteParkingService implements IParkingService, Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final String host;
+    private final int port;
+    private final String clientId = UUID.randomUUID().toString();
+    private long requestSequence;
+    private Socket socket;
+    private BufferedReader reader;
+    private PrintWriter writer;
+
+    public RemoteParkingService(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public Ticket checkIn(Vehicle vehicle) {
+        return ShardProtocol.decodeTicket(single(callOnce(ShardProtocol.CHECK_IN, ShardProtocol.encodeVehicle(vehicle))));
+    }
+
+    @Override
+    public long checkOut(String plate) {
+        return Long.parseLong(single(callOnce(ShardProtocol.CHECK_OUT, plate)));
+    }
+
+    @Override
+    public long checkOutSimulation(String plate, int months, int days) {
+        return Long.parseLong(single(callOnce(ShardProtocol.SIMULATE, plate,
+                String.valueOf(months), String.valueOf(days))));
+    }
+
+    @Override
+    public LostTicketResult processLostTicket(String plate) {
+        List<String> fields = callOnce(ShardProtocol.LOST_TICKET, plate);
+        return new LostTicketResult(Long.parseLong(single(fields)), fields.subList(1, fields.size()));
+    }
+
+    @Override
+    public Collection<Vehicle> getVehicleList() {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (String field : call(ShardProtocol.VEHICLES)) {
+            vehicles.add(ShardProtocol.decodeVehicle(field));
+        }
+        return vehicles;
+    }
+
+    @Override
+    public String findParkedPlate(String inputPlate) {
+        List<String> fields = call(ShardProtocol.FIND_PARKED, inputPlate);
+        return fields.isEmpty() ? null : fields.get(0);
+    }
+
+    @Override
+    public List<String> searchByKeyword(String keyword) {
+        return call(ShardProtocol.SEARCH, keyword);
+    }
+
+    @Override
+    public Collection<Ticket> getActiveTickets() {
+        List<Ticket> tickets = new ArrayList<>();
+        for (String field : call(ShardProtocol.TICKETS)) {
+            tickets.add(ShardProtocol.decodeTicket(field));
+        }
+        return tickets;
+    }
+
+    @Override
+    public List<StayRecord> findHistory(String plate) {
+        List<StayRecord> records = new ArrayList<>();
+        for (String field : call(ShardProtocol.HISTORY, plate)) {
+            StayRecord record = StayRecord.fromCSV(field);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Shard từ xa tự nạp dữ liệu khi khởi động ShardServer; lệnh này yêu cầu nạp lại
+     */
+    @Override
+    public void loadData() {
+        call(ShardProtocol.LOAD);
+    }
+
+    @Override
+    public void saveData() {
+        call(ShardProtocol.SAVE);
+    }
+
+    /**
+     * Lệnh thay đổi dữ liệu: gắn mã request duy nhất (cả lần gửi lại dùng chung mã)
+     */
+    private List<String> callOnce(String... request) {
+        String requestId;
+        synchronized (this) {
+            requestId = clientId + "-" + (++requestSequence);
+        }
+        List<String> wrapped = new ArrayList<>(request.length + 2);
+        wrapped.add(ShardProtocol.ONCE);
+        wrapped.add(requestId);
+        wrapped.addAll(Arrays.asList(request));
+        return call(wrapped.toArray(new String[0]));
+    }
+
+    /**
+     * Trường đầu tiên của response (giá trị chính của lệnh)
+     */
+    private String single(List<String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalStateException("Shard " + host + ":" + port + " trả về dữ liệu rỗng");
+        }
+        return fields.get(0);
+    }
+
+    /**
+     * Gửi request và đọc response; lỗi nghiệp vụ (ERR) được ném lại dưới dạng IllegalStateException
+     */
+    private synchronized List<String> call(String... request) {
+        String line = ShardProtocol.join(Arrays.asList(request));
+        String response = null;
+
+        for (int attempt = 0; attempt < 2 && response == null; attempt++) {
+            try {
+                ensureConnected();
+                writer.println(line);
+                writer.flush();
+                response = reader.readLine();
+                if (response == null) {
+                    throw new EOFException("Shard đóng kết nối");
+                }
+            } catch (IOException e) {
+                disconnect();
+                if (attempt == 1) {
+                    throw new IllegalStateException("Không kết nối được shard " + host + ":" + port
+                            + " - " + e.getMessage());
+                }
+            }
+        }
+
+        String[] parts = ShardProtocol.split(response);
+        if (ShardProtocol.ERR.equals(parts[0])) {
+            throw new IllegalStateException(parts.length > 1 ? parts[1] : "Lỗi từ shard " + host + ":" + port);
+        }
+        return ShardProtocol.fieldsAfterStatus(parts);
+    }
+
+    private void ensureConnected() throws IOException {
+        if (socket != null && socket.isConnected() && !socket.isClosed()) {
+            return;
+        }
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        socket.setSoTimeout(READ_TIMEOUT_MS);
+        socket.setTcpNoDelay(true);
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Đang đóng kết nối hỏng, bỏ qua
+            }
+        }
+        socket = null;
+        reader = null;
+        writer = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+}
@@ -0,0 +1,100 @@
+package vn.parking.shard;
+
+import vn.parking.model.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Giao thức text giữa RemoteParkingService và ShardServer
+ *
+ * Mỗi request/response là một dòng, các trường ngăn cách bằng TAB:
+ * - Request:  LỆNH[\ttham số]*
+ * - Response: OK[\tgiá trị]*  hoặc  ERR\tthông báo lỗi
+ * Vehicle/Ticket/StayRecord được mã hóa dạng CSV trong một trường.
+ * LOST trả về tổng phí rồi các cảnh báo nghi vấn lạm dụng mất vé, mỗi cảnh báo một trường.
+ *
+ * Lệnh thay đổi dữ liệu (CHECKIN, CHECKOUT, SIMULATE, LOST) được bọc thành
+ * ONCE\tmã request\tLỆNH[\ttham số]*: client gửi lại đúng dòng đó khi mất kết nối,
+ * shard thấy mã đã xử lý thì trả lại response cũ thay vì thực hiện lần nữa.
+ */
+final class ShardProtocol {
+
+    static final String SEPARATOR = "\t";
+    static final String OK = "OK";
+    static final String ERR = "ERR";
+
+    // Các lệnh
+    static final String CHECK_IN = "CHECKIN";
+    static final String CHECK_OUT = "CHECKOUT";
+    static final String SIMULATE = "SIMULATE";
+    static final String LOST_TICKET = "LOST";
+    static final String VEHICLES = "VEHICLES";
+    static final String FIND_PARKED = "FIND";
+    static final String SEARCH = "SEARCH";
+    static final String TICKETS = "TICKETS";
+    static final String HISTORY = "HISTORY";
+    static final String LOAD = "LOAD";
+    static final String SAVE = "SAVE";
+    static final String ONCE = "ONCE";
+
+    private ShardProtocol() {
+    }
+
+    static String join(List<String> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(sanitize(fields.get(i)));
+        }
+        return sb.toString();
+    }
+
+    static String[] split(String line) {
+        return line.split(SEPARATOR, -1);
+    }
+
+    /**
+     * Bỏ ký tự TAB/xuống dòng để không phá vỡ khung dòng của giao thức
+     */
+    static String sanitize(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    // ===== Vehicle: type,plate,fuelType,ticketType,lastPaidMonth (Vehicle.toCSV) =====
+
+    static String encodeVehicle(Vehicle vehicle) {
+        return vehicle.toCSV();
+    }
+
+    static Vehicle decodeVehicle(String csv) {
+        return Vehicle.fromCSV(csv);
+    }
+
+    // ===== Ticket: plate,entryTime(ISO),monthly,zone[,slotId] =====
+
+    static String encodeTicket(Ticket ticket) {
+        return ticket.getPlate() + "," + ticket.getEntryTime() + ","
+                + ticket.isMonthlyTicket() + "," + ticket.getZone().name()
+                + (ticket.getSlotId() != null ? "," + ticket.getSlotId() : "");
+    }
+
+    static Ticket decodeTicket(String csv) {
+        String[] parts = csv.split(",", -1);
+        return new Ticket(parts[0], LocalDateTime.parse(parts[1]), Boolean.parseBoolean(parts[2]), Zone.parse(parts[3]),
+                parts.length > 4 && !parts[4].isEmpty() ? parts[4] : null);
+    }
+
+    // ===== Danh sách =====
+
+    static List<String> fieldsAfterStatus(String[] response) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 1; i < response.length; i++) {
+            fields.add(response[i]);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,207 @@
+package vn.parking.shard;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.service.IParkingService;
+import vn.parking.service.LostTicketResult;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tiến trình shard: phục vụ một IParkingService cục bộ qua TCP cho RemoteParkingService
+ *
+ * Chạy: java vn.parking.shard.ShardServer <port> [thư mục dữ liệu] [chỉ số shard] [số shard]
+ * (chỉ số / số shard theo đúng thứ tự trong parking.shard.hosts, để shard chỉ nhận phần sức chứa của mình)
+ */
+public class ShardServer implements Closeable {
+
+    private static final int RECENT_REQUESTS = 1024; // Số response của lệnh ONCE được giữ để trả lại khi client gửi lại
+
+    private final IParkingService service;
+    private final ServerSocket serverSocket;
+    private volatile boolean running;
+    // Mã request -> response đã trả (truy cập trong synchronized (service))
+    private final Map<String, String> recentResponses = new LinkedHashMap<String, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > RECENT_REQUESTS;
+        }
+    };
+
+    public ShardServer(int port, IParkingService service) throws IOException {
+        this.service = service;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Vòng lặp nhận kết nối (chặn luồng gọi). Mỗi kết nối được xử lý trên một luồng riêng.
+     */
+    public void serve() {
+        running = true;
+        System.out.println("✓ Shard đang lắng nghe tại cổng " + getPort());
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                Thread handler = new Thread(() -> handleClient(client), "shard-client-" + client.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("❌ Lỗi khi nhận kết nối: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleClient(Socket client) {
+        try (Socket socket = client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.println(handle(line));
+                writer.flush();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("❌ Mất kết nối với client: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Xử lý một request và trả về dòng response
+     * Các request được tuần tự hóa vì ParkingService không được thiết kế cho nhiều luồng ghi
+     */
+    String handle(String line) {
+        if (line.startsWith(ShardProtocol.ONCE + ShardProtocol.SEPARATOR)) {
+            return handleOnce(line);
+        }
+        String[] request = ShardProtocol.split(line);
+        List<String> response = new ArrayList<>();
+        response.add(ShardProtocol.OK);
+
+        try {
+            synchronized (service) {
+                switch (request[0]) {
+                    case ShardProtocol.CHECK_IN:
+                        Vehicle vehicle = ShardProtocol.decodeVehicle(request[1]);
+                        response.add(ShardProtocol.encodeTicket(service.checkIn(vehicle)));
+                        break;
+                    case ShardProtocol.CHECK_OUT:
+                        response.add(String.valueOf(service.checkOut(request[1])));
+                        break;
+                    case ShardProtocol.SIMULATE:
+                        response.add(String.valueOf(service.checkOutSimulation(request[1],
+                                Integer.parseInt(request[2]), Integer.parseInt(request[3]))));
+                        break;
+                    case ShardProtocol.LOST_TICKET:
+                        LostTicketResult lost = service.processLostTicket(request[1]);
+                        response.add(String.valueOf(lost.getTotalFee()));
+                        response.addAll(lost.getAlerts());
+                        break;
+                    case ShardProtocol.VEHICLES:
+                        for (Vehicle v : service.getVehicleList()) {
+                            response.add(ShardProtocol.encodeVehicle(v));
+                        }
+                        break;
+                    case ShardProtocol.FIND_PARKED:
+                        String plate = service.findParkedPlate(request[1]);
+                        if (plate != null) {
+                            response.add(plate);
+                        }
+                        break;
+                    case ShardProtocol.SEARCH:
+                        response.addAll(service.searchByKeyword(request[1]));
+                        break;
+                    case ShardProtocol.TICKETS:
+                        for (Ticket ticket : service.getActiveTickets()) {
+                            response.add(ShardProtocol.encodeTicket(ticket));
+                        }
+                        break;
+                    case ShardProtocol.HISTORY:
+                        for (StayRecord record : service.findHistory(request[1])) {
+                            response.add(record.toCSV());
+                        }
+                        break;
+                    case ShardProtocol.LOAD:
+                        service.loadData();
+                        break;
+                    case ShardProtocol.SAVE:
+                        service.saveData();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Lệnh không hỗ trợ: " + request[0]);
+                }
+            }
+        } catch (RuntimeException e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return ShardProtocol.join(Arrays.asList(ShardProtocol.ERR, message));
+        }
+
+        return ShardProtocol.join(response);
+    }
+
+    /**
+     * ONCE\tmã\tlệnh...: mã đã xử lý thì trả lại response cũ (client gửi lại sau khi mất kết nối)
+     * Kiểm tra và thực hiện trong cùng khóa service nên lần gửi lại tới khi lần đầu còn đang
+     * chạy (trên kết nối cũ) sẽ chờ rồi nhận đúng kết quả đó.
+     */
+    private String handleOnce(String line) {
+        int idEnd = line.indexOf(ShardProtocol.SEPARATOR, ShardProtocol.ONCE.length() + 1);
+        if (idEnd < 0) {
+            return ShardProtocol.join(Arrays.asList(ShardProtocol.ERR, "Thiếu lệnh sau mã request"));
+        }
+        String requestId = line.substring(ShardProtocol.ONCE.length() + 1, idEnd);
+        synchronized (service) {
+            String response = recentResponses.get(requestId);
+            if (response == null) {
+                response = handle(line.substring(idEnd + 1));
+                recentResponses.put(requestId, response);
+            }
+            return response;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Cách dùng: java vn.parking.shard.ShardServer <port> [thư mục dữ liệu] [chỉ số shard] [số shard]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        File dataDir = args.length > 1 ? new File(args[1]) : new File("shard-" + port);
+        int shardIndex = args.length > 3 ? Integer.parseInt(args[2]) : 0;
+        int shardCount = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        IParkingService service = ShardedParkingService.createLocalService(dataDir, shardIndex, shardCount);
+        service.loadData();
+
+        ShardServer server = new ShardServer(port, service);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            synchronized (service) {
+                service.saveData();
+            }
+        }));
+        server.serve();
+    }
+}
@@ -0,0 +1,204 @@
+package vn.parking.shard;
+
+import vn.parking.model.StayRecord;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.IParkingService;
+import vn.parking.service.LostTicketResult;
+import vn.parking.service.ParkingService;
+
+import java.io.File;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Service phân mảnh (sharding) nhiều bãi/kho dữ liệu theo hash biển số
+ *
+ * - Mỗi biển số (đã chuẩn hóa) luôn thuộc về đúng một shard, nên vé tháng đã đóng
+ *   ở shard đó được công nhận ở mọi cổng đi qua service này
+ * - Thao tác theo biển số (check-in/out, mất vé, lịch sử) được chuyển tới shard sở hữu
+ * - Tìm kiếm gợi ý và thống kê được gửi song song tới mọi shard rồi gộp kết quả
+ *
+ * Mỗi shard là một IParkingService bất kỳ: ParkingService trong cùng tiến trình,
+ * hoặc RemoteParkingService nói chuyện với ShardServer ở tiến trình khác.
+ */
+public class ShardedParkingService implements IParkingService {
+
+    private final List<IParkingService> shards;
+    private final ExecutorService fanOutExecutor;
+
+    public ShardedParkingService(List<IParkingService> shards) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("Cần ít nhất một shard");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.fanOutExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tạo N shard trong cùng tiến trình, dữ liệu ở baseDir/shard-0 ... baseDir/shard-(N-1)
+     */
+    public static ShardedParkingService inProcess(int shardCount, File baseDir) {
+        List<IParkingService> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(createLocalService(new File(baseDir, "shard-" + i), i, shardCount));
+        }
+        System.out.println("ℹ Chạy " + shardCount + " shard trong tiến trình, dữ liệu tại: " + baseDir.getPath());
+        return new ShardedParkingService(shards);
+    }
+
+    /**
+     * Kết nối tới các shard chạy ở tiến trình riêng
+     * @param hostPorts Danh sách "host:port" theo đúng thứ tự shard
+     */
+    public static ShardedParkingService remote(List<String> hostPorts) {
+        List<IParkingService> shards = new ArrayList<>();
+        for (String hostPort : hostPorts) {
+            String[] parts = hostPort.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Địa chỉ shard không hợp lệ: " + hostPort);
+            }
+            shards.add(new RemoteParkingService(parts[0], Integer.parseInt(parts[1])));
+        }
+        System.out.println("ℹ Kết nối " + shards.size() + " shard từ xa: " + hostPorts);
+        return new ShardedParkingService(shards);
+    }
+
+    /**
+     * Tạo ParkingService của shard shardIndex (trong shardCount shard) với dữ liệu nằm trong dataDir
+     * Shard chỉ nhận phần sức chứa / chỗ giữ vé tháng của mình, nên N shard cộng lại đúng bằng cả bãi.
+     */
+    public static IParkingService createLocalService(File dataDir, int shardIndex, int shardCount) {
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        BillingService billingService = new BillingService(repository);
+        HistoryService historyService = new HistoryService(HistoryRepository.open(dataDir));
+        return new ParkingService(repository, billingService, historyService,
+                Clock.systemDefaultZone(), true, shardIndex, shardCount);
+    }
+
+    /**
+     * Chỉ số shard sở hữu biển số
+     */
+    public int shardIndexFor(String plate) {
+        return Math.floorMod(ParkingRepository.normalizePlate(plate).hashCode(), shards.size());
+    }
+
+    private IParkingService shardFor(String plate) {
+        return shards.get(shardIndexFor(plate));
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public Ticket checkIn(Vehicle vehicle) {
+        return shardFor(vehicle.getPlate()).checkIn(vehicle);
+    }
+
+    @Override
+    public long checkOut(String plate) {
+        return shardFor(plate).checkOut(plate);
+    }
+
+    @Override
+    public long checkOutSimulation(String plate, int months, int days) {
+        return shardFor(plate).checkOutSimulation(plate, months, days);
+    }
+
+    @Override
+    public LostTicketResult processLostTicket(String plate) {
+        return shardFor(plate).processLostTicket(plate);
+    }
+
+    @Override
+    public String findParkedPlate(String inputPlate) {
+        return shardFor(inputPlate).findParkedPlate(inputPlate);
+    }
+
+    @Override
+    public List<StayRecord> findHistory(String plate) {
+        return shardFor(plate).findHistory(plate);
+    }
+
+    @Override
+    public List<String> searchByKeyword(String keyword) {
+        List<String> suggestions = new ArrayList<>();
+        for (List<String> partial : fanOut(shard -> shard.searchByKeyword(keyword))) {
+            suggestions.addAll(partial);
+        }
+        Collections.sort(suggestions);
+        return suggestions;
+    }
+
+    @Override
+    public Collection<Ticket> getActiveTickets() {
+        List<Ticket> tickets = new ArrayList<>();
+        for (Collection<Ticket> partial : fanOut(IParkingService::getActiveTickets)) {
+            tickets.addAll(partial);
+        }
+        return tickets;
+    }
+
+    @Override
+    public Collection<Vehicle> getVehicleList() {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (Collection<Vehicle> partial : fanOut(IParkingService::getVehicleList)) {
+            vehicles.addAll(partial);
+        }
+        return vehicles;
+    }
+
+    @Override
+    public void loadData() {
+        fanOut(shard -> {
+            shard.loadData();
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    public void saveData() {
+        fanOut(shard -> {
+            shard.saveData();
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Gọi song song một thao tác trên mọi shard, trả về kết quả theo thứ tự shard
+     */
+    private <R> List<R> fanOut(Function<IParkingService, R> call) {
+        List<Future<R>> futures = new ArrayList<>();
+        for (IParkingService shard : shards) {
+            futures.add(fanOutExecutor.submit(() -> call.apply(shard)));
+        }
+
+        List<R> results = new ArrayList<>();
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bị gián đoạn khi chờ shard trả lời");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause.getMessage(), cause);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,315 @@
+package vn.parking.sim;
+
+import vn.parking.model.*;
+import vn.parking.service.ParkingService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Mô phỏng sự kiện rời rạc lưu lượng xe qua cổng trên đồng hồ ảo
+ *
+ * Các lượt vào/ra là sự kiện trong hàng đợi ưu tiên theo thời điểm; vòng lặp lấy
+ * sự kiện sớm nhất, đặt đồng hồ ảo tới thời điểm đó rồi gọi đúng các thao tác
+ * check-in / check-out / mất vé của ParkingService (tính phí, xếp zone, chỗ đỗ thật).
+ * Không có chờ thật giữa các sự kiện nên vài tuần lưu lượng chạy trong vài giây.
+ *
+ * - Xe vào: quá trình Poisson không đồng nhất theo giờ trong ngày (thinning từ tốc độ cao điểm)
+ * - Cơ cấu xe: ô tô, xe đạp, xe máy điện, xe máy xăng; một phần lượt vào là chủ thẻ tháng
+ * - Thời gian đỗ: vé tháng ~9 giờ, vé lượt phần lớn vài giờ, một phần qua đêm 1-3 ngày
+ * Cùng seed và cùng giờ bắt đầu cho cùng kết quả.
+ */
+public class SimulationEngine {
+
+    // Tốc độ xe vào theo giờ trong ngày, % so với cao điểm
+    private static final int[] HOURLY_PROFILE = {
+            5, 3, 2, 2, 3, 10, 40, 90, 100, 70, 50, 45,
+            50, 45, 40, 45, 60, 85, 90, 60, 35, 20, 12, 8
+    };
+    private static final double MONTHLY_SHARE = 0.2;       // Tỷ lệ lượt vào của chủ thẻ tháng
+    private static final double OVERNIGHT_SHARE = 0.1;     // Tỷ lệ vé lượt đỗ qua đêm
+    private static final double LOST_TICKET_RATE = 0.01;   // Tỷ lệ lượt ra báo mất vé
+    private static final double GUEST_MEAN_HOURS = 2.5;
+
+    private final ParkingService service;
+    private final VirtualClock clock;
+    private final Random random;
+    private final double peakArrivalsPerHour;
+    private final List<Vehicle> subscribers = new ArrayList<>();
+    private final Set<String> parkedSubscribers = new HashSet<>();
+
+    private final PriorityQueue<GateEvent> queue = new PriorityQueue<>();
+    private long sequence;
+    private int nextGuest;
+
+    /**
+     * @param service             Service dùng đồng hồ ảo clock
+     * @param peakArrivalsPerHour Số lượt vào mỗi giờ lúc cao điểm
+     * @param subscriberCount     Số chủ thẻ tháng
+     * @param seed                Seed cho bộ sinh ngẫu nhiên
+     */
+    public SimulationEngine(ParkingService service, VirtualClock clock, double peakArrivalsPerHour,
+                            int subscriberCount, long seed) {
+        if (service.getClock() != clock) {
+            throw new IllegalArgumentException("ParkingService phải dùng đồng hồ ảo của mô phỏng");
+        }
+        this.service = service;
+        this.clock = clock;
+        this.random = new Random(seed);
+        this.peakArrivalsPerHour = peakArrivalsPerHour;
+        for (int i = 1; i <= subscriberCount; i++) {
+            subscribers.add(randomVehicle(true, i));
+        }
+    }
+
+    /**
+     * Chạy mô phỏng từ giờ hiện tại của đồng hồ ảo trong số ngày cho trước
+     * Xe còn đỗ khi hết thời gian mô phỏng được giữ nguyên trong bãi.
+     */
+    public Report run(int days) {
+        long started = System.nanoTime();
+        Report report = new Report();
+        LocalDateTime end = clock.now().plusDays(days);
+        queue.add(new GateEvent(nextArrival(clock.now()), sequence++, null, null, false));
+
+        while (!queue.isEmpty() && !queue.peek().time.isAfter(end)) {
+            GateEvent event = queue.poll();
+            clock.advanceTo(event.time);
+            Report.Day day = report.day(event.time.toLocalDate());
+            if (event.plate == null) {
+                queue.add(new GateEvent(nextArrival(event.time), sequence++, null, null, false));
+                arrive(report, day, event.time);
+            } else {
+                depart(report, day, event);
+            }
+        }
+        report.stillParked = report.parked;
+        report.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return report;
+    }
+
+    private void arrive(Report report, Report.Day day, LocalDateTime now) {
+        Vehicle vehicle = pickVehicle();
+        report.arrivals++;
+        day.arrivals++;
+        Ticket ticket;
+        try {
+            ticket = service.checkIn(vehicle);
+        } catch (IllegalStateException e) {
+            // Không còn zone phù hợp còn chỗ: xe quay đầu
+            report.rejected++;
+            day.rejected++;
+            return;
+        }
+        if (vehicle.hasMonthlyCard()) {
+            parkedSubscribers.add(vehicle.getPlate());
+        }
+        Zone zone = ticket.getZone();
+        report.parked++;
+        report.occupied[zone.ordinal()]++;
+        report.peakByZone[zone.ordinal()] = Math.max(report.peakByZone[zone.ordinal()], report.occupied[zone.ordinal()]);
+        day.peak = Math.max(day.peak, report.parked);
+
+        boolean lost = random.nextDouble() < LOST_TICKET_RATE;
+        queue.add(new GateEvent(now.plusSeconds(dwellSeconds(vehicle)), sequence++, vehicle, zone, lost));
+    }
+
+    private void depart(Report report, Report.Day day, GateEvent event) {
+        long fee = event.lostTicket ? service.processLostTicket(event.plate).getTotalFee() : service.checkOut(event.plate);
+        Vehicle vehicle = event.vehicle;
+        if (vehicle.hasMonthlyCard()) {
+            parkedSubscribers.remove(vehicle.getPlate());
+            report.monthlyRevenue += fee;
+        } else {
+            report.guestRevenue += fee;
+        }
+        if (event.lostTicket) {
+            report.lostTickets++;
+        }
+        report.departures++;
+        report.revenueByType[vehicle.getType().ordinal()] += fee;
+        report.parked--;
+        report.occupied[event.zone.ordinal()]--;
+        day.departures++;
+        day.revenue += fee;
+    }
+
+    /**
+     * Lượt vào kế tiếp sau thời điểm from (thinning theo HOURLY_PROFILE)
+     */
+    private LocalDateTime nextArrival(LocalDateTime from) {
+        LocalDateTime time = from;
+        while (true) {
+            double hours = -Math.log(1 - random.nextDouble()) / peakArrivalsPerHour;
+            time = time.plusNanos((long) (hours * 3_600_000_000_000L));
+            if (random.nextInt(100) < HOURLY_PROFILE[time.getHour()]) {
+                return time;
+            }
+        }
+    }
+
+    /**
+     * Chủ thẻ tháng chưa vào bãi (theo MONTHLY_SHARE) hoặc một khách vãng lai mới
+     */
+    private Vehicle pickVehicle() {
+        if (!subscribers.isEmpty() && random.nextDouble() < MONTHLY_SHARE) {
+            Vehicle subscriber = subscribers.get(random.nextInt(subscribers.size()));
+            if (!parkedSubscribers.contains(subscriber.getPlate())) {
+                return subscriber;
+            }
+        }
+        return randomVehicle(false, ++nextGuest);
+    }
+
+    private Vehicle randomVehicle(boolean monthly, int number) {
+        double r = random.nextDouble();
+        if (r < 0.15) {
+            FuelType fuel = random.nextDouble() < 0.8 ? FuelType.GASOLINE : FuelType.ELECTRIC;
+            return new Car(String.format(monthly ? "30G-%05d" : "30A-%05d", number), fuel, monthly);
+        }
+        if (r < 0.25 && !monthly) {
+            return new Bicycle(String.format("XD-%05d", number), FuelType.NONE, false);
+        }
+        FuelType fuel = r < 0.45 ? FuelType.ELECTRIC : FuelType.GASOLINE;
+        return new Motorbike(String.format(monthly ? "29T1-%05d" : "29S6-%05d", number), fuel, monthly);
+    }
+
+    /**
+     * Thời gian đỗ (giây): vé tháng quanh 9 giờ; vé lượt phân phối mũ, một phần qua đêm
+     */
+    private long dwellSeconds(Vehicle vehicle) {
+        double hours;
+        if (vehicle.hasMonthlyCard()) {
+            hours = 9 + random.nextGaussian();
+        } else if (random.nextDouble() < OVERNIGHT_SHARE) {
+            hours = 20 + random.nextDouble() * 52;
+        } else {
+            hours = -Math.log(1 - random.nextDouble()) * GUEST_MEAN_HOURS;
+        }
+        return Math.max(600, (long) (hours * 3600));
+    }
+
+    /**
+     * Một lượt vào (plate == null) hoặc ra đã lên lịch
+     */
+    private static final class GateEvent implements Comparable<GateEvent> {
+        final LocalDateTime time;
+        final long sequence;      // Phá hòa theo thứ tự lên lịch
+        final Vehicle vehicle;
+        final String plate;
+        final Zone zone;
+        final boolean lostTicket;
+
+        GateEvent(LocalDateTime time, long sequence, Vehicle vehicle, Zone zone, boolean lostTicket) {
+            this.time = time;
+            this.sequence = sequence;
+            this.vehicle = vehicle;
+            this.plate = vehicle == null ? null : vehicle.getPlate();
+            this.zone = zone;
+            this.lostTicket = lostTicket;
+        }
+
+        @Override
+        public int compareTo(GateEvent other) {
+            int byTime = time.compareTo(other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Kết quả mô phỏng: tính phí, số chỗ, theo từng ngày
+     */
+    public static class Report {
+        private final Map<LocalDate, Day> days = new TreeMap<>();
+        private final long[] revenueByType = new long[VehicleType.values().length];
+        private final int[] occupied = new int[Zone.values().length];
+        private final int[] peakByZone = new int[Zone.values().length];
+        private int arrivals;
+        private int rejected;
+        private int departures;
+        private int lostTickets;
+        private int parked;
+        private int stillParked;
+        private long guestRevenue;
+        private long monthlyRevenue;
+        private long elapsedMillis;
+
+        private Day day(LocalDate date) {
+            return days.computeIfAbsent(date, d -> new Day(d, parked));
+        }
+
+        public int getArrivals() {
+            return arrivals;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public int getDepartures() {
+            return departures;
+        }
+
+        public long getTotalRevenue() {
+            return guestRevenue + monthlyRevenue;
+        }
+
+        public long getRevenue(VehicleType type) {
+            return revenueByType[type.ordinal()];
+        }
+
+        public int getPeak(Zone zone) {
+            return peakByZone[zone.ordinal()];
+        }
+
+        /**
+         * Tóm tắt để hiển thị
+         */
+        public List<String> getSummary() {
+            List<String> lines = new ArrayList<>();
+            lines.add("Lượt vào: " + arrivals + " (từ chối " + rejected + ") | Lượt ra: " + departures
+                    + " (mất vé " + lostTickets + ") | Còn đỗ: " + stillParked);
+            lines.add("Doanh thu: " + String.format("%,d", getTotalRevenue()) + " VNĐ (vé lượt "
+                    + String.format("%,d", guestRevenue) + ", vé tháng " + String.format("%,d", monthlyRevenue) + ")");
+            StringBuilder byType = new StringBuilder("Theo loại xe:");
+            for (VehicleType type : VehicleType.values()) {
+                byType.append(" ").append(type).append("=").append(String.format("%,d", revenueByType[type.ordinal()]));
+            }
+            lines.add(byType.toString());
+            StringBuilder peaks = new StringBuilder("Đỉnh số xe theo zone:");
+            for (Zone zone : Zone.values()) {
+                peaks.append(" ").append(zone).append("=").append(peakByZone[zone.ordinal()]);
+            }
+            lines.add(peaks.toString());
+            for (Day day : days.values()) {
+                lines.add("  " + day);
+            }
+            lines.add("Thời gian chạy: " + elapsedMillis + " ms");
+            return lines;
+        }
+
+        /**
+         * Số liệu một ngày mô phỏng
+         */
+        static final class Day {
+            private final LocalDate date;
+            private int arrivals;
+            private int rejected;
+            private int departures;
+            private long revenue;
+            private int peak;
+
+            Day(LocalDate date, int parkedAtStart) {
+                this.date = date;
+                this.peak = parkedAtStart;
+            }
+
+            @Override
+            public String toString() {
+                return date + " | vào " + arrivals + " (từ chối " + rejected + ") | ra " + departures
+                        + " | doanh thu " + String.format("%,d", revenue) + " VNĐ | đỉnh " + peak + " xe";
+            }
+        }
+    }
+}
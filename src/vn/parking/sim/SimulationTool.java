@@ -0,0 +1,83 @@
+package vn.parking.sim;
+
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.ParkingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Công cụ dòng lệnh chạy mô phỏng lưu lượng trên đồng hồ ảo
+ *
+ * java vn.parking.sim.SimulationTool [số ngày] [lượt vào/giờ cao điểm] [số thẻ tháng] [seed]
+ *   -> mặc định 14 ngày, 60 lượt/giờ, 200 thẻ tháng, seed 42
+ * Giờ bắt đầu: -Dparking.sim.start=2026-01-05T00:00 (mặc định 0 giờ hôm nay).
+ * Service chạy không lưu trữ (thư mục tạm rỗng, xóa sau khi chạy); cấu hình zone dùng
+ * chung system property với chương trình chính nên chạy thử được thay đổi trước khi áp dụng.
+ */
+public class SimulationTool {
+
+    public static void main(String[] args) throws IOException {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        double peakPerHour = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+        int subscribers = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        String start = System.getProperty("parking.sim.start");
+        LocalDateTime startTime = start != null ? LocalDateTime.parse(start) : LocalDate.now().atStartOfDay();
+        VirtualClock clock = new VirtualClock(startTime);
+
+        File dataDir = Files.createTempDirectory("parking-sim").toFile();
+        PrintStream console = System.out;
+        SimulationEngine.Report report;
+        ParkingService service;
+        try {
+            // Bỏ thông báo check-in / hóa đơn của từng lượt
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+            ParkingRepository repository = new ParkingRepository(dataDir);
+            service = new ParkingService(repository, new BillingService(repository),
+                    new HistoryService(HistoryRepository.inDirectory(dataDir)), clock, false);
+            service.loadData();
+            report = new SimulationEngine(service, clock, peakPerHour, subscribers, seed).run(days);
+            service.saveData();
+        } finally {
+            System.setOut(console);
+            deleteRecursively(dataDir);
+        }
+
+        System.out.println("=== Mô phỏng " + days + " ngày từ " + startTime.toLocalDate()
+                + " (cao điểm " + peakPerHour + " lượt/giờ, " + subscribers + " thẻ tháng, seed " + seed + ") ===");
+        for (String line : report.getSummary()) {
+            System.out.println(line);
+        }
+        System.out.println("--- Thống kê từ sự kiện ---");
+        for (String line : service.getStatistics().getSummary()) {
+            System.out.println(line);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
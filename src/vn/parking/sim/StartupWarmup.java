@@ -0,0 +1,147 @@
+package vn.parking.sim;
+
+import vn.parking.model.*;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.ParkingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+
+/**
+ * Khởi động nóng: chạy các đường xử lý nóng của cổng trên một bãi tạm trước khi mở cổng
+ *
+ * Bãi tạm (thư mục tạm, đồng hồ ảo, không consumer lưu trữ) nhận các lượt vào/ra đủ loại
+ * xe, vé lượt/vé tháng, mất vé, cùng các thao tác tra cứu (chuẩn hóa, gợi ý, khớp gần đúng,
+ * kiểm tra biển số) và một vòng lưu/nạp file dữ liệu, để các lớp được nạp và JIT biên dịch
+ * trước khi xe đầu tiên tới. Dữ liệu thật không bị đụng tới.
+ *
+ * -Dparking.warmup=true bật khi khởi động; -Dparking.warmup.iterations số lượt (mặc định 1000)
+ */
+public class StartupWarmup {
+
+    private static final int DEFAULT_ITERATIONS = 1000;
+
+    private StartupWarmup() {
+    }
+
+    /**
+     * Chạy khởi động nóng nếu được bật bằng System Property
+     */
+    public static void runIfEnabled() {
+        if (Boolean.getBoolean("parking.warmup")) {
+            run(Integer.getInteger("parking.warmup.iterations", DEFAULT_ITERATIONS));
+        }
+    }
+
+    /**
+     * @param iterations Số lượt vào/ra trên bãi tạm
+     * @return Thời gian chạy (ms)
+     */
+    public static long run(int iterations) {
+        long start = System.nanoTime();
+        File dataDir;
+        try {
+            dataDir = Files.createTempDirectory("parking-warmup").toFile();
+        } catch (IOException e) {
+            System.err.println("❌ Không tạo được thư mục tạm để khởi động nóng: " + e.getMessage());
+            return 0;
+        }
+
+        PrintStream console = System.out;
+        try {
+            // Bỏ thông báo check-in / hóa đơn của bãi tạm
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+            exercise(dataDir, iterations);
+        } finally {
+            System.setOut(console);
+            deleteRecursively(dataDir);
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("✓ Khởi động nóng: " + iterations + " lượt vào/ra trong " + elapsed + " ms");
+        return elapsed;
+    }
+
+    private static void exercise(File dataDir, int iterations) {
+        VirtualClock clock = new VirtualClock(LocalDateTime.now().withNano(0));
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        ParkingService service = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(HistoryRepository.inDirectory(dataDir)), clock, false);
+        try {
+            for (int i = 0; i < iterations; i++) {
+                Vehicle vehicle = sampleVehicle(i);
+                PlateValidator.validate(vehicle.getPlate(), vehicle.getType());
+                try {
+                    service.checkIn(vehicle);
+                } catch (IllegalStateException e) {
+                    continue; // Zone tạm đầy: vẫn đã chạy đường xếp zone
+                }
+
+                // Tra cứu như màn hình check-out và camera làn ra
+                String read = vehicle.getPlate().replace("-", "").toLowerCase();
+                service.findParkedPlate(read);
+                service.searchByKeyword(read.substring(0, 4));
+                service.getPlateMatcher().autoMatch(read.replace('0', 'O'));
+
+                clock.advanceTo(clock.now().plusMinutes(37 + i % 600));
+                String plate = service.findParkedPlate(vehicle.getPlate());
+                if (i % 50 == 0) {
+                    service.processLostTicket(plate);
+                } else if (i % 7 == 0) {
+                    service.checkOutSimulation(plate, i % 3, i % 5);
+                } else {
+                    service.checkOut(plate);
+                }
+            }
+            // Đường lưu/nạp file dữ liệu (định dạng giống bãi thật)
+            service.saveData();
+            repository.saveToFile();
+            repository.loadFromFile();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static Vehicle sampleVehicle(int i) {
+        int number = i % 100_000;
+        // Vé tháng ít: mỗi lần đóng tiền tháng ghi + fsync sổ cái, tốn đĩa chứ không làm nóng thêm
+        boolean monthly = i % 20 == 0;
+        switch (i % 5) {
+            case 0:
+                return new Car(String.format("30A-%05d", number), FuelType.GASOLINE, monthly);
+            case 1:
+                return new Car(String.format("51G-%05d", number), FuelType.ELECTRIC, monthly);
+            case 2:
+                return new Motorbike(String.format("29S6-%05d", number), FuelType.ELECTRIC, monthly);
+            case 3:
+                return new Bicycle(String.format("XD-%05d", number), FuelType.NONE, false);
+            default:
+                return new Motorbike(String.format("29T1-%05d", number), FuelType.GASOLINE, monthly);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
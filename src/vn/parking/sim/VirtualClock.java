@@ -0,0 +1,57 @@
+package vn.parking.sim;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Đồng hồ ảo cho mô phỏng: chỉ chạy khi được đặt giờ, không theo giờ hệ thống
+ */
+public class VirtualClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    public VirtualClock(LocalDateTime start) {
+        this(start.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+
+    private VirtualClock(Instant instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    /**
+     * Đặt đồng hồ tới thời điểm mới (không cho lùi về quá khứ)
+     */
+    public void advanceTo(LocalDateTime time) {
+        Instant next = time.atZone(zone).toInstant();
+        if (next.isBefore(instant)) {
+            throw new IllegalArgumentException("Không thể lùi đồng hồ ảo về " + time);
+        }
+        instant = next;
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.ofInstant(instant, zone);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Bản sao ở múi giờ khác (đứng yên tại thời điểm hiện tại)
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
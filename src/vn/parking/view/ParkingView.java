@@ -1,7 +1,7 @@
 package vn.parking.view;
 
 import vn.parking.model.*;
-import vn.parking.repository.ParkingRepository;
+import vn.parking.service.IParkingService;
 import java.util.*;
 
 /**
@@ -10,11 +10,11 @@ import java.util.*;
 public class ParkingView {
     
     private Scanner scanner;
-    private ParkingRepository repository;
+    private IParkingService parkingService;
     
-    public ParkingView(Scanner scanner, ParkingRepository repository) {
+    public ParkingView(Scanner scanner, IParkingService parkingService) {
         this.scanner = scanner;
-        this.repository = repository;
+        this.parkingService = parkingService;
     }
     
     /**
@@ -27,7 +27,9 @@ public class ParkingView {
         System.out.println("3. Check-out (Test giả lập thời gian - Simulation)");
         System.out.println("4. Báo mất vé (Lost Ticket)");
         System.out.println("5. Thống kê xe đang đỗ");
-        System.out.println("6. Thoát");
+        System.out.println("6. Tra cứu lịch sử biển số");
+        System.out.println("7. Replication (trạng thái / nâng replica lên primary)");
+        System.out.println("8. Thoát");
         System.out.println("========================================");
     }
     
@@ -66,49 +68,16 @@ public class ParkingView {
     }
     
     /**
-     * Validate biển số theo loại xe
+     * Validate biển số theo loại xe (quy tắc dùng chung ở PlateValidator)
      * Bắt buộc có dấu gạch ngang (-) để ngăn cách
      */
     private boolean validateLicensePlate(String plate, VehicleType type) {
-        if (type == VehicleType.BIKE) {
-            // Xe máy: [3-4 ký tự chữ số] - [4-5 chữ số]
-            // Tổng độ dài: 9-10 ký tự (tính cả dấu gạch)
-            // Regex: ^[A-Z0-9]{3,4}-[0-9]{4,5}$
-            if (!plate.matches("^[A-Z0-9]{3,4}-[0-9]{4,5}$")) {
-                System.out.println("❌ Biển số xe máy không đúng định dạng.");
-                System.out.println("   Vui lòng nhập đúng định dạng có dấu gạch ngang.");
-                System.out.println("   Ví dụ: 29S6-62360, 26S-62353, 29H1-1234");
-                return false;
-            }
-            // Kiểm tra độ dài tổng
-            if (plate.length() < 9 || plate.length() > 10) {
-                System.out.println("❌ Biển số xe máy phải có 9-10 ký tự (tính cả dấu gạch).");
-                System.out.println("   Ví dụ: 29S6-62360 (9 ký tự), 26S-62353 (9 ký tự)");
-                return false;
-            }
-            return true;
-            
-        } else if (type == VehicleType.CAR) {
-            // Ô tô: Bắt buộc có dấu gạch ngang
-            // Format: 30A-123.45 hoặc 30A-12345
-            // Regex: ^\d{2}[A-Z]{1,2}-\d{1,5}(\.\d{1,2})?$
-            if (!plate.matches("^\\d{2}[A-Z]{1,2}-\\d{1,5}(\\.\\d{1,2})?$")) {
-                System.out.println("❌ Biển số ô tô không đúng định dạng.");
-                System.out.println("   Vui lòng nhập đúng định dạng có dấu gạch ngang.");
-                System.out.println("   Ví dụ: 30A-123.45 hoặc 30A-12345");
-                return false;
-            }
-            return true;
-        } else if (type == VehicleType.BICYCLE) {
-            // Xe đạp: cho phép nhập tự do (chỉ cần ký tự chữ/số/gạch) để bảo vệ nhập lại mã cũ
-            if (!plate.matches("^[A-Z0-9-]{3,15}$")) {
-                System.out.println("❌ Mã xe đạp không hợp lệ (chỉ cho phép A-Z, 0-9, '-'; 3-15 ký tự).");
-                return false;
-            }
-            return true;
+        String error = PlateValidator.validate(plate, type);
+        if (error != null) {
+            System.out.println(error);
+            return false;
         }
-        
-        return false;
+        return true;
     }
     
     /**
@@ -205,7 +174,7 @@ public class ParkingView {
             }
             
             // Tìm chính xác (đã chuẩn hóa)
-            String foundPlate = repository.findTicketByPlateNormalized(input);
+            String foundPlate = parkingService.findParkedPlate(input);
             if (foundPlate != null) {
                 return foundPlate;
             }
@@ -259,7 +228,7 @@ public class ParkingView {
      */
     private List<String> findSuggestions(String partialPlate) {
         // Input đã được chuẩn hóa, chỉ cần tìm kiếm
-        return repository.searchByKeyword(partialPlate);
+        return parkingService.searchByKeyword(partialPlate);
     }
     
     /**
@@ -308,9 +277,13 @@ public class ParkingView {
     /**
      * Hiển thị thông báo check-in thành công
      */
-    public void showCheckInSuccess(String plate, String zone) {
+    public void showCheckInSuccess(String plate, Zone zone, String slotId) {
         System.out.println("\n✓ Xe " + plate + " vào bãi -> Vào Zone " + zone);
-        System.out.println("✓ Xe " + plate + " hãy vào Zone " + zone + ".\n");
+        if (slotId != null) {
+            System.out.println("✓ Xe " + plate + " hãy vào Zone " + zone + ", chỗ " + slotId + ".\n");
+        } else {
+            System.out.println("✓ Xe " + plate + " hãy vào Zone " + zone + ".\n");
+        }
     }
     
     /**
@@ -320,6 +293,20 @@ public class ParkingView {
         System.out.println("\nTỔNG PHÍ: " + String.format("%,d", fee) + " VNĐ\n");
     }
     
+    /**
+     * Hiển thị cảnh báo nghi vấn lạm dụng mất vé của lượt vừa xử lý (không có thì không in gì)
+     */
+    public void showLostTicketAlerts(List<String> alerts) {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        System.out.println();
+        for (String alert : alerts) {
+            System.out.println("❌ Nghi vấn mất vé: " + alert);
+        }
+        System.out.println("ℹ Chỉ là cảnh báo, xe vẫn được ra: đối chiếu giấy tờ xe trước khi thu phí.");
+    }
+    
     /**
      * Hiển thị thống kê
      */
@@ -339,6 +326,129 @@ public class ParkingView {
         System.out.println();
     }
     
+    /**
+     * Hiển thị số liệu tổng hợp xe đang đỗ
+     */
+    public void showActiveTicketSummary(List<String> summary) {
+        System.out.println("--- TỔNG HỢP XE ĐANG ĐỖ ---");
+        for (String line : summary) {
+            System.out.println("- " + line);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Hiển thị thống kê lượt và doanh thu
+     */
+    public void showRevenueStats(List<String> summary) {
+        System.out.println("--- LƯỢT & DOANH THU ---");
+        for (String line : summary) {
+            System.out.println("- " + line);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Hiển thị dự báo sức chứa từng zone
+     */
+    public void showZoneForecast(List<String> forecast) {
+        System.out.println("--- DỰ BÁO SỨC CHỨA ZONE ---");
+        for (String line : forecast) {
+            System.out.println("- " + line);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Hiển thị bộ đếm mất vé và số cảnh báo
+     */
+    public void showLostTicketStats(List<String> stats) {
+        System.out.println("--- GIÁM SÁT MẤT VÉ ---");
+        for (String line : stats) {
+            System.out.println("- " + line);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Hiển thị số liệu cache tra cứu
+     */
+    public void showCacheStats(List<String> cacheStats) {
+        System.out.println("--- CACHE TRA CỨU ---");
+        for (String line : cacheStats) {
+            System.out.println("- " + line);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Nhập biển số cần tra cứu lịch sử
+     */
+    public String inputPlateForHistory() {
+        while (true) {
+            System.out.print("Nhập biển số cần tra cứu: ");
+            String plate = normalizeInput(scanner.nextLine());
+            if (!plate.isEmpty()) {
+                return plate;
+            }
+            System.out.println("❌ Vui lòng nhập biển số.");
+        }
+    }
+    
+    /**
+     * Hiển thị lịch sử gửi xe của một biển số
+     */
+    public void showPlateHistory(String plate, List<StayRecord> records, boolean isParkedNow) {
+        System.out.println("\n--- LỊCH SỬ GỬI XE: " + plate + " ---");
+        if (isParkedNow) {
+            System.out.println("ℹ Xe đang đỗ trong bãi.");
+        }
+        if (records.isEmpty()) {
+            System.out.println("Chưa có lượt gửi nào đã hoàn tất.\n");
+            return;
+        }
+        
+        System.out.println("Tổng số lượt: " + records.size());
+        for (StayRecord record : records) {
+            System.out.println("- Vào: " + record.getEntryTime()
+                    + " | Ra: " + record.getExitTime()
+                    + " | Zone: " + record.getZone()
+                    + " | Phí: " + String.format("%,d", record.getFee()) + " VNĐ");
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Hiển thị trạng thái replication
+     */
+    public void showReplicationStatus(String status) {
+        System.out.println(status + "\n");
+    }
+    
+    /**
+     * Xác nhận nâng replica lên primary
+     */
+    public boolean confirmPromotion() {
+        while (true) {
+            System.out.println("Nâng replica này lên primary? (1) Có, (2) Không");
+            System.out.print("Lựa chọn: ");
+            String input = scanner.nextLine().trim();
+            try {
+                int choice = Integer.parseInt(input);
+                switch (choice) {
+                    case 1:
+                        return true;
+                    case 2:
+                        return false;
+                    default:
+                        System.out.println("❌ Lựa chọn không hợp lệ, vui lòng chọn 1/2.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("❌ Vui lòng nhập số hợp lệ.");
+            }
+        }
+    }
+    
     /**
      * Hiển thị lỗi
      */
@@ -0,0 +1,126 @@
+package vn.parking.gate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.service.BillingService;
+import vn.parking.service.HistoryService;
+import vn.parking.service.ParkingService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Kiểm tra tiếp nhận sự kiện cổng: khử trùng lặp trong cửa sổ, hết hạn id, sắp lại thứ tự
+ */
+public class GateEventIngestorTest {
+
+    private static final long WINDOW_MILLIS = 60_000;
+    private static final long REORDER_MILLIS = 2_000;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ParkingService service;
+    private GateEventIngestor ingestor;
+
+    @Before
+    public void setUp() {
+        ParkingRepository repository = new ParkingRepository(temp.getRoot());
+        service = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(HistoryRepository.inDirectory(temp.getRoot())));
+        service.loadData();
+        ingestor = new GateEventIngestor(service, WINDOW_MILLIS, 1000, REORDER_MILLIS, 100);
+    }
+
+    @After
+    public void tearDown() {
+        // Ghi file xong trước khi thư mục tạm bị xóa
+        service.shutdown();
+    }
+
+    @Test
+    public void duplicateWithinWindowIsDropped() {
+        assertEquals(GateEventIngestor.Outcome.ACCEPTED, ingestor.ingest(entry("e1", "29A-12345", T0)));
+        assertEquals(GateEventIngestor.Outcome.DUPLICATE, ingestor.ingest(entry("e1", "29A-12345", T0.plusSeconds(5))));
+        ingestor.flush();
+
+        assertEquals(1, ingestor.getApplied());
+        assertEquals(1, ingestor.getDuplicates());
+        assertNotNull(service.findParkedPlate("29A-12345"));
+    }
+
+    @Test
+    public void idsExpireWithTheWindow() {
+        ingestor.ingest(entry("e1", "29A-12345", T0));
+        LocalDateTime later = T0.plusSeconds(WINDOW_MILLIS / 1000 * 2 + 3);
+        assertEquals(GateEventIngestor.Outcome.ACCEPTED, ingestor.ingest(exit("e2", "29A-12345", later)));
+
+        // Sự kiện cũ hơn cửa sổ không kiểm tra trùng được
+        assertEquals(GateEventIngestor.Outcome.EXPIRED, ingestor.ingest(exit("e3", "29A-12345", T0.plusSeconds(1))));
+        // Id đã ra khỏi cửa sổ được dùng lại (thiết bị quay vòng bộ đếm id)
+        assertEquals(GateEventIngestor.Outcome.ACCEPTED, ingestor.ingest(entry("e1", "29A-12345", later.plusSeconds(1))));
+        ingestor.flush();
+
+        assertEquals(0, ingestor.getDuplicates());
+        assertEquals(3, ingestor.getApplied());
+        assertNotNull(service.findParkedPlate("29A-12345"));
+    }
+
+    @Test
+    public void lateEventWithinReorderDelayIsAppliedInOrder() {
+        // Camera làn ra gửi trước camera làn vào nhưng giờ thiết bị muộn hơn
+        ingestor.ingest(exit("x1", "29A-12345", T0.plusSeconds(1)));
+        ingestor.ingest(entry("n1", "29A-12345", T0));
+        assertEquals(2, ingestor.getBufferedCount());
+        ingestor.flush();
+
+        assertEquals(2, ingestor.getApplied());
+        assertEquals(0, ingestor.getSkipped());
+        assertNull(service.findParkedPlate("29A-12345"));
+    }
+
+    @Test
+    public void eventLaterThanReorderDelayIsDropped() {
+        ingestor.ingest(entry("n1", "29A-12345", T0.plusSeconds(10)));
+        ingestor.ingest(entry("n2", "30B-67890", T0.plusSeconds(20)));
+        assertEquals(1, ingestor.getBufferedCount());
+
+        // Lượt ra cũ hơn lượt vào đã áp dụng của cùng biển số
+        ingestor.ingest(exit("x1", "29A-12345", T0.plusSeconds(5)));
+        ingestor.flush();
+
+        assertEquals(2, ingestor.getApplied());
+        assertNotNull(service.findParkedPlate("29A-12345"));
+    }
+
+    @Test
+    public void replayedEventsAreIdempotent() {
+        ingestor.ingest(entry("n1", "29A-12345", T0));
+        ingestor.flush();
+        GateEventIngestor restarted = new GateEventIngestor(service, WINDOW_MILLIS, 1000, REORDER_MILLIS, 100);
+        restarted.ingest(entry("n1", "29A-12345", T0));
+        restarted.flush();
+
+        assertEquals(0, restarted.getApplied());
+        assertEquals(1, restarted.getSkipped());
+    }
+
+    private static GateEvent entry(String id, String plate, LocalDateTime at) {
+        return GateEvent.entry(id, new Car(plate, FuelType.GASOLINE, false), at);
+    }
+
+    private static GateEvent exit(String id, String plate, LocalDateTime at) {
+        return GateEvent.exit(id, plate, at);
+    }
+}
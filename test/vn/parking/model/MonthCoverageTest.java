@@ -0,0 +1,74 @@
+package vn.parking.model;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra bitmask tháng đã đóng: đọc/ghi khoảng, các phép trên bit, vượt ranh giới 64 tháng
+ */
+public class MonthCoverageTest {
+
+    private static final int JAN_2026 = MonthCoverage.parseMonth("01/2026");
+
+    @Test
+    public void parsesAndFormatsMonths() {
+        assertEquals(2026 * 12, JAN_2026);
+        assertEquals("01/2026", MonthCoverage.formatMonth(JAN_2026));
+        assertEquals(JAN_2026 + 11, MonthCoverage.monthIndex(LocalDateTime.of(2026, 12, 31, 23, 59)));
+        assertEquals(-1, MonthCoverage.parseMonth("13/2026"));
+        assertEquals(-1, MonthCoverage.parseMonth("1/2026"));
+        assertEquals("01/2026-03/2026", MonthCoverage.formatRange(JAN_2026, 3));
+    }
+
+    @Test
+    public void rangesRoundTripAndMerge() {
+        MonthCoverage coverage = MonthCoverage.parse("01/2026-03/2026;09/2026;04/2026");
+
+        assertEquals("01/2026-04/2026;09/2026", coverage.toString());
+        assertEquals(coverage, MonthCoverage.parse(coverage.toString()));
+        assertTrue(MonthCoverage.parse("xx/2026;03/2026-01/2026").isEmpty());
+    }
+
+    @Test
+    public void lookupsAcrossWordBoundary() {
+        // 70 tháng liên tiếp: trải qua hai word 64 bit
+        MonthCoverage coverage = MonthCoverage.EMPTY.withRange(JAN_2026 + 2, 70);
+
+        assertFalse(coverage.covers(JAN_2026 + 1));
+        assertTrue(coverage.covers(JAN_2026 + 2));
+        assertTrue(coverage.covers(JAN_2026 + 71));
+        assertFalse(coverage.covers(JAN_2026 + 72));
+        assertEquals(JAN_2026 + 71, coverage.lastCovered());
+        assertEquals(JAN_2026 + 2, coverage.nextCovered(JAN_2026));
+        assertEquals(JAN_2026 + 72, coverage.nextUncovered(JAN_2026 + 2));
+        assertEquals(JAN_2026, coverage.nextUncovered(JAN_2026));
+        assertEquals(Integer.MAX_VALUE, coverage.nextCovered(JAN_2026 + 72));
+        assertEquals(2 + 3, coverage.countUncovered(JAN_2026, JAN_2026 + 74));
+        assertEquals(0, coverage.countUncovered(JAN_2026 + 10, JAN_2026 + 60));
+    }
+
+    @Test
+    public void unionKeepsBothSides() {
+        MonthCoverage early = MonthCoverage.parse("01/2020-06/2020");
+        MonthCoverage late = MonthCoverage.parse("03/2026;05/2026");
+        MonthCoverage union = early.union(late);
+
+        assertEquals("01/2020-06/2020;03/2026;05/2026", union.toString());
+        assertEquals(union, late.union(early));
+        assertEquals(early, early.union(MonthCoverage.EMPTY));
+        assertEquals(1, union.countUncovered(MonthCoverage.parseMonth("03/2026"), MonthCoverage.parseMonth("05/2026")));
+    }
+
+    @Test
+    public void emptyCoverage() {
+        assertTrue(MonthCoverage.EMPTY.isEmpty());
+        assertEquals(-1, MonthCoverage.EMPTY.lastCovered());
+        assertEquals(JAN_2026, MonthCoverage.EMPTY.nextUncovered(JAN_2026));
+        assertEquals(12, MonthCoverage.EMPTY.countUncovered(JAN_2026, JAN_2026 + 11));
+    }
+}
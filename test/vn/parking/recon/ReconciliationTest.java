@@ -0,0 +1,58 @@
+package vn.parking.recon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.event.VehicleCheckedOut;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+import vn.parking.repository.EventLogRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Kiểm tra đối soát đọc từ offset của ngày đầu kỳ theo index ngày của event log
+ */
+public class ReconciliationTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void periodStartingAfterFirstDayCountsOnlyItsExits() throws IOException {
+        File logFile = new File(temp.getRoot(), EventLogRepository.DEFAULT_FILENAME);
+        EventLogRepository eventLog = new EventLogRepository(logFile);
+        checkOut(eventLog, "29A-00001", T0, 10000);
+        checkOut(eventLog, "29A-00002", T0.plusDays(1), 20000);
+        checkOut(eventLog, "29A-00003", T0.plusDays(2), 40000);
+        checkOut(eventLog, "29A-00004", T0.plusDays(1).plusHours(2), 80000); // Ghi sau dòng của ngày sau
+        eventLog.close();
+
+        LocalDate day = T0.toLocalDate();
+        assertEquals(100000, reconcile(logFile, day.plusDays(1), day.plusDays(2)));
+        assertEquals(140000, reconcile(logFile, day.plusDays(1), day.plusDays(3)));
+        assertEquals(150000, reconcile(logFile, day, day.plusDays(3)));
+        assertEquals(0, reconcile(logFile, day.plusDays(5), day.plusDays(6)));
+    }
+
+    private static long reconcile(File logFile, LocalDate from, LocalDate to) throws IOException {
+        Reconciliation reconciliation = new Reconciliation(from, to, 24, 2, 100);
+        reconciliation.process(logFile);
+        return reconciliation.getAmount(Reconciliation.PaymentType.GUEST);
+    }
+
+    private static void checkOut(EventLogRepository eventLog, String plate, LocalDateTime exitTime, long fee) {
+        Ticket ticket = new Ticket(plate, exitTime.minusHours(1), false, Zone.B);
+        eventLog.append(new VehicleCheckedOut(ticket, new Car(plate, FuelType.GASOLINE, false), exitTime, fee, null));
+        eventLog.flush();
+    }
+}
@@ -0,0 +1,157 @@
+package vn.parking.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.event.DomainEvent;
+import vn.parking.event.VehicleCheckedIn;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Kiểm tra event log: phát lại từ offset, checkpoint gắn với đúng file log và index ngày
+ */
+public class EventLogRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File logFile;
+    private EventLogRepository eventLog;
+
+    @Before
+    public void setUp() {
+        logFile = new File(temp.getRoot(), EventLogRepository.DEFAULT_FILENAME);
+        eventLog = new EventLogRepository(logFile);
+    }
+
+    @Test
+    public void replayStartsAtCheckpointOffset() throws IOException {
+        append("29A-00001", "29A-00002");
+        long offset = eventLog.size();
+        eventLog.writeCheckpoint(offset, new byte[]{42});
+        append("29A-00003");
+
+        EventLogRepository.Checkpoint checkpoint = new EventLogRepository(logFile).readCheckpoint();
+        assertNotNull(checkpoint);
+        assertEquals(offset, checkpoint.getOffset());
+        try (DataInputStream in = checkpoint.openState()) {
+            assertEquals(42, in.readByte());
+        }
+        assertEquals("[29A-00003]", plates(checkpoint.getOffset(), eventLog.size()));
+        assertEquals("[29A-00001, 29A-00002, 29A-00003]", plates(0, eventLog.size()));
+    }
+
+    @Test
+    public void checkpointOfAnotherLogIsIgnored() throws IOException {
+        append("29A-00001", "29A-00002");
+        eventLog.writeCheckpoint(eventLog.size(), new byte[0]);
+        eventLog.close();
+
+        // Log được thay bằng file khác dài hơn: phần trước offset không còn khớp
+        Files.delete(logFile.toPath());
+        append("51G-00001", "51G-00002", "51G-00003");
+        assertNull(eventLog.readCheckpoint());
+
+        // Log ngắn hơn offset
+        eventLog.writeCheckpoint(eventLog.size(), new byte[0]);
+        eventLog.close();
+        Files.delete(logFile.toPath());
+        append("51G-00001");
+        assertNull(eventLog.readCheckpoint());
+    }
+
+    @Test
+    public void corruptCheckpointIsIgnored() throws IOException {
+        append("29A-00001");
+        eventLog.writeCheckpoint(eventLog.size(), new byte[]{1, 2, 3});
+        File checkpointFile = new File(logFile.getPath() + EventLogRepository.CHECKPOINT_SUFFIX);
+
+        byte[] bytes = Files.readAllBytes(checkpointFile.toPath());
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(checkpointFile.toPath(), bytes);
+        assertNull(eventLog.readCheckpoint());
+    }
+
+    @Test
+    public void dayIndexPointsAtFirstLineOfEachDay() {
+        long[] offsets = {
+                appendAt("29A-00001", T0),
+                appendAt("29A-00002", T0.plusHours(3)),
+                appendAt("29A-00003", T0.plusDays(1)),
+                appendAt("29A-00004", T0.plusHours(5)),   // Ghi trễ, thời điểm của ngày trước
+                appendAt("29A-00005", T0.plusDays(3))
+        };
+        LocalDate day = T0.toLocalDate();
+
+        assertEquals(0, EventLogRepository.findDayOffset(logFile, day.minusDays(1)));
+        assertEquals(0, EventLogRepository.findDayOffset(logFile, day));
+        assertEquals(offsets[2], EventLogRepository.findDayOffset(logFile, day.plusDays(1)));
+        assertEquals(offsets[4], EventLogRepository.findDayOffset(logFile, day.plusDays(2)));
+        assertEquals(offsets[4], EventLogRepository.findDayOffset(logFile, day.plusDays(5)));
+        assertEquals("[29A-00003, 29A-00004, 29A-00005]",
+                plates(EventLogRepository.findDayOffset(logFile, day.plusDays(1)), eventLog.size()));
+    }
+
+    @Test
+    public void missingDayIndexIsRebuiltBeforeAppending() throws IOException {
+        appendAt("29A-00001", T0);
+        long secondDay = appendAt("29A-00002", T0.plusDays(1));
+        eventLog.close();
+        File dayIndex = new File(logFile.getPath() + EventLogRepository.DAY_INDEX_SUFFIX);
+        Files.delete(dayIndex.toPath());
+
+        // Chưa có index: đọc từ đầu log
+        assertEquals(0, EventLogRepository.findDayOffset(logFile, T0.toLocalDate().plusDays(1)));
+
+        eventLog = new EventLogRepository(logFile);
+        long thirdDay = appendAt("29A-00003", T0.plusDays(2));
+        assertEquals(secondDay, EventLogRepository.findDayOffset(logFile, T0.toLocalDate().plusDays(1)));
+        assertEquals(thirdDay, EventLogRepository.findDayOffset(logFile, T0.toLocalDate().plusDays(2)));
+    }
+
+    /**
+     * Ghi một sự kiện tại thời điểm time
+     * @return Offset dòng vừa ghi
+     */
+    private long appendAt(String plate, LocalDateTime time) {
+        long offset = eventLog.size();
+        eventLog.append(new VehicleCheckedIn(new Ticket(plate, time, false, Zone.B),
+                new Car(plate, FuelType.GASOLINE, false)));
+        eventLog.flush();
+        return offset;
+    }
+
+    private void append(String... plates) {
+        for (String plate : plates) {
+            eventLog.append(new VehicleCheckedIn(new Ticket(plate, T0, false, Zone.B),
+                    new Car(plate, FuelType.GASOLINE, false)));
+        }
+        eventLog.flush();
+    }
+
+    private String plates(long from, long limit) {
+        List<String> plates = new ArrayList<>();
+        eventLog.replay((DomainEvent event) -> plates.add(((VehicleCheckedIn) event).getTicket().getPlate()),
+                from, limit);
+        return plates.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package vn.parking.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.StayRecord;
+import vn.parking.model.Zone;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra file lịch sử gửi xe: dòng ghi dở cuối file sau khi mất điện
+ */
+public class HistoryRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File historyFile;
+
+    @Before
+    public void setUp() {
+        historyFile = new File(temp.getRoot(), HistoryRepository.DEFAULT_HISTORY_FILENAME);
+    }
+
+    @Test
+    public void partialLastLineIsCutBeforeAppending() throws IOException {
+        HistoryRepository history = open();
+        history.append(stay("29A-12345", 0));
+        // Mất điện giữa một lần append
+        Files.write(historyFile.toPath(), "30B-67890,2026-03-01T09:00".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        HistoryRepository reopened = open();
+        assertEquals(1, reopened.getAll().size());
+        reopened.append(stay("51G-88888", 2));
+        assertEquals("51G-88888", reopened.findByPlate("51G-88888").get(0).getPlate());
+
+        HistoryRepository again = open();
+        List<StayRecord> all = again.getAll();
+        assertEquals(2, all.size());
+        assertEquals("29A-12345", all.get(0).getPlate());
+        assertEquals("51G-88888", all.get(1).getPlate());
+        assertTrue(again.findByPlate("30B-67890").isEmpty());
+        assertTrue(new String(Files.readAllBytes(historyFile.toPath()), StandardCharsets.UTF_8).endsWith("\n"));
+    }
+
+    @Test
+    public void completeFileIsLeftUntouched() throws IOException {
+        HistoryRepository history = open();
+        history.append(stay("29A-12345", 0));
+        long length = historyFile.length();
+
+        HistoryRepository reopened = open();
+        reopened.append(stay("51G-88888", 2));
+        assertTrue(historyFile.length() > length);
+        assertEquals(2, open().getAll().size());
+    }
+
+    private HistoryRepository open() {
+        HistoryRepository history = new HistoryRepository(historyFile.getPath());
+        history.load();
+        return history;
+    }
+
+    private static StayRecord stay(String plate, int hours) {
+        LocalDateTime entry = T0.plusHours(hours);
+        return new StayRecord(plate, entry, entry.plusMinutes(30), Zone.B, 10000);
+    }
+}
@@ -0,0 +1,111 @@
+package vn.parking.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra index xe đã rời bãi: tra cứu nhị phân trên mảng sắp xếp, xóa, ghi/đọc file .idx
+ */
+public class InactivePlateIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void lookupDistinguishesPlatesSharingAPrefix() {
+        InactivePlateIndex index = build("29A-12345", 300, "29A-1", 100, "51G-88888", 200, "29A-123", 400);
+
+        assertEquals(100, index.get("29A-1"));
+        assertEquals(400, index.get("29A-123"));
+        assertEquals(300, index.get("29A-12345"));
+        assertEquals(-1, index.get("29A-12"));
+        assertEquals(-1, index.get("29A-123456"));
+        assertEquals(4, index.size());
+        assertEquals(100, index.firstOffset());
+    }
+
+    @Test
+    public void repeatedPlateKeepsTheLaterRow() {
+        InactivePlateIndex index = build("29A-12345", 100, "29A-12345", 500);
+
+        assertEquals(500, index.get("29A-12345"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void removedPlatesAreHidden() {
+        InactivePlateIndex index = build("29A-12345", 100, "51G-88888", 200);
+        index.remove("29A-12345");
+        index.remove("99Z-99999");
+
+        assertFalse(index.contains("29A-12345"));
+        assertTrue(index.contains("51G-88888"));
+        assertEquals(1, index.size());
+        assertEquals("51G-88888", index.findPlate(plate -> true));
+        assertTrue(InactivePlateIndex.empty().isEmpty());
+    }
+
+    @Test
+    public void indexFileIsBoundToTheDataFileFooter() throws IOException {
+        File dataFile = new File(temp.getRoot(), "parking_data.csv");
+        writeData(dataFile, "a", "b");
+        InactivePlateIndex index = build("29A-12345", 300, "51G-88888", 200);
+        index.remove("51G-88888");
+        File indexFile = InactivePlateIndex.fileFor(dataFile);
+        index.write(indexFile, SnapshotFile.readFooter(dataFile));
+
+        InactivePlateIndex read = InactivePlateIndex.read(indexFile, SnapshotFile.readFooter(dataFile));
+        assertNotNull(read);
+        assertEquals(300, read.get("29A-12345"));
+        assertEquals(1, read.size());
+
+        // File dữ liệu đã được ghi lại: index cũ không còn dùng được
+        writeData(dataFile, "a", "b", "c");
+        assertNull(InactivePlateIndex.read(indexFile, SnapshotFile.readFooter(dataFile)));
+    }
+
+    @Test
+    public void corruptIndexFileIsIgnored() throws IOException {
+        File dataFile = new File(temp.getRoot(), "parking_data.csv");
+        writeData(dataFile, "a");
+        File indexFile = InactivePlateIndex.fileFor(dataFile);
+        build("29A-12345", 300).write(indexFile, SnapshotFile.readFooter(dataFile));
+
+        byte[] bytes = Files.readAllBytes(indexFile.toPath());
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(indexFile.toPath(), bytes);
+        assertNull(InactivePlateIndex.read(indexFile, SnapshotFile.readFooter(dataFile)));
+    }
+
+    /**
+     * Index từ các cặp biển số, offset theo thứ tự đọc
+     */
+    private static InactivePlateIndex build(Object... pairs) {
+        InactivePlateIndex.Builder builder = new InactivePlateIndex.Builder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            builder.put((String) pairs[i], ((Integer) pairs[i + 1]).longValue());
+        }
+        return builder.build(plate -> true);
+    }
+
+    private static void writeData(File file, String... lines) throws IOException {
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file)) {
+            for (String line : Arrays.asList(lines)) {
+                writer.writeLine(line);
+            }
+            writer.commit();
+        }
+    }
+}
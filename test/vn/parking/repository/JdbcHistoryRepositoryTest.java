@@ -0,0 +1,146 @@
+package vn.parking.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.StayRecord;
+import vn.parking.model.Zone;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra lịch sử trên CSDL nhúng H2 (lib/h2-*.jar): tạo bảng, ghi batch, tra cứu và phân trang
+ */
+public class JdbcHistoryRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private String url;
+    private JdbcHistoryRepository repository;
+
+    @Before
+    public void setUp() {
+        url = "jdbc:h2:" + new File(temp.getRoot(), "history").getAbsolutePath();
+        repository = open(null);
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void schemaIsCreatedOnceAndDataSurvivesReopen() {
+        repository.addAll(stays(3));
+        repository.close();
+
+        // Mở lại: bảng đã có, ensureSchema không tạo lại
+        repository = open(null);
+        assertEquals(3, repository.getAll().size());
+    }
+
+    @Test
+    public void batchInsertAndLookupByPlate() {
+        List<StayRecord> stays = stays(1200);
+        stays.add(new StayRecord("29a-12345", T0.plusDays(5), T0.plusDays(5).plusHours(2), Zone.A1, 20000));
+        repository.addAll(stays);
+
+        List<StayRecord> found = repository.findByPlate(" 29A-12345");
+        assertEquals(1, found.size());
+        assertEquals(Zone.A1, found.get(0).getZone());
+        assertEquals(20000, found.get(0).getFee());
+        assertEquals(T0.plusDays(5), repository.findById("29A-12345").getEntryTime());
+        assertTrue(repository.findByPlate("99Z-99999").isEmpty());
+        assertNull(repository.findById("99Z-99999"));
+    }
+
+    @Test
+    public void lookupByEntryTimeIsHalfOpen() {
+        repository.addAll(stays(10));
+
+        List<StayRecord> found = repository.findByEntryTime(T0.plusHours(2), T0.plusHours(5));
+        assertEquals(3, found.size());
+        assertEquals(T0.plusHours(2), found.get(0).getEntryTime());
+        assertEquals(T0.plusHours(4), found.get(2).getEntryTime());
+    }
+
+    @Test
+    public void pagesFollowEntryTimeWithoutGapsOrOverlap() {
+        repository.addAll(stays(25));
+        // Trùng giờ vào với một dòng đã có: thứ tự trang vẫn ổn định
+        repository.add(new StayRecord("30B-00000", T0.plusHours(9), T0.plusHours(10), Zone.B, 5000));
+
+        List<StayRecord> all = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            all.addAll(repository.findPage(page, 10));
+        }
+        assertEquals(26, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertFalse(all.get(i).getEntryTime().isBefore(all.get(i - 1).getEntryTime()));
+        }
+        assertEquals(6, repository.findPage(2, 10).size());
+        assertTrue(repository.findPage(3, 10).isEmpty());
+    }
+
+    @Test
+    public void removeDeletesMatchingStay() {
+        List<StayRecord> stays = stays(3);
+        repository.addAll(stays);
+        repository.remove(stays.get(1));
+
+        assertEquals(2, repository.getAll().size());
+        assertTrue(repository.findByPlate(stays.get(1).getPlate()).isEmpty());
+    }
+
+    @Test
+    public void legacyCsvIsMigratedIntoEmptyTable() {
+        File csv = new File(temp.getRoot(), HistoryRepository.DEFAULT_HISTORY_FILENAME);
+        HistoryRepository legacy = new HistoryRepository(csv.getPath());
+        legacy.load();
+        for (StayRecord stay : stays(4)) {
+            legacy.append(stay);
+        }
+        repository.close();
+
+        repository = open(csv);
+        repository.load();
+        assertEquals(4, repository.getAll().size());
+    }
+
+    @Test
+    public void pagingSyntaxFollowsDatabaseProduct() {
+        assertFalse(JdbcHistoryRepository.usesLimitOffset("H2"));
+        assertFalse(JdbcHistoryRepository.usesLimitOffset("Apache Derby"));
+        assertTrue(JdbcHistoryRepository.usesLimitOffset("SQLite"));
+        assertTrue(JdbcHistoryRepository.usesLimitOffset("MySQL"));
+    }
+
+    private JdbcHistoryRepository open(File legacyCsv) {
+        return new JdbcHistoryRepository(url, "sa", "", 2, legacyCsv);
+    }
+
+    /**
+     * Mỗi lượt gửi một biển số khác nhau, giờ vào cách nhau một giờ
+     */
+    private static List<StayRecord> stays(int count) {
+        List<StayRecord> stays = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime entry = T0.plusHours(i);
+            stays.add(new StayRecord(String.format("51G-%05d", i), entry, entry.plusMinutes(90), Zone.B, 10000));
+        }
+        return stays;
+    }
+}
@@ -0,0 +1,151 @@
+package vn.parking.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.Ticket;
+import vn.parking.model.Vehicle;
+import vn.parking.model.Zone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra file dữ liệu xe: xe đã rời bãi chỉ giữ offset, duyệt/xuất lọc theo index,
+ * file .idx đi kèm và khởi động nhanh
+ */
+public class ParkingRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ParkingRepository repository;
+
+    @Before
+    public void setUp() {
+        repository = new ParkingRepository(temp.getRoot());
+        repository.loadFromFile();
+        checkIn("29A-12345");
+        checkIn("30B-67890");
+        checkIn("51G-88888");
+        repository.removeTicket("30B-67890");
+        repository.removeTicket("51G-88888");
+        repository.saveToFile();
+    }
+
+    @Test
+    public void inactiveVehiclesAreReadFromFileAfterReload() {
+        ParkingRepository reloaded = reload();
+
+        assertEquals(1, reloaded.getAllActiveTickets().size());
+        assertTrue(reloaded.isKnownPlate("30B-67890"));
+        assertNotNull(reloaded.findVehicleByPlate("51G-88888"));
+        assertEquals("[29A-12345, 30B-67890, 51G-88888]", plates(reloaded));
+    }
+
+    @Test
+    public void reactivatedVehicleIsNotListedTwice() throws IOException {
+        ParkingRepository reloaded = reload();
+        reloaded.saveCheckIn(new Ticket("30B-67890", T0.plusDays(1), false, Zone.B), car("30B-67890"));
+
+        assertEquals("[29A-12345, 30B-67890, 51G-88888]", plates(reloaded));
+        StringWriter csv = new StringWriter();
+        assertEquals(3, reloaded.exportCsv(csv));
+
+        // Ghi lại: dòng inactive cũ của xe vừa vào lại bãi không bị chép sang file mới
+        reloaded.saveToFile();
+        ParkingRepository again = reload();
+        assertEquals(2, again.getAllActiveTickets().size());
+        assertEquals("[29A-12345, 30B-67890, 51G-88888]", plates(again));
+    }
+
+    @Test
+    public void pagesCoverInMemoryAndInactiveVehicles() {
+        ParkingRepository reloaded = reload();
+
+        assertEquals(2, reloaded.findPage(0, 2).size());
+        assertEquals(1, reloaded.findPage(1, 2).size());
+        assertTrue(reloaded.findPage(2, 2).isEmpty());
+    }
+
+    @Test
+    public void staleIndexFileIsIgnored() throws IOException {
+        File indexFile = InactivePlateIndex.fileFor(dataFile());
+        assertTrue(indexFile.exists());
+        byte[] stale = Files.readAllBytes(indexFile.toPath());
+
+        // Ghi lại file dữ liệu với vị trí dòng khác rồi đặt lại file .idx cũ
+        repository.saveCheckIn(new Ticket("51G-88888", T0.plusDays(1), false, Zone.B), car("51G-88888"));
+        repository.removeTicket("29A-12345");
+        repository.saveToFile();
+        Files.write(indexFile.toPath(), stale);
+
+        ParkingRepository reloaded = reload();
+        assertEquals("51G-88888", reloaded.getAllActiveTickets().iterator().next().getPlate());
+        assertEquals("29A-12345", reloaded.findVehicleByPlate("29A-12345").getPlate());
+        assertEquals("30B-67890", reloaded.findVehicleByPlate("30B-67890").getPlate());
+        assertEquals("[29A-12345, 30B-67890, 51G-88888]", plates(reloaded));
+    }
+
+    @Test
+    public void fastStartChecksTheInactiveRowsInBackground() throws IOException {
+        // Lần ghi thứ hai: bản trước (.bak) cũng có checksum phần đầu
+        repository.saveToFile();
+        SnapshotFile.Footer footer = SnapshotFile.readFooter(dataFile());
+        byte[] bytes = Files.readAllBytes(dataFile().toPath());
+        bytes[(int) footer.headLength + 10] ^= 1;
+        Files.write(dataFile().toPath(), bytes);
+
+        ParkingRepository fast = new ParkingRepository(temp.getRoot());
+        fast.loadActiveFromFile();
+        assertEquals(1, fast.getAllActiveTickets().size());
+        assertFalse(fast.isFullyLoaded());
+
+        // Phần xe đã rời bãi hỏng: lấy từ bản trước
+        fast.completeLoading();
+        assertTrue(fast.isFullyLoaded());
+        assertNotNull(fast.findVehicleByPlate("30B-67890"));
+        assertEquals("[29A-12345, 30B-67890, 51G-88888]", plates(fast));
+    }
+
+    private File dataFile() {
+        return new File(temp.getRoot(), "parking_data.csv");
+    }
+
+    private ParkingRepository reload() {
+        ParkingRepository reloaded = new ParkingRepository(temp.getRoot());
+        reloaded.loadFromFile();
+        return reloaded;
+    }
+
+    private void checkIn(String plate) {
+        repository.saveCheckIn(new Ticket(plate, T0, false, Zone.B), car(plate));
+    }
+
+    private static Car car(String plate) {
+        return new Car(plate, FuelType.GASOLINE, false);
+    }
+
+    private static String plates(ParkingRepository repository) {
+        List<String> plates = repository.getAll().stream()
+                .map(Vehicle::getPlate)
+                .sorted()
+                .collect(Collectors.toList());
+        return plates.toString();
+    }
+}
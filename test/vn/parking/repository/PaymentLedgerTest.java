@@ -0,0 +1,122 @@
+package vn.parking.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.MonthCoverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra sổ cái đóng vé tháng: phát lại nhật ký khi mở và trộn bản nén
+ */
+public class PaymentLedgerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File compactedFile;
+    private File logFile;
+
+    @Before
+    public void setUp() {
+        compactedFile = new File(temp.getRoot(), PaymentLedger.COMPACTED_FILENAME);
+        logFile = new File(temp.getRoot(), PaymentLedger.LOG_FILENAME);
+    }
+
+    @Test
+    public void logIsReplayedOnOpen() throws IOException {
+        PaymentLedger ledger = open(100);
+        ledger.record("29A-12345", MonthCoverage.parse("01/2026-03/2026"));
+        ledger.record(" 29a-12345", MonthCoverage.parse("06/2026"));
+        ledger.close();
+
+        PaymentLedger reopened = open(100);
+        assertEquals("01/2026-03/2026;06/2026", reopened.getCoverage("29A-12345").toString());
+        assertEquals(1, reopened.getTailCount());
+        assertEquals(0, reopened.getCompactedCount());
+    }
+
+    @Test
+    public void partialLastLineIsDroppedBeforeAppending() throws IOException {
+        PaymentLedger ledger = open(100);
+        ledger.record("29A-12345", MonthCoverage.parse("01/2026"));
+        ledger.close();
+        // Mất điện giữa một lần ghi nhật ký
+        Files.write(logFile.toPath(), "30B-6789".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        PaymentLedger reopened = open(100);
+        assertTrue(reopened.getCoverage("30B-6789").isEmpty());
+        reopened.record("51C-11111", MonthCoverage.parse("02/2026"));
+        reopened.close();
+
+        PaymentLedger again = open(100);
+        assertEquals("01/2026", again.getCoverage("29A-12345").toString());
+        assertEquals("02/2026", again.getCoverage("51C-11111").toString());
+        assertTrue(again.getCoverage("30B-6789").isEmpty());
+    }
+
+    @Test
+    public void compactionMergesChangedPlatesIntoSnapshot() throws IOException {
+        PaymentLedger ledger = open(2);
+        ledger.record("51C-11111", MonthCoverage.parse("01/2026"));
+        ledger.record("29A-12345", MonthCoverage.parse("01/2026"));
+        // Đạt ngưỡng: đã nén, nhật ký được xóa
+        assertFalse(logFile.exists());
+        assertEquals(2, ledger.getCompactedCount());
+        assertEquals(0, ledger.getTailCount());
+
+        ledger.record("29A-12345", MonthCoverage.parse("02/2026"));
+        ledger.record("30B-67890", MonthCoverage.parse("03/2026"));
+        assertEquals(3, ledger.getCompactedCount());
+        ledger.close();
+
+        // Bản nén sắp theo biển số chuẩn hóa, dòng thay đổi được trộn vào đúng chỗ
+        List<String> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(compactedFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!SnapshotFile.isFooter(line) && !line.startsWith("PlateKey")) {
+                keys.add(line.substring(0, line.indexOf(',')));
+            }
+        }
+        assertEquals(3, keys.size());
+        assertEquals("29A-12345", keys.get(0));
+        assertEquals("30B-67890", keys.get(1));
+        assertEquals("51C-11111", keys.get(2));
+
+        PaymentLedger reopened = open(2);
+        assertEquals("01/2026-02/2026", reopened.getCoverage("29A-12345").toString());
+        assertEquals("03/2026", reopened.getCoverage("30B-67890").toString());
+        assertEquals("01/2026", reopened.getCoverage("51C-11111").toString());
+    }
+
+    @Test
+    public void logAfterCompactionIsMergedOnOpen() throws IOException {
+        PaymentLedger ledger = open(2);
+        ledger.record("29A-12345", MonthCoverage.parse("01/2026"));
+        ledger.record("51C-11111", MonthCoverage.parse("01/2026"));
+        ledger.record("29A-12345", MonthCoverage.parse("03/2026"));
+        ledger.close();
+
+        PaymentLedger reopened = open(2);
+        assertEquals("01/2026;03/2026", reopened.getCoverage("29A-12345").toString());
+        assertEquals(2, reopened.getCompactedCount());
+        assertEquals(1, reopened.getTailCount());
+    }
+
+    private PaymentLedger open(int compactThreshold) throws IOException {
+        PaymentLedger ledger = new PaymentLedger(compactedFile, logFile, compactThreshold);
+        ledger.open();
+        return ledger;
+    }
+}
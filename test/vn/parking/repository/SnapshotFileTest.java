@@ -0,0 +1,156 @@
+package vn.parking.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra chọn file snapshot khi đọc: file chính hợp lệ, hỏng checksum, bị cắt cụt, định dạng cũ,
+ * checksum riêng của phần đầu file
+ */
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File target;
+
+    @Before
+    public void setUp() {
+        target = new File(temp.getRoot(), "parking_data.csv");
+    }
+
+    @Test
+    public void committedSnapshotIsValid() throws IOException {
+        write(target, "Plate,Type", "29A-12345,CAR");
+
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(target));
+        assertEquals(target, SnapshotFile.selectReadable(target));
+    }
+
+    @Test
+    public void corruptChecksumFallsBackToBackup() throws IOException {
+        write(target, "Plate,Type", "29A-12345,CAR");
+        write(target, "Plate,Type", "29A-12345,CAR", "30B-67890,BIKE");
+
+        byte[] bytes = Files.readAllBytes(target.toPath());
+        bytes[12] ^= 1;
+        Files.write(target.toPath(), bytes);
+
+        assertEquals(SnapshotFile.Status.CORRUPT, SnapshotFile.verify(target));
+        File readable = SnapshotFile.selectReadable(target);
+        assertEquals(SnapshotFile.backupOf(target), readable);
+        assertEquals(Arrays.asList("Plate,Type", "29A-12345,CAR"), dataLines(readable));
+    }
+
+    @Test
+    public void truncatedSnapshotFallsBackToBackup() throws IOException {
+        write(target, "Plate,Type", "29A-12345,CAR");
+        write(target, "Plate,Type", "29A-12345,CAR", "30B-67890,BIKE");
+
+        // Mất điện khi đang ghi đè: footer và một phần dữ liệu bị mất
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+
+        File readable = SnapshotFile.selectReadable(target);
+        assertEquals(SnapshotFile.backupOf(target), readable);
+        assertEquals(Arrays.asList("Plate,Type", "29A-12345,CAR"), dataLines(readable));
+    }
+
+    @Test
+    public void legacyFileWithoutFooterIsRead() throws IOException {
+        Files.write(target.toPath(), Arrays.asList("Plate,Type", "29A-12345,CAR"), StandardCharsets.UTF_8);
+
+        assertEquals(SnapshotFile.Status.LEGACY, SnapshotFile.verify(target));
+        assertEquals(target, SnapshotFile.selectReadable(target));
+    }
+
+    @Test
+    public void missingFileUsesBackupOrNothing() throws IOException {
+        assertNull(SnapshotFile.selectReadable(target));
+
+        write(target, "Plate,Type");
+        write(target, "Plate,Type", "29A-12345,CAR");
+        assertEquals(target, SnapshotFile.selectReadable(target));
+
+        Files.delete(target.toPath());
+        assertEquals(SnapshotFile.backupOf(target), SnapshotFile.selectReadable(target));
+    }
+
+    @Test
+    public void headChecksumCoversOnlyTheMarkedHead() throws IOException {
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(target)) {
+            writer.writeLine("Plate,Type");
+            writer.writeLine("29A-12345,CAR");
+            writer.markHead();
+            writer.writeLine("30B-67890,BIKE");
+            writer.commit();
+        }
+        SnapshotFile.Footer footer = SnapshotFile.readFooter(target);
+        assertTrue(footer.hasHead());
+        assertEquals(2, footer.headLines);
+        assertEquals(3, footer.lines);
+
+        // Hỏng phần sau đầu file: phần đầu vẫn dùng được, cả file thì không
+        byte[] bytes = Files.readAllBytes(target.toPath());
+        bytes[(int) footer.headLength + 2] ^= 1;
+        Files.write(target.toPath(), bytes);
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verifyHead(target));
+        assertEquals(SnapshotFile.Status.CORRUPT, SnapshotFile.verify(target));
+        assertEquals(target, SnapshotFile.selectReadable(target, true));
+
+        // Hỏng phần đầu
+        bytes[3] ^= 1;
+        Files.write(target.toPath(), bytes);
+        assertEquals(SnapshotFile.Status.CORRUPT, SnapshotFile.verifyHead(target));
+    }
+
+    @Test
+    public void footerWithoutHeadIsVerifiedInFull() throws IOException {
+        write(target, "Plate,Type", "29A-12345,CAR");
+
+        assertFalse(SnapshotFile.readFooter(target).hasHead());
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verifyHead(target));
+    }
+
+    @Test
+    public void uncommittedWriterLeavesTargetUntouched() throws IOException {
+        write(target, "Plate,Type", "29A-12345,CAR");
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(target)) {
+            writer.writeLine("Plate,Type");
+        }
+
+        assertEquals(Arrays.asList("Plate,Type", "29A-12345,CAR"), dataLines(target));
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(target));
+    }
+
+    private static void write(File file, String... lines) throws IOException {
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file)) {
+            for (String line : lines) {
+                writer.writeLine(line);
+            }
+            writer.commit();
+        }
+    }
+
+    private static List<String> dataLines(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        lines.removeIf(SnapshotFile::isFooter);
+        return lines;
+    }
+}
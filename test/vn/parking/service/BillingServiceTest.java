@@ -0,0 +1,99 @@
+package vn.parking.service;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.repository.ParkingRepository;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Kiểm tra tính phí vé tháng: thu các tháng nợ, ân hạn đầu tháng, đóng trước
+ */
+public class BillingServiceTest {
+
+    private static final String PLATE = "29A-12345";
+    private static final long MONTH_FEE = 50000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ParkingRepository repository;
+    private Car car;
+
+    @Before
+    public void setUp() {
+        repository = new ParkingRepository(temp.getRoot());
+        repository.loadFromFile();
+        car = new Car(PLATE, FuelType.GASOLINE, true);
+    }
+
+    @Test
+    public void chargesEveryUnpaidMonthOfTheStay() {
+        repository.recordMonthlyPayment(PLATE, "01/2026;03/2026");
+        BillingService billing = new BillingService(repository, 0);
+
+        BillingService.MonthlyCharge charge = billing.calculateMonthlyCharge(car,
+                LocalDateTime.of(2026, 1, 10, 8, 0), LocalDateTime.of(2026, 5, 20, 18, 0));
+
+        assertEquals(2, charge.getRunCount());
+        assertEquals("02/2026", charge.getFirstMonth(0));
+        assertEquals(1, charge.getMonthCount(0));
+        assertEquals("04/2026", charge.getFirstMonth(1));
+        assertEquals(2, charge.getMonthCount(1));
+        assertEquals(3 * MONTH_FEE, charge.getAmount());
+        assertEquals("05/2026", charge.getLastPaidMonth());
+    }
+
+    @Test
+    public void paidMonthsAreFree() {
+        repository.recordMonthlyPayment(PLATE, "01/2026-06/2026");
+        BillingService billing = new BillingService(repository, 0);
+
+        assertEquals(0, billing.calculateFee(car, LocalDateTime.of(2026, 6, 30, 18, 0),
+                LocalDateTime.of(2026, 2, 1, 8, 0)));
+    }
+
+    @Test
+    public void graceDaysSkipTheNewMonthWhenPreviousIsPaid() {
+        repository.recordMonthlyPayment(PLATE, "02/2026");
+        BillingService billing = new BillingService(repository, 3);
+        LocalDateTime entry = LocalDateTime.of(2026, 2, 25, 8, 0);
+
+        assertEquals(0, billing.calculateFee(car, LocalDateTime.of(2026, 3, 3, 18, 0), entry));
+        assertEquals(MONTH_FEE, billing.calculateFee(car, LocalDateTime.of(2026, 3, 4, 8, 0), entry));
+        assertEquals(MONTH_FEE, new BillingService(repository, 0)
+                .calculateFee(car, LocalDateTime.of(2026, 3, 1, 8, 0), entry));
+    }
+
+    @Test
+    public void graceDaysDoNotWaiveArrears() {
+        repository.recordMonthlyPayment(PLATE, "01/2026");
+        BillingService billing = new BillingService(repository, 5);
+
+        // Tháng 2 chưa đóng: tháng 3 không được ân hạn, thu cả tháng 2 và tháng 3
+        BillingService.MonthlyCharge charge = billing.calculateMonthlyCharge(car,
+                LocalDateTime.of(2026, 1, 20, 8, 0), LocalDateTime.of(2026, 3, 2, 18, 0));
+        assertEquals(2 * MONTH_FEE, charge.getAmount());
+        assertEquals("02/2026", charge.getFirstMonth(0));
+    }
+
+    @Test
+    public void prepaymentSkipsMonthsAlreadyPaid() {
+        repository.recordMonthlyPayment(PLATE, "05/2026");
+        BillingService billing = new BillingService(repository, 0);
+
+        BillingService.MonthlyCharge charge = billing.calculatePrepaidCharge(PLATE, 3,
+                LocalDateTime.of(2026, 4, 15, 9, 0));
+        assertEquals(2, charge.getRunCount());
+        assertEquals("04/2026", charge.getFirstMonth(0));
+        assertEquals("06/2026", charge.getFirstMonth(1));
+        assertEquals(2, charge.getMonthCount(1));
+        assertEquals("07/2026", charge.getLastPaidMonth());
+    }
+}
@@ -0,0 +1,132 @@
+package vn.parking.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.event.LostTicketProcessed;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.Motorbike;
+import vn.parking.repository.EventLogRepository;
+import vn.parking.repository.HistoryRepository;
+import vn.parking.repository.ParkingRepository;
+import vn.parking.sim.VirtualClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra checkpoint event log (nạp từ checkpoint rồi phát lại phần sau cho cùng kết quả
+ * với phát lại cả log) và cảnh báo mất vé trả về / ghi cùng sự kiện
+ */
+public class ParkingServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 2, 7, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final VirtualClock clock = new VirtualClock(T0);
+
+    @Test
+    public void checkpointPlusTailMatchesFullReplay() throws IOException {
+        ParkingService first = open();
+        traffic(first, 0, 40);
+        first.shutdown();
+        assertTrue(checkpointFile().exists());
+
+        // Phần log sau checkpoint (chưa đủ dài để ghi checkpoint mới)
+        ParkingService second = open();
+        traffic(second, 40, 25);
+        second.saveData();
+
+        ParkingService fromCheckpoint = open();
+        Files.delete(checkpointFile().toPath());
+        ParkingService fullReplay = open();
+
+        LocalDateTime now = clock.now();
+        assertEquals(fullReplay.getStatistics().getSummary(), fromCheckpoint.getStatistics().getSummary());
+        assertEquals(fullReplay.getForecaster().getSummary(now), fromCheckpoint.getForecaster().getSummary(now));
+        assertEquals(fullReplay.getLostTicketDetector().getSummary(),
+                fromCheckpoint.getLostTicketDetector().getSummary());
+        assertEquals(fullReplay.getStatistics().getTotalRevenue(), fromCheckpoint.getStatistics().getTotalRevenue());
+        assertTrue(fromCheckpoint.getStatistics().getTotalRevenue() > 0);
+    }
+
+    @Test
+    public void checkpointIsWrittenOnlyAfterEnoughLog() {
+        ParkingService service = open();
+        traffic(service, 0, 5);
+        service.saveData();
+        assertFalse(checkpointFile().exists());
+
+        service.shutdown();
+        assertTrue(checkpointFile().exists());
+    }
+
+    @Test
+    public void lostTicketAlertsAreReturnedAndLogged() {
+        ParkingService service = open();
+        String plate = "29A-12345";
+        service.checkIn(new Car(plate, FuelType.GASOLINE, false));
+        clock.advanceTo(clock.now().plusHours(1));
+        assertTrue(service.processLostTicket(plate).getAlerts().isEmpty());
+
+        // Lần mất vé thứ hai của cùng biển số trong cửa sổ: cảnh báo theo biển số
+        service.checkIn(new Car(plate, FuelType.GASOLINE, false));
+        clock.advanceTo(clock.now().plusHours(1));
+        LostTicketResult result = service.processLostTicket(plate);
+        assertEquals(1, result.getAlerts().size());
+        assertTrue(result.getAlerts().get(0).contains(plate));
+        assertTrue(result.getTotalFee() > 0);
+        service.saveData();
+
+        List<List<String>> logged = new ArrayList<>();
+        service.forEachLoggedEvent(event -> {
+            if (event instanceof LostTicketProcessed) {
+                logged.add(((LostTicketProcessed) event).getAlerts());
+            }
+        });
+        assertEquals(2, logged.size());
+        assertTrue(logged.get(0).isEmpty());
+        assertEquals(result.getAlerts(), logged.get(1));
+    }
+
+    private ParkingService open() {
+        File dataDir = temp.getRoot();
+        ParkingRepository repository = new ParkingRepository(dataDir);
+        ParkingService service = new ParkingService(repository, new BillingService(repository),
+                new HistoryService(HistoryRepository.inDirectory(dataDir)), clock, true);
+        service.loadData();
+        return service;
+    }
+
+    private File checkpointFile() {
+        return new File(temp.getRoot(), EventLogRepository.DEFAULT_FILENAME + EventLogRepository.CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Lượt vào rồi ra (mỗi lượt thứ năm báo mất vé), thời gian tăng dần qua nhiều giờ
+     */
+    private void traffic(ParkingService service, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            String plate = String.format("%s-%05d", i % 2 == 0 ? "29A" : "51G", i);
+            service.checkIn(i % 2 == 0 ? new Car(plate, FuelType.GASOLINE, false)
+                    : new Motorbike(plate, FuelType.GASOLINE, false));
+            clock.advanceTo(clock.now().plusMinutes(20 + i % 90));
+            if (i % 5 == 0) {
+                service.processLostTicket(plate);
+            } else {
+                service.checkOut(plate);
+            }
+        }
+    }
+}
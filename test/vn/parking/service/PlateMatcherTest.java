@@ -0,0 +1,99 @@
+package vn.parking.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import vn.parking.event.VehicleCheckedIn;
+import vn.parking.event.VehicleCheckedOut;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra khớp gần đúng biển số: chi phí sửa có trọng số theo lỗi OCR và xóa khỏi trie
+ */
+public class PlateMatcherTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    private PlateMatcher matcher;
+
+    @Before
+    public void setUp() {
+        matcher = new PlateMatcher(PlateMatcher.DEFAULT_MAX_COST);
+        matcher.reset(Arrays.asList(ticket("29A-12345"), ticket("29A-12346"), ticket("51G-88888")));
+    }
+
+    @Test
+    public void exactKeyIgnoresPunctuationAndCase() {
+        assertEquals("29A-12345", matcher.autoMatch(" 29a1 2345 "));
+        assertEquals(0, matcher.findWithin("29A.12345", 0).get(0).getCost());
+    }
+
+    @Test
+    public void confusableSubstitutionCostsLessThanOtherEdits() {
+        // G/6 và 8/B là cặp dễ nhầm: chi phí 1 mỗi lần thay
+        List<PlateMatcher.Match> matches = matcher.findWithin("516-88888", PlateMatcher.DEFAULT_MAX_COST);
+        assertEquals(1, matches.size());
+        assertEquals("51G-88888", matches.get(0).getPlate());
+        assertEquals(PlateMatcher.CONFUSABLE_COST, matches.get(0).getCost());
+        assertEquals(2 * PlateMatcher.CONFUSABLE_COST, matcher.findWithin("516-8888B", 2).get(0).getCost());
+
+        // Thay ký tự không dễ nhầm, thêm hoặc bớt ký tự: chi phí 2
+        assertEquals(PlateMatcher.EDIT_COST, matcher.findWithin("51K-88888", 2).get(0).getCost());
+        assertEquals(PlateMatcher.EDIT_COST, matcher.findWithin("51G-8888", 2).get(0).getCost());
+        assertEquals(PlateMatcher.EDIT_COST, matcher.findWithin("51G-888888", 2).get(0).getCost());
+        assertTrue(matcher.findWithin("51K-88880", 2).isEmpty());
+    }
+
+    @Test
+    public void ambiguousReadIsNotAutoMatched() {
+        // Cách 29A-12345 và 29A-12346 cùng một lần thay ký tự
+        assertNull(matcher.autoMatch("29A-12347"));
+        assertEquals(2, matcher.findWithin("29A-12347", 2).size());
+        // Ký tự dễ nhầm nghiêng về một ứng viên
+        assertEquals("29A-12345", matcher.autoMatch("29A-1234S"));
+    }
+
+    @Test
+    public void checkoutRemovesPlateAndKeepsSiblings() {
+        matcher.apply(new VehicleCheckedOut(ticket("29A-12346"), car("29A-12346"), T0.plusHours(1), 0, null));
+
+        assertEquals(2, matcher.size());
+        assertEquals("29A-12345", matcher.autoMatch("29A-12347"));
+        assertTrue(matcher.findWithin("29A-12346", 0).isEmpty());
+
+        matcher.apply(new VehicleCheckedOut(ticket("29A-12345"), car("29A-12345"), T0.plusHours(1), 0, null));
+        assertEquals(1, matcher.size());
+        assertNull(matcher.autoMatch("29A-12345"));
+        assertEquals("51G-88888", matcher.autoMatch("51G-88888"));
+
+        // Thêm lại sau khi nhánh đã bị cắt
+        matcher.apply(new VehicleCheckedIn(ticket("29A-12345"), car("29A-12345")));
+        assertEquals("29A-12345", matcher.autoMatch("29A-12345"));
+    }
+
+    @Test
+    public void removingUnknownPlateIsIgnored() {
+        matcher.apply(new VehicleCheckedOut(ticket("29A-1234"), car("29A-1234"), T0.plusHours(1), 0, null));
+        matcher.apply(new VehicleCheckedOut(ticket("99Z-99999"), car("99Z-99999"), T0.plusHours(1), 0, null));
+
+        assertEquals(3, matcher.size());
+    }
+
+    private static Ticket ticket(String plate) {
+        return new Ticket(plate, T0, false, Zone.B);
+    }
+
+    private static Car car(String plate) {
+        return new Car(plate, FuelType.GASOLINE, false);
+    }
+}
@@ -0,0 +1,74 @@
+package vn.parking.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra count-min sketch trên cửa sổ trượt: đếm trong cửa sổ và hết hạn theo bucket
+ */
+public class SlidingCountMinSketchTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long WINDOW = 24 * HOUR;
+
+    @Test
+    public void countsWithinWindow() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(WINDOW, 24, 4, 1024);
+        sketch.add("29A12345", 0);
+        sketch.add("29A12345", 5 * HOUR);
+        sketch.add("51G88888", 6 * HOUR);
+
+        assertEquals(2, sketch.estimate("29A12345", 6 * HOUR));
+        assertEquals(1, sketch.estimate("51G88888", 6 * HOUR));
+        assertEquals(0, sketch.estimate("30B67890", 6 * HOUR));
+        assertEquals(3, sketch.getTotalCount());
+    }
+
+    @Test
+    public void bucketsExpireAsWindowSlides() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(WINDOW, 24, 4, 1024);
+        sketch.add("29A12345", 0);
+        sketch.add("29A12345", 10 * HOUR);
+
+        assertEquals(2, sketch.estimate("29A12345", WINDOW - 1));
+        // Bucket giờ 0 ra khỏi cửa sổ, bucket giờ 10 vẫn còn
+        assertEquals(1, sketch.estimate("29A12345", WINDOW));
+        assertEquals(1, sketch.getTotalCount());
+        assertEquals(0, sketch.estimate("29A12345", WINDOW + 10 * HOUR));
+        assertEquals(0, sketch.getTotalCount());
+    }
+
+    @Test
+    public void slotReusedAfterFullRotationStartsEmpty() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(WINDOW, 24, 4, 1024);
+        sketch.add("29A12345", HOUR);
+        // Cùng vị trí bucket sau đúng một vòng cửa sổ
+        sketch.add("29A12345", HOUR + WINDOW);
+
+        assertEquals(1, sketch.estimate("29A12345", HOUR + WINDOW));
+    }
+
+    @Test
+    public void addOlderThanWindowIsIgnored() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(WINDOW, 24, 4, 1024);
+        sketch.add("29A12345", 3 * WINDOW);
+        sketch.add("29A12345", WINDOW);
+
+        assertEquals(1, sketch.estimate("29A12345", 3 * WINDOW));
+        assertEquals(1, sketch.getTotalCount());
+    }
+
+    @Test
+    public void neverUnderestimates() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(WINDOW, 24, 2, 16);
+        for (int i = 0; i < 200; i++) {
+            sketch.add("P" + i, i * 60_000L);
+        }
+        for (int i = 0; i < 5; i++) {
+            sketch.add("P7", HOUR * 4);
+        }
+        assertTrue(sketch.estimate("P7", HOUR * 4) >= 6);
+    }
+}
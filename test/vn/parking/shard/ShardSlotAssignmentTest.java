@@ -0,0 +1,93 @@
+package vn.parking.shard;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vn.parking.model.Car;
+import vn.parking.model.FuelType;
+import vn.parking.model.ParkingSlot;
+import vn.parking.model.Ticket;
+import vn.parking.model.Zone;
+import vn.parking.service.SlotIndex;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra chia chỗ đỗ giữa các shard: không shard nào cấp trùng chỗ của shard khác
+ * và cả bãi không nhận quá sức chứa
+ */
+public class ShardSlotAssignmentTest {
+
+    private static final int SHARDS = 3;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /**
+     * Phần sơ đồ của các shard rời nhau, gộp lại đúng bằng sơ đồ cả bãi và khớp Zone.partition
+     */
+    @Test
+    public void layoutsAreDisjoint() {
+        Map<Zone, Integer> capacities = Zone.parseCapacities(null);
+        Set<String> whole = new HashSet<>();
+        for (ParkingSlot slot : SlotIndex.generateLayout(capacities)) {
+            whole.add(slot.getSlotId());
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Map<Zone, Integer> share = Zone.partition(capacities, shard, SHARDS);
+            for (Zone zone : Zone.values()) {
+                int count = 0;
+                for (ParkingSlot slot : SlotIndex.generateLayout(capacities, shard, SHARDS)) {
+                    if (slot.getZone() == zone) {
+                        count++;
+                    }
+                }
+                assertEquals("Shard " + shard + " zone " + zone, (int) share.get(zone), count);
+            }
+            for (ParkingSlot slot : SlotIndex.generateLayout(capacities, shard, SHARDS)) {
+                assertTrue("Chỗ " + slot.getSlotId() + " thuộc nhiều shard", seen.add(slot.getSlotId()));
+            }
+        }
+        assertEquals("Các shard gộp lại không đúng sơ đồ cả bãi", whole, seen);
+    }
+
+    /**
+     * Cho vào nhiều ô tô hơn sức chứa zone B qua service nhiều shard: mọi vé nhận chỗ khác nhau
+     * và tổng số xe được nhận không vượt sức chứa cả bãi
+     */
+    @Test
+    public void checkInAcrossShards() throws IOException {
+        ShardedParkingService service = ShardedParkingService.inProcess(SHARDS, temp.newFolder());
+        service.loadData();
+
+        int capacity = Zone.parseCapacities(null).get(Zone.B);
+        Set<String> slotIds = new HashSet<>();
+        Set<Integer> shardsUsed = new HashSet<>();
+        int admitted = 0;
+        for (int i = 0; i < capacity * SHARDS; i++) {
+            String plate = "51A-" + (10000 + i);
+            Ticket ticket;
+            try {
+                ticket = service.checkIn(new Car(plate, FuelType.GASOLINE, false));
+            } catch (IllegalStateException e) {
+                continue; // Shard sở hữu biển số đã hết chỗ
+            }
+            admitted++;
+            shardsUsed.add(service.shardIndexFor(plate));
+            assertNotNull("Vé " + plate + " không có chỗ đỗ", ticket.getSlotId());
+            assertTrue("Chỗ " + ticket.getSlotId() + " bị cấp cho hai xe", slotIds.add(ticket.getSlotId()));
+        }
+        assertEquals("Biển số thử không trải đều các shard", SHARDS, shardsUsed.size());
+        assertTrue("Nhận " + admitted + " ô tô, vượt sức chứa zone B (" + capacity + ")", admitted <= capacity);
+        assertTrue("Không nhận được ô tô nào", admitted > 0);
+    }
+}